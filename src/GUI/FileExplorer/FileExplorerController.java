@@ -1,21 +1,46 @@
 package GUI.FileExplorer;
 
+import GUI.FileExplorer.IndexedTree.FileIndex;
+import GUI.FileExplorer.IndexedTree.IndexTreeCell;
+import GUI.FileExplorer.IndexedTree.IndexTreeItem;
 import GUI.FileExplorer.PathNodes.DirectoryPathNode;
+import GUI.FileExplorer.PathNodes.FilePathNode;
 import GUI.FileExplorer.PathNodes.ImagePathNode;
+import GUI.FileExplorer.Preview.PreviewLoader;
+import GUI.FileExplorer.Preview.PreviewPrefetcher;
+import GUI.FileExplorer.Preview.PreviewTask;
+import GUI.FileExplorer.Scanning.DirectoryScanner;
+import GUI.FileExplorer.Scanning.DirectoryWatcher;
+import GUI.FileExplorer.Scanning.ScanTask;
+import GUI.Shared.AlertBox;
+import GUI.Shared.IconCache;
 import GUI.Shared.ProgressWindow;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
+import javafx.geometry.Bounds;
 import javafx.scene.Cursor;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.DirectoryChooser;
 import photo_renamer.Image;
+import photo_renamer.ImageRenameListener;
 import photo_renamer.PhotoRenamer;
+import photo_renamer.RenamedImage;
+import photo_renamer.Tags.TagIndex;
+import photo_renamer.Tags.TagQuery;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
 
 
@@ -25,6 +50,19 @@ import java.util.Observable;
 public class FileExplorerController extends Observable{
 
 
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The file path to the icon displayed while the selected image is being loaded */
+    private static final String LOADING_ICON = File.separator + "resources" + File.separator + "icon_image_file.png";
+
+    /** The most images a filter displays, so a filter that matches most of an archive doesn't make a node for each */
+    private static final int MAX_FILTER_RESULTS = 10000;
+
+
     /* ************************************************************************* *
      *                                                                           *
      * Instance Variables                                                        *
@@ -34,6 +72,21 @@ public class FileExplorerController extends Observable{
     /** The currently selected image in the file explorer */
     private Image selectedImage;
 
+    /** Whether the tree view is backed by a compact FileIndex rather than a node for every file */
+    private boolean compactMode = false;
+
+    /** The index of the files under the current directory, null unless in compact mode */
+    private FileIndex fileIndex;
+
+    /** The preview of the selected image being loaded, null if there is none */
+    private PreviewTask previewTask;
+
+    /** The root of the tree view while a filter is displayed in its place, null if there is no filter */
+    private TreeItem<String> unfilteredRoot;
+
+    /** Counts the filters entered, so the results of a filter that was replaced before it finished are dropped */
+    private int filterCount = 0;
+
     /* GUI Components */
 
     /** A tree view that shows all the directories and image files of the currently selected main directory */
@@ -42,6 +95,9 @@ public class FileExplorerController extends Observable{
     /** An image view that displays the currently selected image (located in the middle of the main GUI) */
     private ImageView selectedImageView;
 
+    /** The scroll pane the selected image is displayed in */
+    private ScrollPane selectedImagePane;
+
     /** A textfield containing the current file directory the entire program is working in */
     private TextField fieldCurrentDir;
 
@@ -54,6 +110,9 @@ public class FileExplorerController extends Observable{
     /** A label that displays the absolute path of the currently selected image */
     private Label lblImagePath;
 
+    /** A textfield containing a query on tags that the tree view is narrowed down to */
+    private TextField filterField;
+
     /**
      * Creates a Pane layout.
      */
@@ -71,22 +130,44 @@ public class FileExplorerController extends Observable{
      *
      * @param fileTreeView the tree view displaying the directories and images
      * @param selectedImageView the component displaying the currently selected image
+     * @param selectedImagePane the scroll pane the currently selected image is displayed in
      * @param fieldCurrentDir the field containing the absolute path of the current working directory
      * @param btnBrowseFiles the button allowing user to choose the current working directory
+     * @param lblImagePath the label displaying the path of the currently selected image
+     * @param filterField the field containing a query on tags to narrow the tree view down to
      */
-    public void construct(TreeView<String> fileTreeView, ImageView selectedImageView,
-                          TextField fieldCurrentDir, Button btnBrowseFiles, Label lblImagePath){
+    public void construct(TreeView<String> fileTreeView, ImageView selectedImageView, ScrollPane selectedImagePane,
+                          TextField fieldCurrentDir, Button btnBrowseFiles, Label lblImagePath, TextField filterField){
         this.fileTreeView = fileTreeView;
         this.selectedImageView = selectedImageView;
+        this.selectedImagePane = selectedImagePane;
         this.fieldCurrentDir = fieldCurrentDir;
         this.btnBrowseFiles = btnBrowseFiles;
         this.lblImagePath = lblImagePath;
+        this.filterField = filterField;
 
         /* Set up action events for all the buttons */
         this.btnBrowseFiles.setOnAction(this::onBtnBrowseFilesClick);
         this.btnBrowseFiles.setOnMouseEntered(this::onBtnBrowseFilesHover);
         this.btnBrowseFiles.setOnMouseExited(this::onBtnBrowseFilesHover);
         this.fileTreeView.setOnMouseClicked(this::itemSelected);
+        this.filterField.setOnAction(this::onFilterEntered);
+
+        /* Any number of images can be selected to be tagged together */
+        this.fileTreeView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        /* Keep the tree view up to date with any images that get renamed, one at a time or in batches */
+        Image.addRenameListener(new ImageRenameListener() {
+            @Override
+            public void imageRenamed(Image image, File oldFile, File newFile) {
+                onImageRenamed(image, oldFile, newFile);
+            }
+
+            @Override
+            public void imagesRenamed(List<RenamedImage> renames) {
+                onImagesRenamed(renames);
+            }
+        });
     }
 
     /**
@@ -139,6 +220,103 @@ public class FileExplorerController extends Observable{
         }
     }
 
+    /**
+     * <b>Action:</b> Enter is pressed in the filter field.
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Parses the query in the field and looks up the saved images under the current directory that match
+     * it in the tag index, then displays them in the tree view in place of the directory. An empty field brings the
+     * directory back.
+     *
+     * @param e the event that was called
+     */
+    private void onFilterEntered(ActionEvent e){
+        String text = filterField.getText().trim();
+        int filter = ++filterCount;
+
+        if(text.isEmpty()){
+            clearFilter();
+            return;
+        }
+
+        if(fileTreeView.getRoot() == null){
+            AlertBox.display("No directory selected.");
+            return;
+        }
+
+        TagQuery query;
+        try {
+            query = TagQuery.parse(text);
+        }
+        catch (IllegalArgumentException ex){
+            AlertBox.display("Invalid filter: " + ex.getMessage());
+            return;
+        }
+
+        /* Evaluate the query in the background, since the files found have to be checked on the disk */
+        Path directory = Paths.get(fieldCurrentDir.getText()).toAbsolutePath().normalize();
+        Thread search = new Thread(() -> {
+            List<File> matches = new ArrayList<>();
+            int total = 0;
+
+            for(String key : TagIndex.getInstance().keysOf(query.evaluate(TagIndex.getInstance()))){
+                File file = new File(key);
+                if(file.toPath().startsWith(directory) && file.isFile()){
+                    total++;
+                    if(matches.size() < MAX_FILTER_RESULTS){
+                        matches.add(file);
+                    }
+                }
+            }
+
+            int found = total;
+            Platform.runLater(() -> {
+                if(filter == filterCount){
+                    displayFilter(query, matches, found);
+                }
+            });
+        }, "tag-filter");
+        search.setDaemon(true);
+        search.start();
+    }
+
+    /**
+     * Displays the given images matching a filter in the tree view in place of the current directory.
+     *
+     * @param query the filter
+     * @param matches the images to display
+     * @param total the number of images that matched, which can be more than are displayed
+     */
+    private void displayFilter(TagQuery query, List<File> matches, int total){
+        if(unfilteredRoot == null){
+            unfilteredRoot = fileTreeView.getRoot();
+        }
+
+        String label = total > matches.size()
+                ? String.format("First %,d of %,d images matching %s", matches.size(), total, query.getPlan())
+                : String.format("%,d images matching %s", total, query.getPlan());
+
+        matches.sort(null);
+        TreeItem<String> results = new TreeItem<>(label);
+        for(File file : matches){
+            results.getChildren().add(new ImagePathNode(file));
+        }
+
+        results.setExpanded(true);
+        fileTreeView.setRoot(results);
+    }
+
+    /**
+     * Brings back the current directory in the tree view, if a filter is displayed in its place.
+     */
+    private void clearFilter(){
+        if(unfilteredRoot != null){
+            fileTreeView.setRoot(unfilteredRoot);
+            unfilteredRoot = null;
+        }
+    }
+
     /**
      * <b>Action:</b> A tree item is double clicked.
      *
@@ -152,19 +330,36 @@ public class FileExplorerController extends Observable{
     private void itemSelected(MouseEvent m){
         try{
             if(m.getClickCount() == 2) {
-                /* Get the selected item as an ImagePathNode. If the cast fails, then we will catch the error */
-                ImagePathNode imagePathNode = (ImagePathNode) fileTreeView.getSelectionModel().getSelectedItem();
+                TreeItem<String> item = fileTreeView.getSelectionModel().getSelectedItem();
 
-                /* Update the currently selected image to the one from the selected ImagePathNode */
-                updateSelectedImage(new Image(imagePathNode.getFile()));
+                /* Get the file of the selected item, if it is an image */
+                File file = imageFileOf(item);
+                if(file == null){
+                    return;
+                }
 
-                /* Set the lbl's text to display the currently selected image's path */
-                lblImagePath.setText("Selected Image: " + imagePathNode.getFilePath());
+                /* Update the currently selected image to the one of the selected item */
+                openImage(file);
+
+                /* Get the images next to this one ready, since they are likely to be selected next */
+                prefetchNeighbours(item);
             }
         }
         catch (Exception ignored){}
     }
 
+    /**
+     * Selects the given image file, displaying it in the main window.
+     *
+     * @param file the image file to select
+     */
+    public void openImage(File file){
+        updateSelectedImage(Image.of(file));
+
+        /* Set the lbl's text to display the currently selected image's path */
+        lblImagePath.setText("Selected Image: " + file.getPath());
+    }
+
     /**
      * Updates the currently selected image to the given image.
      *
@@ -173,17 +368,269 @@ public class FileExplorerController extends Observable{
     private void updateSelectedImage(Image image){
         selectedImage = image;
 
-        /* Update and setup the image in the GUI */
-        javafx.scene.image.Image imageViewImage = new javafx.scene.image.Image(image.getFile().toURI().toString());
-        selectedImageView.setImage(imageViewImage);
-        selectedImageView.setFitWidth(imageViewImage.getWidth());
-        selectedImageView.setFitHeight(imageViewImage.getHeight());
+        /* Stop loading the previously selected image if it hasn't finished yet */
+        if(previewTask != null){
+            previewTask.cancel();
+        }
+
+        /* Display a placeholder until the image is loaded */
+        displayPreview(IconCache.get(LOADING_ICON));
+
+        /* Load the image in the background, scaled down to the size of the area it is displayed in */
+        Bounds viewport = selectedImagePane.getViewportBounds();
+        int width = Math.max(1, (int) viewport.getWidth());
+        int height = Math.max(1, (int) viewport.getHeight());
+
+        previewTask = PreviewLoader.getInstance().load(image.getFile(), width, height, preview -> {
+            previewTask = null;
+            if(!preview.isError()){
+                displayPreview(preview);
+            }
+        });
 
         /* Notify observers of change in the selected image*/
         setChanged();
         notifyObservers(image);
     }
 
+    /**
+     * Starts prefetching the previews of the images around the given item in its directory, at the size the selected
+     * image is displayed at.
+     *
+     * @param item the item of the selected image
+     */
+    private void prefetchNeighbours(TreeItem<String> item){
+        if(item.getParent() == null){
+            return;
+        }
+
+        List<File> images = new ArrayList<>();
+        int selected = -1;
+
+        for(TreeItem<String> sibling : item.getParent().getChildren()){
+            File file = imageFileOf(sibling);
+
+            if(file != null){
+                if(sibling == item){
+                    selected = images.size();
+                }
+                images.add(file);
+            }
+        }
+
+        Bounds viewport = selectedImagePane.getViewportBounds();
+        int width = Math.max(1, (int) viewport.getWidth());
+        int height = Math.max(1, (int) viewport.getHeight());
+
+        PreviewPrefetcher.getInstance().prefetch(images, selected, width, height);
+    }
+
+    /**
+     * Returns the image file of the given tree item.
+     *
+     * @param item the item
+     * @return the image file of the item, or null if the item isn't of an image
+     */
+    private static File imageFileOf(TreeItem<String> item){
+        if(item instanceof ImagePathNode){
+            return ((ImagePathNode) item).getFile();
+        }
+        if(item instanceof IndexTreeItem && !((IndexTreeItem) item).isDirectory()){
+            return ((IndexTreeItem) item).getFile();
+        }
+        return null;
+    }
+
+    /**
+     * Displays the given image in the selected image view at its own size.
+     *
+     * @param preview the image to display
+     */
+    private void displayPreview(javafx.scene.image.Image preview){
+        selectedImageView.setImage(preview);
+        selectedImageView.setFitWidth(preview.getWidth());
+        selectedImageView.setFitHeight(preview.getHeight());
+    }
+
+    /**
+     * <b>Action:</b> An image file is renamed or reverted.
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Relabels the image's node in the tree view and moves it to where it now belongs in its directory,
+     * without listing any directories again. Everything else about the tree, like which directories are expanded, is
+     * kept as is.
+     *
+     * @param image the image that was renamed
+     * @param oldFile the file of the image before the rename
+     * @param newFile the file of the image after the rename
+     */
+    private void onImageRenamed(Image image, File oldFile, File newFile){
+
+        /* Renames can happen on any thread, but the tree view can only be changed on the JavaFX thread */
+        if(!Platform.isFxApplicationThread()){
+            Platform.runLater(() -> onImageRenamed(image, oldFile, newFile));
+            return;
+        }
+
+        if(compactMode){
+            renameInIndex(oldFile, newFile);
+        }
+
+        /* The image may also be displayed in a filter */
+        if(unfilteredRoot != null){
+            for(TreeItem<String> item : fileTreeView.getRoot().getChildren()){
+                if(item instanceof ImagePathNode && ((ImagePathNode) item).getFile().equals(oldFile)){
+                    ((ImagePathNode) item).renamed(newFile);
+                    break;
+                }
+            }
+        }
+
+        FilePathNode node = findNode(oldFile, false);
+        if(node != null){
+            boolean selected = fileTreeView.getSelectionModel().getSelectedItem() == node;
+
+            node.renamed(newFile);
+            ((DirectoryPathNode) node.getParent()).reorder(node);
+
+            /* Moving the node drops it from the selection, so select it again */
+            if(selected){
+                fileTreeView.getSelectionModel().select(node);
+            }
+        }
+
+        if(image == selectedImage){
+            lblImagePath.setText("Selected Image: " + newFile.getPath());
+        }
+    }
+
+    /**
+     * <b>Action:</b> A batch of image files is renamed together.
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Updates the tree view for every image in the batch in one go on the JavaFX thread, rather than once
+     * for each image, and reloads the tags of the selected image if it was in the batch.
+     *
+     * @param renames the renames in the batch
+     */
+    private void onImagesRenamed(List<RenamedImage> renames){
+        if(!Platform.isFxApplicationThread()){
+            Platform.runLater(() -> onImagesRenamed(renames));
+            return;
+        }
+
+        boolean selectedRenamed = false;
+        for(RenamedImage rename : renames){
+
+            /* The selected image may have been opened as another Image of the same file */
+            if(selectedImage != null && rename.getOldFile().equals(selectedImage.getFile())){
+                selectedImage = rename.getImage();
+            }
+            selectedRenamed |= rename.getImage() == selectedImage;
+
+            onImageRenamed(rename.getImage(), rename.getOldFile(), rename.getNewFile());
+        }
+
+        /* The batch attached tags to the selected image, so have the tag bar display them */
+        if(selectedRenamed){
+            setChanged();
+            notifyObservers(selectedImage);
+        }
+    }
+
+    /**
+     * Renames the given file in the index of the compact tree, and updates its item if it has one.
+     *
+     * @param oldFile the file before the rename
+     * @param newFile the file after the rename
+     */
+    private void renameInIndex(File oldFile, File newFile){
+        int id = fileIndex.find(oldFile);
+        if(id < 0){
+            return;
+        }
+
+        fileIndex.rename(id, newFile.getName());
+
+        /* Only directories that are expanded keep the order of their children, and items for the rows scrolled to */
+        TreeItem<String> parent = findItem(fileIndex.getParent(id));
+        if(!(parent instanceof IndexTreeItem)){
+            return;
+        }
+
+        IndexTreeItem item = ((IndexTreeItem) parent).findChild(id);
+        boolean selected = item != null && fileTreeView.getSelectionModel().getSelectedItem() == item;
+        item = ((IndexTreeItem) parent).childRenamed(id);
+
+        /* Moving the item drops it from the selection, so select it again */
+        if(selected && item != null){
+            fileTreeView.getSelectionModel().select(item);
+        }
+    }
+
+    /**
+     * Finds the item of the given directory in the compact tree.
+     *
+     * @param id the id of the directory in the index
+     * @return the item of the directory, or null if it has none
+     */
+    private TreeItem<String> findItem(int id){
+        if(id == FileIndex.ROOT){
+            return directoryRoot();
+        }
+
+        TreeItem<String> parent = findItem(fileIndex.getParent(id));
+        return parent instanceof IndexTreeItem ? ((IndexTreeItem) parent).findChild(id) : null;
+    }
+
+    /**
+     * Finds the node of the given file in the tree view. Only directories that have already been listed are looked
+     * through, since a file in a directory that hasn't been listed has no node yet.
+     *
+     * @param file the file to find the node of
+     * @param directory whether the file is a directory or an image
+     * @return the node of the file, or null if there isn't one
+     */
+    private FilePathNode findNode(File file, boolean directory){
+        if(!(directoryRoot() instanceof DirectoryPathNode)){
+            return null;
+        }
+
+        DirectoryPathNode root = (DirectoryPathNode) directoryRoot();
+        Path rootPath = root.getFile().getAbsoluteFile().toPath();
+        Path path = file.getAbsoluteFile().toPath();
+
+        if(!path.startsWith(rootPath) || path.equals(rootPath)){
+            return null;
+        }
+
+        /* Walk down the directories between the root and the file */
+        Path relative = rootPath.relativize(path);
+        DirectoryPathNode current = root;
+
+        for(int i = 0; i < relative.getNameCount() - 1; i++){
+            FilePathNode child = current.findChild(relative.getName(i).toString(), true);
+
+            if(!(child instanceof DirectoryPathNode)){
+                return null;
+            }
+            current = (DirectoryPathNode) child;
+        }
+
+        return current.findChild(relative.getFileName().toString(), directory);
+    }
+
+    /**
+     * Returns the root of the current directory's tree, which is kept aside while a filter is displayed.
+     *
+     * @return the root item, or null if no directory is open
+     */
+    private TreeItem<String> directoryRoot(){
+        return unfilteredRoot != null ? unfilteredRoot : fileTreeView.getRoot();
+    }
+
     /**
      * Updates and sets the currently opened directory to the one given by the path.
      *
@@ -191,20 +638,73 @@ public class FileExplorerController extends Observable{
      */
     public void refreshDirectory(String path){
 
-        ProgressWindow.display("Setting up files...");
+        /* A filter applies to the directory it was entered on */
+        unfilteredRoot = null;
+        filterCount++;
+        filterField.clear();
+
+        /* Stop listing and watching the directories of the tree being replaced */
+        DirectoryScanner.getInstance().cancelAll();
+        PreviewPrefetcher.getInstance().cancel();
+        DirectoryWatcher.getInstance().unwatchAll();
 
-        /* Get the file at the given path, create a DirectoryPathNode with the file, and then populate it */
         File file = new File(path);
+
+        /* In compact mode the files are only kept in an index, and items are made for the rows being displayed */
+        if(compactMode){
+            fileIndex = new FileIndex(file);
+            IndexTreeItem rootItem = new IndexTreeItem(fileIndex, FileIndex.ROOT);
+
+            this.fileTreeView.setCellFactory(tv -> new IndexTreeCell());
+            rootItem.setExpanded(true);
+            this.fileTreeView.setRoot(rootItem);
+            return;
+        }
+
+        fileIndex = null;
+        this.fileTreeView.setCellFactory(null);
+
+        /* Create a DirectoryPathNode with the file. The node lists its own contents in the background when it is
+         * expanded, so nothing underneath the directory is walked up front */
         DirectoryPathNode rootNode = new DirectoryPathNode(file);
-        rootNode.populate();
 
-        ProgressWindow.closeWindow();
+        /* Start listing the directory, displaying the progress of the listing until it is done or cancelled. A cancelled
+         * listing is cleared rather than leaving part of the directory in the tree */
+        ScanTask scanTask = rootNode.load();
+        ProgressWindow.display("Setting up files...", rootNode::cancelLoad);
+        scanTask.setOnProgress(() -> ProgressWindow.update(scanTask.getProgress(), scanTask.getDetails()));
+        scanTask.setOnFinished(ProgressWindow::closeWindow);
 
         /* Expand the root node and then display it in the tree view */
         rootNode.setExpanded(true);
         this.fileTreeView.setRoot(rootNode);
     }
 
+    /**
+     * Loads every directory underneath the selected directory, or underneath the opened directory if no directory is
+     * selected, so the whole tree can be browsed without waiting on each directory as it is expanded. The directories
+     * are walked in the background many at a time, displaying the progress until the walk is done or cancelled.
+     * Nothing is done in compact mode, where the whole tree is already in the index, or while a filter is displayed.
+     */
+    public void loadAllDirectories(){
+        if(unfilteredRoot != null || !(fileTreeView.getRoot() instanceof DirectoryPathNode)){
+            return;
+        }
+
+        TreeItem<String> selected = fileTreeView.getSelectionModel().getSelectedItem();
+        DirectoryPathNode node = selected instanceof DirectoryPathNode
+                ? (DirectoryPathNode) selected : (DirectoryPathNode) fileTreeView.getRoot();
+
+        /* The walk is also cancelled if the node is collapsed or another directory is opened */
+        ScanTask walkTask = node.loadAll();
+        ProgressWindow.display("Loading every directory...", node::cancelLoadAll);
+        walkTask.setOnProgress(() -> ProgressWindow.update(-1, walkTask.getDetails()));
+        walkTask.setOnFinished(() -> {
+            ProgressWindow.closeWindow();
+            node.setExpanded(true);
+        });
+    }
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -220,6 +720,42 @@ public class FileExplorerController extends Observable{
         return selectedImage;
     }
 
+    /**
+     * Returns the files of the images selected in the tree view, which are tagged together when there are more than
+     * one of them.
+     *
+     * @return the image files, in the order they were selected
+     */
+    public List<File> getSelectedImageFiles() {
+        List<File> files = new ArrayList<>();
+
+        for(TreeItem<String> item : fileTreeView.getSelectionModel().getSelectedItems()){
+            File file = imageFileOf(item);
+            if(file != null){
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    public boolean isCompactMode() {
+        return compactMode;
+    }
+
+    /**
+     * Switches the tree view between a node for every file and the compact index, and reopens the current directory
+     * in the new mode.
+     *
+     * @param compactMode whether or not to use the compact index
+     */
+    public void setCompactMode(boolean compactMode) {
+        this.compactMode = compactMode;
+
+        if(fileTreeView.getRoot() != null){
+            refreshDirectory(fieldCurrentDir.getText());
+        }
+    }
+
     /* ************************************************************************* *
      *                                                                           *
      * Singleton Setup                                                           *
@@ -0,0 +1,248 @@
+package GUI.FileExplorer.IndexedTree;
+
+import photo_renamer.Scanning.DirectoryListing;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact index of the directories and images listed so far under a root directory. Every file is just an id into a
+ * handful of parallel arrays (its parent, its name, and for directories, where their children are), rather than an
+ * object of its own. The children of a directory are always stored next to each other, in the order they were listed.
+ *
+ * <br><br>
+ *
+ * Names are interned, so the same file name in many directories (IMG_0001.jpg, ...) is only kept once. Only ever used on
+ * the JavaFX thread.
+ */
+public class FileIndex {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The id of the root directory */
+    public static final int ROOT = 0;
+
+    /** The flags a file can have */
+    private static final byte DIRECTORY = 1, LISTED = 2, HAS_CHILDREN = 4;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The number of files in the index */
+    private int size = 0;
+
+    /** The id of the parent of each file, -1 for the root */
+    private int[] parents = new int[1024];
+
+    /** The name of each file. The name of the root is its absolute path */
+    private String[] names = new String[1024];
+
+    /** The flags of each file */
+    private byte[] flags = new byte[1024];
+
+    /** The id of the first child of each listed directory */
+    private int[] firstChildren = new int[1024];
+
+    /** The number of children of each listed directory */
+    private int[] childCounts = new int[1024];
+
+    /** The names seen so far, used to share one instance of each name */
+    private final Map<String, String> internedNames = new HashMap<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new index holding only the given root directory.
+     *
+     * @param root the root directory
+     */
+    public FileIndex(File root) {
+        add(-1, root.getAbsolutePath(), (byte) (DIRECTORY | HAS_CHILDREN));
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Adds the contents of the given listing as the children of the given directory. Does nothing if the directory was
+     * already listed.
+     *
+     * @param dir the id of the directory
+     * @param listing the listing of the directory
+     */
+    public void addListing(int dir, DirectoryListing listing) {
+        if(isListed(dir)){
+            return;
+        }
+
+        firstChildren[dir] = size;
+        childCounts[dir] = listing.getDirectories().size() + listing.getImages().size();
+        flags[dir] |= LISTED;
+
+        for(int i = 0; i < listing.getDirectories().size(); i++){
+            byte flag = listing.directoryHasChildren(i) ? (byte) (DIRECTORY | HAS_CHILDREN) : DIRECTORY;
+            add(dir, listing.getDirectories().get(i).getName(), flag);
+        }
+        for(File image : listing.getImages()){
+            add(dir, image.getName(), (byte) 0);
+        }
+    }
+
+    /**
+     * Renames the given file in the index.
+     *
+     * @param id the id of the file
+     * @param name the new name of the file
+     */
+    public void rename(int id, String name) {
+        names[id] = intern(name);
+    }
+
+    /**
+     * Finds the id of the given file. Only directories that have been listed are looked through.
+     *
+     * @param file the file to find
+     * @return the id of the file, or -1 if it isn't in the index
+     */
+    public int find(File file) {
+        Path rootPath = new File(names[ROOT]).toPath();
+        Path path = file.getAbsoluteFile().toPath();
+
+        if(!path.startsWith(rootPath)){
+            return -1;
+        }
+
+        int current = ROOT;
+        for(Path segment : rootPath.relativize(path)){
+            if(segment.toString().isEmpty()){
+                continue;
+            }
+
+            current = findChild(current, segment.toString());
+            if(current < 0){
+                return -1;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Finds the child of the given directory with the given name.
+     *
+     * @param dir the id of the directory
+     * @param name the name of the child
+     * @return the id of the child, or -1 if there is none
+     */
+    public int findChild(int dir, String name) {
+        if(!isListed(dir)){
+            return -1;
+        }
+
+        int first = firstChildren[dir];
+        for(int i = first; i < first + childCounts[dir]; i++){
+            if(names[i].equals(name)){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds the file of the given id out of the names of it and its parents.
+     *
+     * @param id the id of the file
+     * @return the file
+     */
+    public File getFile(int id) {
+        return id == ROOT ? new File(names[ROOT]) : new File(getFile(parents[id]), names[id]);
+    }
+
+    /**
+     * Adds a file to the end of the index, growing the arrays if they are full.
+     *
+     * @return the id of the new file
+     */
+    private int add(int parent, String name, byte flag) {
+        if(size == parents.length){
+            int capacity = size * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+
+        parents[size] = parent;
+        names[size] = intern(name);
+        flags[size] = flag;
+        return size++;
+    }
+
+    /**
+     * Returns the one shared instance of the given name.
+     */
+    private String intern(String name) {
+        String interned = internedNames.putIfAbsent(name, name);
+        return interned == null ? name : interned;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public int size() {
+        return size;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    public boolean isDirectory(int id) {
+        return (flags[id] & DIRECTORY) != 0;
+    }
+
+    public boolean isListed(int id) {
+        return (flags[id] & LISTED) != 0;
+    }
+
+    public boolean hasChildren(int id) {
+        return isListed(id) ? childCounts[id] > 0 : (flags[id] & HAS_CHILDREN) != 0;
+    }
+
+    public int getFirstChild(int id) {
+        return firstChildren[id];
+    }
+
+    public int getChildCount(int id) {
+        return childCounts[id];
+    }
+}
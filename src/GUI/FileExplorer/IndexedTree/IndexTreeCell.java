@@ -0,0 +1,60 @@
+package GUI.FileExplorer.IndexedTree;
+
+import GUI.Shared.IconCache;
+import javafx.application.Platform;
+import javafx.scene.control.TreeCell;
+import javafx.scene.control.TreeItem;
+import javafx.scene.image.ImageView;
+
+import java.io.File;
+
+/**
+ * A cell of the tree view displaying an IndexTreeItem. The tree view only creates enough cells to fill what can be
+ * seen and reuses them while scrolling, so the icons are only ever held by the cells rather than by every item. When
+ * the item standing in for the rest of a directory's children is displayed, the directory creates the next page.
+ */
+public class IndexTreeCell extends TreeCell<String> {
+
+    /** The file paths to the icons of the items */
+    private static final String FOLDER_OPENED_ICON = File.separator + "resources" + File.separator + "icon_folder_opened.png";
+    private static final String FOLDER_CLOSED_ICON = File.separator + "resources" + File.separator + "icon_folder_closed.png";
+    private static final String IMAGE_ICON = File.separator + "resources" + File.separator + "icon_image_file.png";
+
+    /** The view displaying the icon of the item in this cell */
+    private final ImageView icon = new ImageView();
+
+    @Override
+    protected void updateItem(String item, boolean empty) {
+        super.updateItem(item, empty);
+
+        if(empty || item == null){
+            setText(null);
+            setGraphic(null);
+            return;
+        }
+
+        setText(item);
+
+        TreeItem<String> treeItem = getTreeItem();
+        if(treeItem instanceof IndexTreeItem.MoreItem){
+            setGraphic(null);
+
+            /* Cells the tree view only measures are kept in a hidden parent, and the tree can't be changed while its
+             * cells are being laid out */
+            IndexTreeItem directory = (IndexTreeItem) treeItem.getParent();
+            if(directory != null && getParent() != null && getParent().isVisible()){
+                IndexTreeItem.MoreItem moreItem = (IndexTreeItem.MoreItem) treeItem;
+                Platform.runLater(() -> directory.moreItemDisplayed(moreItem));
+            }
+            return;
+        }
+
+        if(treeItem instanceof IndexTreeItem && ((IndexTreeItem) treeItem).isDirectory()){
+            icon.setImage(IconCache.get(treeItem.isExpanded() ? FOLDER_OPENED_ICON : FOLDER_CLOSED_ICON));
+        }
+        else{
+            icon.setImage(IconCache.get(IMAGE_ICON));
+        }
+        setGraphic(icon);
+    }
+}
@@ -0,0 +1,359 @@
+package GUI.FileExplorer.IndexedTree;
+
+import GUI.FileExplorer.Scanning.DirectoryScanner;
+import javafx.collections.ObservableList;
+import javafx.event.Event;
+import javafx.scene.control.TreeItem;
+import photo_renamer.Scanning.DirectoryListing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lightweight tree item for a file in a FileIndex. Holds nothing but the id of its file; its icon is drawn by the
+ * IndexTreeCell displaying it. An expanded directory only keeps the ids of its children in the order they are
+ * displayed in, and creates items for them a page at a time as the last row of the page scrolls into view. The items
+ * are let go of again when the directory is collapsed, so the number of items follows what has been seen rather than
+ * the size of the archive.
+ */
+public class IndexTreeItem extends TreeItem<String> {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The number of children created at a time */
+    static final int PAGE_SIZE = 256;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The index the file of this item is in */
+    private final FileIndex index;
+
+    /** The id of the file of this item */
+    private final int id;
+
+    /** Whether or not this item's children have been created (or are waiting on the directory to be listed) */
+    private boolean childrenLoaded = false;
+
+    /** The ids of the children of this directory in the order they are displayed in, null until they are wanted */
+    private int[] order;
+
+    /** The number of children at the start of the order that have items. The rest are stood in for by moreItem */
+    private int created = 0;
+
+    /** The last child while there are children without items, creating the next page when it is displayed */
+    private MoreItem moreItem;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new item for the file with the given id.
+     *
+     * @param index the index the file is in
+     * @param id the id of the file
+     */
+    public IndexTreeItem(FileIndex index, int id) {
+        super(index.getName(id));
+        this.index = index;
+        this.id = id;
+
+        if(isDirectory()){
+            this.addEventHandler(TreeItem.branchCollapsedEvent(), this::collapsed);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * <b>Action:</b> When a directory item in the tree view is collapsed (closed).
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Lets go of the items of this directory's children. They are created again from the index, without
+     * touching the disk, the next time the directory is expanded.
+     *
+     * @param e event that occured
+     */
+    private void collapsed(Event e) {
+        if(((TreeModificationEvent<?>) e).getTreeItem() == this && index.isListed(id)){
+            childrenLoaded = false;
+            order = null;
+            created = 0;
+            moreItem = null;
+            super.getChildren().clear();
+        }
+    }
+
+    /**
+     * Returns the children of this item, creating them the first time they are asked for. If the directory hasn't been
+     * listed yet, it is listed in the background and the children are added once it is.
+     *
+     * @return the children of this item
+     */
+    @Override
+    public ObservableList<TreeItem<String>> getChildren() {
+        if(!childrenLoaded && isDirectory()){
+            childrenLoaded = true;
+
+            if(index.isListed(id)){
+                createChildren();
+            }
+            else{
+                DirectoryScanner.getInstance().list(index.getFile(id), this::listed);
+            }
+        }
+        return super.getChildren();
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return !isDirectory() || !index.hasChildren(id);
+    }
+
+    /**
+     * Adds the listing of this item's directory to the index, and then creates the children if they are still wanted.
+     *
+     * @param listing the listing of the directory
+     */
+    private void listed(DirectoryListing listing) {
+        index.addListing(id, listing);
+
+        if(childrenLoaded){
+            createChildren();
+        }
+    }
+
+    /**
+     * Puts the ids of the children of this item's directory in the order they are displayed in, and creates the items
+     * of the first page of them.
+     */
+    private void createChildren() {
+        int first = index.getFirstChild(id), count = index.getChildCount(id);
+        Integer[] ids = new Integer[count];
+
+        for(int i = 0; i < count; i++){
+            ids[i] = first + i;
+        }
+
+        /* Children renamed since the directory was listed may be out of order in the index */
+        Arrays.sort(ids, this::compare);
+
+        order = new int[count];
+        for(int i = 0; i < count; i++){
+            order[i] = ids[i];
+        }
+
+        created = 0;
+        moreItem = null;
+        super.getChildren().clear();
+        createPage();
+    }
+
+    /**
+     * Creates the next page of this directory's children when the given item standing in for them is displayed, so
+     * items are only made for the rows scrolled to. Does nothing if the page was already created.
+     *
+     * @param displayed the item that was displayed
+     */
+    void moreItemDisplayed(MoreItem displayed) {
+        if(displayed == moreItem){
+            createPage();
+        }
+    }
+
+    /**
+     * Creates the items of the next page of this directory's children, in place of the item standing in for them.
+     */
+    private void createPage() {
+        if(order == null || created == order.length){
+            return;
+        }
+
+        int end = Math.min(order.length, created + PAGE_SIZE);
+        List<TreeItem<String>> page = new ArrayList<>(end - created + 1);
+
+        for(int i = created; i < end; i++){
+            page.add(new IndexTreeItem(index, order[i]));
+        }
+        created = end;
+
+        ObservableList<TreeItem<String>> children = super.getChildren();
+        if(moreItem != null){
+            children.remove(moreItem);
+            moreItem = null;
+        }
+        if(created < order.length){
+            moreItem = new MoreItem(order.length - created);
+            page.add(moreItem);
+        }
+        children.addAll(page);
+    }
+
+    /**
+     * Finds the item of the given file among this item's children, if one has been created for it.
+     *
+     * @param childId the id of the file
+     * @return the item of the file, or null if there is none
+     */
+    public IndexTreeItem findChild(int childId) {
+        if(order == null){
+            return null;
+        }
+
+        ObservableList<TreeItem<String>> children = super.getChildren();
+        for(int i = 0; i < created; i++){
+            if(order[i] == childId){
+                return (IndexTreeItem) children.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the given child to where it now belongs in the order of this directory's children after its file was
+     * renamed in the index, and updates its item. The child only keeps an item if it moves somewhere that has items,
+     * and is given one if it moves there from somewhere that doesn't.
+     *
+     * @param childId the id of the file that was renamed
+     * @return the item of the file, or null if it has none
+     */
+    public IndexTreeItem childRenamed(int childId) {
+        if(order == null){
+            return null;
+        }
+
+        int from = 0;
+        while(from < order.length && order[from] != childId){
+            from++;
+        }
+        if(from == order.length){
+            return null;
+        }
+
+        ObservableList<TreeItem<String>> children = super.getChildren();
+        IndexTreeItem item = null;
+
+        if(from < created){
+            item = (IndexTreeItem) children.remove(from);
+            created--;
+        }
+        System.arraycopy(order, from + 1, order, from, order.length - from - 1);
+
+        /* Find the first of the other children that comes after the renamed one */
+        int low = 0, high = order.length - 1;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(compare(order[mid], childId) <= 0){
+                low = mid + 1;
+            }
+            else{
+                high = mid;
+            }
+        }
+        System.arraycopy(order, low, order, low + 1, order.length - low - 1);
+        order[low] = childId;
+
+        if(low > created){
+            updateMoreItem();
+            return null;
+        }
+
+        if(item == null){
+            item = new IndexTreeItem(index, childId);
+        }
+        else{
+            item.setValue(index.getName(childId));
+        }
+        children.add(low, item);
+        created++;
+        updateMoreItem();
+        return item;
+    }
+
+    /**
+     * Updates the number of children the item standing in for the children without items says are left.
+     */
+    private void updateMoreItem() {
+        if(moreItem != null){
+            moreItem.setValue((order.length - created) + " more...");
+        }
+    }
+
+    /**
+     * Compares two children of this directory by the order they are displayed in: directories before images, both by
+     * name as in a DirectoryListing.
+     */
+    private int compare(int a, int b) {
+        int difference = Boolean.compare(!index.isDirectory(a), !index.isDirectory(b));
+        if(difference == 0){
+            String nameA = index.getName(a), nameB = index.getName(b);
+            difference = nameA.compareToIgnoreCase(nameB);
+            if(difference == 0){
+                difference = nameA.compareTo(nameB);
+            }
+        }
+        return difference;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public FileIndex getIndex() {
+        return index;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean isDirectory() {
+        return index.isDirectory(id);
+    }
+
+    public File getFile() {
+        return index.getFile(id);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * More Item                                                                 *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * The last child of a directory while some of its children don't have items yet, displaying how many are left.
+     * The IndexTreeCell that displays it has the directory create the next page.
+     */
+    static class MoreItem extends TreeItem<String> {
+
+        MoreItem(int remaining) {
+            super(remaining + " more...");
+        }
+    }
+}
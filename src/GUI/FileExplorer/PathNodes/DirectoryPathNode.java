@@ -1,9 +1,19 @@
 package GUI.FileExplorer.PathNodes;
 
+import GUI.FileExplorer.Scanning.DirectoryScanner;
+import GUI.FileExplorer.Scanning.DirectoryWatcher;
+import GUI.FileExplorer.Scanning.ScanTask;
+import javafx.collections.ObservableList;
 import javafx.event.Event;
 import javafx.scene.control.TreeItem;
+import photo_renamer.Image;
+import photo_renamer.Scanning.DirectoryListing;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * A path node that is only associated with directories files.
@@ -21,6 +31,28 @@ public class DirectoryPathNode extends FilePathNode {
     private static String fileOpenedIcon, fileClosedIcon;
 
 
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** Whether or not the contents of the directory have been (or are being) listed into this node's children */
+    private boolean childrenLoaded = false;
+
+    /** The background scan listing the directory, null if the directory was listed up front or not at all */
+    private ScanTask scanTask;
+
+    /** The background walk of the whole tree underneath the directory, null if the tree isn't being walked */
+    private ScanTask walkTask;
+
+    /** Whether or not the directory contains any directories or images, null until the directory is probed */
+    private volatile Boolean hasChildren;
+
+    /** Changes to the directory that arrived while it was being listed, applied once the listing is done */
+    private List<Runnable> pendingChanges = new ArrayList<>();
+
+
     /* ************************************************************************* *
      *                                                                           *
      * Constructors                                                              *
@@ -62,12 +94,18 @@ public class DirectoryPathNode extends FilePathNode {
      *
      * <br><br>
      *
-     * <b>Job:</b> Changes the icon of this directory to the open directory icon.
+     * <b>Job:</b> Changes the icon of this directory to the open directory icon, and starts watching the directory for
+     * changes made by other programs.
      *
      * @param e event that occured
      */
     private void expanded(Event e) {
-        this.setNodeImage(fileOpenedIcon);
+
+        /* The event is also passed up from expanded directories underneath this one, so ignore those */
+        if(((TreeModificationEvent<?>) e).getTreeItem() == this){
+            this.setNodeImage(fileOpenedIcon);
+            DirectoryWatcher.getInstance().watch(this);
+        }
     }
 
     /**
@@ -75,49 +113,330 @@ public class DirectoryPathNode extends FilePathNode {
      *
      * <br><br>
      *
-     * <b>Job:</b> Changes the icon of this directory to the closed directory icon.
+     * <b>Job:</b> Changes the icon of this directory to the closed directory icon, and stops any walk of the tree
+     * underneath it since nothing it finds would be displayed.
      *
      * @param e event that occured
      */
     private void collapsed(Event e) {
-        this.setNodeImage(fileClosedIcon);
+
+        /* The event is also passed up from collapsed directories underneath this one, so ignore those */
+        if(((TreeModificationEvent<?>) e).getTreeItem() == this){
+            this.setNodeImage(fileClosedIcon);
+            cancelLoadAll();
+        }
+    }
+
+
+    /**
+     * Returns the children of this node. The directory associated with this node is only listed the first time its
+     * children are asked for (when the node is first expanded), so opening a directory never walks the entire tree
+     * underneath it. The listing is done in the background, so the children are added as they are found.
+     *
+     * @return the children of this node
+     */
+    @Override
+    public ObservableList<TreeItem<String>> getChildren() {
+        if(!childrenLoaded){
+            load();
+        }
+        return super.getChildren();
+    }
+
+    /**
+     * Returns whether or not this node is a leaf. Until the directory is done being listed, only a cheap probe for the
+     * first directory or image inside of it is used so the tree view knows whether or not to display the expand arrow.
+     *
+     * @return true if the directory contains no directories or images
+     */
+    @Override
+    public boolean isLeaf() {
+        if(childrenLoaded && (scanTask == null || scanTask.isDone())){
+            return super.getChildren().isEmpty();
+        }
+
+        if(!super.getChildren().isEmpty()){
+            return false;
+        }
+
+        if(hasChildren == null){
+            probe();
+        }
+        return !hasChildren;
+    }
+
+    /**
+     * Starts listing the directory associated with this node in the background if it hasn't been listed already.
+     *
+     * @return the scan listing the directory, or null if the directory was already listed up front
+     */
+    public ScanTask load() {
+        if(!childrenLoaded){
+            childrenLoaded = true;
+            scanTask = DirectoryScanner.getInstance().scan(this);
+        }
+        return scanTask;
     }
 
+    /**
+     * Stops listing the directory associated with this node and drops the children added so far, so a cancelled
+     * listing doesn't leave a half listed directory in the tree. Must be called on the JavaFX thread.
+     */
+    public void cancelLoad() {
+        if(scanTask != null){
+            scanTask.cancel();
+            scanTask = null;
+        }
+
+        pendingChanges = new ArrayList<>();
+        super.getChildren().clear();
+    }
+
+    /**
+     * Starts walking the whole tree underneath the directory associated with this node in the background, so every
+     * directory in it is loaded up front instead of as it is expanded. The children listed so far stay displayed
+     * until the walk is done, and are then replaced. Must be called on the JavaFX thread.
+     *
+     * @return the walk, which is cancelled if this node is collapsed or the tree is thrown away
+     */
+    public ScanTask loadAll() {
+        cancelLoadAll();
+        walkTask = DirectoryScanner.getInstance().walk(this);
+        return walkTask;
+    }
+
+    /**
+     * Stops the walk started by loadAll, if there is one, leaving this node's children as they are. Must be called on
+     * the JavaFX thread.
+     */
+    public void cancelLoadAll() {
+        if(walkTask != null){
+            walkTask.cancel();
+            walkTask = null;
+        }
+    }
+
+    /**
+     * Checks whether or not the directory associated with this node has anything to display and remembers the result.
+     * Safe to call from a worker thread before the node is added to the tree view.
+     */
+    public void probe() {
+        hasChildren = DirectoryListing.hasChildren(file);
+    }
+
+    /**
+     * Adds nodes found by a background scan of the directory to this node's children. Must be called on the JavaFX
+     * thread.
+     *
+     * @param nodes the nodes to add
+     */
+    public void addScannedChildren(List<FilePathNode> nodes) {
+        super.getChildren().addAll(nodes);
+    }
+
+    /**
+     * Applies any changes to the directory that arrived while it was being listed. Must be called on the JavaFX thread
+     * once the background scan of the directory is done.
+     */
+    public void scanFinished() {
+        List<Runnable> changes = pendingChanges;
+        pendingChanges = new ArrayList<>();
+
+        for(Runnable change : changes){
+            change.run();
+        }
+    }
 
     /**
-     * Populate this DirectoryPathNode's children with the contents of the directory associated with it.
+     * Updates this node's children after a file directly inside of its directory was added, removed, or renamed by
+     * something other than this program. Must be called on the JavaFX thread.
+     *
+     * @param changed the file that changed
+     * @param exists whether or not the file exists now
+     * @param directory whether or not the file is a directory
      */
-    public void populate() {
-        final File[] files = file.listFiles();
+    public void applyChange(File changed, boolean exists, boolean directory) {
 
-        /* If there are no files in the directory associated with this, then don't bother with it */
-        if(files == null){
+        /* Nothing to update if the directory hasn't been listed yet, it will find the change when it is */
+        if(!childrenLoaded){
             return;
         }
 
-        /* Add all the files under the directory to the node's children */
-        if (getChildren().isEmpty()) {
-            for (File f : files) {
+        /* The listing in progress may or may not have seen the change, so wait for it to finish */
+        if(scanTask != null && !scanTask.isDone()){
+            pendingChanges.add(() -> applyChange(changed, exists, directory));
+            return;
+        }
 
-                /* If the file is a directory, then populate that directory as well */
-                if(f.isDirectory()) {
-                    DirectoryPathNode child = new DirectoryPathNode(f);
-                    child.populate();
-                    getChildren().add(child);
+        String name = changed.getName();
+
+        if(exists){
+            if(findChild(name, directory) == null){
+                if(directory){
+                    DirectoryPathNode child = new DirectoryPathNode(changed);
+                    child.probe();
+                    insertInOrder(child);
                 }
-                /* Otherwise, it's a file. So add it to the directory's children and associate it with an
-                 * ImagePathNode if it's an image */
-                else{
-                    String fileName = f.getName();
-                    String fileType = fileName.substring(fileName.indexOf('.') + 1).toLowerCase();
-
-                    /* If the file is of type image then create a ImagePathNode */
-                    if(fileType.equals("png") || fileType.equals("jpg") || fileType.equals("jpeg")){
-                        getChildren().add(new ImagePathNode(f));
-                    }
+                else if(Image.isImageFile(name)){
+                    insertInOrder(new ImagePathNode(changed));
                 }
+            }
+        }
+        /* The file is gone, but whether it was a directory or an image can't be told anymore, so look for both */
+        else{
+            FilePathNode child = findChild(name, true);
+            if(child == null){
+                child = findChild(name, false);
+            }
+            if(child != null){
+                super.getChildren().remove(child);
+            }
+        }
+    }
+
+    /**
+     * Brings this node's children in line with the given listing of its directory, only adding and removing the nodes
+     * that differ. Used when too many changes happened to the directory to keep track of one by one. Must be called on
+     * the JavaFX thread.
+     *
+     * @param listing a fresh listing of the directory
+     */
+    public void applyListing(DirectoryListing listing) {
+        if(!childrenLoaded){
+            return;
+        }
+
+        Set<File> listed = new HashSet<>(listing.getDirectories());
+        listed.addAll(listing.getImages());
+
+        /* Remove the nodes of files that are gone */
+        Set<File> present = new HashSet<>();
+        super.getChildren().removeIf(child -> {
+            File f = ((FilePathNode) child).getFile();
+            present.add(f);
+            return !listed.contains(f);
+        });
+
+        /* Add the files that don't have nodes yet */
+        for(File d : listing.getDirectories()){
+            if(!present.contains(d)){
+                applyChange(d, true, true);
+            }
+        }
+        for(File i : listing.getImages()){
+            if(!present.contains(i)){
+                applyChange(i, true, false);
+            }
+        }
+    }
+
+    /**
+     * Finds the child of this node associated with the file with the given name, without listing the directory if it
+     * hasn't been listed yet. The children are kept in order, so the child is found with a binary search.
+     *
+     * @param name the name of the file
+     * @param directory whether the file is a directory or an image
+     * @return the child, or null if the directory hasn't been listed or the child isn't in it
+     */
+    public FilePathNode findChild(String name, boolean directory) {
+        if(!childrenLoaded){
+            return null;
+        }
+
+        ObservableList<TreeItem<String>> children = super.getChildren();
+        File key = new File(file, name);
+        int low = 0, high = children.size() - 1;
+
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            FilePathNode child = (FilePathNode) children.get(mid);
 
+            int order = Boolean.compare(!(child instanceof DirectoryPathNode), !directory);
+            if(order == 0){
+                order = DirectoryListing.NAME_ORDER.compare(child.getFile(), key);
+            }
+
+            if(order < 0){
+                low = mid + 1;
+            }
+            else if(order > 0){
+                high = mid - 1;
+            }
+            else{
+                return child;
             }
         }
+        return null;
+    }
+
+    /**
+     * Moves the given child to where it belongs in the order of the children after its file was renamed.
+     *
+     * @param child the child that was renamed
+     */
+    public void reorder(FilePathNode child) {
+        if(super.getChildren().remove(child)){
+            insertInOrder(child);
+        }
+    }
+
+    /**
+     * Adds the given node to this node's children where it belongs in their order.
+     *
+     * @param child the node to add
+     */
+    private void insertInOrder(FilePathNode child) {
+        ObservableList<TreeItem<String>> children = super.getChildren();
+
+        /* Find the first child that comes after the given one */
+        int low = 0, high = children.size();
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(FilePathNode.ORDER.compare((FilePathNode) children.get(mid), child) <= 0){
+                low = mid + 1;
+            }
+            else{
+                high = mid;
+            }
+        }
+        children.add(low, child);
+    }
+
+    /**
+     * Replaces this node's children with nodes for the given listing of its directory, including the listings of the
+     * directories underneath it. Any directory that wasn't walked is left to be listed when it is expanded. Called on
+     * the JavaFX thread once a walk started by loadAll is done.
+     *
+     * @param listing the listing of the directory associated with this node
+     */
+    public void populate(DirectoryListing listing) {
+        List<FilePathNode> children = new ArrayList<>();
+        List<DirectoryListing> subListings = listing.getSubListings();
+        int walked = 0;
+
+        /* Directories are displayed before images. The sub listings are in the same order as the directories */
+        for(File d : listing.getDirectories()){
+            DirectoryPathNode child = new DirectoryPathNode(d);
+
+            if(walked < subListings.size() && subListings.get(walked).getDirectory().equals(d)){
+                child.populate(subListings.get(walked++));
+            }
+            children.add(child);
+        }
+
+        for(File i : listing.getImages()){
+            children.add(new ImagePathNode(i));
+        }
+
+        /* Stop any background listing of the directory, since it has now been listed */
+        if(scanTask != null){
+            scanTask.cancel();
+            scanTask = null;
+        }
+
+        walkTask = null;
+        childrenLoaded = true;
+        super.getChildren().setAll(children);
+        scanFinished();
     }
 }
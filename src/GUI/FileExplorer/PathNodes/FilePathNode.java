@@ -1,20 +1,34 @@
 package GUI.FileExplorer.PathNodes;
 
+import GUI.Shared.IconCache;
 import javafx.scene.control.TreeItem;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import photo_renamer.Scanning.DirectoryListing;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.util.Comparator;
 
 /**
- * A general path node item in a tree view GUI. Keeps track of the file, its path, and the image of this node displayed in
+ * A general path node item in a tree view GUI. Keeps track of the file, its path, and the icon of this node displayed in
  * the tree view.
  */
 public class FilePathNode extends TreeItem<String>{
 
 
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The order nodes are displayed in under a directory: directories before images, both by name */
+    public static final Comparator<FilePathNode> ORDER = Comparator
+            .comparing((FilePathNode n) -> !(n instanceof DirectoryPathNode))
+            .thenComparing(FilePathNode::getFile, DirectoryListing.NAME_ORDER);
+
+
     /* ************************************************************************* *
      *                                                                           *
      * Instance Variables                                                        *
@@ -27,9 +41,6 @@ public class FilePathNode extends TreeItem<String>{
     /** The path of the file associated with this node */
     protected String filePath;
 
-    /** The image of this node displayed in the tree view GUI */
-    protected Image nodeImage;
-
 
     /* ************************************************************************* *
      *                                                                           *
@@ -57,18 +68,34 @@ public class FilePathNode extends TreeItem<String>{
      * ************************************************************************  */
 
     /**
-     * Sets the image of the node to the image at the given path.
+     * Sets the image of the node to the image at the given path. The image is shared with every other node using the
+     * same icon, and the node's image view is reused when the icon changes.
      *
      * @param path the path to the image file
      * @return true if the image was found and set successfully
      */
     protected boolean setNodeImage(String path){
-        nodeImage = new Image(path);
-        System.out.println("Path set to: " + path);
-        this.setGraphic(new ImageView(nodeImage));
+        if(getGraphic() instanceof ImageView){
+            ((ImageView) getGraphic()).setImage(IconCache.get(path));
+        }
+        else{
+            this.setGraphic(new ImageView(IconCache.get(path)));
+        }
         return true;
     }
 
+    /**
+     * Points this node to the given file after the file it was associated with was renamed, and updates the name
+     * displayed in the tree view.
+     *
+     * @param newFile the renamed file
+     */
+    public void renamed(File newFile){
+        this.file = newFile;
+        this.filePath = newFile.getPath();
+        setValue(newFile.getName());
+    }
+
 
     /* ************************************************************************* *
      *                                                                           *
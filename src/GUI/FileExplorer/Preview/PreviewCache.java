@@ -0,0 +1,240 @@
+package GUI.FileExplorer.Preview;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the most recently used previews in memory so flipping back to an image doesn't decode it again. The cache is
+ * bounded by the number of bytes the decoded pixels take up; once it is over its budget, the least recently used
+ * previews are evicted first.
+ *
+ * <br><br>
+ *
+ * Previews are keyed by the file, when it was last modified, its length, and the size the preview was decoded to, so
+ * an image that is changed on the disk is decoded again. The budget can be set with the
+ * <code>photorenamer.preview.cacheBytes</code> system property.
+ */
+public class PreviewCache {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The budget used when none is given, in bytes */
+    private static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The previews in the cache, from least to most recently used */
+    private final LinkedHashMap<Key, Image> previews = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The most bytes of pixels the cache holds */
+    private final long budget;
+
+    /** The bytes of pixels the cache holds right now */
+    private long usedBytes = 0;
+
+    private long hits = 0, misses = 0, evictions = 0;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new cache with the budget from the <code>photorenamer.preview.cacheBytes</code> system property,
+     * or 256MB if it isn't set.
+     */
+    public PreviewCache() {
+        this(Long.getLong("photorenamer.preview.cacheBytes", DEFAULT_BUDGET));
+    }
+
+    /**
+     * Instantiates a new cache with the given budget.
+     *
+     * @param budget the most bytes of pixels the cache holds
+     */
+    public PreviewCache(long budget) {
+        this.budget = budget;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the preview with the given key and marks it as the most recently used.
+     *
+     * @param key the key of the preview
+     * @return the preview, or null if it isn't in the cache
+     */
+    public synchronized Image get(Key key) {
+        Image preview = previews.get(key);
+
+        if(preview != null){
+            hits++;
+        }
+        else{
+            misses++;
+        }
+        return preview;
+    }
+
+    /**
+     * Returns whether or not the preview with the given key is in the cache, without counting it as a hit or a miss
+     * or marking it as used.
+     *
+     * @param key the key of the preview
+     * @return true if the preview is in the cache
+     */
+    public synchronized boolean contains(Key key) {
+        return previews.containsKey(key);
+    }
+
+    /**
+     * Adds the given preview to the cache, evicting the least recently used previews until the cache is within its
+     * budget again. Previews larger than the entire budget aren't kept.
+     *
+     * @param key the key of the preview
+     * @param preview the preview
+     */
+    public synchronized void put(Key key, Image preview) {
+        long size = sizeOf(preview);
+        if(size > budget){
+            return;
+        }
+
+        Image replaced = previews.put(key, preview);
+        usedBytes += size - (replaced == null ? 0 : sizeOf(replaced));
+
+        Iterator<Map.Entry<Key, Image>> eldest = previews.entrySet().iterator();
+        while(usedBytes > budget && eldest.hasNext()){
+            Map.Entry<Key, Image> entry = eldest.next();
+            usedBytes -= sizeOf(entry.getValue());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes every preview from the cache.
+     */
+    public synchronized void clear() {
+        previews.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Returns the bytes the pixels of the given preview take up.
+     */
+    private static long sizeOf(Image preview) {
+        return (long) preview.getWidth() * (long) preview.getHeight() * 4;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return previews.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d previews, %,d KB of %,d KB, %d hits, %d misses, %d evictions",
+                previews.size(), usedBytes / 1024, budget / 1024, hits, misses, evictions);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Key                                                                       *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Identifies a preview by the state of its file on the disk and the size it was decoded to.
+     */
+    public static final class Key {
+
+        private final String path;
+        private final long lastModified;
+        private final long length;
+        private final int width, height;
+
+        /**
+         * Instantiates a new key for the given file as it is on the disk right now.
+         *
+         * @param file the image file
+         * @param width the width the preview has to fit in
+         * @param height the height the preview has to fit in
+         */
+        public Key(File file, int width, int height) {
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o){
+                return true;
+            }
+            if(!(o instanceof Key)){
+                return false;
+            }
+
+            Key key = (Key) o;
+            return lastModified == key.lastModified && length == key.length && width == key.width
+                    && height == key.height && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, length, width, height);
+        }
+    }
+}
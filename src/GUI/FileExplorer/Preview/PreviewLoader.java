@@ -0,0 +1,252 @@
+package GUI.FileExplorer.Preview;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Decodes previews of images on worker threads so the JavaFX thread is never blocked by the disk or the decoder. Each
+ * image is decoded straight down to the size it will be displayed at, so a large photo never has its full resolution
+ * held in memory.
+ */
+public class PreviewLoader {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The worker threads that do the decoding, taking the waiting jobs in order of their priority */
+    private final ThreadPoolExecutor workers;
+
+    /** The previews decoded recently */
+    private final PreviewCache cache = new PreviewCache();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private PreviewLoader() {
+        workers = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "preview-loader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Starts decoding a preview of the given image in the background, scaled down to fit in the given size. Images
+     * smaller than the size are decoded at their own size.
+     *
+     * <br><br>
+     *
+     * If the preview is in the cache, it is handed over without being decoded again. The cache is looked up on a
+     * worker too, since the file has to be read from the disk to make its key. Decodes asked for here go ahead of any
+     * prefetches waiting for a worker.
+     *
+     * @param file the image file to decode
+     * @param width the width the preview has to fit in
+     * @param height the height the preview has to fit in
+     * @param onLoaded called on the JavaFX thread with the preview, unless the task is cancelled first
+     * @return the task keeping track of the decode
+     */
+    public PreviewTask load(File file, int width, int height, Consumer<Image> onLoaded) {
+        PreviewTask task = new PreviewTask(file, width, height, onLoaded);
+        workers.execute(new Job(task, Job.LOAD, () -> {
+            PreviewCache.Key key = new PreviewCache.Key(file, width, height);
+
+            Image cached = cache.get(key);
+            if(cached == null){
+                run(task, key);
+            }
+            else if(!task.isCancelled()){
+                Platform.runLater(() -> task.deliver(cached));
+            }
+        }));
+        return task;
+    }
+
+    /**
+     * Decodes a preview of the given image into the cache in the background, once no other previews are waiting to be
+     * decoded. Nothing is handed over; the preview is simply in the cache when it is asked for.
+     *
+     * @param file the image file to decode
+     * @param width the width the preview has to fit in
+     * @param height the height the preview has to fit in
+     * @return the task keeping track of the decode
+     */
+    public PreviewTask prefetch(File file, int width, int height) {
+        PreviewTask task = new PreviewTask(file, width, height, null);
+        workers.execute(new Job(task, Job.PREFETCH, () -> {
+
+            /* Looked up on the worker, since the file has to be read from the disk to make the key */
+            PreviewCache.Key key = new PreviewCache.Key(file, width, height);
+            if(!cache.contains(key)){
+                run(task, key);
+            }
+        }));
+        return task;
+    }
+
+    /**
+     * Decodes the preview of the given task, adds it to the cache, and then hands it over on the JavaFX thread.
+     *
+     * @param task the task to decode the preview of
+     * @param key the key of the preview in the cache
+     */
+    private void run(PreviewTask task, PreviewCache.Key key) {
+        Image preview = decode(task.getFile(), task.getWidth(), task.getHeight());
+        if(!preview.isError()){
+            cache.put(key, preview);
+        }
+
+        if(!task.isCancelled()){
+            Platform.runLater(() -> task.deliver(preview));
+        }
+    }
+
+    /**
+     * Decodes the given image scaled down to fit in the given size. The image is scaled while it is being decoded, so
+     * its full resolution is never held in memory.
+     *
+     * @param file the image file to decode
+     * @param width the width the image has to fit in
+     * @param height the height the image has to fit in
+     * @return the decoded image, which is in an error state if the file couldn't be decoded
+     */
+    static Image decode(File file, int width, int height) {
+        int[] size = readSize(file);
+
+        /* Don't scale images up past their own size */
+        if(size != null && size[0] <= width && size[1] <= height){
+            width = size[0];
+            height = size[1];
+        }
+
+        return new Image(file.toURI().toString(), width, height, true, true);
+    }
+
+    /**
+     * Reads the width and height of the given image from its header, without decoding it.
+     *
+     * @param file the image file
+     * @return the width and height of the image, or null if they couldn't be read
+     */
+    private static int[] readSize(File file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if(in == null){
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+        catch (IOException e){
+            return null;
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Job                                                                       *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * A decode waiting for a worker. Jobs are taken by their priority, and then in the order they were made. A job
+     * whose task was cancelled while it was waiting is skipped.
+     */
+    private static final class Job implements Runnable, Comparable<Job> {
+
+        /** The priorities of a job, lower going first */
+        private static final int LOAD = 0, PREFETCH = 1;
+
+        /** Counts the jobs made so far, so jobs of the same priority keep their order */
+        private static final AtomicLong sequence = new AtomicLong();
+
+        private final PreviewTask task;
+        private final int priority;
+        private final long order = sequence.getAndIncrement();
+        private final Runnable work;
+
+        Job(PreviewTask task, int priority, Runnable work) {
+            this.task = task;
+            this.priority = priority;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if(!task.isCancelled()){
+                work.run();
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int compare = Integer.compare(priority, other.priority);
+            return compare != 0 ? compare : Long.compare(order, other.order);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public PreviewCache getCache() {
+        return cache;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static PreviewLoader getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final PreviewLoader INSTANCE = new PreviewLoader();
+    }
+}
@@ -0,0 +1,99 @@
+package GUI.FileExplorer.Preview;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the previews of the images next to the selected one ahead of time, so going through a directory one image
+ * after another doesn't wait on the decoder. Only the neighbours of the latest selection are prefetched; moving the
+ * selection cancels the prefetches that haven't started yet.
+ *
+ * <br><br>
+ *
+ * The number of images prefetched on each side can be set with the <code>photorenamer.preview.prefetch</code> system
+ * property, and defaults to 3.
+ */
+public class PreviewPrefetcher {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The number of images prefetched on each side of the selected one */
+    private final int distance = Integer.getInteger("photorenamer.preview.prefetch", 3);
+
+    /** The prefetches of the latest selection */
+    private final List<PreviewTask> tasks = new ArrayList<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private PreviewPrefetcher() {}
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Cancels the prefetches of the previous selection and starts prefetching the neighbours of the given one. The
+     * closest neighbours are prefetched first, the next image before the previous one since directories are usually
+     * gone through forwards. Must be called on the JavaFX thread.
+     *
+     * @param images the images of the directory, in the order they are displayed
+     * @param selected the position of the selected image in the list
+     * @param width the width the previews have to fit in
+     * @param height the height the previews have to fit in
+     */
+    public void prefetch(List<File> images, int selected, int width, int height) {
+        cancel();
+
+        for(int i = 1; i <= distance; i++){
+            if(selected + i < images.size()){
+                tasks.add(PreviewLoader.getInstance().prefetch(images.get(selected + i), width, height));
+            }
+            if(selected - i >= 0){
+                tasks.add(PreviewLoader.getInstance().prefetch(images.get(selected - i), width, height));
+            }
+        }
+    }
+
+    /**
+     * Cancels every prefetch of the latest selection that hasn't started yet.
+     */
+    public void cancel() {
+        for(PreviewTask task : tasks){
+            task.cancel();
+        }
+        tasks.clear();
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static PreviewPrefetcher getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final PreviewPrefetcher INSTANCE = new PreviewPrefetcher();
+    }
+}
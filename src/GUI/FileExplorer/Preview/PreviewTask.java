@@ -0,0 +1,94 @@
+package GUI.FileExplorer.Preview;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.function.Consumer;
+
+/**
+ * A single preview being decoded by the PreviewLoader. Allows the decode to be cancelled, in which case the preview is
+ * never handed over.
+ */
+public class PreviewTask {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The image file being decoded */
+    private final File file;
+
+    /** The size the image is being decoded to fit in */
+    private final int width, height;
+
+    /** Called on the JavaFX thread with the decoded preview, unless the task was cancelled. Null for prefetches */
+    private final Consumer<Image> onLoaded;
+
+    private volatile boolean cancelled = false;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    PreviewTask(File file, int width, int height, Consumer<Image> onLoaded) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.onLoaded = onLoaded;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Cancels the task. A decode that hasn't started yet is dropped, and one that is running is thrown away when it
+     * finishes.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Hands the decoded preview over. Must be called on the JavaFX thread.
+     *
+     * @param preview the decoded preview
+     */
+    void deliver(Image preview) {
+        if(!cancelled && onLoaded != null){
+            onLoaded.accept(preview);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,256 @@
+package GUI.FileExplorer.Scanning;
+
+import GUI.FileExplorer.PathNodes.DirectoryPathNode;
+import GUI.FileExplorer.PathNodes.FilePathNode;
+import GUI.FileExplorer.PathNodes.ImagePathNode;
+import javafx.application.Platform;
+import photo_renamer.Scanning.DirectoryListing;
+import photo_renamer.Scanning.ParallelDirectoryWalker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Lists directories for the File Explorer on a pool of worker threads so the JavaFX thread is never blocked by the
+ * disk. The nodes of a listed directory are handed to the tree view in batches as they are created, rather than all
+ * at once when the listing is done.
+ */
+public class DirectoryScanner {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The most nodes added to the tree view in a single batch */
+    private static final int BATCH_SIZE = 500;
+
+    /** The longest a batch is held back before it is added to the tree view, in milliseconds */
+    private static final long BATCH_INTERVAL = 100;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The worker threads that do the listing */
+    private final ExecutorService workers;
+
+    /** All the scans that haven't finished yet */
+    private final Set<ScanTask> activeTasks = ConcurrentHashMap.newKeySet();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private DirectoryScanner() {
+        workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "directory-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Starts listing the directory of the given node in the background. The node's children are added to it on the
+     * JavaFX thread as they are found.
+     *
+     * @param node the node whose directory to list
+     * @return the task keeping track of the scan
+     */
+    public ScanTask scan(DirectoryPathNode node) {
+        ScanTask task = new ScanTask(node);
+        activeTasks.add(task);
+        workers.execute(() -> run(task));
+        return task;
+    }
+
+    /**
+     * Starts walking the whole tree underneath the directory of the given node in the background with the shared
+     * ParallelDirectoryWalker, so many directories are read at once. Once the walk is done, the node's children are
+     * replaced on the JavaFX thread with nodes for everything that was walked. A cancelled walk leaves the node as it
+     * was.
+     *
+     * @param node the node whose directory to walk
+     * @return the task keeping track of the walk
+     */
+    public ScanTask walk(DirectoryPathNode node) {
+        ScanTask task = new ScanTask(node);
+        activeTasks.add(task);
+
+        workers.execute(() -> {
+            AtomicLong lastPublished = new AtomicLong(System.currentTimeMillis());
+
+            DirectoryListing listing = ParallelDirectoryWalker.getInstance().walk(node.getFile(), task::isCancelled,
+                    count -> {
+                        task.directoryScanned();
+                        task.filesSeen(count);
+
+                        /* The directories are listed on many threads, so only one of them publishes the progress */
+                        long last = lastPublished.get(), now = System.currentTimeMillis();
+                        if(now - last >= BATCH_INTERVAL && lastPublished.compareAndSet(last, now)){
+                            Platform.runLater(() -> {
+                                if(!task.isCancelled()){
+                                    task.fireProgress();
+                                }
+                            });
+                        }
+                    });
+
+            Platform.runLater(() -> {
+                activeTasks.remove(task);
+                if(!task.isCancelled()){
+                    node.populate(listing);
+                }
+                task.fireFinished();
+            });
+        });
+        return task;
+    }
+
+    /**
+     * Lists the given directory in the background, probing each directory inside of it for whether or not it has
+     * anything in it, and then hands the listing over on the JavaFX thread.
+     *
+     * @param dir the directory to list
+     * @param onListed called on the JavaFX thread with the listing, which is empty if the directory couldn't be opened
+     */
+    public void list(File dir, Consumer<DirectoryListing> onListed) {
+        workers.execute(() -> {
+            DirectoryListing listing;
+
+            try {
+                listing = DirectoryListing.list(dir);
+                listing.probeDirectories();
+            }
+            catch (IOException | SecurityException e){
+                listing = DirectoryListing.empty(dir);
+            }
+
+            DirectoryListing result = listing;
+            Platform.runLater(() -> onListed.accept(result));
+        });
+    }
+
+    /**
+     * Cancels every scan that hasn't finished yet. Used when the tree the scans belong to is thrown away.
+     */
+    public void cancelAll() {
+        for(ScanTask task : activeTasks){
+            task.cancel();
+        }
+    }
+
+    /**
+     * Lists the directory of the task's node, creates a node for every directory and image inside of it, and then
+     * publishes the nodes to the tree view in batches.
+     *
+     * @param task the scan to run
+     */
+    private void run(ScanTask task) {
+        DirectoryPathNode node = task.getNode();
+        List<FilePathNode> batch = new ArrayList<>();
+        long lastPublished = System.currentTimeMillis();
+
+        try {
+            task.directoryScanned();
+            DirectoryListing listing = DirectoryListing.list(node.getFile());
+            task.filesSeen(listing.getEntryCount());
+
+            List<File> directories = listing.getDirectories();
+            List<File> images = listing.getImages();
+            task.setTotalNodes(directories.size() + images.size());
+
+            /* Directories are displayed before images */
+            List<File> files = new ArrayList<>(directories);
+            files.addAll(images);
+
+            for(int i = 0; i < files.size() && !task.isCancelled(); i++){
+                File f = files.get(i);
+
+                if(i < directories.size()){
+                    DirectoryPathNode child = new DirectoryPathNode(f);
+
+                    /* Probe the directory here so the tree view doesn't have to touch the disk to draw its arrow */
+                    child.probe();
+                    task.directoryScanned();
+                    batch.add(child);
+                }
+                else{
+                    batch.add(new ImagePathNode(f));
+                }
+                task.nodeCreated();
+
+                if(batch.size() >= BATCH_SIZE || System.currentTimeMillis() - lastPublished >= BATCH_INTERVAL){
+                    publish(task, batch);
+                    batch = new ArrayList<>();
+                    lastPublished = System.currentTimeMillis();
+                }
+            }
+        }
+        catch (IOException | SecurityException ignored){}
+
+        publish(task, batch);
+
+        Platform.runLater(() -> {
+            activeTasks.remove(task);
+            task.fireFinished();
+            node.scanFinished();
+        });
+    }
+
+    /**
+     * Adds the given batch of nodes to the node being scanned on the JavaFX thread.
+     *
+     * @param task the scan the batch belongs to
+     * @param batch the nodes to add
+     */
+    private void publish(ScanTask task, List<FilePathNode> batch) {
+        if(batch.isEmpty()){
+            return;
+        }
+
+        Platform.runLater(() -> {
+            if(!task.isCancelled()){
+                task.getNode().addScannedChildren(batch);
+                task.fireProgress();
+            }
+        });
+    }
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static DirectoryScanner getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final DirectoryScanner INSTANCE = new DirectoryScanner();
+    }
+}
@@ -0,0 +1,229 @@
+package GUI.FileExplorer.Scanning;
+
+import GUI.FileExplorer.PathNodes.DirectoryPathNode;
+import javafx.application.Platform;
+import photo_renamer.Scanning.DirectoryListing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the directories that have been expanded in the File Explorer for files being added, removed, or renamed by
+ * other programs, and applies just those changes to the tree view. Bursts of changes are collected together and
+ * applied all at once.
+ */
+public class DirectoryWatcher {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** How long to keep collecting changes after the first one before applying them, in milliseconds */
+    private static final long COALESCE_INTERVAL = 250;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The service the directories are registered with, null if watching isn't supported */
+    private WatchService watchService;
+
+    /** The node of every directory being watched */
+    private final Map<WatchKey, DirectoryPathNode> watchedNodes = new ConcurrentHashMap<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private DirectoryWatcher() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+
+            Thread thread = new Thread(this::run, "directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        catch (IOException | UnsupportedOperationException e){
+            watchService = null;
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Starts watching the directory of the given node. Watching a directory that is already watched does nothing.
+     *
+     * @param node the node of the directory to watch
+     */
+    public void watch(DirectoryPathNode node) {
+        if(watchService == null){
+            return;
+        }
+
+        try {
+            WatchKey key = node.getFile().toPath().register(watchService, ENTRY_CREATE, ENTRY_DELETE);
+            watchedNodes.put(key, node);
+        }
+        catch (IOException | SecurityException ignored){}
+    }
+
+    /**
+     * Stops watching every directory. Used when the tree the directories belong to is thrown away.
+     */
+    public void unwatchAll() {
+        for(WatchKey key : watchedNodes.keySet()){
+            key.cancel();
+        }
+        watchedNodes.clear();
+    }
+
+    /**
+     * Waits for changes, collects every change that follows within the coalesce interval, and then applies them to
+     * the tree view.
+     */
+    private void run() {
+        while(true){
+            try {
+                WatchKey key = watchService.take();
+
+                /* Changed files of each directory, and the directories whose changes were too many to keep track of */
+                Map<WatchKey, Set<Path>> changes = new LinkedHashMap<>();
+                Set<WatchKey> overflowed = new LinkedHashSet<>(), gone = new LinkedHashSet<>();
+
+                long deadline = System.currentTimeMillis() + COALESCE_INTERVAL;
+                while(key != null){
+                    collect(key, changes, overflowed, gone);
+                    key = watchService.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+
+                apply(changes, overflowed);
+
+                /* The directories of these keys are gone, so their nodes are no longer kept once their last changes
+                 * are applied */
+                watchedNodes.keySet().removeAll(gone);
+            }
+            catch (InterruptedException e){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the changes of the given key.
+     *
+     * @param key the key that was signalled
+     * @param changes the changed files of each directory
+     * @param overflowed the directories that have to be listed again
+     * @param gone the directories that can't be watched anymore, such as ones that were deleted
+     */
+    private void collect(WatchKey key, Map<WatchKey, Set<Path>> changes, Set<WatchKey> overflowed,
+                         Set<WatchKey> gone) {
+        Path dir = (Path) key.watchable();
+
+        for(WatchEvent<?> event : key.pollEvents()){
+            if(event.kind() == OVERFLOW){
+                overflowed.add(key);
+            }
+            else{
+                changes.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(dir.resolve((Path) event.context()));
+            }
+        }
+
+        if(!key.reset()){
+            gone.add(key);
+        }
+    }
+
+    /**
+     * Looks up the state of every changed file on the disk, since a burst of changes to the same file only matters by
+     * how it ended up, and then hands the changes to the nodes of their directories on the JavaFX thread.
+     *
+     * @param changes the changed files of each directory
+     * @param overflowed the directories that have to be listed again
+     */
+    private void apply(Map<WatchKey, Set<Path>> changes, Set<WatchKey> overflowed) {
+        List<Runnable> updates = new ArrayList<>();
+
+        for(WatchKey key : overflowed){
+            DirectoryPathNode node = watchedNodes.get(key);
+
+            if(node != null){
+                try {
+                    DirectoryListing listing = DirectoryListing.list(node.getFile());
+                    updates.add(() -> node.applyListing(listing));
+                }
+                catch (IOException | SecurityException ignored){}
+            }
+        }
+
+        for(Map.Entry<WatchKey, Set<Path>> entry : changes.entrySet()){
+            DirectoryPathNode node = watchedNodes.get(entry.getKey());
+
+            if(node == null || overflowed.contains(entry.getKey())){
+                continue;
+            }
+
+            for(Path p : entry.getValue()){
+                File file = p.toFile();
+                boolean exists = Files.exists(p);
+                boolean directory = exists && Files.isDirectory(p);
+                updates.add(() -> node.applyChange(file, exists, directory));
+            }
+        }
+
+        if(!updates.isEmpty()){
+            Platform.runLater(() -> {
+                for(Runnable update : updates){
+                    update.run();
+                }
+            });
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static DirectoryWatcher getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final DirectoryWatcher INSTANCE = new DirectoryWatcher();
+    }
+}
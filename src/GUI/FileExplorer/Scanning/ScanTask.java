@@ -0,0 +1,183 @@
+package GUI.FileExplorer.Scanning;
+
+import GUI.FileExplorer.PathNodes.DirectoryPathNode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single listing of a directory done by the DirectoryScanner. Keeps track of how far along the listing is so that it
+ * can be displayed to the user, and allows the listing to be cancelled.
+ */
+public class ScanTask {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The node whose directory is being listed */
+    private final DirectoryPathNode node;
+
+    /** The time the scan started at in milliseconds */
+    private final long startTime;
+
+    /** The number of directories opened so far, including the ones probed for children */
+    private final AtomicInteger dirsScanned = new AtomicInteger();
+
+    /** The number of files and directories seen so far */
+    private final AtomicInteger filesSeen = new AtomicInteger();
+
+    /** The number of nodes created so far */
+    private final AtomicInteger nodesCreated = new AtomicInteger();
+
+    /** The number of nodes the listing will create, or -1 if the directory hasn't been listed yet */
+    private volatile int totalNodes = -1;
+
+    private volatile boolean cancelled = false;
+    private volatile boolean done = false;
+
+    /** Called on the JavaFX thread every time a batch of nodes is added to the tree */
+    private Runnable onProgress;
+
+    /** Called on the JavaFX thread once the scan is done, unless it was cancelled */
+    private Runnable onFinished;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new scan task for the given node.
+     *
+     * @param node the node whose directory will be listed
+     */
+    ScanTask(DirectoryPathNode node) {
+        this.node = node;
+        this.startTime = System.currentTimeMillis();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Cancels the scan. Any nodes not yet added to the tree are dropped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns how much of the listing is done between 0 and 1, or -1 if it isn't known yet.
+     *
+     * @return the progress of the scan
+     */
+    public double getProgress() {
+        int total = totalNodes;
+
+        if(total < 0){
+            return -1;
+        }
+        return total == 0 ? 1 : (double) nodesCreated.get() / total;
+    }
+
+    /**
+     * Returns the number of files seen per second since the scan started.
+     *
+     * @return the rate of the scan
+     */
+    public double getFilesPerSecond() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        return filesSeen.get() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Returns a line describing how far along the scan is.
+     *
+     * @return the details of the scan
+     */
+    public String getDetails() {
+        return String.format("%d directories scanned, %d files (%.0f files/sec)",
+                dirsScanned.get(), filesSeen.get(), getFilesPerSecond());
+    }
+
+    void directoryScanned() {
+        dirsScanned.incrementAndGet();
+    }
+
+    void filesSeen(int count) {
+        filesSeen.addAndGet(count);
+    }
+
+    void nodeCreated() {
+        nodesCreated.incrementAndGet();
+    }
+
+    void setTotalNodes(int totalNodes) {
+        this.totalNodes = totalNodes;
+    }
+
+    /**
+     * Runs the progress callback. Must be called on the JavaFX thread.
+     */
+    void fireProgress() {
+        if(onProgress != null){
+            onProgress.run();
+        }
+    }
+
+    /**
+     * Marks the scan as done and runs the finished callback, unless the scan was cancelled. Must be called on the
+     * JavaFX thread.
+     */
+    void fireFinished() {
+        done = true;
+
+        if(onFinished != null && !cancelled){
+            onFinished.run();
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public DirectoryPathNode getNode() {
+        return node;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public int getDirsScanned() {
+        return dirsScanned.get();
+    }
+
+    public int getFilesSeen() {
+        return filesSeen.get();
+    }
+
+    public void setOnProgress(Runnable onProgress) {
+        this.onProgress = onProgress;
+    }
+
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+}
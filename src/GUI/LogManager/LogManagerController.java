@@ -6,6 +6,7 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import photo_renamer.Logging.ImageLog;
 import photo_renamer.Logging.ImageLogger;
 
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
@@ -74,6 +75,15 @@ public class LogManagerController {
 
     }
 
+    /**
+     * Adds the given logs, made together by a batch of renames, to the GUI table in one change.
+     *
+     * @param logs the logs to add
+     */
+    public void addLogs(List<ImageLog> logs){
+        logTable.getItems().addAll(logs);
+    }
+
     private void loadLogs(){
         final ConcurrentLinkedDeque<ImageLog> imageLogs = ImageLogger.getInstance().getImageLogs();
 
@@ -39,11 +39,15 @@ public class PhotoRenamerController extends AnchorPane {
     @FXML
     private ImageView selectedImageView;
     @FXML
+    private ScrollPane selectedImagePane;
+    @FXML
     private TextField filePathField;
     @FXML
     private Button browseFilesButton;
     @FXML
     private Label lblImagePath;
+    @FXML
+    private TextField filterField;
     FileExplorerController fileExplorerController;
 
     /* Tag Selecter GUI Variables */
@@ -111,7 +115,7 @@ public class PhotoRenamerController extends AnchorPane {
         ImageManager.getInstance().configure();
 
         /* Set up all the GUI component controllers with their individual components */
-        FileExplorerController.getInstance().construct(fileTreeView, selectedImageView, filePathField, browseFilesButton, lblImagePath);
+        FileExplorerController.getInstance().construct(fileTreeView, selectedImageView, selectedImagePane, filePathField, browseFilesButton, lblImagePath, filterField);
         TagSelecterController.getInstance().construct(tagVBox, tagField, addButton, tagDeleteBox);
         LogManagerController.getInstance().construct(curNameCol, oldNameCol, timeStampCol, logTable);
         TagBarController.getInstance().construct(tagBox, commitTagButton);
@@ -2,10 +2,15 @@ package GUI.MenuBar;
 
 
 import GUI.FileExplorer.FileExplorerController;
+import GUI.Thumbnails.DuplicatesWindow;
+import GUI.Thumbnails.ThumbnailWindow;
 import javafx.event.ActionEvent;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 
+import java.io.File;
+
 /**
  * Controls the all the components of the Menu Bar GUI located at the top of the main window.
  */
@@ -30,6 +35,22 @@ public class MenuBarController {
         menuItemOpen.setOnAction(this::onItemOpenClick);
         menuFile.getItems().add(menuItemOpen);
 
+        CheckMenuItem menuItemCompactTree = new CheckMenuItem("Compact File Tree");
+        menuItemCompactTree.setOnAction(e -> FileExplorerController.getInstance().setCompactMode(menuItemCompactTree.isSelected()));
+        menuFile.getItems().add(menuItemCompactTree);
+
+        MenuItem menuItemLoadAll = new MenuItem("Load All Directories");
+        menuItemLoadAll.setOnAction(e -> FileExplorerController.getInstance().loadAllDirectories());
+        menuFile.getItems().add(menuItemLoadAll);
+
+        MenuItem menuItemThumbnails = new MenuItem("Thumbnails...");
+        menuItemThumbnails.setOnAction(this::onItemThumbnailsClick);
+        menuFile.getItems().add(menuItemThumbnails);
+
+        MenuItem menuItemDuplicates = new MenuItem("Find Duplicates...");
+        menuItemDuplicates.setOnAction(this::onItemDuplicatesClick);
+        menuFile.getItems().add(menuItemDuplicates);
+
         /* Set up the Edit drop down menu */
         MenuItem menuItemRevert = new MenuItem("Revert...");
         menuItemRevert.setOnAction(this::onItemRevertClick);
@@ -55,6 +76,40 @@ public class MenuBarController {
 
     }
 
+    /**
+     * <b>Action:</b> Thumbnails menu item is clicked in the Menu Bar GUI.
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Displays a window with the thumbnails of every image in the current directory.
+     *
+     * @param e the event that occured
+     */
+    private void onItemThumbnailsClick(ActionEvent e){
+        File directory = new File(FileExplorerController.getInstance().getFieldCurrentDir().getText());
+
+        if(directory.isDirectory()){
+            ThumbnailWindow.display(directory);
+        }
+    }
+
+    /**
+     * <b>Action:</b> Find Duplicates menu item is clicked in the Menu Bar GUI.
+     *
+     * <br><br>
+     *
+     * <b>Job:</b> Displays a window with the groups of copies of the same picture in the current directory.
+     *
+     * @param e the event that occured
+     */
+    private void onItemDuplicatesClick(ActionEvent e){
+        File directory = new File(FileExplorerController.getInstance().getFieldCurrentDir().getText());
+
+        if(directory.isDirectory()){
+            DuplicatesWindow.display(directory);
+        }
+    }
+
     /**
      * <b>Action:</b> Open menu item is clicked in the Menu Bar GUI.
      *
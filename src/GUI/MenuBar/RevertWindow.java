@@ -1,6 +1,7 @@
 package GUI.MenuBar;
 
 import GUI.FileExplorer.FileExplorerController;
+import GUI.Shared.AlertBox;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -13,6 +14,8 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import photo_renamer.Image;
 
+import java.io.IOException;
+
 /**
  * A window that appears upon calling its display method. The window allows the user to revert the name of a currently
  * selected image to one of it's old names.
@@ -104,10 +107,13 @@ public class RevertWindow {
 
         /* Make sure the drop down contains a value and it isn't the empty string */
         if (previousNamesDropDown.getValue() != null || !previousNamesDropDown.getValue().equals("")) {
-            imageRef.revertName(previousNamesDropDown.getValue());
-
-            /* Refresh the directory containing the image to reflect changes */
-            FileExplorerController.getInstance().refreshDirectory(FileExplorerController.getInstance().getFieldCurrentDir().getText());
+            /* The file explorer updates the image's node on its own once the name is reverted */
+            try {
+                imageRef.revertName(previousNamesDropDown.getValue());
+            }
+            catch (IOException ex){
+                AlertBox.display("The name could not be reverted: " + ex.getMessage());
+            }
             window.close();
         }
 
@@ -0,0 +1,26 @@
+package GUI.Shared;
+
+import javafx.scene.image.Image;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the icons used throughout the GUI. Each icon is decoded once and the same image is shared by every component
+ * displaying it.
+ */
+public class IconCache {
+
+    /** Every icon decoded so far, by the path it was loaded from */
+    private static final Map<String, Image> icons = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the icon at the given path, decoding it the first time it is asked for. Safe to call from any thread.
+     *
+     * @param path the path to the icon
+     * @return the shared image of the icon
+     */
+    public static Image get(String path){
+        return icons.computeIfAbsent(path, Image::new);
+    }
+}
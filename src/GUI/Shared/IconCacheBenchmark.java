@@ -0,0 +1,82 @@
+package GUI.Shared;
+
+import GUI.FileExplorer.PathNodes.ImagePathNode;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.control.TreeItem;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap used by 100,000 image nodes when every node decodes its own icon (how the nodes used to be made)
+ * compared to when every node shares the icon from the IconCache.
+ *
+ * <br><br>
+ *
+ * Usage: <code>IconCacheBenchmark [number of nodes]</code>. Run with a fixed heap (e.g. -Xms2g -Xmx2g) so the numbers
+ * aren't skewed by the heap growing.
+ */
+public class IconCacheBenchmark extends Application {
+
+    private static int nodeCount = 100000;
+
+    public static void main(String[] args) {
+        if(args.length > 0){
+            nodeCount = Integer.parseInt(args[0]);
+        }
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primaryStage) {
+        String iconPath = File.separator + "resources" + File.separator + "icon_image_file.png";
+        List<TreeItem<String>> nodes = new ArrayList<>(nodeCount);
+
+        /* Before: a decoded icon and an image view for every node */
+        long baseline = usedHeap();
+        long start = System.nanoTime();
+        for(int i = 0; i < nodeCount; i++){
+            nodes.add(new TreeItem<>("IMG_" + i + ".jpg", new ImageView(new Image(iconPath))));
+        }
+        report("Decoded per node", baseline, start);
+        nodes.clear();
+
+        /* After: image path nodes sharing the cached icon */
+        baseline = usedHeap();
+        start = System.nanoTime();
+        for(int i = 0; i < nodeCount; i++){
+            nodes.add(new ImagePathNode(new File("IMG_" + i + ".jpg")));
+        }
+        report("Shared from cache", baseline, start);
+        nodes.clear();
+
+        Platform.exit();
+    }
+
+    /**
+     * Prints the heap used and the time taken since the given baseline and start time.
+     */
+    private static void report(String label, long baseline, long start) {
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        long used = usedHeap() - baseline;
+
+        System.out.printf("%-18s %,10d nodes %,8d KB heap %,6d bytes/node %,6d ms%n",
+                label, nodeCount, used / 1024, used / nodeCount, elapsed);
+    }
+
+    /**
+     * Returns the heap in use after asking the garbage collector to clear out everything it can.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++){
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -3,6 +3,7 @@ package GUI.Shared;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.layout.VBox;
@@ -16,12 +17,27 @@ public class ProgressWindow {
 
     private static Stage window;
 
+    /** The progress bar and the label displaying the details of the progress */
+    private static ProgressBar progress;
+    private static Label details;
+
     /**
      * Display the Progress Window with its contents to the user.
      *
      * @param message the message to display in the window
      */
     public static void display(String message){
+        display(message, null);
+    }
+
+    /**
+     * Display the Progress Window with its contents to the user, along with a cancel button if onCancel is given. The
+     * progress is updated by calling the update method.
+     *
+     * @param message the message to display in the window
+     * @param onCancel called when the cancel button is clicked, or null if the work can't be cancelled
+     */
+    public static void display(String message, Runnable onCancel){
         window = new Stage();
         window.setResizable(false);
         window.initModality(Modality.APPLICATION_MODAL);
@@ -33,28 +49,67 @@ public class ProgressWindow {
         label.setStyle("-fx-text-fill: #ffffff;");
         label.setText(message);
 
-        /* Set up progress bar */
-        ProgressBar progress = new ProgressBar();
-        progress.setProgress(.5);
+        /* Set up progress bar, indeterminate until the first update */
+        progress = new ProgressBar();
+        progress.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+
+        /* Set up label with the details of the progress */
+        details = new Label();
+        details.setStyle("-fx-text-fill: #e8e8e8; -fx-font-size: 10px;");
 
         /* Set up contents of window */
         VBox layout = new VBox();
         layout.setStyle("-fx-background-color: #494949;");
         layout.setSpacing(10);
         layout.setPadding(new Insets(10,10,10,10));
-        layout.getChildren().addAll(label, progress);
+        layout.getChildren().addAll(label, progress, details);
         layout.setAlignment(Pos.CENTER);
 
+        /* Button that cancels the work being done and closes the window */
+        if(onCancel != null){
+            Button cancelButton = new Button("Cancel");
+            cancelButton.setOnAction(e -> {
+                onCancel.run();
+                closeWindow();
+            });
+            layout.getChildren().add(cancelButton);
+            window.setOnCloseRequest(e -> onCancel.run());
+        }
+
+        /* Forget the window however it is closed, including by its X button, unless another one was displayed since */
+        Stage shown = window;
+        window.setOnHidden(e -> {
+            if(window == shown){
+                window = null;
+            }
+        });
+
         Scene progressBox = new Scene(layout);
         window.setScene(progressBox);
         window.show();
 
     }
 
+    /**
+     * Updates the progress displayed in the window.
+     *
+     * @param value the progress between 0 and 1, or a negative value if it isn't known
+     * @param text the details of the progress
+     */
+    public static void update(double value, String text){
+        if(window != null){
+            progress.setProgress(value < 0 ? ProgressBar.INDETERMINATE_PROGRESS : value);
+            details.setText(text);
+        }
+    }
+
     /**
      * Close this window.
      */
     public static void closeWindow(){
-        window.close();
+        if(window != null){
+            window.close();
+            window = null;
+        }
     }
 }
@@ -84,10 +84,10 @@ public class TagButton extends Button{
 
         /* Create image and its imageview to display on the button*/
         if(tagType == TagType.ADD) {
-            image = new Image(File.separator + "resources" + File.separator + "tag_add_icon.png");
+            image = IconCache.get(File.separator + "resources" + File.separator + "tag_add_icon.png");
         }
         else{
-            image = new Image(File.separator + "resources" + File.separator + "tag_remove_icon.png");
+            image = IconCache.get(File.separator + "resources" + File.separator + "tag_remove_icon.png");
         }
 
         btnImage = new ImageView(image);
@@ -114,7 +114,7 @@ public class TagButton extends Button{
      */
     public void setImageForTagBox(ImageView newImageView){
 
-        Image image =  new Image(File.separator + "resources" + File.separator + "tag_remove_icon.png");
+        Image image = IconCache.get(File.separator + "resources" + File.separator + "tag_remove_icon.png");
         ImageView tempImageView = new ImageView(image);
         tempImageView.setClip(new ImageView(image));
         tempImageView.setEffect(newImageView.getEffect());
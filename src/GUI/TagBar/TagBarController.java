@@ -4,6 +4,7 @@ import GUI.FileExplorer.FileExplorerController;
 import GUI.LogManager.LogManagerController;
 import GUI.Shared.AlertBox;
 import GUI.Shared.TagButton;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
@@ -12,7 +13,13 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
 import photo_renamer.Image;
 import photo_renamer.ImageTag;
+import photo_renamer.Renaming.BatchRenamer;
+import photo_renamer.Renaming.BatchResult;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -71,23 +78,69 @@ public class TagBarController implements Observer{
      *
      * <br><br>
      *
-     * <b>Job:</b> Appends all the added tags inside the tag box to the file name.
+     * <b>Job:</b> Appends all the added tags inside the tag box to the file name. If more than one image is selected in
+     * the file explorer, the tags are attached to all of them and they are all renamed together.
      *
      * @param e the event called
      */
     private void onBtnCommitTagsClicked(ActionEvent e){
 
+        /* Tag and rename every selected image in one batch */
+        List<File> selected = FileExplorerController.getInstance().getSelectedImageFiles();
+        if(selected.size() > 1){
+            commitToSelection(selected);
+            return;
+        }
+
         /* If there is no image selected, then display an error */
         if (imageRef == null){
             AlertBox.display("No image selected.");
             return;
         }
 
-        /* Rename the image, log the rename, and refresh the directorying containing the image */
-        if(imageRef.renameFile()) {
+        /* Rename the image and log the rename. The file explorer updates the image's node on its own */
+        try {
+            imageRef.renameFile();
             LogManagerController.getInstance().addLog();
-            FileExplorerController.getInstance().refreshDirectory(FileExplorerController.getInstance().getFieldCurrentDir().getText());
         }
+        catch (IOException ex){
+            AlertBox.display("The image could not be renamed: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Attaches the tags in the tag box to the given images and renames them in the background, then adds the logs of
+     * the renames to the log table in one go once they are all done.
+     *
+     * @param files the files of the selected images
+     */
+    private void commitToSelection(List<File> files){
+        List<String> tagNames = new ArrayList<>();
+        for(Node t : tagBox.getChildren()){
+            tagNames.add(((TagButton) t).getText());
+        }
+
+        if(tagNames.isEmpty()){
+            AlertBox.display("No tags to attach.");
+            return;
+        }
+
+        btnCommitTags.setDisable(true);
+        Thread batch = new Thread(() -> {
+            BatchResult result = BatchRenamer.getInstance().tagAndRename(files, tagNames);
+
+            Platform.runLater(() -> {
+                btnCommitTags.setDisable(false);
+                LogManagerController.getInstance().addLogs(result.getLogs());
+
+                if(!result.getFailures().isEmpty()){
+                    AlertBox.display(result.getFailures().size() + " of " + files.size()
+                            + " images could not be renamed.");
+                }
+            });
+        }, "batch-rename");
+        batch.setDaemon(true);
+        batch.start();
     }
 
     /**
@@ -0,0 +1,246 @@
+package GUI.Thumbnails;
+
+import GUI.LogManager.LogManagerController;
+import GUI.Shared.AlertBox;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import photo_renamer.Duplicates.DuplicateFinder;
+import photo_renamer.Duplicates.DuplicateGroup;
+import photo_renamer.Image;
+import photo_renamer.RenamedImage;
+import photo_renamer.Renaming.BatchRenamer;
+import photo_renamer.Renaming.BatchResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A window that appears upon calling its display method. The window shows the groups of copies of the same picture
+ * found in the current directory and every directory inside of it, one row of thumbnails per group. A tag can be
+ * added to every image of a group at once, and double clicking a thumbnail selects its image in the main window.
+ */
+public class DuplicatesWindow {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The height taken up by each group, including its names and the tag field */
+    private static final double ROW_HEIGHT = ThumbnailService.SIZE + 72;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The window containing the groups */
+    private static Stage window;
+
+    /** The groups found */
+    private static ListView<DuplicateGroup> groupList;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Display the Duplicates Window with the groups of copies found in the given directory.
+     *
+     * @param directory the directory to search
+     */
+    public static void display(File directory){
+
+        /* Set up window */
+        if(window != null){
+            window.close();
+        }
+        window = new Stage();
+        window.setTitle("Duplicates - " + directory.getName());
+        window.setWidth(800);
+        window.setHeight(600);
+
+        /* Set up the list of groups */
+        groupList = new ListView<>();
+        groupList.setFixedCellSize(ROW_HEIGHT);
+        groupList.setCellFactory(list -> new GroupCell());
+        groupList.setStyle("-fx-background-color: #494949;");
+
+        Label label = new Label("Searching " + directory.getAbsolutePath() + "...");
+        label.setStyle("-fx-text-fill: #ffffff;");
+
+        VBox layout = new VBox();
+        layout.setStyle("-fx-background-color: #494949;");
+        layout.setSpacing(10);
+        layout.setPadding(new Insets(10, 10, 10, 10));
+        layout.getChildren().addAll(label, groupList);
+        VBox.setVgrow(groupList, Priority.ALWAYS);
+
+        window.setScene(new Scene(layout));
+        window.show();
+
+        /* Search in the background, then fill the list */
+        Stage searchedWindow = window;
+        Thread search = new Thread(() -> {
+            List<File> images = listImages(directory);
+            List<DuplicateGroup> groups = DuplicateFinder.getInstance().find(images);
+
+            Platform.runLater(() -> {
+                if(window != searchedWindow){
+                    return;
+                }
+
+                int copies = 0;
+                for(DuplicateGroup group : groups){
+                    copies += group.getFiles().size();
+                }
+                label.setText(groups.size() + " groups of copies (" + copies + " of " + images.size()
+                        + " images) in " + directory.getAbsolutePath());
+                groupList.setItems(FXCollections.observableArrayList(groups));
+            });
+        }, "duplicate-search");
+        search.setDaemon(true);
+        search.start();
+    }
+
+    /**
+     * Lists every image in the given directory and the directories inside of it.
+     */
+    private static List<File> listImages(File directory){
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            return paths.filter(Files::isRegularFile)
+                        .filter(p -> Image.isImageFile(p.getFileName().toString()))
+                        .map(Path::toFile)
+                        .collect(Collectors.toList());
+        }
+        catch (IOException | RuntimeException e){
+            System.out.println("DIRECTORY COULD NOT BE SEARCHED: " + directory);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds the given tag to every image of the given group and renames them together as one batch in the background,
+     * then replaces the group in the list with the renamed files and adds the logs of the renames to the log table.
+     *
+     * @param group the group to tag
+     * @param tagName the name of the tag
+     */
+    private static void tagGroup(DuplicateGroup group, String tagName){
+        Stage taggedWindow = window;
+
+        Thread batch = new Thread(() -> {
+            BatchResult result = BatchRenamer.getInstance()
+                                             .tagAndRename(group.getFiles(), Collections.singletonList(tagName));
+
+            /* Files that weren't renamed stay in the group as they were */
+            Map<File, File> newFiles = new HashMap<>();
+            for(RenamedImage rename : result.getRenamed()){
+                newFiles.put(rename.getOldFile().getAbsoluteFile(), rename.getNewFile());
+            }
+
+            List<File> files = new ArrayList<>();
+            for(File file : group.getFiles()){
+                files.add(newFiles.getOrDefault(file.getAbsoluteFile(), file));
+            }
+
+            Platform.runLater(() -> {
+                LogManagerController.getInstance().addLogs(result.getLogs());
+
+                if(window == taggedWindow){
+                    int index = groupList.getItems().indexOf(group);
+                    if(index >= 0){
+                        groupList.getItems().set(index, new DuplicateGroup(files, group.isExact()));
+                    }
+                }
+
+                if(!result.getFailures().isEmpty()){
+                    AlertBox.display(result.getFailures().size() + " of the images could not be renamed.");
+                }
+            });
+        }, "duplicate-tag");
+        batch.setDaemon(true);
+        batch.start();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Group Cell                                                                *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * A group of copies in the list, with a field to tag the whole group. Cells are reused as the list is scrolled, so
+     * a cell cancels the thumbnails it was waiting on whenever it is given another group.
+     */
+    private static class GroupCell extends ListCell<DuplicateGroup> {
+
+        /** The tiles of the thumbnails this cell is displaying */
+        private final ThumbnailTiles thumbnails = new ThumbnailTiles();
+
+        @Override
+        protected void updateItem(DuplicateGroup group, boolean empty) {
+            super.updateItem(group, empty);
+
+            thumbnails.cancelAll();
+
+            if(empty || group == null){
+                setGraphic(null);
+                return;
+            }
+
+            HBox tiles = new HBox();
+            tiles.setSpacing(8);
+            for(File file : group.getFiles()){
+                tiles.getChildren().add(thumbnails.create(file));
+            }
+
+            Label kind = new Label(group.getFiles().size() + (group.isExact() ? " exact copies" : " look alike"));
+            kind.setStyle("-fx-text-fill: #e8e8e8;");
+
+            TextField tagField = new TextField();
+            tagField.setPromptText("Tag");
+
+            Button btnTag = new Button("Tag Group");
+            btnTag.setOnAction(e -> {
+                if(!tagField.getText().trim().isEmpty()){
+                    tagGroup(group, tagField.getText().trim());
+                }
+            });
+
+            HBox tagBox = new HBox(8, kind, tagField, btnTag);
+            tagBox.setAlignment(Pos.CENTER_LEFT);
+
+            setGraphic(new VBox(4, tagBox, tiles));
+        }
+    }
+}
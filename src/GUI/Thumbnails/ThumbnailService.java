@@ -0,0 +1,171 @@
+package GUI.Thumbnails;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import photo_renamer.Thumbnails.Thumbnail;
+import photo_renamer.Thumbnails.ThumbnailStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hands out the thumbnails of images, reading them from the ThumbnailStore or making them on a pool of worker threads
+ * if the store doesn't have them yet. Thumbnails that are made are added to the store, so each image is only decoded
+ * once no matter how many times it is looked at.
+ *
+ * <br><br>
+ *
+ * The most recently asked for thumbnails are made first, since those are of the images that are on screen right now.
+ */
+public class ThumbnailService {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The longest side of a thumbnail */
+    public static final int SIZE = 128;
+
+    /** The file the thumbnails are kept in, next to the other files of the program */
+    private static final String STORE_FILE = "thumbnails.db";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The store the thumbnails are kept in, null if it couldn't be opened */
+    private ThumbnailStore store;
+
+    /** The worker threads that read and make the thumbnails */
+    private final ThreadPoolExecutor workers;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private ThumbnailService() {
+        try {
+            store = new ThumbnailStore(new File(STORE_FILE));
+        }
+        catch (IOException e){
+            store = null;
+        }
+
+        /* The queue hands out the newest request first */
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+            @Override
+            public boolean offer(Runnable r) {
+                return offerFirst(r);
+            }
+        }, r -> {
+            Thread t = new Thread(r, "thumbnail-generator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Gets the thumbnail of the given image in the background.
+     *
+     * @param file the image file
+     * @param onReady called on the JavaFX thread with the thumbnail, unless it couldn't be made
+     * @return the request, which can be cancelled if the thumbnail is no longer needed
+     */
+    public Future<?> request(File file, Consumer<Image> onReady) {
+        return workers.submit(() -> {
+            Thumbnail thumbnail = load(file);
+
+            if(thumbnail != null){
+                Image image = toImage(thumbnail);
+                Platform.runLater(() -> onReady.accept(image));
+            }
+        });
+    }
+
+    /**
+     * Reads the thumbnail of the given image from the store, or makes it and adds it to the store if it isn't there.
+     *
+     * @param file the image file
+     * @return the thumbnail, or null if the image couldn't be decoded
+     */
+    private Thumbnail load(File file) {
+        if(store != null){
+            try {
+                Thumbnail stored = store.get(file);
+                if(stored != null){
+                    return stored;
+                }
+            }
+            catch (IOException ignored){}
+        }
+
+        /* Decode the image straight down to the size of the thumbnail */
+        Image decoded = new Image(file.toURI().toString(), SIZE, SIZE, true, true);
+        if(decoded.isError() || decoded.getWidth() < 1 || decoded.getHeight() < 1){
+            return null;
+        }
+
+        int width = (int) decoded.getWidth();
+        int height = (int) decoded.getHeight();
+        int[] pixels = new int[width * height];
+        decoded.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+        Thumbnail thumbnail = new Thumbnail(width, height, pixels);
+        if(store != null){
+            try {
+                store.put(file, thumbnail);
+            }
+            catch (IOException ignored){}
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Copies the pixels of the given thumbnail into an image that can be displayed.
+     */
+    private static Image toImage(Thumbnail thumbnail) {
+        WritableImage image = new WritableImage(thumbnail.getWidth(), thumbnail.getHeight());
+        image.getPixelWriter().setPixels(0, 0, thumbnail.getWidth(), thumbnail.getHeight(),
+                PixelFormat.getIntArgbInstance(), thumbnail.getPixels(), 0, thumbnail.getWidth());
+        return image;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static ThumbnailService getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final ThumbnailService INSTANCE = new ThumbnailService();
+    }
+}
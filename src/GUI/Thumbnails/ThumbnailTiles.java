@@ -0,0 +1,85 @@
+package GUI.Thumbnails;
+
+import GUI.FileExplorer.FileExplorerController;
+import GUI.Shared.IconCache;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.VBox;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Creates the tiles of images displayed by the cells of the thumbnail windows: a thumbnail with the image's name
+ * underneath it. Double clicking a tile selects its image in the main window. Cells are reused as their list is
+ * scrolled, so the thumbnails the tiles are waiting on are kept track of, and cancelled when the cell is given
+ * something else to display.
+ */
+class ThumbnailTiles {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The file path to the icon displayed until a thumbnail is loaded */
+    private static final String LOADING_ICON = File.separator + "resources" + File.separator + "icon_image_file.png";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The thumbnails the tiles created since the last cancel are waiting on */
+    private final List<Future<?>> requests = new ArrayList<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Creates the tile of the given image, displaying a placeholder until its thumbnail is loaded.
+     *
+     * @param file the image file
+     * @return the tile
+     */
+    VBox create(File file) {
+        ImageView thumbnail = new ImageView(IconCache.get(LOADING_ICON));
+
+        Label name = new Label(file.getName());
+        name.setMaxWidth(ThumbnailService.SIZE);
+        name.setStyle("-fx-text-fill: #ffffff;");
+
+        VBox tile = new VBox(4, thumbnail, name);
+        tile.setAlignment(Pos.CENTER);
+        tile.setPrefWidth(ThumbnailService.SIZE);
+        tile.setOnMouseClicked(m -> {
+            if(m.getClickCount() == 2){
+                FileExplorerController.getInstance().openImage(file);
+            }
+        });
+
+        requests.add(ThumbnailService.getInstance().request(file, thumbnail::setImage));
+        return tile;
+    }
+
+    /**
+     * Cancels the thumbnails the tiles created so far are still waiting on.
+     */
+    void cancelAll() {
+        for(Future<?> request : requests){
+            request.cancel(false);
+        }
+        requests.clear();
+    }
+}
@@ -0,0 +1,156 @@
+package GUI.Thumbnails;
+
+import GUI.FileExplorer.Scanning.DirectoryScanner;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A window that appears upon calling its display method. The window shows a grid of thumbnails of every image in the
+ * current directory. Double clicking a thumbnail selects its image in the main window.
+ *
+ * <br><br>
+ *
+ * The grid is a list of rows, so only the rows on screen have their thumbnails loaded.
+ */
+public class ThumbnailWindow {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The width and height taken up by each thumbnail in the grid, including its name */
+    private static final double TILE_WIDTH = ThumbnailService.SIZE + 16, TILE_HEIGHT = ThumbnailService.SIZE + 36;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The window containing the grid */
+    private static Stage window;
+
+    /** The rows of the grid */
+    private static ListView<List<File>> grid;
+
+    /** Every image in the directory being displayed */
+    private static List<File> images = new ArrayList<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Display the Thumbnail Window with the images of the given directory.
+     *
+     * @param directory the directory whose images to display
+     */
+    public static void display(File directory){
+
+        /* Set up window */
+        if(window != null){
+            window.close();
+        }
+        window = new Stage();
+        window.setTitle("Thumbnails - " + directory.getName());
+        window.setWidth(800);
+        window.setHeight(600);
+
+        /* Set up the grid */
+        grid = new ListView<>();
+        grid.setFixedCellSize(TILE_HEIGHT);
+        grid.setCellFactory(list -> new RowCell());
+        grid.widthProperty().addListener((o, oldWidth, newWidth) -> layoutRows());
+        grid.setStyle("-fx-background-color: #494949;");
+
+        Label label = new Label("Loading...");
+        label.setStyle("-fx-text-fill: #ffffff;");
+
+        VBox layout = new VBox();
+        layout.setStyle("-fx-background-color: #494949;");
+        layout.setSpacing(10);
+        layout.setPadding(new Insets(10, 10, 10, 10));
+        layout.getChildren().addAll(label, grid);
+        VBox.setVgrow(grid, Priority.ALWAYS);
+
+        window.setScene(new Scene(layout));
+        window.show();
+
+        /* List the directory in the background, then fill the grid */
+        images = new ArrayList<>();
+        DirectoryScanner.getInstance().list(directory, listing -> {
+            images = new ArrayList<>(listing.getImages());
+            label.setText(images.size() + " images in " + directory.getAbsolutePath());
+            layoutRows();
+        });
+    }
+
+    /**
+     * Splits the images into rows as wide as the grid.
+     */
+    private static void layoutRows(){
+        int columns = Math.max(1, (int) ((grid.getWidth() - 20) / TILE_WIDTH));
+        ObservableList<List<File>> rows = FXCollections.observableArrayList();
+
+        for(int i = 0; i < images.size(); i += columns){
+            rows.add(images.subList(i, Math.min(i + columns, images.size())));
+        }
+        grid.setItems(rows);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Row Cell                                                                  *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * A row of thumbnails in the grid. Cells are reused as the grid is scrolled, so a cell cancels the thumbnails it
+     * was waiting on whenever it is given another row.
+     */
+    private static class RowCell extends ListCell<List<File>> {
+
+        /** The tiles of the thumbnails this cell is displaying */
+        private final ThumbnailTiles thumbnails = new ThumbnailTiles();
+
+        @Override
+        protected void updateItem(List<File> row, boolean empty) {
+            super.updateItem(row, empty);
+
+            thumbnails.cancelAll();
+
+            if(empty || row == null){
+                setGraphic(null);
+                return;
+            }
+
+            HBox tiles = new HBox();
+            tiles.setSpacing(8);
+            for(File file : row){
+                tiles.getChildren().add(thumbnails.create(file));
+            }
+            setGraphic(tiles);
+        }
+    }
+}
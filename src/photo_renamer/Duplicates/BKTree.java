@@ -0,0 +1,147 @@
+package photo_renamer.Duplicates;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A Burkhard-Keller tree of 64 bit hashes, compared by the number of bits they differ in. Each child of a node sits on
+ * the edge of the distance between it and its parent, so a search for hashes within some distance of a hash only has
+ * to go down the edges that distance could reach; the rest of the tree is never looked at.
+ *
+ * @param <T> the type of the values kept with the hashes
+ */
+public class BKTree<T> {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The first hash added to the tree, or null if the tree is empty */
+    private Node<T> root;
+
+    /** The number of hashes in the tree */
+    private int size;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Adds the given hash to the tree along with the given value.
+     *
+     * @param hash the hash
+     * @param value the value to return when the hash is found
+     */
+    public void add(long hash, T value) {
+        size++;
+        if(root == null){
+            root = new Node<>(hash, value);
+            return;
+        }
+
+        Node<T> node = root;
+        while(true){
+            int distance = PerceptualHash.distance(hash, node.hash);
+            if(node.children == null){
+                node.children = newChildren();
+            }
+            Node<T> child = node.children[distance];
+
+            if(child == null){
+                node.children[distance] = new Node<>(hash, value);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Finds the values of every hash in the tree within the given distance of the given hash.
+     *
+     * @param hash the hash to search around
+     * @param maxDistance the greatest number of bits a found hash may differ from the given hash in
+     * @return the values of the hashes found, in no particular order
+     */
+    public List<T> search(long hash, int maxDistance) {
+        List<T> found = new ArrayList<>();
+        if(root == null){
+            return found;
+        }
+
+        Deque<Node<T>> toVisit = new ArrayDeque<>();
+        toVisit.push(root);
+
+        while(!toVisit.isEmpty()){
+            Node<T> node = toVisit.pop();
+            int distance = PerceptualHash.distance(hash, node.hash);
+
+            if(distance <= maxDistance){
+                found.add(node.value);
+            }
+
+            if(node.children == null){
+                continue;
+            }
+
+            /* By the triangle inequality, only children this far from the node can be close enough to the hash */
+            int low = Math.max(0, distance - maxDistance);
+            int high = Math.min(64, distance + maxDistance);
+            for(int d = low; d <= high; d++){
+                if(node.children[d] != null){
+                    toVisit.push(node.children[d]);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Creates the array of children of a node. Two hashes can differ in anywhere from 0 to 64 bits.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newChildren() {
+        return (Node<T>[]) new Node<?>[65];
+    }
+
+    /**
+     * Returns the number of hashes in the tree.
+     *
+     * @return the number of hashes
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Node                                                                      *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * A hash in the tree, with its children by their distance from it.
+     */
+    private static class Node<T> {
+
+        private final long hash;
+
+        private final T value;
+
+        /** The children by their distance from this hash, null until the node has a child since most nodes never do */
+        private Node<T>[] children;
+
+        private Node(long hash, T value) {
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package photo_renamer.Duplicates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a search of a BKTree finds exactly the hashes a comparison with every hash finds, at the edges of the
+ * distance searched: nothing but equal hashes at a distance of 0, and hashes exactly as far away as the distance
+ * searched. It exits with 1 if any check fails.
+ */
+public class BKTreeTest {
+
+    public static void main(String[] args) {
+        try {
+            empty();
+            edges();
+            againstEveryHash();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * An empty tree finds nothing.
+     */
+    private static void empty() {
+        BKTree<Integer> tree = new BKTree<>();
+        assertEquals(0, tree.size(), "size of an empty tree");
+        assertEquals(Collections.emptyList(), tree.search(0L, 64), "found in an empty tree");
+    }
+
+    /**
+     * A distance of 0 only finds equal hashes, every one of them, and a hash exactly as far away as the distance
+     * searched is found while one a bit further isn't.
+     */
+    private static void edges() {
+        int threshold = DuplicateFinder.DEFAULT_MAX_DISTANCE;
+        long hash = 0x0F0F_F0F0_1234_5678L;
+
+        BKTree<String> tree = new BKTree<>();
+        tree.add(hash, "same");
+        tree.add(hash ^ 1L, "one bit");
+        tree.add(hash, "same again");
+        tree.add(hash ^ bits(threshold), "at the threshold");
+        tree.add(hash ^ bits(threshold + 1), "past the threshold");
+        tree.add(~hash, "every bit");
+        assertEquals(6, tree.size(), "size");
+
+        assertEquals(Arrays.asList("same", "same again"), sorted(tree.search(hash, 0)), "found at a distance of 0");
+        assertEquals(Arrays.asList("one bit", "same", "same again"), sorted(tree.search(hash, 1)),
+                "found at a distance of 1");
+        assertEquals(Arrays.asList("at the threshold", "one bit", "same", "same again"),
+                sorted(tree.search(hash, threshold)), "found at the threshold");
+        assertEquals(Arrays.asList("at the threshold", "every bit", "one bit", "past the threshold", "same",
+                "same again"), sorted(tree.search(hash, 64)), "found at a distance of 64");
+        assertEquals(Collections.singletonList("every bit"), sorted(tree.search(~hash, 0)), "found from every bit");
+    }
+
+    /**
+     * Hashes in clusters, as the hashes of copies of a few pictures are, searched from hashes in the tree and from
+     * ones that aren't, at every distance up to a bit past the threshold.
+     */
+    private static void againstEveryHash() {
+        Random random = new Random(42);
+        long[] hashes = new long[2000];
+
+        for(int i = 0; i < hashes.length; i++){
+            hashes[i] = i % 4 == 0 ? random.nextLong() : hashes[i - i % 4] ^ bits(random.nextInt(8), random);
+        }
+
+        BKTree<Integer> tree = new BKTree<>();
+        for(int i = 0; i < hashes.length; i++){
+            tree.add(hashes[i], i);
+        }
+        assertEquals(hashes.length, tree.size(), "size");
+
+        for(int distance = 0; distance <= DuplicateFinder.DEFAULT_MAX_DISTANCE + 2; distance++){
+            for(int i = 0; i < 200; i++){
+                long from = i % 2 == 0 ? hashes[random.nextInt(hashes.length)] : random.nextLong();
+
+                List<Integer> expected = new ArrayList<>();
+                for(int j = 0; j < hashes.length; j++){
+                    if(PerceptualHash.distance(from, hashes[j]) <= distance){
+                        expected.add(j);
+                    }
+                }
+                assertEquals(expected, sorted(tree.search(from, distance)),
+                        "found within " + distance + " of " + Long.toHexString(from));
+            }
+        }
+    }
+
+    /**
+     * Returns a hash with its lowest given number of bits set.
+     */
+    private static long bits(int count) {
+        return count == 64 ? -1L : (1L << count) - 1;
+    }
+
+    /**
+     * Returns a hash with the given number of bits set at random.
+     */
+    private static long bits(int count, Random random) {
+        long hash = 0;
+        while(Long.bitCount(hash) < count){
+            hash |= 1L << random.nextInt(64);
+        }
+        return hash;
+    }
+
+    private static <T extends Comparable<T>> List<T> sorted(List<T> values) {
+        List<T> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package photo_renamer.Duplicates;
+
+import photo_renamer.Fingerprints.FingerprintService;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds the copies of the same picture among a set of image files. Files are first grouped by the fingerprint of
+ * their contents, which finds exact copies. Then one file of each of those groups is decoded at a low resolution and
+ * given a PerceptualHash, and groups whose pictures look alike are joined. The hashes are kept in a BKTree, so finding
+ * the pictures that look like a picture never compares it with every other picture.
+ *
+ * <br><br>
+ *
+ * Perceptual hashes are remembered by fingerprint for as long as the program runs, so searching the same folder again
+ * only decodes the files that changed.
+ */
+public class DuplicateFinder {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The greatest number of bits two perceptual hashes may differ in for their pictures to be called alike */
+    public static final int DEFAULT_MAX_DISTANCE = 5;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The worker threads that decode the images, one per core */
+    private final ExecutorService workers;
+
+    /** The perceptual hashes computed so far, by the fingerprint of the file they were computed from */
+    private final Map<Long, Long> perceptualHashes = new ConcurrentHashMap<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private DuplicateFinder() {
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "duplicate-finder");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Finds the groups of copies of the same picture among the given files, using the default distance for pictures
+     * that look alike. Blocks until every file has been looked at, so it shouldn't be called on the JavaFX thread.
+     *
+     * @param files the image files
+     * @return the groups of two or more files, largest first
+     */
+    public List<DuplicateGroup> find(List<File> files) {
+        return find(files, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * Finds the groups of copies of the same picture among the given files. Blocks until every file has been looked
+     * at, so it shouldn't be called on the JavaFX thread.
+     *
+     * @param files the image files
+     * @param maxDistance the greatest number of bits the perceptual hashes of two pictures may differ in for them to
+     *                    be grouped, or a negative number to only group exact copies
+     * @return the groups of two or more files, largest first
+     */
+    public List<DuplicateGroup> find(List<File> files, int maxDistance) {
+
+        /* Group the files with the same contents. Unchanged files are fingerprinted from the store without reading them */
+        List<CompletableFuture<Long>> fingerprints = new ArrayList<>(files.size());
+        for(File file : files){
+            fingerprints.add(FingerprintService.getInstance().fingerprint(file));
+        }
+
+        Map<Long, List<File>> exactGroups = new HashMap<>();
+        for(int i = 0; i < files.size(); i++){
+            try {
+                exactGroups.computeIfAbsent(fingerprints.get(i).join(), h -> new ArrayList<>()).add(files.get(i));
+            }
+            catch (RuntimeException e){
+                System.out.println("FILE COULD NOT BE FINGERPRINTED: " + files.get(i));
+            }
+        }
+
+        List<Long> keys = new ArrayList<>(exactGroups.keySet());
+
+        /* Without perceptual hashes, every group of exact copies stays on its own */
+        List<Long> hashes = maxDistance >= 0 ? perceptualHashes(keys, exactGroups)
+                : Collections.<Long>nCopies(keys.size(), null);
+        int[] joined = joinAlike(hashes, maxDistance);
+
+        /* Collect the files of every set of joined groups */
+        Map<Integer, List<Integer>> sets = new HashMap<>();
+        for(int i = 0; i < keys.size(); i++){
+            sets.computeIfAbsent(joined[i], r -> new ArrayList<>()).add(i);
+        }
+
+        List<DuplicateGroup> groups = new ArrayList<>();
+        for(List<Integer> set : sets.values()){
+            List<File> groupFiles = new ArrayList<>();
+            for(int i : set){
+                groupFiles.addAll(exactGroups.get(keys.get(i)));
+            }
+
+            if(groupFiles.size() > 1){
+                groupFiles.sort(Comparator.comparing(File::getPath));
+                groups.add(new DuplicateGroup(groupFiles, set.size() == 1));
+            }
+        }
+
+        groups.sort(Comparator.comparing((DuplicateGroup g) -> g.getFiles().size()).reversed()
+                .thenComparing(g -> g.getFiles().get(0).getPath()));
+        return groups;
+    }
+
+    /**
+     * Returns the perceptual hashes of the groups of exact copies with the given fingerprints, in the same order. Each
+     * group is only decoded once, from its first file, and the groups are decoded in parallel.
+     *
+     * @return the hashes, null for a group that couldn't be decoded
+     */
+    private List<Long> perceptualHashes(List<Long> keys, Map<Long, List<File>> exactGroups) {
+        List<CompletableFuture<Long>> futures = new ArrayList<>(keys.size());
+        for(Long key : keys){
+            File file = exactGroups.get(key).get(0);
+            futures.add(CompletableFuture.supplyAsync(() -> perceptualHash(key, file), workers));
+        }
+
+        List<Long> hashes = new ArrayList<>(keys.size());
+        for(CompletableFuture<Long> future : futures){
+            hashes.add(future.join());
+        }
+        return hashes;
+    }
+
+    /**
+     * Joins the pictures with the given perceptual hashes that look alike. Joining is transitive, so pictures that are
+     * each alike to the next end up together even when the first and the last aren't alike.
+     *
+     * @param hashes the hashes of the pictures, null for a picture that couldn't be decoded and is joined to nothing
+     * @param maxDistance the greatest number of bits the hashes of two pictures may differ in for them to be joined
+     * @return for each picture, the position of one picture standing for every picture it was joined with
+     */
+    static int[] joinAlike(List<Long> hashes, int maxDistance) {
+        UnionFind joined = new UnionFind(hashes.size());
+
+        /* Each picture is searched for before it is added, so every pair of pictures is only compared once */
+        BKTree<Integer> tree = new BKTree<>();
+        for(int i = 0; i < hashes.size(); i++){
+            Long hash = hashes.get(i);
+            if(hash == null){
+                continue;
+            }
+
+            for(int alike : tree.search(hash, maxDistance)){
+                joined.union(i, alike);
+            }
+            tree.add(hash, i);
+        }
+
+        int[] sets = new int[hashes.size()];
+        for(int i = 0; i < sets.length; i++){
+            sets[i] = joined.find(i);
+        }
+        return sets;
+    }
+
+    /**
+     * Returns the perceptual hash of the given file with the given fingerprint, or null if it couldn't be decoded.
+     */
+    private Long perceptualHash(long fingerprint, File file) {
+        Long hash = perceptualHashes.get(fingerprint);
+        if(hash != null){
+            return hash;
+        }
+
+        try {
+            hash = PerceptualHash.hash(file);
+            perceptualHashes.put(fingerprint, hash);
+            return hash;
+        }
+        catch (IOException | RuntimeException e){
+            System.out.println("IMAGE COULD NOT BE DECODED: " + file);
+            return null;
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Union Find                                                                *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Keeps track of which groups have been joined together. Joining is transitive, so a chain of pictures that each
+     * look like the next all end up in one group.
+     */
+    private static class UnionFind {
+
+        private final int[] parent;
+
+        private UnionFind(int size) {
+            parent = new int[size];
+            for(int i = 0; i < size; i++){
+                parent[i] = i;
+            }
+        }
+
+        /**
+         * Returns the group the given group has been joined into.
+         */
+        private int find(int i) {
+            while(parent[i] != i){
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        /**
+         * Joins the two given groups.
+         */
+        private void union(int a, int b) {
+            parent[find(a)] = find(b);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static DuplicateFinder getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final DuplicateFinder INSTANCE = new DuplicateFinder();
+    }
+}
@@ -0,0 +1,144 @@
+package photo_renamer.Duplicates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks how the DuplicateFinder joins pictures by their perceptual hashes: pictures that are each alike to the next
+ * are joined into one group even when the first and the last aren't alike, whatever order they come in, and pictures
+ * that couldn't be decoded are joined to nothing. It exits with 1 if any check fails.
+ */
+public class DuplicateFinderTest {
+
+    /** The greatest distance pictures are joined at in these checks */
+    private static final int MAX = DuplicateFinder.DEFAULT_MAX_DISTANCE;
+
+    public static void main(String[] args) {
+        try {
+            transitive();
+            everyOrder();
+            undecoded();
+            exactOnly();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * A chain of pictures each within the distance of the next ends up in one group, though its ends are further
+     * apart than the distance, while a picture just past the distance of every one of them stays on its own.
+     */
+    private static void transitive() {
+        long a = 0L, b = bits(0, MAX), c = bits(0, 2 * MAX), d = bits(0, 3 * MAX);
+        long alone = bits(40, MAX + 1);
+
+        assertTrue(PerceptualHash.distance(a, d) > MAX, "the ends of the chain are alike");
+        assertEquals("[[0, 1, 2, 3], [4]]", groups(Arrays.asList(a, b, c, d, alone)), "groups of a chain");
+
+        /* Two chains stay apart, until a picture alike to an end of each of them comes along */
+        long e = bits(20, MAX), f = bits(20, 2 * MAX);
+        assertEquals("[[0, 1, 2], [3, 4]]", groups(Arrays.asList(a, e, f, bits(50, MAX + 1), bits(50, 2 * MAX + 1))),
+                "two separate chains");
+        assertEquals("[[0, 1, 2, 3, 4]]", groups(Arrays.asList(a, b, e, f, c)), "two chains joined through a");
+    }
+
+    /**
+     * The groups don't depend on the order the pictures are joined in, including orders where the two ends of a chain
+     * are joined before the picture between them.
+     */
+    private static void everyOrder() {
+        long[] chain = {0L, bits(0, MAX), bits(0, 2 * MAX), bits(0, 3 * MAX), bits(40, 2 * MAX)};
+        int[][] orders = {{0, 1, 2, 3, 4}, {3, 2, 1, 0, 4}, {0, 3, 2, 4, 1}, {4, 0, 2, 1, 3}, {2, 4, 0, 3, 1}};
+
+        for(int[] order : orders){
+            List<Long> hashes = new ArrayList<>();
+            for(int i : order){
+                hashes.add(chain[i]);
+            }
+
+            int[] joined = DuplicateFinder.joinAlike(hashes, MAX);
+            int first = joined[position(order, 0)];
+            for(int i = 1; i < 4; i++){
+                assertEquals(first, joined[position(order, i)], "set of picture " + i + " in the order "
+                        + Arrays.toString(order));
+            }
+            assertTrue(joined[position(order, 4)] != first, "the far picture was joined in the order "
+                    + Arrays.toString(order));
+        }
+    }
+
+    /**
+     * A picture that couldn't be decoded is never joined, even when pictures that could be are alike to every hash.
+     */
+    private static void undecoded() {
+        assertEquals("[[0, 2], [1], [3]]", groups(Arrays.asList(0L, null, 1L, null)), "groups with undecoded pictures");
+    }
+
+    /**
+     * At a distance of 0 only equal hashes are joined, and at a negative distance nothing is.
+     */
+    private static void exactOnly() {
+        List<Long> hashes = Arrays.asList(5L, 4L, 5L, 7L);
+        assertEquals("[[0, 2], [1], [3]]", groups(hashes, 0), "groups at a distance of 0");
+        assertEquals("[[0], [1], [2], [3]]", groups(hashes, -1), "groups at a negative distance");
+    }
+
+    /**
+     * Returns a hash with the given number of bits set, starting from the given bit.
+     */
+    private static long bits(int from, int count) {
+        long hash = 0;
+        for(int i = from; i < from + count; i++){
+            hash |= 1L << i;
+        }
+        return hash;
+    }
+
+    private static String groups(List<Long> hashes) {
+        return groups(hashes, MAX);
+    }
+
+    /**
+     * Joins the given hashes, and describes the sets of positions they were joined into, ordered by their first
+     * position.
+     */
+    private static String groups(List<Long> hashes, int maxDistance) {
+        int[] joined = DuplicateFinder.joinAlike(hashes, maxDistance);
+
+        Map<Integer, List<Integer>> sets = new TreeMap<>();
+        for(int i = 0; i < joined.length; i++){
+            sets.computeIfAbsent(joined[i], s -> new ArrayList<>()).add(i);
+        }
+
+        List<List<Integer>> groups = new ArrayList<>(sets.values());
+        groups.sort((x, y) -> Integer.compare(x.get(0), y.get(0)));
+        return groups.toString();
+    }
+
+    private static int position(int[] order, int picture) {
+        for(int i = 0; i < order.length; i++){
+            if(order[i] == picture){
+                return i;
+            }
+        }
+        throw new AssertionError("no picture " + picture + " in " + Arrays.toString(order));
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
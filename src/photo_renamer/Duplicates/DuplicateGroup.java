@@ -0,0 +1,68 @@
+package photo_renamer.Duplicates;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of image files that are copies of the same picture.
+ */
+public class DuplicateGroup {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The files in the group */
+    private final List<File> files;
+
+    /** Whether every file in the group has exactly the same contents, rather than only looking alike */
+    private final boolean exact;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Creates a group of the given files.
+     *
+     * @param files the files in the group
+     * @param exact whether every file in the group has exactly the same contents
+     */
+    public DuplicateGroup(List<File> files, boolean exact) {
+        this.files = Collections.unmodifiableList(files);
+        this.exact = exact;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the files in the group, sorted by their paths.
+     *
+     * @return the files
+     */
+    public List<File> getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns whether every file in the group has exactly the same contents. Otherwise some of the files only look
+     * alike, such as a resized or recompressed copy of a picture.
+     *
+     * @return true if the files are exact copies
+     */
+    public boolean isExact() {
+        return exact;
+    }
+}
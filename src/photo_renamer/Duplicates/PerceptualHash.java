@@ -0,0 +1,146 @@
+package photo_renamer.Duplicates;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Computes the difference hash of an image: a 64 bit hash of what the image looks like rather than of its bytes.
+ * The image is shrunk to 9 by 8 shades of grey, and each bit of the hash says whether a pixel is brighter than the
+ * pixel to its right. Copies of a picture that were resized, recompressed, or slightly edited end up with hashes only a
+ * few bits apart, so the number of differing bits tells how alike two pictures are.
+ *
+ * <br><br>
+ *
+ * Only every few pixels of the file are decoded, so a large photo is never decoded in full just to be shrunk.
+ */
+public class PerceptualHash {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The width and height the image is shrunk to; one more column than bits in a row, to compare neighbours */
+    private static final int WIDTH = 9, HEIGHT = 8;
+
+    /** The smallest width and height decoded, so the shrunk image is still averaged over enough of the picture */
+    private static final int DECODE_SIZE = 64;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Computes the difference hash of the given image file.
+     *
+     * @param file the image file
+     * @return the hash
+     * @throws IOException if the file couldn't be read or isn't an image that can be decoded
+     */
+    public static long hash(File file) throws IOException {
+        return hash(decode(file));
+    }
+
+    /**
+     * Computes the difference hash of the given image.
+     *
+     * @param image the image
+     * @return the hash
+     */
+    public static long hash(BufferedImage image) {
+        double[] grey = shrink(image);
+
+        long hash = 0;
+        for(int y = 0; y < HEIGHT; y++){
+            for(int x = 0; x < WIDTH - 1; x++){
+                hash <<= 1;
+                if(grey[y * WIDTH + x] > grey[y * WIDTH + x + 1]){
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Shrinks the given image to WIDTH by HEIGHT shades of grey, each one the average brightness of every pixel in its
+     * part of the image. Averaging every pixel, rather than sampling a few, keeps the shades the same no matter what
+     * size the image was to begin with.
+     */
+    private static double[] shrink(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        double[] sums = new double[WIDTH * HEIGHT];
+        int[] counts = new int[WIDTH * HEIGHT];
+        int[] row = new int[width];
+
+        for(int y = 0; y < height; y++){
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * HEIGHT / height * WIDTH;
+
+            for(int x = 0; x < width; x++){
+                int rgb = row[x];
+                int cell = cellRow + x * WIDTH / width;
+                sums[cell] += 0.299 * (rgb >> 16 & 0xFF) + 0.587 * (rgb >> 8 & 0xFF) + 0.114 * (rgb & 0xFF);
+                counts[cell]++;
+            }
+        }
+
+        for(int i = 0; i < sums.length; i++){
+            sums[i] /= Math.max(1, counts[i]);
+        }
+        return sums;
+    }
+
+    /**
+     * Returns the number of bits two hashes differ in. Zero means the pictures look the same.
+     *
+     * @param a a hash
+     * @param b another hash
+     * @return the number of differing bits, from 0 to 64
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Decodes the given image file, skipping as many pixels as it can while keeping the image at least DECODE_SIZE
+     * pixels wide and high.
+     */
+    private static BufferedImage decode(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if(in == null){
+                throw new IOException("Could not open " + file);
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if(!readers.hasNext()){
+                throw new IOException("Not an image that can be decoded: " + file);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+
+                int step = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_SIZE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                return reader.read(0, param);
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package photo_renamer.Duplicates;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Checks that the PerceptualHash of an image has a bit set for every pixel brighter than the one to its right, and
+ * stays the same when the image is enlarged, saved to a file, or decoded from a file only every few pixels. It exits
+ * with 1 if any check fails.
+ */
+public class PerceptualHashTest {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("perceptualhash").toFile();
+        try {
+            distance();
+            bits();
+            enlarged();
+            files(dir);
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            File[] files = dir.listFiles();
+            for(File file : files == null ? new File[0] : files){
+                file.delete();
+            }
+            dir.delete();
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * The distance between two hashes is the number of bits they differ in.
+     */
+    private static void distance() {
+        assertEquals(0, PerceptualHash.distance(0x1234L, 0x1234L), "distance between equal hashes");
+        assertEquals(1, PerceptualHash.distance(0L, Long.MIN_VALUE), "distance of the top bit");
+        assertEquals(64, PerceptualHash.distance(0L, -1L), "distance between opposite hashes");
+        assertEquals(3, PerceptualHash.distance(0b1010L, 0b0111L), "distance of three bits");
+    }
+
+    /**
+     * An image of the size the hash shrinks images to hashes to the bits it was drawn from, and a flat image to 0.
+     */
+    private static void bits() {
+        for(long hash : new long[]{0L, -1L, 0x8000_0000_0000_0001L, 0x0123_4567_89AB_CDEFL, 0xAAAA_5555_AAAA_5555L}){
+            assertEquals(Long.toHexString(hash), Long.toHexString(PerceptualHash.hash(drawn(hash, 1))),
+                    "hash of an image drawn from " + Long.toHexString(hash));
+        }
+        assertEquals(0L, PerceptualHash.hash(new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB)), "hash of black");
+    }
+
+    /**
+     * Enlarging an image, evenly or not, keeps its hash.
+     */
+    private static void enlarged() {
+        long hash = 0x0F1E_2D3C_4B5A_6978L;
+        assertEquals(Long.toHexString(hash), Long.toHexString(PerceptualHash.hash(drawn(hash, 25))),
+                "enlarged 25 times");
+        assertEquals(Long.toHexString(hash), Long.toHexString(PerceptualHash.hash(stretched(drawn(hash, 1), 7, 3))),
+                "stretched 7 times wide and 3 times high");
+    }
+
+    /**
+     * A large image saved to a file, which is only decoded every few pixels, hashes the same as the image, and a file
+     * that isn't an image is turned down.
+     */
+    private static void files(File dir) throws IOException {
+        long hash = 0x7E57_ED0C_AFE0_BEEFL;
+        File file = new File(dir, "large.png");
+        ImageIO.write(drawn(hash, 100), "png", file);
+        assertEquals(Long.toHexString(hash), Long.toHexString(PerceptualHash.hash(file)), "hash of a large file");
+
+        File text = new File(dir, "text.jpg");
+        Files.write(text.toPath(), "not an image".getBytes(StandardCharsets.UTF_8));
+        try {
+            PerceptualHash.hash(text);
+            throw new AssertionError("a file that isn't an image was hashed");
+        }
+        catch (IOException e){
+            assertEquals("Not an image that can be decoded: " + text, e.getMessage(), "error");
+        }
+    }
+
+    /**
+     * Draws an image 9 by 8 blocks of the given size, each row stepping darker where the hash has a 1 and lighter
+     * where it has a 0, so that it hashes to the given hash.
+     */
+    private static BufferedImage drawn(long hash, int block) {
+        BufferedImage image = new BufferedImage(9 * block, 8 * block, BufferedImage.TYPE_INT_RGB);
+
+        for(int y = 0; y < 8; y++){
+            int shade = 128;
+            for(int x = 0; x < 9; x++){
+                if(x > 0){
+                    boolean brighterOnTheLeft = (hash >>> (63 - (y * 8 + x - 1)) & 1) == 1;
+                    shade += brighterOnTheLeft ? -12 : 12;
+                }
+                fill(image, x * block, y * block, block, block, shade);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Returns the given image stretched by the given whole numbers of times.
+     */
+    private static BufferedImage stretched(BufferedImage image, int wide, int high) {
+        BufferedImage stretched = new BufferedImage(image.getWidth() * wide, image.getHeight() * high,
+                BufferedImage.TYPE_INT_RGB);
+        for(int y = 0; y < image.getHeight(); y++){
+            for(int x = 0; x < image.getWidth(); x++){
+                fill(stretched, x * wide, y * high, wide, high, image.getRGB(x, y) & 0xFF);
+            }
+        }
+        return stretched;
+    }
+
+    private static void fill(BufferedImage image, int left, int top, int width, int height, int shade) {
+        int rgb = shade << 16 | shade << 8 | shade;
+        for(int y = top; y < top + height; y++){
+            for(int x = left; x < left + width; x++){
+                image.setRGB(x, y, rgb);
+            }
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
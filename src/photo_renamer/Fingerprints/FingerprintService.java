@@ -0,0 +1,228 @@
+package photo_renamer.Fingerprints;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands out fingerprints of the contents of files: the XXH64 hash of every byte of the file. Fingerprints are kept in
+ * a FingerprintStore by the path, length, and last modified time of their file, so a file that hasn't changed costs
+ * only a look at its attributes, and is never read again. A file the program renames keeps its fingerprint, as long as
+ * the service is told of the move. Files that do have to be hashed are read on a pool of worker threads, one per core,
+ * straight from a memory mapping of the file.
+ */
+public class FingerprintService {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The file the fingerprints are kept in, next to the other files of the program */
+    private static final String STORE_FILE = "fingerprints.db";
+
+    /** How much of a file is mapped at once */
+    private static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    /** Files smaller than this are read rather than mapped, since mapping them costs more than reading them */
+    private static final long MAP_THRESHOLD = 256 * 1024;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The store the fingerprints are kept in, null if it couldn't be opened */
+    private FingerprintStore store;
+
+    /** The worker threads that hash the files */
+    private final ExecutorService workers;
+
+    /** The fingerprints being computed right now, by the path of their file, so a file is never hashed twice at once */
+    private final Map<String, CompletableFuture<Long>> computing = new ConcurrentHashMap<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private FingerprintService() {
+        try {
+            store = new FingerprintStore(new File(STORE_FILE));
+        }
+        catch (IOException e){
+            store = null;
+            System.out.println("FINGERPRINTS COULD NOT BE LOADED: " + e.getMessage());
+        }
+
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "fingerprinter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Finds the fingerprint of the given file. If the store has a fingerprint of the file as it is on the disk, it is
+     * handed over right away; otherwise the file is hashed in the background.
+     *
+     * @param file the file
+     * @return the fingerprint, which completes exceptionally if the file couldn't be read
+     */
+    public CompletableFuture<Long> fingerprint(File file) {
+        String path = file.getAbsolutePath();
+        BasicFileAttributes attributes;
+
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        }
+        catch (IOException e){
+            CompletableFuture<Long> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        Long cached = cached(path, attributes);
+        if(cached != null){
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        return computing.computeIfAbsent(path, p -> {
+            CompletableFuture<Long> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return compute(file, path, attributes);
+                }
+                catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            }, workers);
+
+            future.whenComplete((hash, error) -> computing.remove(p, future));
+            return future;
+        });
+    }
+
+    /**
+     * Finds the fingerprint of the given file on the calling thread, hashing the file if the store doesn't have a
+     * fingerprint of it as it is on the disk. Meant for code that is already running on a worker thread of its own.
+     *
+     * @param file the file
+     * @return the fingerprint
+     * @throws IOException if the file couldn't be read
+     */
+    public long fingerprintNow(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+
+        Long cached = cached(path, attributes);
+        return cached != null ? cached : compute(file, path, attributes);
+    }
+
+    /**
+     * Keeps the fingerprint of a file that was moved, so it doesn't have to be hashed again under its new path.
+     *
+     * @param from the file before it was moved
+     * @param to the file it was moved to
+     */
+    public void fileMoved(File from, File to) {
+        if(store != null){
+            try {
+                store.move(from.getAbsolutePath(), to.getAbsolutePath());
+            }
+            catch (IOException e){
+                System.out.println("FINGERPRINT COULD NOT BE SAVED: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprint in the store of the file with the given path and attributes, or null if there isn't one.
+     */
+    private Long cached(String path, BasicFileAttributes attributes) {
+        return store == null ? null : store.get(path, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
+
+    /**
+     * Hashes the given file and adds its fingerprint to the store.
+     */
+    private long compute(File file, String path, BasicFileAttributes attributes) throws IOException {
+        long hash = hash(file);
+
+        if(store != null){
+            try {
+                store.put(path, attributes.lastModifiedTime().toMillis(), attributes.size(), hash);
+            }
+            catch (IOException e){
+                System.out.println("FINGERPRINT COULD NOT BE SAVED: " + e.getMessage());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes every byte of the given file. Large files are mapped a chunk at a time, so no more than one chunk of the
+     * file is ever mapped at once.
+     *
+     * @param file the file
+     * @return the XXH64 hash of the file
+     * @throws IOException if the file couldn't be read
+     */
+    public static long hash(File file) throws IOException {
+        XXHash64 hash = new XXHash64();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if(size < MAP_THRESHOLD){
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                while(buffer.hasRemaining() && channel.read(buffer) >= 0){}
+                buffer.flip();
+                hash.update(buffer);
+            }
+            else{
+                for(long position = 0; position < size; position += CHUNK_SIZE){
+                    hash.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, size - position)));
+                }
+            }
+        }
+        return hash.getValue();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static FingerprintService getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final FingerprintService INSTANCE = new FingerprintService();
+    }
+}
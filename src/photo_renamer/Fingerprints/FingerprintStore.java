@@ -0,0 +1,338 @@
+package photo_renamer.Fingerprints;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the fingerprints of files in a single file on the disk, so a file is only hashed again once it changes.
+ * Fingerprints are looked up by the path of their file together with when it was last modified and its length, so a
+ * fingerprint of a file that has changed on the disk is never used.
+ *
+ * <br><br>
+ *
+ * The file is a header followed by records appended one after another:
+ *
+ * <pre>
+ *     header:  int magic, int version
+ *     record:  int key length, key (UTF-8 path), long last modified, long length, long hash
+ * </pre>
+ *
+ * The records are small, so they are all read into memory when the store is opened. A record left incomplete by a
+ * crash is cut off, and a fingerprint computed again for a file replaces its old record. When the program moves a
+ * file, its fingerprint is added again under the new path and a record with a length of -1 is added under the old
+ * one, which no file can match, so renaming a file never costs hashing it again. The records that were replaced are
+ * left in the file until the store is opened with more than COMPACT_FRACTION of the file taken up by them, when only
+ * the latest record of each file is written into a new file that replaces the old one.
+ */
+public class FingerprintStore implements AutoCloseable {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private static final int MAGIC = 0x50524650; // "PRFP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /** The length recorded for a path whose file was moved away, which no file can have */
+    private static final long MOVED = -1;
+
+    /** The size of a record apart from its key */
+    private static final int RECORD_SIZE = 4 + 8 + 8 + 8;
+
+    /** The fraction of the file that has to be taken up by replaced records for the store to be compacted */
+    static final double COMPACT_FRACTION = 0.5;
+
+    /** The fewest bytes of replaced records worth compacting a store for */
+    static final long COMPACT_MINIMUM = 64 * 1024;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The store's file */
+    private final File file;
+
+    /** The channel of the store's file */
+    private FileChannel channel;
+
+    /** The latest record of each file, by the file's path */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** The length of the file */
+    private long size;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist. A file that isn't a fingerprint store (or is
+     * of another version) is started over.
+     *
+     * @param file the file of the store
+     * @throws IOException if the file couldn't be opened
+     */
+    public FingerprintStore(File file) throws IOException {
+        this.file = file;
+        channel = open(file);
+        size = channel.size();
+
+        if(!readRecords()){
+            channel.truncate(0);
+            channel.write(header(), 0);
+            size = HEADER_SIZE;
+        }
+
+        long deadBytes = size - liveBytes();
+        if(deadBytes >= COMPACT_MINIMUM && deadBytes > size * COMPACT_FRACTION){
+            compact();
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the fingerprint of the file with the given path, if there is one for the file as it is on the disk.
+     *
+     * @param path the absolute path of the file
+     * @param lastModified when the file was last modified, in milliseconds since the epoch
+     * @param length the length of the file
+     * @return the fingerprint, or null if there isn't one
+     */
+    public synchronized Long get(String path, long lastModified, long length) {
+        Entry entry = entries.get(path);
+        return entry != null && entry.lastModified == lastModified && entry.length == length ? entry.hash : null;
+    }
+
+    /**
+     * Adds the fingerprint of the file with the given path to the store, replacing any older fingerprint of it.
+     *
+     * @param path the absolute path of the file
+     * @param lastModified when the file was last modified, in milliseconds since the epoch
+     * @param length the length of the file
+     * @param hash the fingerprint
+     * @throws IOException if the store couldn't be written to
+     */
+    public synchronized void put(String path, long lastModified, long length, long hash) throws IOException {
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer record = ByteBuffer.allocate(key.length + RECORD_SIZE);
+        record.putInt(key.length).put(key).putLong(lastModified).putLong(length).putLong(hash);
+        record.flip();
+
+        while(record.hasRemaining()){
+            size += channel.write(record, size);
+        }
+
+        if(length == MOVED){
+            entries.remove(path);
+        }
+        else{
+            entries.put(path, new Entry(lastModified, length, hash));
+        }
+    }
+
+    /**
+     * Moves the fingerprint of the file with the given path over to the path the file was moved to. Moving a file
+     * doesn't change when it was last modified or its length, so the fingerprint still matches the file at its new
+     * path. Nothing is done if there is no fingerprint of the file.
+     *
+     * @param from the absolute path the file had
+     * @param to the absolute path the file was moved to
+     * @throws IOException if the store couldn't be written to
+     */
+    public synchronized void move(String from, String to) throws IOException {
+        Entry entry = entries.get(from);
+        if(entry == null || from.equals(to)){
+            return;
+        }
+
+        put(to, entry.lastModified, entry.length, entry.hash);
+        put(from, 0, MOVED, 0);
+    }
+
+    /**
+     * Returns the number of files with a fingerprint in the store.
+     *
+     * @return the number of files
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns how many bytes the header and the latest record of each file take up.
+     */
+    private long liveBytes() {
+        long live = HEADER_SIZE;
+        for(String path : entries.keySet()){
+            live += path.getBytes(StandardCharsets.UTF_8).length + RECORD_SIZE;
+        }
+        return live;
+    }
+
+    /**
+     * Writes the latest record of each file into a new file, and then moves it over the store's file. If the new file
+     * can't be written, the store goes on using the old one.
+     */
+    private void compact() throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (FileChannel out = open(temp)) {
+            out.truncate(0);
+            out.write(header(), 0);
+            out.position(HEADER_SIZE);
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            for(Map.Entry<String, Entry> latest : entries.entrySet()){
+                byte[] key = latest.getKey().getBytes(StandardCharsets.UTF_8);
+                if(buffer.remaining() < key.length + RECORD_SIZE){
+                    write(buffer, out);
+                    if(buffer.capacity() < key.length + RECORD_SIZE){
+                        buffer = ByteBuffer.allocate(key.length + RECORD_SIZE);
+                    }
+                }
+
+                Entry entry = latest.getValue();
+                buffer.putInt(key.length).put(key).putLong(entry.lastModified).putLong(entry.length).putLong(entry.hash);
+            }
+            write(buffer, out);
+
+            out.force(false);
+        }
+        catch (IOException e){
+            Files.deleteIfExists(temp.toPath());
+            return;
+        }
+
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        size = channel.size();
+    }
+
+    /**
+     * Writes everything put in the given buffer to the end of the given channel, and empties the buffer.
+     */
+    private static void write(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the header of a store of this version, ready to be written.
+     */
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Opens the given file to be read and written, creating it if it doesn't exist.
+     */
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads the header and every record, cutting off an incomplete record at the end.
+     *
+     * @return false if the file doesn't start with the header of a store of this version
+     */
+    private boolean readRecords() throws IOException {
+        if(size < HEADER_SIZE){
+            return false;
+        }
+
+        ByteBuffer file = ByteBuffer.allocate((int) size);
+        while(file.hasRemaining() && channel.read(file, file.position()) >= 0){}
+        file.flip();
+
+        if(file.getInt() != MAGIC || file.getInt() != VERSION){
+            return false;
+        }
+
+        long position = file.position();
+        try {
+            while(file.hasRemaining()){
+                int keyLength = file.getInt();
+                if(keyLength < 0 || file.remaining() < keyLength + RECORD_SIZE - 4){
+                    break;
+                }
+
+                String path = new String(file.array(), file.position(), keyLength, StandardCharsets.UTF_8);
+                file.position(file.position() + keyLength);
+                Entry entry = new Entry(file.getLong(), file.getLong(), file.getLong());
+                if(entry.length == MOVED){
+                    entries.remove(path);
+                }
+                else{
+                    entries.put(path, entry);
+                }
+                position = file.position();
+            }
+        }
+        catch (BufferUnderflowException ignored){}
+
+        if(position < size){
+            channel.truncate(position);
+            size = position;
+        }
+        return true;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Entry                                                                     *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * The fingerprint of a file, and the state of the file it was computed from.
+     */
+    private static final class Entry {
+        private final long lastModified;
+        private final long length;
+        private final long hash;
+
+        Entry(long lastModified, long length, long hash) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = hash;
+        }
+    }
+}
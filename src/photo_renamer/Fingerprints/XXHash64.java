@@ -0,0 +1,194 @@
+package photo_renamer.Fingerprints;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Computes the 64 bit xxHash (XXH64) of data handed to it in pieces. XXH64 reads its input 32 bytes at a time in four
+ * independent lanes, so it runs at close to the speed memory can be read, while still spreading any change in the input
+ * across the whole hash. It is not a cryptographic hash; it is meant to tell files apart, not to resist tampering.
+ */
+public class XXHash64 {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private final long seed;
+
+    /** The four lanes the input is read into */
+    private long v1, v2, v3, v4;
+
+    /** The number of bytes handed over so far */
+    private long length = 0;
+
+    /** Bytes handed over that don't yet make up a whole 32 byte stripe */
+    private final ByteBuffer tail = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new hash with a seed of 0.
+     */
+    public XXHash64() {
+        this(0);
+    }
+
+    /**
+     * Instantiates a new hash with the given seed.
+     *
+     * @param seed the seed
+     */
+    public XXHash64(long seed) {
+        this.seed = seed;
+        v1 = seed + PRIME1 + PRIME2;
+        v2 = seed + PRIME2;
+        v3 = seed;
+        v4 = seed - PRIME1;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Adds the remaining bytes of the given buffer to the hash. The buffer's position is left where it was.
+     *
+     * @param data the data to add
+     */
+    public void update(ByteBuffer data) {
+        ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        length += in.remaining();
+
+        /* Finish the stripe left over from the last update first */
+        if(tail.position() > 0){
+            while(tail.hasRemaining() && in.hasRemaining()){
+                tail.put(in.get());
+            }
+            if(tail.hasRemaining()){
+                return;
+            }
+
+            tail.flip();
+            stripe(tail);
+            tail.clear();
+        }
+
+        while(in.remaining() >= 32){
+            stripe(in);
+        }
+
+        while(in.hasRemaining()){
+            tail.put(in.get());
+        }
+    }
+
+    /**
+     * Adds the given bytes to the hash.
+     *
+     * @param data the data to add
+     */
+    public void update(byte[] data) {
+        update(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Returns the hash of everything added so far. More data can still be added afterwards.
+     *
+     * @return the hash
+     */
+    public long getValue() {
+        long h;
+        if(length >= 32){
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        }
+        else{
+            h = seed + PRIME5;
+        }
+        h += length;
+
+        ByteBuffer rest = tail.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        rest.flip();
+
+        while(rest.remaining() >= 8){
+            h ^= round(0, rest.getLong());
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if(rest.remaining() >= 4){
+            h ^= (rest.getInt() & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+        }
+        while(rest.hasRemaining()){
+            h ^= (rest.get() & 0xFF) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Reads one 32 byte stripe of the given little-endian buffer into the four lanes.
+     */
+    private void stripe(ByteBuffer in) {
+        v1 = round(v1, in.getLong());
+        v2 = round(v2, in.getLong());
+        v3 = round(v3, in.getLong());
+        v4 = round(v4, in.getLong());
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long merge(long h, long v) {
+        h ^= round(0, v);
+        return h * PRIME1 + PRIME4;
+    }
+
+    /**
+     * Returns the hash of the given bytes with a seed of 0.
+     *
+     * @param data the data to hash
+     * @return the hash
+     */
+    public static long hash(byte[] data) {
+        XXHash64 hash = new XXHash64();
+        hash.update(data);
+        return hash.getValue();
+    }
+}
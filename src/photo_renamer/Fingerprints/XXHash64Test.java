@@ -0,0 +1,116 @@
+package photo_renamer.Fingerprints;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Checks XXHash64 against the reference test vectors of XXH64, and checks that data handed over in pieces hashes the
+ * same as data handed over all at once. It exits with 1 if any check fails.
+ */
+public class XXHash64Test {
+
+    public static void main(String[] args) {
+        try {
+            referenceVectors();
+            seed();
+            splitUpdates();
+            byteBuffers();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * The hashes with a seed of 0 that the reference implementation gives.
+     */
+    private static void referenceVectors() {
+        check("", 0xEF46DB3751D8E999L);
+        check("a", 0xD24EC4F1A98C6E5BL);
+        check("abc", 0x44BC2CF5AD770999L);
+        check("Nobody inspects the spammish repetition", 0xFBCEA83C8A378BF1L);
+    }
+
+    /**
+     * A seed changes the hash, and the constructor without one uses a seed of 0.
+     */
+    private static void seed() {
+        byte[] data = "abc".getBytes(StandardCharsets.US_ASCII);
+
+        XXHash64 unseeded = new XXHash64(), zero = new XXHash64(0), seeded = new XXHash64(1);
+        unseeded.update(data);
+        zero.update(data);
+        seeded.update(data);
+
+        assertEquals(zero.getValue(), unseeded.getValue(), "seed 0");
+        assertTrue(seeded.getValue() != zero.getValue(), "seed 1 hashed the same as seed 0");
+    }
+
+    /**
+     * Every way of cutting the data in two, across stripes and tails of every length, hashes the same as the whole.
+     */
+    private static void splitUpdates() {
+        byte[] data = new byte[200];
+        new Random(17).nextBytes(data);
+
+        for(int length = 0; length <= data.length; length++){
+            byte[] whole = new byte[length];
+            System.arraycopy(data, 0, whole, 0, length);
+            long expected = XXHash64.hash(whole);
+
+            for(int cut = 0; cut <= length; cut++){
+                XXHash64 hash = new XXHash64();
+                hash.update(ByteBuffer.wrap(whole, 0, cut));
+                hash.update(ByteBuffer.wrap(whole, cut, length - cut));
+                assertEquals(expected, hash.getValue(), length + " bytes cut at " + cut);
+            }
+        }
+
+        /* A byte at a time */
+        XXHash64 hash = new XXHash64();
+        for(byte b : data){
+            hash.update(new byte[]{b});
+        }
+        assertEquals(XXHash64.hash(data), hash.getValue(), "a byte at a time");
+    }
+
+    /**
+     * Direct and read only buffers, such as mappings of files, hash the same as arrays, and are read from their
+     * position to their limit.
+     */
+    private static void byteBuffers() {
+        byte[] data = "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 6);
+        direct.put(new byte[3]).put(data).put(new byte[3]);
+        direct.position(3).limit(3 + data.length);
+
+        XXHash64 hash = new XXHash64();
+        hash.update(direct);
+        assertEquals(0xFBCEA83C8A378BF1L, hash.getValue(), "direct buffer");
+
+        hash = new XXHash64();
+        hash.update(ByteBuffer.wrap(data).asReadOnlyBuffer());
+        assertEquals(0xFBCEA83C8A378BF1L, hash.getValue(), "read only buffer");
+    }
+
+    private static void check(String text, long expected) {
+        assertEquals(expected, XXHash64.hash(text.getBytes(StandardCharsets.US_ASCII)), "\"" + text + "\"");
+    }
+
+    private static void assertEquals(long expected, long actual, String what) {
+        if(expected != actual){
+            throw new AssertionError(what + ": expected " + Long.toHexString(expected)
+                    + " but was " + Long.toHexString(actual));
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
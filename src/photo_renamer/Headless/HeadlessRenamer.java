@@ -0,0 +1,375 @@
+package photo_renamer.Headless;
+
+import photo_renamer.Image;
+import photo_renamer.ImageManager;
+import photo_renamer.Logging.ImageLog;
+import photo_renamer.Logging.ImageLogger;
+import photo_renamer.Renaming.BatchRenamer;
+import photo_renamer.Renaming.BatchResult;
+import photo_renamer.Scanning.DirectoryListing;
+import photo_renamer.Tags.TagIndex;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs the tagging and renaming of the program without its GUI, for batch jobs such as ingesting a drop of images into
+ * the archive. Nothing from JavaFX is loaded. The program's data is loaded from and saved to the same store the GUI
+ * uses, picked by the same system properties, so a rename made here can be reverted in the GUI and the other way
+ * around.
+ *
+ * <br><br>
+ *
+ * Usage:
+ *
+ * <pre>
+ * HeadlessRenamer tag &lt;directory&gt; &lt;glob&gt; &lt;tag&gt;...
+ * HeadlessRenamer revert &lt;directory&gt; &lt;glob&gt;
+ * HeadlessRenamer export-logs &lt;file&gt; [&lt;from&gt; [&lt;to&gt;]]
+ * </pre>
+ *
+ * The glob is matched against the name of every image file anywhere under the directory, such as
+ * <code>IMG_*.jpg</code>, or against its path from the directory if it has a '/' in it, such as
+ * <code>2019/day1/IMG_*.jpg</code>. The directories are listed one at a time as the tree is walked, and the images
+ * found are handed on in batches, so the whole tree is never held in memory. Images are tagged and reverted with one
+ * worker per processor, unless the BatchRenamer's workers system property says otherwise.
+ *
+ * <br><br>
+ *
+ * The program exits with 0 once everything is done, 1 if any image couldn't be renamed, or 2 if it wasn't run right.
+ */
+public class HeadlessRenamer {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The most images handed on at once, enough to keep every worker busy without holding a whole archive */
+    private static final int BATCH_SIZE = 4096;
+
+    /** The number of images each task handed to the workers goes through, so a task isn't made for every image */
+    private static final int CHUNK_SIZE = 64;
+
+    /** The exit statuses of the program */
+    private static final int OK = 0, FAILED = 1, USAGE = 2;
+
+    private static final String USAGE_TEXT = "Usage:\n"
+            + "  tag <directory> <glob> <tag>...      attach the tags to every matching image and rename it\n"
+            + "  revert <directory> <glob>            rename every matching image back to its name before its\n"
+            + "                                       last logged rename\n"
+            + "  export-logs <file> [<from> [<to>]]   write the logs made between the given times, formatted as\n"
+            + "                                       \"" + ImageLog.TIME_STAMP_FORMAT + "\", to a tab separated file";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Runs the command given by the given arguments, loading the program's data before and saving it after.
+     *
+     * @param args the command and its arguments
+     * @return the exit status
+     */
+    public static int run(String[] args) {
+        if(!isValid(args)){
+            System.out.println(USAGE_TEXT);
+            return USAGE;
+        }
+
+        /* A batch job has the machine to itself, so rename with every processor unless told otherwise */
+        if(System.getProperty(BatchRenamer.WORKERS_PROPERTY) == null){
+            System.setProperty(BatchRenamer.WORKERS_PROPERTY,
+                    String.valueOf(Runtime.getRuntime().availableProcessors()));
+        }
+
+        ImageManager.getInstance().configure();
+        try {
+            switch(args[0]){
+                case "tag":
+                    return tag(new File(args[1]), args[2], Arrays.asList(args).subList(3, args.length));
+                case "revert":
+                    return revert(new File(args[1]), args[2]);
+                default:
+                    return exportLogs(new File(args[1]), Arrays.asList(args).subList(2, args.length));
+            }
+        }
+        catch (IOException e){
+            System.out.println("COULD NOT BE DONE: " + e.getMessage());
+            return FAILED;
+        }
+        finally {
+            ImageManager.getInstance().saveData();
+        }
+    }
+
+    /**
+     * Returns whether the given arguments are a command with the right number of arguments.
+     */
+    private static boolean isValid(String[] args) {
+        if(args.length == 0){
+            return false;
+        }
+
+        switch(args[0]){
+            case "tag":
+                return args.length >= 4;
+            case "revert":
+                return args.length == 3;
+            case "export-logs":
+                return args.length >= 2 && args.length <= 4;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Attaches the tags with the given names to every image under the given directory that matches the given glob,
+     * and renames them, a batch at a time.
+     */
+    private static int tag(File directory, String glob, List<String> tagNames) throws IOException {
+        AtomicInteger renamed = new AtomicInteger(), unchanged = new AtomicInteger(), failed = new AtomicInteger();
+
+        forEachBatch(directory, glob, batch -> {
+            BatchResult result = BatchRenamer.getInstance().tagAndRename(batch, tagNames);
+
+            renamed.addAndGet(result.getRenamed().size());
+            unchanged.addAndGet(result.getUnchanged());
+            failed.addAndGet(result.getFailures().size());
+
+            for(Map.Entry<File, String> failure : result.getFailures().entrySet()){
+                System.out.println("FILE COULD NOT BE RENAMED: " + failure.getKey() + ": " + failure.getValue());
+            }
+        });
+
+        System.out.println("TAGGED: " + renamed + " RENAMED, " + unchanged + " UNCHANGED, " + failed + " FAILED");
+        return failed.get() == 0 ? OK : FAILED;
+    }
+
+    /**
+     * Renames every image under the given directory that matches the given glob back to the name it had before its
+     * last logged rename, a batch at a time. Images without a log of being renamed to their name are left alone.
+     */
+    private static int revert(File directory, String glob) throws IOException {
+        AtomicInteger reverted = new AtomicInteger(), unlogged = new AtomicInteger(), failed = new AtomicInteger();
+        int count = Runtime.getRuntime().availableProcessors();
+        Map<String, ImageLog> lastLogs = lastLogsUnder(directory);
+
+        ExecutorService workers = Executors.newFixedThreadPool(count, r -> {
+            Thread t = new Thread(r, "headless-revert");
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            forEachBatch(directory, glob, batch -> {
+                List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+                for(int start = 0; start < batch.size(); start += CHUNK_SIZE){
+                    List<File> chunk = batch.subList(start, Math.min(batch.size(), start + CHUNK_SIZE));
+
+                    chunks.add(CompletableFuture.runAsync(() -> {
+                        for(File file : chunk){
+                            ImageLog log = lastLogs.get(Image.keyOf(file));
+
+                            if(log == null){
+                                unlogged.incrementAndGet();
+                            }
+                            else if(revertFile(file, log.getOldName())){
+                                reverted.incrementAndGet();
+                            }
+                            else{
+                                failed.incrementAndGet();
+                            }
+                        }
+                    }, workers));
+                }
+
+                CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+            });
+        }
+        finally {
+            workers.shutdown();
+        }
+
+        System.out.println("REVERTED: " + reverted + " RENAMED, " + unlogged + " WITHOUT A LOG, " + failed + " FAILED");
+        return failed.get() == 0 ? OK : FAILED;
+    }
+
+    /**
+     * Reverts the name of the image of the given file to the given name, and reports why if it can't be.
+     */
+    private static boolean revertFile(File file, String oldName) {
+        try {
+            if(Image.of(file).revertName(oldName)){
+                return true;
+            }
+            System.out.println("FILE COULD NOT BE REVERTED: " + file + " TO " + oldName);
+        }
+        catch (IOException e){
+            System.out.println("FILE COULD NOT BE REVERTED: " + file + " TO " + oldName + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Finds the most recent log of every saved image under the given directory being renamed to its name, by the key
+     * of the image, going over the logs once and the images in the TagIndex once. Logs only have the names of files,
+     * so when images in different directories were renamed to the same name, an image is given the last of those logs
+     * that renamed it from one of its own previous names.
+     */
+    private static Map<String, ImageLog> lastLogsUnder(File directory) {
+        Map<String, List<ImageLog>> logsByName = new HashMap<>();
+        for(ImageLog log : ImageLogger.getInstance().getImageLogs()){
+            logsByName.computeIfAbsent(log.getCurrentName(), name -> new ArrayList<>()).add(log);
+        }
+
+        Path root = directory.getAbsoluteFile().toPath().normalize();
+        Map<String, ImageLog> lastLogs = new HashMap<>();
+        TagIndex index = TagIndex.getInstance();
+
+        for(String key : index.keysOf(index.allImages())){
+            Path path = Paths.get(key);
+            List<ImageLog> logs = path.startsWith(root) ? logsByName.get(path.getFileName().toString()) : null;
+            if(logs == null){
+                continue;
+            }
+
+            ImageLog last = logs.get(logs.size() - 1);
+            if(logs.size() > 1){
+                List<String> previousNames = Image.of(path.toFile()).getPreviousFileNames();
+                for(int i = logs.size() - 1; i >= 0; i--){
+                    if(previousNames.contains(logs.get(i).getOldName())){
+                        last = logs.get(i);
+                        break;
+                    }
+                }
+            }
+            lastLogs.put(key, last);
+        }
+        return lastLogs;
+    }
+
+    /**
+     * Writes the logs made between the given times, or every log if no times are given, to the given file, one log a
+     * line with its time stamp, old name and new name separated by tabs.
+     */
+    private static int exportLogs(File file, List<String> times) throws IOException {
+        Collection<ImageLog> logs;
+
+        if(times.isEmpty()){
+            logs = ImageLogger.getInstance().getImageLogs();
+        }
+        else{
+            SimpleDateFormat format = new SimpleDateFormat(ImageLog.TIME_STAMP_FORMAT);
+            try {
+                long from = format.parse(times.get(0)).getTime();
+                long to = times.size() > 1 ? format.parse(times.get(1)).getTime() : Long.MAX_VALUE;
+                logs = ImageManager.getInstance().findLogsBetween(from, to);
+            }
+            catch (ParseException e){
+                System.out.println("TIMES MUST BE FORMATTED AS \"" + ImageLog.TIME_STAMP_FORMAT + "\": " + times);
+                return USAGE;
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("time\told name\tnew name");
+            writer.newLine();
+
+            for(ImageLog log : logs){
+                writer.write(log.getTimeStamp() + "\t" + log.getOldName() + "\t" + log.getCurrentName());
+                writer.newLine();
+            }
+        }
+
+        System.out.println("EXPORTED: " + logs.size() + " LOGS TO " + file);
+        return OK;
+    }
+
+    /**
+     * Walks the tree underneath the given directory and hands the images that match the given glob to the given
+     * action, up to BATCH_SIZE at a time, even from within one directory. Every directory is listed in full before any
+     * of its images are handed on, so an image renamed by the action is never come across again under its new name.
+     */
+    private static void forEachBatch(File directory, String glob, Consumer<List<File>> action) throws IOException {
+        Path root = directory.getAbsoluteFile().toPath().normalize();
+        if(!Files.isDirectory(root)){
+            throw new IOException("There is no directory " + root);
+        }
+
+        PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + glob);
+        boolean byPath = glob.contains("/");
+
+        Deque<File> directories = new ArrayDeque<>();
+        directories.push(root.toFile());
+        List<File> batch = new ArrayList<>();
+
+        while(!directories.isEmpty()){
+            File dir = directories.pop();
+            DirectoryListing listing;
+
+            try {
+                listing = DirectoryListing.list(dir);
+            }
+            catch (IOException | SecurityException e){
+                System.out.println("DIRECTORY COULD NOT BE LISTED: " + dir);
+                continue;
+            }
+
+            /* Push in reverse so the directories are walked in name order, and never follow a link out of the tree */
+            List<File> children = listing.getDirectories();
+            for(int i = children.size() - 1; i >= 0; i--){
+                if(!Files.isSymbolicLink(children.get(i).toPath())){
+                    directories.push(children.get(i));
+                }
+            }
+
+            for(File image : listing.getImages()){
+                Path path = image.toPath();
+                if(matcher.matches(byPath ? root.relativize(path) : path.getFileName())){
+                    batch.add(image);
+                }
+
+                if(batch.size() == BATCH_SIZE){
+                    action.accept(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+
+        if(!batch.isEmpty()){
+            action.accept(batch);
+        }
+    }
+}
@@ -1,13 +1,31 @@
 package photo_renamer;
 
+import photo_renamer.Fingerprints.FingerprintService;
 import photo_renamer.Logging.ImageLogger;
+import photo_renamer.Persistence.DataStore;
+import photo_renamer.Renaming.Move;
+import photo_renamer.Renaming.RenamePlan;
+import photo_renamer.Renaming.RenamePlanner;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,6 +35,20 @@ import java.util.regex.Pattern;
  */
 public class Image implements Serializable {
 
+	/** Kept identical to the id of the original class so that previously saved images can still be loaded */
+	private static final long serialVersionUID = 2312441898849873811L;
+
+	/** The fields images were saved with before their tags were kept as ids, which they are still saved with */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("imageFile", File.class),
+			new ObjectStreamField("attachedTags", List.class),
+			new ObjectStreamField("previousFileNames", List.class),
+			new ObjectStreamField("ogName", String.class)
+	};
+
+	/** The ids of an image with no tags */
+	private static final int[] NO_TAGS = new int[0];
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -27,8 +59,11 @@ public class Image implements Serializable {
     /** The image file associated with this */
 	private File imageFile;
 
-    /** A list of the tags attached to this image */
-	private List<ImageTag> attachedTags;
+    /** The ids of the tags attached to this image (see ImageTag.getId), in the order they were attached */
+	private transient int[] tagIds = NO_TAGS;
+
+	/** The number of tags attached to this image, which are the first tagCount ids */
+	private transient int tagCount;
 
 	/** A list of the previous files names of the image */
 	private List<String> previousFileNames;
@@ -36,9 +71,18 @@ public class Image implements Serializable {
 	/** The original name of the image */
 	private String ogName = "";
 
-	/** A list of all image objects every renamed */
+	/** The image objects renamed or looked up in this run of the program, by the key of their file (see keyOf) */
 	private static Map<String, Image> allImages;
 
+	/** The same images by the identity of their file on the disk, which stays the same when the file is renamed */
+	private static final Map<Object, Image> imagesByFileKey = new ConcurrentHashMap<>();
+
+	/** Where the images saved in previous runs of the program are looked up, one at a time as they are needed */
+	private static DataStore savedImages;
+
+	/** Everything listening for images being renamed */
+	private static final List<ImageRenameListener> renameListeners = new CopyOnWriteArrayList<>();
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -53,12 +97,11 @@ public class Image implements Serializable {
 	 */
 	public Image(File file){
 		this.imageFile = file;
-		this.attachedTags = new ArrayList<>();
 		this.previousFileNames = new ArrayList<>();
 		this.ogName = this.imageFile.getName();
 
 		if(allImages == null){
-			allImages = new HashMap<>();
+			allImages = new ConcurrentHashMap<>();
 		}
 
 		/* If there is a saved version of this Image on disc, then load its tags and previous file names onto this image */
@@ -68,6 +111,30 @@ public class Image implements Serializable {
 		parseTags();
 	}
 
+	/**
+	 * Instantiates an Image that was saved in a previous run of the program, exactly as it was saved.
+	 */
+	private Image(File file, String ogName, List<ImageTag> attachedTags, List<String> previousFileNames){
+		this.imageFile = file;
+		this.ogName = ogName != null ? ogName : file.getName();
+		this.previousFileNames = previousFileNames;
+		setAttachedTags(attachedTags);
+	}
+
+	/**
+	 * Recreates an Image that was saved in a previous run of the program. Unlike the public constructor, nothing is
+	 * looked up or parsed from the file's name.
+	 *
+	 * @param file the image file
+	 * @param ogName the original name of the image
+	 * @param attachedTags the tags attached to the image
+	 * @param previousFileNames the previous file names of the image
+	 * @return the image
+	 */
+	public static Image restore(File file, String ogName, List<ImageTag> attachedTags, List<String> previousFileNames){
+		return new Image(file, ogName, attachedTags, previousFileNames);
+	}
+
 
 	/* ************************************************************************* *
      *                                                                           *
@@ -81,11 +148,50 @@ public class Image implements Serializable {
 	 * @param name the name
 	 */
 	public void addTag(String name){
-		ImageTag tag = new ImageTag(name);
+		int id = ImageTag.of(name).getId();
+
+		if(indexOfTag(id) < 0) {
+			if(tagCount == tagIds.length){
+				tagIds = Arrays.copyOf(tagIds, tagCount + 4);
+			}
+			tagIds[tagCount++] = id;
+			ImageManager.getInstance().imageChanged(this);
+		}
+	}
+
+	/**
+	 * Add the given tags to the list of attached tags, skipping the ones already there. The image is only saved once,
+	 * however many tags are added.
+	 *
+	 * @param names the names of the tags
+	 */
+	public void addTags(Collection<String> names){
+		if(attachTags(names) > 0){
+			ImageManager.getInstance().imageChanged(this);
+		}
+	}
 
-		if(!attachedTags.contains(tag)) {
-			attachedTags.add(tag);
+	/**
+	 * Adds the given tags to the list of attached tags, skipping the ones already there, without saving the image.
+	 *
+	 * @param names the names of the tags
+	 * @return the number of tags added
+	 */
+	private int attachTags(Collection<String> names){
+		int added = 0;
+
+		for (String name : names){
+			int id = ImageTag.of(name).getId();
+
+			if(indexOfTag(id) < 0) {
+				if(tagCount == tagIds.length){
+					tagIds = Arrays.copyOf(tagIds, tagCount + names.size());
+				}
+				tagIds[tagCount++] = id;
+				added++;
+			}
 		}
+		return added;
 	}
 
 	/**
@@ -94,33 +200,100 @@ public class Image implements Serializable {
 	 * @param name the name
 	 */
 	public void deleteTag(String name){
-		for (ImageTag t: attachedTags){
-			if (("@" + name).equals(t.getName())){
-				attachedTags.remove(t);
+		for (int i = 0; i < tagCount; i++){
+			if (ImageTag.byId(tagIds[i]).hasName(name)){
+				System.arraycopy(tagIds, i + 1, tagIds, i, tagCount - i - 1);
+				tagCount--;
+				ImageManager.getInstance().imageChanged(this);
                 return;
-			}	
+			}
+		}
+	}
+
+	/**
+	 * Returns where the tag with the given id is in the ids of the attached tags.
+	 *
+	 * @param id the id of the tag
+	 * @return the index of the id, or -1 if the tag isn't attached
+	 */
+	private int indexOfTag(int id){
+		for (int i = 0; i < tagCount; i++){
+			if (tagIds[i] == id){
+				return i;
+			}
 		}
+		return -1;
 	}
 
 	/**
 	 * Rename the image file with the attachedTags appended to it.
 	 *
+	 * @throws IOException if the file couldn't be renamed, in which case the image is left as it was
 	 */
-	public boolean renameFile(){
+	public void renameFile() throws IOException{
+		File oldFile = imageFile;
+		String oldName = moveFile(getTaggedName());
 
-		/* Add current file name to list of previousFileNames */
-		if(!previousFileNames.contains(getName())){
-			previousFileNames.add(getName());
+		/* Create a log of the rename */
+		ImageLogger.getInstance().addLog(oldName, getName());
+
+		fireRenamed(oldFile, imageFile);
+	}
+
+	/**
+	 * Returns the name the image file gets when it is renamed: its original name with the attachedTags appended to it.
+	 *
+	 * @return the new name of the file
+	 */
+	public String getTaggedName(){
+		List<String> tagNames = new ArrayList<>(tagCount);
+		for (int i = 0; i < tagCount; i++){
+			tagNames.add(ImageTag.byId(tagIds[i]).getName());
+		}
+		return taggedName(tagNames);
+	}
+
+	/**
+	 * Returns the name the image file would get if the tags with the given names were attached to it as well, without
+	 * attaching them. A batch works out every new name this way, and only attaches the tags to the images whose files
+	 * it renamed.
+	 *
+	 * @param names the names of the tags that would be attached
+	 * @return the new name of the file
+	 */
+	public String getTaggedName(Collection<String> names){
+		List<String> tagNames = new ArrayList<>(tagCount + names.size());
+		for (int i = 0; i < tagCount; i++){
+			tagNames.add(ImageTag.byId(tagIds[i]).getName());
 		}
 
+		/* Tags are only made once the file is renamed, so go by the names, skipping the tags already attached and
+		* names given twice */
+		for (String name : names){
+			String prefixed = ImageTag.prefixed(name);
+			if(!tagNames.contains(prefixed)){
+				tagNames.add(prefixed);
+			}
+		}
+		return taggedName(tagNames);
+	}
+
+	/**
+	 * Returns the original name of the image with the given tag names appended to it.
+	 *
+	 * @param tagNames the names of the tags, with their '@' prefixes
+	 * @return the new name of the file
+	 */
+	private String taggedName(List<String> tagNames){
+
 		/* Create a str with all the attached tags in it */
 		String addedTags = "";
-		for (ImageTag tag: attachedTags){
-			addedTags += tag.getName() + " ";
+		for (String tagName : tagNames){
+			addedTags += tagName + " ";
 		}
 
 		/* Get the new name of the file with the addedTags appended to the end of it */
-		String newName = ogName.contains("@") ? (ogName.substring(0, ogName.indexOf('@')).trim()
+		return ogName.contains("@") ? (ogName.substring(0, ogName.indexOf('@')).trim()
 										  + " "
 										  + addedTags.trim()).trim()
 				                          + ogName.substring(ogName.indexOf('.'))
@@ -129,68 +302,214 @@ public class Image implements Serializable {
 										  + " "
 										  + addedTags.trim()).trim()
 										  + ogName.substring(ogName.indexOf('.'));
+	}
+
+	/**
+	 * Renames the image file to the given name in its directory and keeps track of the image under its new file, like
+	 * renameFile does, but leaves logging the rename and telling the rename listeners about it to the caller. The file
+	 * is never moved over another file. A batch of images plans the moves of all their files together instead, and then
+	 * calls fileMoved on each image.
+	 *
+	 * @param newName the new name of the file
+	 * @return the name to log as the old name of the image
+	 * @throws IOException if the file couldn't be renamed, in which case the image is left as it was
+	 */
+	public String moveFile(String newName) throws IOException{
 
 		/* Create a new file with the new name and path to the image file being renamed */
 		String newPath = imageFile.getAbsolutePath().substring(0, imageFile.getAbsolutePath()
 				                  .lastIndexOf(File.separator)) + File.separator;
 		File fileWithName = new File(newPath + newName);
 
-		/* Rename the image. If the rename is successful, then update the current reference to the image file to the
-		* newly named file */
-        if(imageFile.renameTo(fileWithName)){
+		/* Rename the image. If the rename fails, the image is left as it was */
+		moveOnDisk(imageFile, fileWithName);
+		return fileMoved(fileWithName);
+	}
 
-            /* Since the file variable still refers to old file name+path, must change it to the new file name+path */
-			imageFile = fileWithName;
+	/**
+	 * Attaches the tags with the given names to the image and updates it after its file was moved to the given file,
+	 * like fileMoved, saving the image only once for both. A batch attaches its tags this way once the file of the
+	 * image is renamed, so an image whose file couldn't be renamed is left with the tags it had.
+	 *
+	 * @param newFile the file the image file was moved to
+	 * @param tagNames the names of the tags the new name of the file was given
+	 * @return the name to log as the old name of the image
+	 */
+	public String fileMoved(File newFile, Collection<String> tagNames){
+		attachTags(tagNames);
+		return fileMoved(newFile);
+	}
+
+	/**
+	 * Updates the image after its file was moved to the given file, such as by a RenamePlan carrying out the renames of
+	 * a batch, and keeps track of the image under its new file. The rename isn't logged.
+	 *
+	 * @param newFile the file the image file was moved to
+	 * @return the name to log as the old name of the image
+	 */
+	public String fileMoved(File newFile){
 
-			/* Create a log of the rename */
-            ImageLogger.getInstance().addLog(previousFileNames.get(previousFileNames.size() - 1), newName);
+		/* Add current file name to list of previousFileNames */
+		if(!previousFileNames.contains(getName())){
+			previousFileNames.add(getName());
+		}
 
-			/* Since the rename was successful, we want to keep track of this image and its tags, so we add it to a
-			* list of Images that will persist even after the program closes. */
-			addImage(this);
-            return true;
-        }
-        /* If the rename fails, return false. */
-        else {
-            return false;
-        }
+        /* Since the file variable still refers to old file name+path, must change it to the new file name+path */
+        File oldFile = imageFile;
+		imageFile = newFile;
+		FingerprintService.getInstance().fileMoved(oldFile, newFile);
+
+		/* Since the rename was successful, we want to keep track of this image and its tags, so we add it to a
+		* list of Images that will persist even after the program closes. */
+		track(this, oldFile);
+		ImageManager.getInstance().imageChanged(this);
+
+		return previousFileNames.get(previousFileNames.size() - 1);
 	}
 
 	/**
 	 * Reverts the name of the Image to the given name as long as it is one of the previous names of the image ifle.
 	 *
 	 * @param name the previous name to revert to
+	 * @return true if the name was reverted, false if it isn't one of the previous names of the image
+	 * @throws IOException if the file couldn't be renamed, in which case the image is left as it was
 	 */
-	public boolean revertName(String name){
+	public boolean revertName(String name) throws IOException{
 
 		if(previousFileNames.contains(name)){
 			String newPath = imageFile.getAbsolutePath().substring(0, imageFile.getAbsolutePath().lastIndexOf(File.separator)) + File.separator;
 			File fileWithName = new File(newPath + name);
 
              /* Since the file variable still refers to old file name+path, must change it to the new file name+path */
-			if(imageFile.renameTo(fileWithName)){
-				imageFile = fileWithName;
-				return true;
-			}
-			else {
-				return false;
+			File oldFile = imageFile;
+			moveOnDisk(imageFile, fileWithName);
+			imageFile = fileWithName;
+			FingerprintService.getInstance().fileMoved(oldFile, fileWithName);
+
+			/* Keep track of the image under its new file, if it was being kept track of */
+			if(allImages.get(keyOf(oldFile)) == this){
+				track(this, oldFile);
 			}
+			ImageManager.getInstance().imageChanged(this);
+			fireRenamed(oldFile, fileWithName);
+			return true;
 		}
 
 		return false;
 	}
 
+	/**
+	 * Moves the given file to the other given file with a RenamePlan, which fails rather than write over a file that is
+	 * already there.
+	 *
+	 * @param from the file to move
+	 * @param to where to move it
+	 * @throws IOException if the file would write over another one, or couldn't be moved
+	 */
+	private static void moveOnDisk(File from, File to) throws IOException{
+		RenamePlan plan = RenamePlanner.plan(Collections.singletonList(new Move(from.toPath(), to.toPath())));
+
+		if(!plan.getConflicts().isEmpty()){
+			throw new IOException(plan.getConflicts().values().iterator().next());
+		}
+		plan.apply();
+	}
+
+	/**
+	 * Returns the image kept track of under the given file, so that changes to it are seen everywhere the image is
+	 * used, or a new Image of the file if none is kept track of.
+	 *
+	 * @param file the image file
+	 * @return the image
+	 */
+	public static Image of(File file){
+		Image image = allImages != null ? allImages.get(keyOf(file)) : null;
+		return image != null ? image : new Image(file);
+	}
+
 	/**
 	 * If this image was saved in a previous run of the program, then load those saved image's attached tags and previous
-	 * file names lists onto this image.
+	 * file names lists onto this image. This image is kept track of in place of the saved one from then on.
 	 */
 	private void loadSavedImage(){
 
-		String key = getName();
+		Image saved = findSavedImage(imageFile);
+
+		if(saved != null){
+			previousFileNames = saved.getPreviousFileNames();
+			tagIds = Arrays.copyOf(saved.tagIds, saved.tagCount);
+			tagCount = saved.tagCount;
+
+			File savedFile = saved.getFile();
+			track(saved, savedFile);
+
+			/* The file was renamed by something other than this program, so save the image under its new file */
+			if(savedFile != null && !keyOf(savedFile).equals(keyOf(imageFile))){
+				ImageManager.getInstance().imageChanged(this);
+			}
+		}
+	}
+
+	/**
+	 * Finds the saved image of the given file. The image is looked for by the path of the file, then by the identity
+	 * of the file on the disk in case it was renamed by something other than this program, and then in the store.
+	 *
+	 * @param file the image file
+	 * @return the saved image, or null if there is none
+	 */
+	private static Image findSavedImage(File file){
+		String key = keyOf(file);
+		Image saved = allImages.get(key);
+		if(saved != null){
+			return saved;
+		}
+
+		/* Only the same file if the file the image had is gone, rather than being another link to the same data */
+		Object fileKey = fileKeyOf(file);
+		if(fileKey != null){
+			saved = imagesByFileKey.get(fileKey);
+			if(saved != null && !saved.getFile().exists()){
+				return saved;
+			}
+		}
+
+		if(savedImages == null){
+			return null;
+		}
+
+		saved = savedImages.findImage(key);
+		if(saved == null){
+
+			/* Images used to be saved under their name alone, so only trust one saved that way if it is this file */
+			Image byName = savedImages.findImage(file.getName());
+			if(byName != null && byName.getFile() != null && keyOf(byName.getFile()).equals(key)){
+				saved = byName;
+			}
+		}
+		return saved;
+	}
+
+	/**
+	 * Keeps track of this image under its file, in place of the given image that was kept track of under the given
+	 * file. If that file was another one, the image saved under it is removed.
+	 *
+	 * @param previous the image kept track of before
+	 * @param previousFile the file it was kept track of under
+	 */
+	private void track(Image previous, File previousFile){
+		String key = keyOf(imageFile);
+		allImages.put(key, this);
 
-		if(allImages.containsKey(key)){
-			previousFileNames = allImages.get(key).getPreviousFileNames();
-			attachedTags = allImages.get(key).getAttachedTags();
+		Object fileKey = fileKeyOf(imageFile);
+		if(fileKey != null){
+			imagesByFileKey.put(fileKey, this);
+		}
+
+		if(previousFile != null){
+			String previousKey = keyOf(previousFile);
+			if(!previousKey.equals(key) && allImages.remove(previousKey, previous)){
+				ImageManager.getInstance().imageMoved(previousKey, key);
+			}
 		}
 	}
 
@@ -207,17 +526,90 @@ public class Image implements Serializable {
 		}
 	}
 
+
+	/**
+	 * Tells everything listening for renames that this image's file was renamed.
+	 *
+	 * @param oldFile the file before the rename
+	 * @param newFile the file after the rename
+	 */
+	private void fireRenamed(File oldFile, File newFile){
+		for (ImageRenameListener listener : renameListeners){
+			listener.imageRenamed(this, oldFile, newFile);
+		}
+	}
+
+	/**
+	 * Tells everything listening for renames that the files of a batch of images were renamed together.
+	 *
+	 * @param renames the renames, in the order they were done
+	 */
+	public static void fireRenamed(List<RenamedImage> renames){
+		if(renames.isEmpty()){
+			return;
+		}
+
+		for (ImageRenameListener listener : renameListeners){
+			listener.imagesRenamed(renames);
+		}
+	}
+
+	/**
+	 * Adds a listener that is told every time an image's file is renamed or reverted.
+	 *
+	 * @param listener the listener to add
+	 */
+	public static void addRenameListener(ImageRenameListener listener){
+		renameListeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with addRenameListener.
+	 *
+	 * @param listener the listener to remove
+	 */
+	public static void removeRenameListener(ImageRenameListener listener){
+		renameListeners.remove(listener);
+	}
+
+	/**
+	 * Returns the key images are saved under: the absolute path of their file, so images with the same name in
+	 * different folders are kept apart.
+	 *
+	 * @param file the image file
+	 * @return the key of the file
+	 */
+	public static String keyOf(File file){
+		return file.getAbsoluteFile().toPath().normalize().toString();
+	}
+
 	/**
-	 * Adds the given image to the list of all images ever renamed.
+	 * Returns the identity of the given file on the disk (such as its inode), which stays the same when the file is
+	 * renamed or moved within its file system.
 	 *
-	 * @param image the image to add
+	 * @param file the file
+	 * @return the identity of the file, or null if the file system doesn't have one or the file can't be read
 	 */
-	private void addImage(Image image){
-		if(!allImages.containsKey(image.getName())){
-			allImages.put(image.getName(), image);
+	private static Object fileKeyOf(File file){
+		try {
+			return Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+		}
+		catch (IOException e){
+			return null;
 		}
 	}
 
+	/**
+	 * Checks if the given file name has the extension of an image type the program can rename.
+	 *
+	 * @param fileName the name of the file
+	 * @return true if the file is a png, jpg, or jpeg
+	 */
+	public static boolean isImageFile(String fileName){
+		String fileType = fileName.substring(fileName.indexOf('.') + 1).toLowerCase();
+		return fileType.equals("png") || fileType.equals("jpg") || fileType.equals("jpeg");
+	}
+
 
 	/* ************************************************************************* *
      *                                                                           *
@@ -235,12 +627,13 @@ public class Image implements Serializable {
     }
 
 	/**
-	 * Gets attached tags.
+	 * Gets attached tags, in the order they were attached. The list can't be changed, and doesn't change when tags are
+	 * added to or deleted from the image afterwards.
 	 *
 	 * @return the attached tags
 	 */
 	public List<ImageTag> getAttachedTags() {
-		return attachedTags;
+		return new TagList(Arrays.copyOf(tagIds, tagCount));
 	}
 
 	/**
@@ -249,7 +642,17 @@ public class Image implements Serializable {
 	 * @param attachedTags the attached tags
 	 */
 	public void setAttachedTags(List<ImageTag> attachedTags) {
-		this.attachedTags = attachedTags;
+		tagIds = NO_TAGS;
+		tagCount = 0;
+
+		if(attachedTags != null){
+			tagIds = new int[attachedTags.size()];
+			for(ImageTag tag : attachedTags){
+				if(indexOfTag(tag.getId()) < 0){
+					tagIds[tagCount++] = tag.getId();
+				}
+			}
+		}
 	}
 
 	/**
@@ -270,6 +673,26 @@ public class Image implements Serializable {
 		this.imageFile = file;
 	}
 
+	/**
+	 * Gets the fingerprint of the contents of the image file, which is the same for every copy of the image no matter
+	 * what it is named. The fingerprint is computed in the background the first time, and only looked up afterwards
+	 * for as long as the file doesn't change.
+	 *
+	 * @return the fingerprint
+	 */
+	public CompletableFuture<Long> getFingerprint() {
+		return FingerprintService.getInstance().fingerprint(imageFile);
+	}
+
+	/**
+	 * Gets the original name of the image, before it was ever renamed by the program.
+	 *
+	 * @return the original name
+	 */
+	public String getOgName() {
+		return ogName;
+	}
+
 	/**
 	 * Gets previous file names.
 	 *
@@ -293,6 +716,75 @@ public class Image implements Serializable {
 	}
 
 	public static void setAllImages(Map<String, Image> allImages) {
-		Image.allImages = allImages;
+		Image.allImages = new ConcurrentHashMap<>(allImages);
+		imagesByFileKey.clear();
+
+		for(Image image : allImages.values()){
+			Object fileKey = fileKeyOf(image.getFile());
+			if(fileKey != null){
+				imagesByFileKey.put(fileKey, image);
+			}
+		}
+	}
+
+	public static DataStore getSavedImages() {
+		return savedImages;
+	}
+
+	public static void setSavedImages(DataStore savedImages) {
+		Image.savedImages = savedImages;
+	}
+
+
+	/* ************************************************************************* *
+     *                                                                           *
+     * Serialization                                                             *
+     *                                                                           *
+     * ************************************************************************  */
+
+	/**
+	 * Saves the image with its tags as a list of ImageTags, the way images have always been saved.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("imageFile", imageFile);
+		fields.put("attachedTags", new ArrayList<>(getAttachedTags()));
+		fields.put("previousFileNames", previousFileNames);
+		fields.put("ogName", ogName);
+		out.writeFields();
+	}
+
+	/**
+	 * Loads an image saved by writeObject, or by any version of the program before it.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		imageFile = (File) fields.get("imageFile", null);
+		previousFileNames = (List<String>) fields.get("previousFileNames", null);
+		ogName = (String) fields.get("ogName", "");
+		setAttachedTags((List<ImageTag>) fields.get("attachedTags", null));
+	}
+
+	/**
+	 * The tags with the given ids, looked up as they are read.
+	 */
+	private static class TagList extends AbstractList<ImageTag> implements RandomAccess {
+
+		private final int[] ids;
+
+		private TagList(int[] ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public ImageTag get(int index) {
+			return ImageTag.byId(ids[index]);
+		}
+
+		@Override
+		public int size() {
+			return ids.length;
+		}
 	}
 }
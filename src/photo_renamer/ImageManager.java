@@ -2,11 +2,16 @@ package photo_renamer;
 
 import photo_renamer.Logging.ImageLog;
 import photo_renamer.Logging.ImageLogger;
+import photo_renamer.Persistence.DataStore;
+import photo_renamer.Persistence.FileDataStore;
+import photo_renamer.Persistence.JdbcDataStore;
+import photo_renamer.Persistence.StoreSnapshot;
+import photo_renamer.Tags.TagIndex;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Manages and administrates the program to make sure it is running properly.
@@ -14,6 +19,29 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 public class ImageManager {
 
 
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** Which store the program's data is saved in: "file" for files in the working directory, or "jdbc" for a database */
+    private static final String STORE_TYPE = System.getProperty("photorenamer.store", "file");
+
+    /** The JDBC url of the database, when the data is saved in a database */
+    private static final String JDBC_URL = System.getProperty("photorenamer.jdbc.url", JdbcDataStore.DEFAULT_URL);
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The store every change is saved to, null until the program is configured */
+    private DataStore store;
+
+
     /* ************************************************************************* *
      *                                                                           *
      * Constructors                                                              *
@@ -36,20 +64,45 @@ public class ImageManager {
     /**
      * Configure the program to:
      *
-     * - Load image objects, image logs, and image tags data
+     * - Open the store the program's data is saved in, a database if one was asked for and can be opened, or files
+     *   in the working directory otherwise
+     * - Load image logs and image tags data, leaving image objects in the store to be looked up as they are needed
+     * - Index which saved images every tag is attached to, the first time the index is used
+     * - Save every change to the store as it happens
      */
     public void configure(){
-        File imageObjs = new File("." + File.separator + "imageobjs.ser");
-        File imageLogs = new File("." + File.separator + "imagelogs.ser");
-        File imageTags = new File("." + File.separator + "imagetags.ser");
-
-        if(imageObjs.exists() && imageLogs.exists() && imageTags.exists()) {
-            loadData();
-            System.out.println("FILES LOADED");
+        File dir = new File(".");
+        DataStore opened = null;
+        StoreSnapshot snapshot = null;
+
+        if(STORE_TYPE.equals("jdbc")){
+            opened = new JdbcDataStore(JDBC_URL, dir);
+
+            try {
+                snapshot = opened.load(ImageTag::named);
+            }
+            catch (IOException e){
+                System.out.println("DATABASE COULD NOT BE OPENED, USING FILES: " + e.getMessage());
+            }
         }
-        else{
-            System.out.println("NO FILES LOADED");
+
+        if(snapshot == null){
+            opened = new FileDataStore(dir);
+
+            try {
+                snapshot = opened.load(ImageTag::named);
+            }
+            catch (IOException e){
+                System.out.println("FILES COULD NOT BE LOADED: " + e.getMessage());
+                snapshot = new StoreSnapshot(null, null, null);
+            }
         }
+
+        apply(snapshot);
+        Image.setSavedImages(opened);
+        store = opened;
+
+        TagIndex.getInstance().buildFrom(opened::forEachImage);
     }
 
     /**
@@ -58,74 +111,126 @@ public class ImageManager {
      * - All the images objects ever created due to renaming a file
      * - All the image logs ever created
      * - The current list of tags the user has used
+     *
+     * Every change has already been saved to the store as it happened, so this only makes sure the store is done
+     * writing them before it is closed.
      */
     public void saveData(){
+        if(store != null){
+            store.close(new StoreSnapshot(Image.getAllImages(), ImageLogger.getInstance().getImageLogs(),
+                    ImageTag.getAllTags()));
+            store = null;
+        }
+    }
 
-        OutputStream file;
-        ObjectOutputStream out;
-
-        try {
-            /* Save the list containing all the image objects*/
-            file = new FileOutputStream("." + File.separator + "imageobjs.ser");
-            out = new ObjectOutputStream(new BufferedOutputStream(file));
-            out.writeObject(Image.getAllImages());
-            out.close();
-        }catch (Exception e){}
-
-        try {
-            /* Save queue containing all the image logs */
-            file = new FileOutputStream("." + File.separator + "imagelogs.ser");
-            out = new ObjectOutputStream(new BufferedOutputStream(file));
-            out.writeObject(ImageLogger.getInstance().getImageLogs());
-            out.close();
-        }catch (Exception e){}
-
-        try {
-            /* Save the list containing all the image tags */
-            file = new FileOutputStream("." + File.separator + "imagetags.ser");
-            out = new ObjectOutputStream(new BufferedOutputStream(file));
-            out.writeObject(ImageTag.getAllTags());
-            out.close();
-        }catch (Exception e){}
+    /**
+     * Replaces the program's logs and tags with the ones in the given snapshot, and starts over the images of this
+     * run of the program.
+     *
+     * @param snapshot the data to use
+     */
+    private void apply(StoreSnapshot snapshot){
+        Image.setAllImages(snapshot.getImages());
+        ImageLogger.getInstance().setImageLogs(snapshot.getLogs());
+        ImageTag.setAllTagsList(snapshot.getTags());
     }
 
     /**
-     * Loads the following data:
+     * Looks up every log made in the given span of time.
      *
-     * - All the images objects ever created due to renaming a file
-     * - All the image logs ever created
-     * - The current list of tags the user has used
+     * @param from the start of the span in milliseconds since the epoch, inclusive
+     * @param to the end of the span in milliseconds since the epoch, exclusive
+     * @return the logs, oldest first
      */
-    public void loadData(){
-
-        InputStream file;
-        ObjectInputStream in;
-
-        try {
-            /* Load file containing the list of all the image objects */
-            file = new FileInputStream("." + File.separator + "imageobjs.ser");
-            in = new ObjectInputStream(new BufferedInputStream(file));
-            Image.setAllImages((HashMap<String, Image>) in.readObject());
-            in.close();
-        }catch (Exception e) {}
-
-        try {
-            /* Load the file containing all the image logs */
-            file = new FileInputStream("." + File.separator + "imagelogs.ser");
-            in = new ObjectInputStream(new BufferedInputStream(file));
-            ImageLogger.getInstance().setImageLogs((ConcurrentLinkedDeque<ImageLog>) in.readObject());
-            in.close();
-        }catch (Exception e){}
-
-        try {
-            /* Load the file containing all the image tags */
-            file = new FileInputStream("." + File.separator + "imagetags.ser");
-            in = new ObjectInputStream(new BufferedInputStream(file));
-            ImageTag.setAllTagsList((ArrayList<ImageTag>) in.readObject());
-            in.close();
-        }catch (Exception e){}
+    public List<ImageLog> findLogsBetween(long from, long to){
+        return store == null ? new ArrayList<>() : store.findLogsBetween(from, to);
     }
 
+    /**
+     * Saves the state of the given image to the store and the tag index, if it is one of the images being kept track
+     * of.
+     *
+     * @param image the image that changed
+     */
+    public void imageChanged(Image image){
+        Map<String, Image> allImages = Image.getAllImages();
+        String key = Image.keyOf(image.getFile());
+
+        if(allImages == null || allImages.get(key) != image){
+            return;
+        }
+
+        if(store != null){
+            store.imageSaved(key, image);
+        }
+
+        List<String> tagNames = new ArrayList<>();
+        for(ImageTag tag : image.getAttachedTags()){
+            tagNames.add(tag.getName());
+        }
+        TagIndex.getInstance().imageTagged(key, tagNames);
+    }
+
+    /**
+     * Removes the image saved under the given key from the store after the image moved to another key, and moves it in
+     * the tag index.
+     *
+     * @param oldKey the key the image was saved under
+     * @param newKey the key the image is kept track of under now
+     */
+    public void imageMoved(String oldKey, String newKey){
+        /* The index is moved first, so that if this builds it, the image is still in the store under its old key */
+        TagIndex.getInstance().imageMoved(oldKey, newKey);
+        if(store != null){
+            store.imageRemoved(oldKey);
+        }
+    }
+
+    /**
+     * Saves the given image log to the store.
+     *
+     * @param log the log that was made
+     */
+    public void logAdded(ImageLog log){
+        if(store != null){
+            store.logAdded(log);
+        }
+    }
+
+    /**
+     * Saves the given logs, made together by a batch of renames, to the store at once.
+     *
+     * @param logs the logs that were made
+     */
+    public void logsAdded(List<ImageLog> logs){
+        if(store != null){
+            store.logsAdded(logs);
+        }
+    }
+
+    /**
+     * Saves to the store that the given tag was added to the list of all tags.
+     *
+     * @param tag the tag that was added
+     */
+    public void tagCreated(ImageTag tag){
+        if(store != null){
+            store.tagCreated(tag.getName());
+        }
+    }
+
+    /**
+     * Saves to the store that the tag with the given name was removed from the list of all tags.
+     *
+     * @param tagName the name of the tag, without the '@' prefix
+     */
+    public void tagDeleted(String tagName){
+        if(store != null){
+            store.tagDeleted(tagName);
+        }
+    }
+
+
     /* ************************************************************************* *
      *                                                                           *
      * Singleton Setup                                                           *
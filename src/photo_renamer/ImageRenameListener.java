@@ -0,0 +1,33 @@
+package photo_renamer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Listens for image files being renamed (or reverted) through an Image.
+ */
+@FunctionalInterface
+public interface ImageRenameListener {
+
+    /**
+     * Called after the file of the given image was successfully renamed. Called on whichever thread did the rename.
+     *
+     * @param image the image that was renamed
+     * @param oldFile the file of the image before the rename
+     * @param newFile the file of the image after the rename
+     */
+    void imageRenamed(Image image, File oldFile, File newFile);
+
+    /**
+     * Called once after a batch of image files were renamed together, in place of calling imageRenamed for each of
+     * them, so the whole batch can be taken in at once. Unless overridden, calls imageRenamed for each rename in turn.
+     * Called on whichever thread did the batch.
+     *
+     * @param renames the renames, in the order they were done
+     */
+    default void imagesRenamed(List<RenamedImage> renames) {
+        for(RenamedImage rename : renames){
+            imageRenamed(rename.getImage(), rename.getOldFile(), rename.getNewFile());
+        }
+    }
+}
@@ -1,14 +1,58 @@
 package photo_renamer;
 
+import photo_renamer.Tags.TagIndex;
+
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a tag attached to an image with an @ prefix.
+ *
+ * <br><br>
+ *
+ * There is only ever one ImageTag with a given name. Tags are interned in a registry by their names, both with and
+ * without the '@' prefix, so looking a tag up takes the same time no matter how many tags there are and doesn't make
+ * a new string, and every image with a tag shares the one object. The list of all tags the user has used is kept in the order the tags were added, and any thread can read or
+ * change it at once.
+ *
+ * <br><br>
+ *
+ * Every tag is also given a small int id when it is made, which images keep in place of the tag itself. The ids are
+ * handed out in the order tags are made in this run of the program, so they are never saved; names are.
  */
 public class ImageTag implements Serializable{
 
+    private static final long serialVersionUID = 4232052695573068656L;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /* Every tag ever made, whether or not it is in the list of all tags, by its name with and without the '@' prefix */
+    private static final ConcurrentMap<String, ImageTag> registry = new ConcurrentHashMap<>();
+
+    /* Every tag ever made, by its id, in the first tagCount elements */
+    private static volatile ImageTag[] tagsById = new ImageTag[64];
+
+    /* The number of tags ever made, which is the id of the next one */
+    private static int tagCount;
+
+    /* All the tags the user has used, by the order they were added in */
+    private static final ConcurrentNavigableMap<Long, ImageTag> allTags = new ConcurrentSkipListMap<>();
+
+    /* The place the next tag added to the list of all tags goes in */
+    private static final AtomicLong nextPlace = new AtomicLong();
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -16,9 +60,13 @@ public class ImageTag implements Serializable{
      *                                                                           *
      * ************************************************************************  */
 
-    /* All the tags ever used */
-    private static List<ImageTag> allTags;
-    private String name;
+    private final String name;
+
+    /* The id of this tag, given out when it was made */
+    private final transient int id;
+
+    /* The place of this tag in the list of all tags, or -1 if it isn't in the list */
+    private transient long place = -1;
 
 
     /* ************************************************************************* *
@@ -28,24 +76,95 @@ public class ImageTag implements Serializable{
      * ************************************************************************  */
 
     /**
-     * Creates a tag with the '@' symbol prefixed to the name. Adds the tag to the list of all the tags if it isn't
-     * already there.
+     * Creates a tag with the given name, which is already prefixed with '@'. Only the registry makes tags.
      *
      * @param name the name of the tag
+     * @param id the id of the tag
      */
-    public ImageTag(String name){
+    private ImageTag(String name, int id){
+        this.name = name;
+        this.id = id;
+    }
 
-        /* Prefix the name with '@' symbol, and make sure it isn't already in the passed in name */
-        this.name =  "@" + name.replace("@", "");
+    /**
+     * Returns the tag with the given name, and adds it to the list of all the tags if it isn't already there.
+     *
+     * @param name the name of the tag, with or without its '@' prefix
+     * @return the tag
+     */
+    public static ImageTag of(String name){
+        ImageTag tag = named(name);
 
-        if(allTags == null){
-            allTags = new ArrayList<>();
+        /* If the tag isn't empty and it isn't already in the list, add it to the list of all tags */
+        if(!tag.name.equals("@") && tag.list()){
+            ImageManager.getInstance().tagCreated(tag);
         }
+        return tag;
+    }
 
-        /* If the tag isn't empty and it isn't already in the list, add it to the list of all tags */
-        if(!name.equals("") && !allTags.contains(this)) {
-            allTags.add(this);
+    /**
+     * Returns the tag with the given name without adding it to the list of all the tags, for a tag that is attached
+     * to saved images but may have been deleted from the list.
+     *
+     * @param name the name of the tag, with or without its '@' prefix
+     * @return the tag
+     */
+    public static ImageTag named(String name){
+        ImageTag tag = find(name);
+        if(tag != null){
+            return tag;
         }
+
+        tag = registry.computeIfAbsent(prefixed(name), ImageTag::create);
+        registry.putIfAbsent(tag.name.substring(1), tag);
+        return tag;
+    }
+
+    /**
+     * Returns the tag with the given name if it has been made, without making it. A name with no '@' in it, or with
+     * only its '@' prefix, is looked up as it is.
+     *
+     * @param name the name of the tag, with or without its '@' prefix
+     * @return the tag, or null if no tag has the name
+     */
+    public static ImageTag find(String name){
+        int at = name.lastIndexOf('@');
+        return registry.get(at <= 0 ? name : prefixed(name));
+    }
+
+    /**
+     * Returns the given name with an '@' prefix and no other '@' in it, which is the name a tag made from it has.
+     *
+     * @param name the name of a tag, with or without its '@' prefix
+     * @return the name with its prefix
+     */
+    public static String prefixed(String name){
+        return name.lastIndexOf('@') == 0 ? name : "@" + name.replace("@", "");
+    }
+
+    /**
+     * Returns the tag with the given id.
+     *
+     * @param id the id of the tag
+     * @return the tag
+     * @throws ArrayIndexOutOfBoundsException if no tag has the id
+     */
+    public static ImageTag byId(int id){
+        return tagsById[id];
+    }
+
+    /**
+     * Makes a new tag with the next id. Only called by the registry, once for every name.
+     */
+    private static synchronized ImageTag create(String name){
+        ImageTag tag = new ImageTag(name, tagCount);
+
+        ImageTag[] tags = tagCount == tagsById.length ? Arrays.copyOf(tagsById, tagCount * 2) : tagsById;
+        tags[tagCount++] = tag;
+
+        /* Writing the array back publishes the new tag to the threads looking tags up by id */
+        tagsById = tags;
+        return tag;
     }
 
 
@@ -56,18 +175,58 @@ public class ImageTag implements Serializable{
      * ************************************************************************  */
 
     /**
-     * Deletes all occurences of tagName inside the list of all tags
+     * Adds this tag to the end of the list of all the tags if it isn't already there.
      *
-     * @param tagName the tag name
+     * @return true if the tag was added
+     */
+    private synchronized boolean list(){
+        if(place >= 0){
+            return false;
+        }
+
+        place = nextPlace.getAndIncrement();
+        allTags.put(place, this);
+        return true;
+    }
+
+    /**
+     * Removes this tag from the list of all the tags.
+     *
+     * @return true if the tag was in the list
+     */
+    private synchronized boolean unlist(){
+        if(place < 0){
+            return false;
+        }
+
+        allTags.remove(place, this);
+        place = -1;
+        return true;
+    }
+
+    /**
+     * Deletes the tag with the given name from the list of all tags. The tag stays attached to any images it is
+     * attached to.
+     *
+     * @param tagName the tag name, without its '@' prefix
      */
     public static void deleteTag(String tagName){
-        for(int i = 0; i < allTags.size(); i++){
-            if(allTags.get(i).getName().equals("@" + tagName)){
-                allTags.remove(i);
-            }
+        ImageTag tag = find(tagName);
+
+        if(tag != null && tag.unlist()){
+            ImageManager.getInstance().tagDeleted(tagName);
         }
     }
 
+    /**
+     * Keeps the tag read from a serialized file the one and only tag with its name.
+     *
+     * @return the registered tag with this tag's name
+     */
+    private Object readResolve(){
+        return named(name);
+    }
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -85,36 +244,65 @@ public class ImageTag implements Serializable{
     }
 
     /**
-     * Sets image tag name.
+     * Gets the id of the tag, which is only the same for as long as the program runs.
      *
-     * @param name the name
+     * @return the id
      */
-    public void setName(String name) {
-        this.name = name;
+    public int getId() {
+        return id;
     }
 
     /**
-     * Gets all tags.
+     * Returns whether this tag is in the list of all the tags.
+     *
+     * @return true if the tag is listed
+     */
+    public boolean isListed() {
+        return place >= 0;
+    }
+
+    /**
+     * Returns the number of saved images this tag is attached to, from the tag index.
+     *
+     * @return the number of images
+     */
+    public int getUsageCount() {
+        return TagIndex.getInstance().count(name);
+    }
+
+    /**
+     * Gets all tags, in the order they were added. The list is a copy, so changing it doesn't change the tags.
      *
      * @return the all tags
      */
     public static List<ImageTag> getAllTags() {
-        return allTags;
+        return new ArrayList<>(allTags.values());
     }
 
     /**
-     * Sets all tags list to a new list.
+     * Replaces the list of all tags with the given tags, in the given order.
      *
-     * @param allTags the all tags
+     * @param tags the all tags
      */
-    public static void setAllTagsList(List<ImageTag> allTags) {
-        ImageTag.allTags = allTags;
+    public static void setAllTagsList(List<ImageTag> tags) {
+        for(ImageTag tag : getAllTags()){
+            tag.unlist();
+        }
+
+        if(tags != null){
+            for(ImageTag tag : tags){
+                named(tag.getName()).list();
+            }
+        }
     }
 
 
     @Override
     public boolean equals(Object obj) {
 
+        if(this == obj){
+            return true;
+        }
         if(!(obj instanceof ImageTag)) {
             return false;
         }
@@ -123,4 +311,24 @@ public class ImageTag implements Serializable{
 
         return name.equals(other.getName());
     }
+
+    /**
+     * Returns whether the name of this tag is the given name, without making a string of the name with its '@' prefix.
+     *
+     * @param tagName the tag name, without its '@' prefix
+     * @return true if the names are the same
+     */
+    public boolean hasName(String tagName) {
+        return name.length() == tagName.length() + 1 && name.startsWith(tagName, 1);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
@@ -0,0 +1,82 @@
+package photo_renamer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Checks that there is only one ImageTag with a name however the name is written, that a tag is looked up without
+ * being made, and that working out the name a rename would give a file doesn't make the tags it names. It exits with
+ * 1 if any check fails.
+ */
+public class ImageTagTest {
+
+    public static void main(String[] args) {
+        try {
+            names();
+            lookups();
+            taggedName();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * A name with or without its '@' prefix, or with '@' in the middle of it, names the same tag.
+     */
+    private static void names() {
+        ImageTag sun = ImageTag.named("sun");
+        assertEquals("@sun", sun.getName(), "name of the tag");
+        assertTrue(ImageTag.named("@sun") == sun, "the prefixed name made another tag");
+        assertTrue(ImageTag.named("@s@un") == sun, "a name with '@' in the middle made another tag");
+        assertTrue(ImageTag.byId(sun.getId()) == sun, "the tag wasn't found by its id");
+
+        String prefixed = "@sun";
+        assertTrue(ImageTag.prefixed(prefixed) == prefixed, "a prefixed name was copied");
+        assertEquals("@sun", ImageTag.prefixed("s@un"), "prefixed name");
+        assertEquals("@", ImageTag.prefixed(""), "prefixed empty name");
+    }
+
+    /**
+     * Looking a tag up never makes it, and finds it under either name once it is made.
+     */
+    private static void lookups() {
+        assertTrue(ImageTag.find("@lookup") == null, "a tag never made was found");
+        assertTrue(ImageTag.find("lookup") == null, "a tag never made was found without its prefix");
+
+        ImageTag tag = ImageTag.named("@lookup");
+        assertTrue(ImageTag.find("lookup") == tag, "the tag wasn't found without its prefix");
+        assertTrue(ImageTag.find("@lookup") == tag, "the tag wasn't found with its prefix");
+        assertTrue(ImageTag.find("look@up") == tag, "the tag wasn't found with '@' in the middle of its name");
+    }
+
+    /**
+     * The name a file would be given has the attached tags and then the new ones, each once, and the new tags are
+     * still not made afterwards.
+     */
+    private static void taggedName() {
+        Image image = Image.restore(new File("/photos/beach @city.jpg"), "beach.jpg",
+                new ArrayList<>(Collections.singletonList(ImageTag.named("city"))), new ArrayList<>());
+
+        assertEquals("beach @city @unmade @sun.jpg",
+                image.getTaggedName(Arrays.asList("unmade", "@city", "@unmade", "sun")), "name with new tags");
+        assertTrue(ImageTag.find("unmade") == null, "working out the name made a tag");
+        assertEquals("beach @city.jpg", image.getTaggedName(), "name with the attached tags");
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package photo_renamer.Logging;
 
 import java.io.Serializable;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
@@ -9,6 +10,12 @@ import java.util.Date;
  */
 public class ImageLog implements Serializable{
 
+    /** Kept identical to the id of the original class so that previously saved logs can still be loaded */
+    private static final long serialVersionUID = -4572675003709464841L;
+
+    /** The format of the timestamp of every log */
+    public static final String TIME_STAMP_FORMAT = "dd/MM/yy HH:mm:ss";
+
 
     /* ************************************************************************* *
      *                                                                           *
@@ -36,7 +43,41 @@ public class ImageLog implements Serializable{
     public ImageLog(String oldName, String currentName) {
         this.currentName = currentName;
         this.oldName = oldName;
-        this.timeStamp = (new SimpleDateFormat("dd/MM/yy HH:mm:ss")).format(new Date());
+        this.timeStamp = (new SimpleDateFormat(TIME_STAMP_FORMAT)).format(new Date());
+    }
+
+    /**
+     * Instantiates an ImageLog that was saved in a previous run of the program, with the time it was made at.
+     *
+     * @param oldName     the old name
+     * @param currentName the current name
+     * @param timeStamp   the time the log was made at
+     */
+    public ImageLog(String oldName, String currentName, String timeStamp) {
+        this.currentName = currentName;
+        this.oldName = oldName;
+        this.timeStamp = timeStamp;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the time the log was made at, read from its timestamp.
+     *
+     * @return the time in milliseconds since the epoch, or -1 if the timestamp couldn't be read
+     */
+    public long getTime() {
+        try {
+            return new SimpleDateFormat(TIME_STAMP_FORMAT).parse(timeStamp).getTime();
+        }
+        catch (ParseException | NullPointerException e){
+            return -1;
+        }
     }
 
 
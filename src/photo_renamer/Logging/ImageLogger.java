@@ -1,5 +1,8 @@
 package photo_renamer.Logging;
 
+import photo_renamer.ImageManager;
+
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 
@@ -47,7 +50,25 @@ public class ImageLogger {
      * @param newName the new name
      */
     public void addLog(String oldName, String newName){
-        imageLogs.add(new ImageLog(oldName, newName));
+        ImageLog log = new ImageLog(oldName, newName);
+        imageLogs.add(log);
+
+        /* Save the log right away, rather than only when the program closes */
+        ImageManager.getInstance().logAdded(log);
+    }
+
+    /**
+     * Adds the given logs, made together by a batch of renames, to the list of logs, and saves them in one go.
+     *
+     * @param logs the logs, oldest first
+     */
+    public void addLogs(List<ImageLog> logs){
+        if(logs.isEmpty()){
+            return;
+        }
+
+        imageLogs.addAll(logs);
+        ImageManager.getInstance().logsAdded(logs);
     }
 
 
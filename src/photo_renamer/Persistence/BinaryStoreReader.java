@@ -0,0 +1,161 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a StoreSnapshot from a file written by the BinaryStoreWriter. The whole file is read at once and its checksum
+ * is checked before anything is decoded, so a damaged file is rejected rather than half loaded.
+ */
+public class BinaryStoreReader {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The string table of the file being read */
+    private String[] strings;
+
+    /** The checksum of the file last read */
+    private int checksum;
+
+    /** One tag for every tag name in the file, shared by every image the tag is attached to */
+    private final Map<String, ImageTag> tags = new HashMap<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Reads the snapshot in the given file.
+     *
+     * @param file the file to read
+     * @return the snapshot in the file
+     * @throws IOException if the file couldn't be read, is damaged, or isn't a store of a version that can be read
+     */
+    public StoreSnapshot read(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        if(bytes.length < 10){
+            throw new IOException("Not a store file: " + file);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        checksum = (int) crc.getValue();
+        if(checksum != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()){
+            throw new IOException("Store file is damaged: " + file);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, bytes.length - 4);
+        try {
+            if(in.getInt() != BinaryStoreWriter.MAGIC){
+                throw new IOException("Not a store file: " + file);
+            }
+            short version = in.getShort();
+            if(version != BinaryStoreWriter.VERSION){
+                throw new IOException("Unsupported store version " + version + ": " + file);
+            }
+
+            readStrings(in);
+            Map<String, Image> images = readImages(in);
+            ConcurrentLinkedDeque<ImageLog> logs = readLogs(in);
+            List<ImageTag> allTags = readTags(in);
+
+            return new StoreSnapshot(images, logs, allTags);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e){
+            throw new IOException("Store file is damaged: " + file, e);
+        }
+    }
+
+    private void readStrings(ByteBuffer in) {
+        strings = new String[RecordBuilder.readVarInt(in)];
+
+        for(int i = 0; i < strings.length; i++){
+            int length = RecordBuilder.readVarInt(in);
+            strings[i] = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        }
+    }
+
+    private Map<String, Image> readImages(ByteBuffer in) {
+        int count = RecordBuilder.readVarInt(in);
+        Map<String, Image> images = new LinkedHashMap<>(count * 4 / 3 + 1);
+
+        for(int i = 0; i < count; i++){
+            String key = readRef(in);
+            String path = readRef(in);
+            String ogName = readRef(in);
+            List<ImageTag> attachedTags = readTags(in);
+
+            int previousCount = RecordBuilder.readVarInt(in);
+            List<String> previousFileNames = new ArrayList<>(previousCount);
+            for(int j = 0; j < previousCount; j++){
+                previousFileNames.add(readRef(in));
+            }
+
+            images.put(key, Image.restore(new File(path), ogName, attachedTags, previousFileNames));
+        }
+        return images;
+    }
+
+    private ConcurrentLinkedDeque<ImageLog> readLogs(ByteBuffer in) {
+        int count = RecordBuilder.readVarInt(in);
+        ConcurrentLinkedDeque<ImageLog> logs = new ConcurrentLinkedDeque<>();
+
+        for(int i = 0; i < count; i++){
+            logs.add(new ImageLog(readRef(in), readRef(in), readRef(in)));
+        }
+        return logs;
+    }
+
+    private List<ImageTag> readTags(ByteBuffer in) {
+        int count = RecordBuilder.readVarInt(in);
+        List<ImageTag> list = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++){
+            String name = readRef(in);
+            list.add(tags.computeIfAbsent(name, ImageTag::named));
+        }
+        return list;
+    }
+
+    /**
+     * Reads a reference and returns the string it refers to, or null for a reference of 0.
+     */
+    private String readRef(ByteBuffer in) {
+        int ref = RecordBuilder.readVarInt(in);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    /**
+     * Returns the checksum of the file last read, which identifies that version of the store.
+     *
+     * @return the checksum
+     */
+    public int getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,218 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.zip.CRC32;
+
+/**
+ * Checks that a snapshot written by the BinaryStoreWriter is read back the same by the BinaryStoreReader, and that a
+ * file that was damaged, or isn't a store of this version, is turned down rather than read. It exits with 1 if any
+ * check fails.
+ */
+public class BinaryStoreTest {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("binarystore").toFile();
+        try {
+            roundTrip(dir);
+            empty(dir);
+            damaged(dir);
+            notAStore(dir);
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            deleteAll(dir);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Every image, log and tag comes back as it was written, with one tag object shared by every image it is on.
+     */
+    private static void roundTrip(File dir) throws IOException {
+        File file = new File(dir, "store.db");
+        StoreSnapshot snapshot = sampleSnapshot();
+
+        int checksum = new BinaryStoreWriter().write(snapshot, file);
+        BinaryStoreReader reader = new BinaryStoreReader();
+        StoreSnapshot read = reader.read(file);
+
+        assertEquals(describe(snapshot), describe(read), "snapshot read back");
+        assertEquals(checksum, reader.getChecksum(), "checksum of the file read");
+        assertTrue(!new File(dir, "store.db.tmp").exists(), "the temporary file was left behind");
+
+        Image beach = read.getImages().get("/photos/beach @sun @2019.jpg");
+        Image city = read.getImages().get("/photos/city @2019.jpg");
+        assertTrue(beach.getAttachedTags().get(1) == city.getAttachedTags().get(0),
+                "a tag on two images was read as two objects");
+
+        /* Writing the same snapshot again gives the same file */
+        assertEquals(checksum, new BinaryStoreWriter().write(snapshot, file), "checksum of the same snapshot");
+    }
+
+    /**
+     * A snapshot with nothing in it.
+     */
+    private static void empty(File dir) throws IOException {
+        File file = new File(dir, "empty.db");
+        StoreSnapshot snapshot = new StoreSnapshot(null, null, null);
+
+        new BinaryStoreWriter().write(snapshot, file);
+        assertEquals(describe(snapshot), describe(new BinaryStoreReader().read(file)), "empty snapshot read back");
+    }
+
+    /**
+     * A file with a byte changed anywhere, or cut short, doesn't match its checksum.
+     */
+    private static void damaged(File dir) throws IOException {
+        File file = new File(dir, "damaged.db");
+        new BinaryStoreWriter().write(sampleSnapshot(), file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        for(int i = 0; i < bytes.length; i += Math.max(1, bytes.length / 40)){
+            byte[] changed = bytes.clone();
+            changed[i] ^= 0x20;
+            Files.write(file.toPath(), changed);
+            assertRejected(file, "Store file is damaged", "byte " + i + " changed");
+        }
+
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 7));
+        assertRejected(file, "Store file is damaged", "cut short");
+
+        Files.write(file.toPath(), new byte[3]);
+        assertRejected(file, "Not a store file", "too short to be a store");
+    }
+
+    /**
+     * A file with a checksum that matches but another magic number or version.
+     */
+    private static void notAStore(File dir) throws IOException {
+        File file = new File(dir, "other.db");
+        new BinaryStoreWriter().write(sampleSnapshot(), file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        byte[] otherMagic = bytes.clone();
+        otherMagic[0] = 'X';
+        Files.write(file.toPath(), withChecksum(otherMagic));
+        assertRejected(file, "Not a store file", "another magic number");
+
+        byte[] otherVersion = bytes.clone();
+        ByteBuffer.wrap(otherVersion).putShort(4, (short) (BinaryStoreWriter.VERSION + 1));
+        Files.write(file.toPath(), withChecksum(otherVersion));
+        assertRejected(file, "Unsupported store version " + (BinaryStoreWriter.VERSION + 1), "another version");
+    }
+
+    /**
+     * Returns a snapshot of a few images with shared tags, previous names, and missing original names.
+     */
+    static StoreSnapshot sampleSnapshot() {
+        ImageTag sun = ImageTag.named("sun"), year = ImageTag.named("2019"), city = ImageTag.named("city");
+
+        Map<String, Image> images = new LinkedHashMap<>();
+        images.put("/photos/beach @sun @2019.jpg", Image.restore(new File("/photos/beach @sun @2019.jpg"),
+                "beach.jpg", new ArrayList<>(Arrays.asList(sun, year)),
+                new ArrayList<>(Arrays.asList("beach.jpg", "beach @sun.jpg"))));
+        images.put("/photos/city @2019.jpg", Image.restore(new File("/photos/city @2019.jpg"),
+                "city.jpg", new ArrayList<>(Collections.singletonList(year)),
+                new ArrayList<>(Collections.singletonList("city.jpg"))));
+        images.put("/photos/\u00e9t\u00e9.jpg", Image.restore(new File("/photos/\u00e9t\u00e9.jpg"),
+                null, new ArrayList<>(), new ArrayList<>()));
+
+        ConcurrentLinkedDeque<ImageLog> logs = new ConcurrentLinkedDeque<>();
+        logs.add(new ImageLog("beach.jpg", "beach @sun.jpg", "01/06/19 10:00:00"));
+        logs.add(new ImageLog("beach @sun.jpg", "beach @sun @2019.jpg", "01/06/19 10:05:00"));
+        logs.add(new ImageLog("city.jpg", "city @2019.jpg", "02/06/19 09:30:00"));
+
+        return new StoreSnapshot(images, logs, new ArrayList<>(Arrays.asList(sun, year, city)));
+    }
+
+    /**
+     * Describes everything in the given snapshot, in order, so two snapshots can be compared.
+     */
+    static String describe(StoreSnapshot snapshot) {
+        StringBuilder s = new StringBuilder();
+
+        for(Map.Entry<String, Image> entry : snapshot.getImages().entrySet()){
+            Image image = entry.getValue();
+            s.append("image ").append(entry.getKey())
+                    .append(" file=").append(image.getFile())
+                    .append(" og=").append(image.getOgName())
+                    .append(" tags=").append(names(image.getAttachedTags()))
+                    .append(" previous=").append(image.getPreviousFileNames()).append('\n');
+        }
+        for(ImageLog log : snapshot.getLogs()){
+            s.append("log ").append(log.getOldName()).append(" -> ").append(log.getCurrentName())
+                    .append(" at ").append(log.getTimeStamp()).append('\n');
+        }
+        s.append("tags ").append(names(snapshot.getTags()));
+        return s.toString();
+    }
+
+    private static List<String> names(List<ImageTag> tags) {
+        List<String> names = new ArrayList<>();
+        for(ImageTag tag : tags){
+            names.add(tag.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Replaces the checksum at the end of the given file contents with the checksum of the rest of them.
+     */
+    private static byte[] withChecksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) crc.getValue());
+        return bytes;
+    }
+
+    private static void assertRejected(File file, String message, String what) {
+        try {
+            new BinaryStoreReader().read(file);
+        }
+        catch (IOException e){
+            assertTrue(e.getMessage().startsWith(message), what + ": expected the error " + message + " but was "
+                    + e.getMessage());
+            return;
+        }
+        throw new AssertionError(what + ": the file was read");
+    }
+
+    static void deleteAll(File file) {
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                deleteAll(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
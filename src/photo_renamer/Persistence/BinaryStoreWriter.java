@@ -0,0 +1,203 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a StoreSnapshot to a file in the binary store format. Every string (names, paths, tags, timestamps) is written
+ * once into a string table at the start of the file, and the records after it refer to the strings by their position
+ * in the table. All counts and references are written as varints, so most of them take a single byte.
+ *
+ * <br><br>
+ *
+ * The file is laid out as:
+ *
+ * <pre>
+ *     header:   int magic "PRDB", short version
+ *     strings:  varint count, then for each string: varint byte length, UTF-8 bytes
+ *     images:   varint count, then for each image: ref key, ref path, ref original name,
+ *               varint tag count, ref tags..., varint previous name count, ref previous names...
+ *     logs:     varint count, then for each log: ref old name, ref current name, ref timestamp
+ *     tags:     varint count, ref tags...
+ *     trailer:  int CRC32 of everything before it
+ * </pre>
+ *
+ * A reference is the position of the string in the table plus one, so that 0 can stand for null. The file is written
+ * next to its destination and then moved over it, so a crash while saving never leaves half a file behind.
+ */
+public class BinaryStoreWriter {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The first four bytes of every store file */
+    static final int MAGIC = 0x50524442; // "PRDB"
+
+    /** The version of the format written */
+    static final short VERSION = 1;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The reference of every string in the table */
+    private Map<String, Integer> references = new HashMap<>();
+
+    /** The strings of the table, in the order they were first seen */
+    private final List<String> strings = new ArrayList<>();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Writes the given snapshot to the given file, replacing it if it exists.
+     *
+     * @param snapshot the data to write
+     * @param file the file to write to
+     * @return the checksum of the file, which identifies this version of the store
+     * @throws IOException if the file couldn't be written
+     */
+    public int write(StoreSnapshot snapshot, File file) throws IOException {
+        /* Most images have a few distinct names and paths, so size the table for that up front */
+        references = new HashMap<>(snapshot.getImages().size() * 8 + 1024);
+        strings.clear();
+        collectStrings(snapshot);
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        int checksum;
+
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            RecordOutput out = new RecordOutput(fileOut, 1 << 16);
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+
+            out.writeVarInt(strings.size());
+            for(String s : strings){
+                out.writeString(s);
+            }
+
+            out.writeVarInt(snapshot.getImages().size());
+            for(Map.Entry<String, Image> entry : snapshot.getImages().entrySet()){
+                Image image = entry.getValue();
+                writeRef(out, entry.getKey());
+                writeRef(out, image.getFile() == null ? null : image.getFile().getPath());
+                writeRef(out, image.getOgName());
+
+                writeTags(out, image.getAttachedTags());
+
+                List<String> previous = image.getPreviousFileNames() != null ? image.getPreviousFileNames() : new ArrayList<>();
+                out.writeVarInt(previous.size());
+                for(String name : previous){
+                    writeRef(out, name);
+                }
+            }
+
+            out.writeVarInt(snapshot.getLogs().size());
+            for(ImageLog log : snapshot.getLogs()){
+                writeRef(out, log.getOldName());
+                writeRef(out, log.getCurrentName());
+                writeRef(out, log.getTimeStamp());
+            }
+
+            writeTags(out, snapshot.getTags());
+
+            /* The checksum covers everything before it */
+            out.flush();
+            checksum = out.getChecksum();
+            out.writeInt(checksum);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return checksum;
+    }
+
+    /**
+     * Adds every string in the snapshot to the table, in the order they will be written.
+     */
+    private void collectStrings(StoreSnapshot snapshot) {
+        for(Map.Entry<String, Image> entry : snapshot.getImages().entrySet()){
+            Image image = entry.getValue();
+            intern(entry.getKey());
+            intern(image.getFile() == null ? null : image.getFile().getPath());
+            intern(image.getOgName());
+
+            if(image.getAttachedTags() != null){
+                for(ImageTag tag : image.getAttachedTags()){
+                    intern(tag.getName());
+                }
+            }
+            if(image.getPreviousFileNames() != null){
+                for(String name : image.getPreviousFileNames()){
+                    intern(name);
+                }
+            }
+        }
+
+        for(ImageLog log : snapshot.getLogs()){
+            intern(log.getOldName());
+            intern(log.getCurrentName());
+            intern(log.getTimeStamp());
+        }
+
+        for(ImageTag tag : snapshot.getTags()){
+            intern(tag.getName());
+        }
+    }
+
+    /**
+     * Adds the given string to the table if it isn't already in it.
+     */
+    private void intern(String s) {
+        if(s != null && !references.containsKey(s)){
+            strings.add(s);
+            references.put(s, strings.size());
+        }
+    }
+
+    /**
+     * Writes a count followed by the names of the given tags.
+     */
+    private void writeTags(RecordOutput out, List<ImageTag> tags) throws IOException {
+        if(tags == null){
+            out.writeVarInt(0);
+            return;
+        }
+
+        out.writeVarInt(tags.size());
+        for(ImageTag tag : tags){
+            writeRef(out, tag.getName());
+        }
+    }
+
+    /**
+     * Writes the reference of the given string, or 0 if it is null.
+     */
+    private void writeRef(RecordOutput out, String s) throws IOException {
+        out.writeVarInt(s == null ? 0 : references.get(s));
+    }
+}
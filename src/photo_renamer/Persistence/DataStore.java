@@ -0,0 +1,103 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Where the program's images, logs, and tags are saved between runs. The ImageManager loads the logs and tags from
+ * the store when the program starts, tells the store about every change as it happens, and asks the store for saved
+ * images only as they are needed.
+ */
+public interface DataStore {
+
+    /**
+     * Opens the store and loads the logs and tags saved in it. Images are left in the store to be looked up with
+     * findImage.
+     *
+     * @param tags finds the tag with a given name, so that images looked up later share the program's tags
+     * @return the saved logs and tags
+     * @throws IOException if the store couldn't be opened at all
+     */
+    StoreSnapshot load(Function<String, ImageTag> tags) throws IOException;
+
+    /**
+     * Looks up the image saved under the given key.
+     *
+     * @param key the name the image was saved under
+     * @return a new image recreated from the store, or null if there is no image saved under the key
+     */
+    Image findImage(String key);
+
+    /**
+     * Visits every saved image without recreating it, handing over only the key it is saved under and the names of its
+     * tags. Used to build the TagIndex the first time it is used.
+     *
+     * @param visitor given the key and the tag names, with their '@' prefixes, of each image
+     */
+    void forEachImage(BiConsumer<String, List<String>> visitor);
+
+    /**
+     * Looks up every log made in the given span of time.
+     *
+     * @param from the start of the span in milliseconds since the epoch, inclusive
+     * @param to the end of the span in milliseconds since the epoch, exclusive
+     * @return the logs, oldest first
+     */
+    List<ImageLog> findLogsBetween(long from, long to);
+
+    /**
+     * Saves the state of the given image under the given key, replacing the image saved under it.
+     *
+     * @param key the name the image is saved under
+     * @param image the image
+     */
+    void imageSaved(String key, Image image);
+
+    /**
+     * Removes the image saved under the given key, if there is one.
+     *
+     * @param key the name the image was saved under
+     */
+    void imageRemoved(String key);
+
+    /**
+     * Saves the given log.
+     *
+     * @param log the log that was made
+     */
+    void logAdded(ImageLog log);
+
+    /**
+     * Saves the given logs, made together by a batch of renames, all at once.
+     *
+     * @param logs the logs that were made, oldest first
+     */
+    void logsAdded(List<ImageLog> logs);
+
+    /**
+     * Saves that the tag with the given name was added to the list of all tags.
+     *
+     * @param name the name of the tag, with its '@' prefix
+     */
+    void tagCreated(String name);
+
+    /**
+     * Saves that the tag with the given name was removed from the list of all tags.
+     *
+     * @param name the name of the tag, without its '@' prefix
+     */
+    void tagDeleted(String name);
+
+    /**
+     * Makes sure everything is saved, and closes the store.
+     *
+     * @param current the program's images, logs, and tags as they are now
+     */
+    void close(StoreSnapshot current);
+}
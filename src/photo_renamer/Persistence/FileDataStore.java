@@ -0,0 +1,676 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Saves the program's data in files in a directory: the logs and tags in a binary store, every image ever renamed in
+ * an image index, and every change made since the two were last written in a journal. The store and the index are
+ * only rewritten once the journal has grown large, in the background while the program goes on making changes.
+ *
+ * <br><br>
+ *
+ * Nothing in the files is indexed but the names of the images, so looking up logs by time looks through all of them.
+ */
+public class FileDataStore implements DataStore {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The file the logs and tags are saved in */
+    static final String STORE_FILE = "photorenamer.dat";
+
+    /** The file every image ever renamed is indexed in. Every time the index is rewritten, it is written to a new
+     * file with the next generation appended to this name, since the file in use is mapped and can't be replaced */
+    static final String INDEX_FILE = "photorenamer.idx";
+
+    /** The file the changes made since the store was last written are saved in */
+    static final String JOURNAL_FILE = "photorenamer.journal";
+
+    /** How large the journal can grow before its changes are compacted into the store, in bytes */
+    private static final long COMPACT_THRESHOLD = Long.getLong("photorenamer.journal.compactBytes", 4L * 1024 * 1024);
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The directory the files are in */
+    private final File dir;
+
+    /** Finds the tag with a given name when an image is looked up */
+    private Function<String, ImageTag> tags;
+
+    /** The index of the images saved when the store was last written, null if it couldn't be opened */
+    private volatile ImageIndex index;
+
+    /** The generation of the index file in use, 0 for INDEX_FILE itself */
+    private long indexGeneration;
+
+    /** The images saved since the index was last written, which replace the ones in the index */
+    private final Map<String, Image> changed = new ConcurrentHashMap<>();
+
+    /** The keys of the images removed since the index was last written, which hide the ones in the index */
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+
+    /** The logs loaded from the store and every log saved since, in the order they were saved */
+    private ConcurrentLinkedDeque<ImageLog> logs = new ConcurrentLinkedDeque<>();
+
+    /** The names of the tags loaded from the store and created since, less the ones deleted since */
+    private final Set<String> tagNames = new LinkedHashSet<>();
+
+    /** The journal every change is appended to, null if it isn't open */
+    private Journal journal;
+
+    /** The checksum of the store that was last loaded or written, 0 if there is none */
+    private int storeChecksum = 0;
+
+    /** Whether or not the journal is being compacted into the store in the background */
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    /** The thread compacting the journal, null if none was started */
+    private volatile Thread compactor;
+
+    /** The keys of the images saved or removed since the compactor took the changes it is compacting */
+    private Set<String> touched;
+
+    /** Whether or not the store is being closed, after which nothing more is compacted in the background */
+    private volatile boolean closing = false;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new store of the files in the given directory.
+     *
+     * @param dir the directory the files are in
+     */
+    public FileDataStore(File dir) {
+        this.dir = dir;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Migrates data saved by older versions of the program in .ser files if there is any, loads the store, opens the
+     * index, and then replays the changes made since the store was last written. A store that can't be read is
+     * reported and treated as empty, so this never fails.
+     *
+     * @param tags finds the tag with a given name, so that images looked up later share the program's tags
+     * @return the saved logs and tags
+     */
+    @Override
+    public StoreSnapshot load(Function<String, ImageTag> tags) {
+        this.tags = tags;
+        File store = new File(dir, STORE_FILE);
+
+        try {
+            if(StoreMigrator.migrate(dir, store) != null){
+                System.out.println("FILES MIGRATED");
+            }
+        }
+        catch (IOException e){
+            System.out.println("FILES COULD NOT BE MIGRATED, THE .ser FILES ARE LEFT AS THEY ARE: " + e.getMessage());
+        }
+
+        StoreSnapshot snapshot = new StoreSnapshot(null, null, null);
+        if(store.exists()) {
+            try {
+                BinaryStoreReader reader = new BinaryStoreReader();
+                snapshot = reader.read(store);
+                storeChecksum = reader.getChecksum();
+                System.out.println("FILES LOADED");
+            }
+            catch (IOException e){
+                System.out.println("FILES COULD NOT BE LOADED: " + e.getMessage());
+            }
+        }
+        else{
+            System.out.println("NO FILES LOADED");
+        }
+
+        /* Stores written before images were indexed still have their images, which move into the index from here */
+        changed.putAll(snapshot.getImages());
+        snapshot.getImages().clear();
+        openIndex();
+
+        try {
+            journal = Journal.open(new File(dir, JOURNAL_FILE), storeChecksum, new SnapshotReplayer(snapshot));
+        }
+        catch (IOException e){
+            journal = null;
+            System.out.println("JOURNAL COULD NOT BE OPENED: " + e.getMessage());
+        }
+
+        /* If the store can't be rewritten, the journal keeps every change as it is and is compacted another time */
+        if(journal != null && journal.size() > COMPACT_THRESHOLD){
+            try {
+                writeStore(snapshot);
+                journal.reset(storeChecksum);
+            }
+            catch (IOException e){
+                System.out.println("FILES COULD NOT BE COMPACTED: " + e.getMessage());
+            }
+        }
+
+        logs = new ConcurrentLinkedDeque<>(snapshot.getLogs());
+        for(ImageTag tag : snapshot.getTags()){
+            tagNames.add(tag.getName());
+        }
+
+        if(journal != null){
+            Journal opened = journal;
+            opened.setOnCommitted(() -> committed(opened));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Image findImage(String key) {
+        Image image = changed.get(key);
+
+        if(image == null && index != null && !removed.contains(key)){
+            image = index.find(key);
+        }
+        return image;
+    }
+
+    @Override
+    public void forEachImage(BiConsumer<String, List<String>> visitor) {
+        ImageIndex index = this.index;
+        int count = index == null ? 0 : index.size();
+        for(int i = 0; i < count; i++){
+            String key;
+            List<String> tagNames;
+            try {
+                key = new String(index.keyAt(i), StandardCharsets.UTF_8);
+                tagNames = index.tagNamesAt(i);
+            }
+            catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+                damaged(i, e);
+                continue;
+            }
+
+            if(!changed.containsKey(key) && !removed.contains(key)){
+                visitor.accept(key, tagNames);
+            }
+        }
+
+        for(Map.Entry<String, Image> entry : changed.entrySet()){
+            List<String> tagNames = new ArrayList<>();
+            for(ImageTag tag : entry.getValue().getAttachedTags()){
+                tagNames.add(tag.getName());
+            }
+            visitor.accept(entry.getKey(), tagNames);
+        }
+    }
+
+    @Override
+    public List<ImageLog> findLogsBetween(long from, long to) {
+        List<ImageLog> found = new ArrayList<>();
+
+        for(ImageLog log : logs){
+            long time = log.getTime();
+            if(time >= from && time < to){
+                found.add(log);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized void imageSaved(String key, Image image) {
+        changed.put(key, image);
+        removed.remove(key);
+        if(touched != null){
+            touched.add(key);
+        }
+
+        if(journal != null){
+            List<String> tagNames = new ArrayList<>();
+            for(ImageTag tag : image.getAttachedTags()){
+                tagNames.add(tag.getName());
+            }
+
+            try {
+                journal.imageSaved(key, image.getFile().getPath(), image.getOgName(), tagNames,
+                        image.getPreviousFileNames());
+            }
+            catch (IOException e){
+                journalFailed(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void imageRemoved(String key) {
+        changed.remove(key);
+        removed.add(key);
+        if(touched != null){
+            touched.add(key);
+        }
+
+        if(journal != null){
+            try {
+                journal.imageRemoved(key);
+            }
+            catch (IOException e){
+                journalFailed(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void logAdded(ImageLog log) {
+        logs.add(log);
+
+        if(journal != null){
+            try {
+                journal.logAdded(log.getOldName(), log.getCurrentName(), log.getTimeStamp());
+            }
+            catch (IOException e){
+                journalFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Saves the given logs. The journal already writes every record appended within a short interval together, so
+     * the logs are simply appended one after another.
+     *
+     * @param logs the logs that were made, oldest first
+     */
+    @Override
+    public synchronized void logsAdded(List<ImageLog> logs) {
+        for(ImageLog log : logs){
+            logAdded(log);
+        }
+    }
+
+    @Override
+    public synchronized void tagCreated(String name) {
+        tagNames.add(name);
+
+        if(journal != null){
+            try {
+                journal.tagCreated(name);
+            }
+            catch (IOException e){
+                journalFailed(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void tagDeleted(String name) {
+        tagNames.remove("@" + name);
+
+        if(journal != null){
+            try {
+                journal.tagDeleted(name);
+            }
+            catch (IOException e){
+                journalFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Waits for a compaction that is running and for the journal to be written. The store and the index are only
+     * rewritten in full if the journal has grown large, or couldn't be used.
+     *
+     * @param current the program's images, logs, and tags as they are now
+     */
+    @Override
+    public void close(StoreSnapshot current) {
+        Thread running;
+        synchronized (this){
+            closing = true;
+            running = compactor;
+        }
+
+        /* A compaction that started before the store was being closed is left to finish */
+        if(running != null){
+            try {
+                running.join();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if(journal != null){
+            try {
+                long size = journal.size();
+                journal.close();
+                journal = null;
+
+                if(size <= COMPACT_THRESHOLD){
+                    return;
+                }
+            }
+            catch (IOException e){
+                journal = null;
+                System.out.println("JOURNAL COULD NOT BE SAVED: " + e.getMessage());
+            }
+        }
+
+        try {
+            /* The journal no longer applies to the new store, so it is started over either way */
+            writeStore(current);
+            new File(dir, JOURNAL_FILE).delete();
+        }
+        catch (IOException e){
+            System.out.println("FILES COULD NOT BE SAVED: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the changed images and the given images into a new index together with the images already in it, less
+     * the removed ones, and then writes the given logs and tags into a new store. The index is written first, so that
+     * if the program stops in between, the old store and journal still load correctly on top of it. The new index goes
+     * to a file of the next generation, since the index in use is still mapped.
+     *
+     * @param current the program's images, logs, and tags as they are now
+     * @throws IOException if the index or the store couldn't be written
+     */
+    private void writeStore(StoreSnapshot current) throws IOException {
+        Map<String, Image> images = new HashMap<>(changed);
+        images.putAll(current.getImages());
+
+        new ImageIndexWriter().write(index, images, removed, indexFile(dir, indexGeneration + 1));
+        openIndex();
+        changed.clear();
+        removed.clear();
+
+        StoreSnapshot withoutImages = new StoreSnapshot(new HashMap<>(), current.getLogs(), current.getTags());
+        storeChecksum = new BinaryStoreWriter().write(withoutImages, new File(dir, STORE_FILE));
+    }
+
+    /**
+     * Starts compacting the given journal in the background once a batch of records written to it has made it larger
+     * than the threshold. Run by the journal's writer thread, which doesn't wait for the store to be free, since the
+     * store may be waiting on it.
+     *
+     * @param written the journal the batch was written to
+     */
+    private void committed(Journal written) {
+        if(!closing && written.size() > COMPACT_THRESHOLD && compacting.compareAndSet(false, true)){
+            Thread thread = new Thread(this::compact, "store-compactor");
+            thread.setDaemon(true);
+            compactor = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Writes the changes saved so far into a new index and store, and then starts the journal over with only the
+     * records appended since. The changes are copied all at once, while nothing can be saved, and the files are
+     * written from the copy while the program goes on saving changes. Images saved or removed in the meantime are
+     * kept track of, so that they still replace the ones in the new index once it is opened.
+     */
+    private void compact() {
+        Journal compacted;
+        Map<String, Image> images = new HashMap<>();
+        Set<String> removedKeys;
+        StoreSnapshot withoutImages;
+        long mark;
+        int checksum;
+
+        synchronized (this){
+            compacted = journal;
+            if(compacted == null || closing){
+                compacting.set(false);
+                return;
+            }
+
+            /* The program goes on changing its images, so the files are written from copies of them */
+            for(Map.Entry<String, Image> entry : changed.entrySet()){
+                Image image = entry.getValue();
+                images.put(entry.getKey(), Image.restore(image.getFile(), image.getOgName(), image.getAttachedTags(),
+                        new ArrayList<>(image.getPreviousFileNames())));
+            }
+            removedKeys = new HashSet<>(removed);
+
+            List<ImageTag> tagList = new ArrayList<>();
+            for(String name : tagNames){
+                tagList.add(tags.apply(name));
+            }
+            withoutImages = new StoreSnapshot(new HashMap<>(), new ConcurrentLinkedDeque<>(logs), tagList);
+
+            mark = compacted.size();
+            touched = new HashSet<>();
+        }
+
+        try {
+            new ImageIndexWriter().write(index, images, removedKeys, indexFile(dir, indexGeneration + 1));
+            checksum = new BinaryStoreWriter().write(withoutImages, new File(dir, STORE_FILE));
+
+            synchronized (this){
+                openIndex();
+                changed.keySet().retainAll(touched);
+                removed.retainAll(touched);
+                storeChecksum = checksum;
+            }
+        }
+        catch (IOException e){
+            System.out.println("FILES COULD NOT BE COMPACTED: " + e.getMessage());
+            finishCompacting();
+            return;
+        }
+
+        try {
+            compacted.reset(checksum, mark);
+            System.out.println("FILES COMPACTED");
+        }
+        catch (IOException e){
+            /* The journal no longer matches the store, so everything is saved in full when the store is closed */
+            synchronized (this){
+                if(journal == compacted){
+                    journalFailed(e);
+                }
+            }
+        }
+        finishCompacting();
+    }
+
+    /**
+     * Stops keeping track of the images changed while compacting, and lets the journal be compacted again.
+     */
+    private synchronized void finishCompacting() {
+        touched = null;
+        compacting.set(false);
+    }
+
+    /**
+     * Maps the newest index of every image ever renamed, and deletes the older ones. If it can't be opened, the images
+     * in it are treated as never saved.
+     */
+    private void openIndex() {
+        List<Long> generations = indexGenerations(dir);
+        indexGeneration = generations.isEmpty() ? 0 : generations.get(0);
+
+        try {
+            index = ImageIndex.open(indexFile(dir, indexGeneration), tags);
+        }
+        catch (IOException e){
+            index = null;
+            System.out.println("IMAGE INDEX COULD NOT BE LOADED: " + e.getMessage());
+        }
+
+        /* An older index that is still mapped can't be deleted on some systems, so it is then deleted another time */
+        for(long generation : generations.subList(Math.min(1, generations.size()), generations.size())){
+            indexFile(dir, generation).delete();
+        }
+    }
+
+    /**
+     * Returns the index file of the given generation in the given directory.
+     */
+    private static File indexFile(File dir, long generation) {
+        return new File(dir, generation == 0 ? INDEX_FILE : INDEX_FILE + "." + generation);
+    }
+
+    /**
+     * Returns the generations of the index files in the given directory, newest first.
+     *
+     * @param dir the directory the files are in
+     * @return the generations, empty if there is no index
+     */
+    static List<Long> indexGenerations(File dir) {
+        List<Long> generations = new ArrayList<>();
+
+        String[] names = dir.list();
+        for(String name : names == null ? new String[0] : names){
+            if(name.equals(INDEX_FILE)){
+                generations.add(0L);
+            }
+            else if(name.startsWith(INDEX_FILE + ".")){
+                String generation = name.substring(INDEX_FILE.length() + 1);
+                if(generation.matches("[0-9]{1,18}")){
+                    generations.add(Long.parseLong(generation));
+                }
+            }
+        }
+
+        generations.sort(Collections.reverseOrder());
+        return generations;
+    }
+
+    /**
+     * Stops using the journal after it couldn't be written to, so that everything is saved in full when the store is
+     * closed instead.
+     */
+    private void journalFailed(IOException e) {
+        System.out.println("JOURNAL COULD NOT BE WRITTEN: " + e.getMessage());
+
+        try {
+            journal.close();
+        }
+        catch (IOException ignored){}
+        journal = null;
+    }
+
+    /**
+     * Returns every image saved in the files, decoding the whole index. Only used to copy the files into another store.
+     */
+    Map<String, Image> allImages() {
+        Map<String, Image> images = new HashMap<>();
+
+        ImageIndex index = this.index;
+        int count = index == null ? 0 : index.size();
+        for(int i = 0; i < count; i++){
+            try {
+                images.put(new String(index.keyAt(i), StandardCharsets.UTF_8), index.imageAt(i));
+            }
+            catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+                damaged(i, e);
+            }
+        }
+        images.keySet().removeAll(removed);
+        images.putAll(changed);
+        return images;
+    }
+
+    /**
+     * Reports that the record at the given position in the index couldn't be read, and is skipped.
+     */
+    private static void damaged(int record, RuntimeException e) {
+        System.out.println("IMAGE INDEX IS DAMAGED, RECORD " + record + " SKIPPED: " + e);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Snapshot Replayer                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Applies the changes in the journal to the data loaded from the store.
+     */
+    private class SnapshotReplayer implements Journal.Handler {
+
+        private final StoreSnapshot snapshot;
+
+        /** The tags by their names, shared by every image they are attached to */
+        private final Map<String, ImageTag> tagsByName = new HashMap<>();
+
+        SnapshotReplayer(StoreSnapshot snapshot) {
+            this.snapshot = snapshot;
+
+            for(ImageTag tag : snapshot.getTags()){
+                tagsByName.put(tag.getName(), tag);
+            }
+        }
+
+        @Override
+        public void imageSaved(String key, String path, String ogName, List<String> tagNames, List<String> previousNames) {
+            List<ImageTag> attached = new ArrayList<>();
+            for(String name : tagNames){
+                attached.add(tagsByName.computeIfAbsent(name, tags));
+            }
+
+            changed.put(key, Image.restore(new File(path), ogName, attached, previousNames));
+            removed.remove(key);
+        }
+
+        @Override
+        public void imageRemoved(String key) {
+            changed.remove(key);
+            removed.add(key);
+        }
+
+        @Override
+        public void logAdded(String oldName, String currentName, String timeStamp) {
+            snapshot.getLogs().add(new ImageLog(oldName, currentName, timeStamp));
+        }
+
+        @Override
+        public void tagCreated(String name) {
+            ImageTag tag = tagsByName.computeIfAbsent(name, ImageTag::named);
+            if(!snapshot.getTags().contains(tag)){
+                snapshot.getTags().add(tag);
+            }
+        }
+
+        @Override
+        public void tagDeleted(String name) {
+            snapshot.getTags().removeIf(tag -> tag.getName().equals("@" + name));
+        }
+    }
+}
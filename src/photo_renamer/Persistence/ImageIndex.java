@@ -0,0 +1,319 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A memory-mapped index of every image saved in a previous run of the program, looked up by the name the image was
+ * saved under. Opening the index only reads its header, and looking up an image only decodes that image's record, so
+ * starting the program takes the same time and memory no matter how many images have ever been renamed. The operating
+ * system pages in the parts of the file that are actually looked at.
+ *
+ * <br><br>
+ *
+ * The file is laid out as:
+ *
+ * <pre>
+ *     header:   int magic "PRIX", short version, int count
+ *     offsets:  int position of each record in the file, in the order of the records
+ *     records:  sorted by the UTF-8 bytes of their keys, each one being:
+ *               varint key length, key bytes, string path, string original name,
+ *               varint tag count, string tags..., varint previous name count, string previous names...
+ * </pre>
+ *
+ * Strings are written by a RecordBuilder. There is no checksum, since checking one would mean reading the whole file;
+ * the file is only ever replaced by moving a complete new one over it, and every read is bounds checked, so a damaged
+ * record is reported and skipped rather than loaded.
+ */
+public class ImageIndex {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The first four bytes of every index file */
+    static final int MAGIC = 0x50524958; // "PRIX"
+
+    /** The version of the format */
+    static final short VERSION = 1;
+
+    /** The size of the header, before the offsets */
+    static final int HEADER_SIZE = 10;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The mapped file, never read from directly so that lookups on different threads don't share a position */
+    private final ByteBuffer buffer;
+
+    /** The number of records in the index */
+    private final int count;
+
+    /** Finds the tag with a given name when a record is decoded */
+    private final Function<String, ImageTag> tags;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private ImageIndex(ByteBuffer buffer, int count, Function<String, ImageTag> tags) {
+        this.buffer = buffer;
+        this.count = count;
+        this.tags = tags;
+    }
+
+    /**
+     * Maps the given index file. A missing file is opened as an empty index.
+     *
+     * @param file the index file
+     * @param tags finds the tag with a given name, so that images share the program's tags
+     * @return the index
+     * @throws IOException if the file couldn't be mapped or isn't an index of a version that can be read
+     */
+    public static ImageIndex open(File file, Function<String, ImageTag> tags) throws IOException {
+        if(!file.exists()){
+            return new ImageIndex(ByteBuffer.allocate(0), 0, tags);
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC){
+            throw new IOException("Not an index file: " + file);
+        }
+        if(buffer.getShort(4) != VERSION){
+            throw new IOException("Unsupported index version " + buffer.getShort(4) + ": " + file);
+        }
+
+        int count = buffer.getInt(6);
+        if(count < 0 || HEADER_SIZE + (long) count * 4 > buffer.limit()){
+            throw new IOException("Index file is damaged: " + file);
+        }
+        return new ImageIndex(buffer, count, tags);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Looks up the image saved under the given key and decodes it. Nothing but the one record is decoded.
+     *
+     * @param key the name the image was saved under
+     * @return a new image recreated from its record, or null if there is no image saved under the key
+     */
+    public Image find(String key) {
+        if(count == 0){
+            return null;
+        }
+
+        try {
+            int index = search(key.getBytes(StandardCharsets.UTF_8));
+            return index < 0 ? null : imageAt(index);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+            System.out.println("IMAGE INDEX IS DAMAGED: " + key);
+            return null;
+        }
+    }
+
+    /**
+     * Binary searches the records for the given key. A record whose key can't be read is stepped over to the nearest
+     * one below it that can, or above it if there is none, so that a damaged record only hides itself.
+     *
+     * @return the position of the record in the index, or -1 if there is no record with the key
+     */
+    private int search(byte[] key) {
+        ByteBuffer in = buffer.duplicate();
+        int low = 0, high = count - 1;
+
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            int probe = mid, step = -1, order;
+
+            while(true){
+                if(probe < low){
+                    probe = mid + 1;
+                    step = 1;
+                }
+                if(probe > high){
+                    return -1;
+                }
+
+                try {
+                    order = compareKeyAt(in, probe, key);
+                    break;
+                }
+                catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+                    probe += step;
+                }
+            }
+
+            if(order < 0){
+                low = probe + 1;
+            }
+            else if(order > 0){
+                high = probe - 1;
+            }
+            else{
+                return probe;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the key of the record at the given position in the index with the given key.
+     */
+    private int compareKeyAt(ByteBuffer in, int index, byte[] key) {
+        in.position(offset(index));
+
+        int length = RecordBuilder.readVarInt(in);
+        if(length < 0 || length > in.remaining()){
+            throw new BufferUnderflowException();
+        }
+        return compare(in, in.position(), length, key);
+    }
+
+    /**
+     * Decodes the record at the given position in the index into an image.
+     */
+    Image imageAt(int index) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset(index));
+        in.position(RecordBuilder.readVarInt(in) + in.position());
+
+        String path = RecordBuilder.readString(in);
+        String ogName = RecordBuilder.readString(in);
+
+        List<String> tagNames = RecordBuilder.readStrings(in);
+        List<ImageTag> attachedTags = new ArrayList<>(tagNames.size());
+        for(String name : tagNames){
+            attachedTags.add(tags.apply(name));
+        }
+
+        List<String> previousFileNames = RecordBuilder.readStrings(in);
+        return Image.restore(new File(path), ogName, attachedTags, previousFileNames);
+    }
+
+    /**
+     * Reads only the names of the tags in the record at the given position in the index.
+     */
+    List<String> tagNamesAt(int index) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset(index));
+        in.position(RecordBuilder.readVarInt(in) + in.position());
+
+        /* Skip the path and the original name */
+        RecordBuilder.readString(in);
+        RecordBuilder.readString(in);
+        return RecordBuilder.readStrings(in);
+    }
+
+    /**
+     * Returns the position in the file of the record at the given position in the index.
+     */
+    private int offset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * 4);
+    }
+
+    /**
+     * Returns the key of the record at the given position in the index, as its UTF-8 bytes.
+     */
+    byte[] keyAt(int index) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset(index));
+
+        int length = RecordBuilder.readVarInt(in);
+        if(length < 0 || length > in.remaining()){
+            throw new BufferUnderflowException();
+        }
+
+        byte[] key = new byte[length];
+        in.get(key);
+        return key;
+    }
+
+    /**
+     * Returns the whole record at the given position in the index, key included, exactly as it is in the file.
+     */
+    byte[] recordAt(int index) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset(index));
+
+        byte[] record = new byte[recordLength(index)];
+        in.get(record);
+        return record;
+    }
+
+    /**
+     * Returns the length of the record at the given position in the index, up to where the next record starts.
+     */
+    int recordLength(int index) {
+        int start = offset(index);
+        int end = index + 1 < count ? offset(index + 1) : buffer.limit();
+
+        if(start < 0 || end < start || end > buffer.limit()){
+            throw new IndexOutOfBoundsException("Record " + index + " is out of the file");
+        }
+        return end - start;
+    }
+
+    /**
+     * Compares the key stored in the buffer at the given position with the given key, byte by byte as unsigned values.
+     */
+    static int compare(ByteBuffer in, int position, int length, byte[] key) {
+        int shared = Math.min(length, key.length);
+
+        for(int i = 0; i < shared; i++){
+            int order = Integer.compare(in.get(position + i) & 0xFF, key[i] & 0xFF);
+            if(order != 0){
+                return order;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the number of images in the index.
+     *
+     * @return the number of images
+     */
+    public int size() {
+        return count;
+    }
+}
@@ -0,0 +1,225 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks that images written by the ImageIndexWriter are looked up the same from the ImageIndex, that a new index
+ * carries over, replaces and leaves out the images of the one before it, and that a damaged record is skipped by the
+ * FileDataStore and left out of the next index rather than stopping the program. It exits with 1 if any check fails.
+ */
+public class ImageIndexTest {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("imageindex").toFile();
+        try {
+            roundTrip(dir);
+            empty(dir);
+            merge(dir);
+            damaged(new File(dir, "damaged"));
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            BinaryStoreTest.deleteAll(dir);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Every image is found under its key as it was written, in the order of the UTF-8 bytes of the keys, and keys
+     * that were never written aren't found.
+     */
+    private static void roundTrip(File dir) throws IOException {
+        File file = new File(dir, "roundtrip.idx");
+        Map<String, Image> images = sampleImages();
+
+        assertEquals(images.size(), new ImageIndexWriter().write(null, images, Collections.emptySet(), file),
+                "number of images written");
+        assertTrue(!new File(dir, "roundtrip.idx.tmp").exists(), "the temporary file was left behind");
+
+        ImageIndex index = ImageIndex.open(file, ImageTag::named);
+        assertEquals(images.size(), index.size(), "number of images in the index");
+        for(Map.Entry<String, Image> entry : images.entrySet()){
+            assertEquals(describe(entry.getValue()), describe(index.find(entry.getKey())), entry.getKey());
+        }
+        assertTrue(index.find("/photos/missing.jpg") == null, "a key never written was found");
+        assertTrue(index.find("") == null, "the empty key was found");
+
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < index.size(); i++){
+            keys.add(new String(index.keyAt(i), StandardCharsets.UTF_8));
+        }
+        assertEquals(new ArrayList<>(new TreeMap<>(images).keySet()), keys, "order of the keys");
+    }
+
+    /**
+     * A missing file is an empty index, and so is an index written with nothing in it.
+     */
+    private static void empty(File dir) throws IOException {
+        File file = new File(dir, "empty.idx");
+        assertEquals(0, ImageIndex.open(file, ImageTag::named).size(), "size of a missing index");
+
+        new ImageIndexWriter().write(null, new LinkedHashMap<>(), Collections.emptySet(), file);
+        ImageIndex index = ImageIndex.open(file, ImageTag::named);
+        assertEquals(0, index.size(), "size of an empty index");
+        assertTrue(index.find("/photos/beach.jpg") == null, "an image was found in an empty index");
+
+        Files.write(file.toPath(), "not an index".getBytes(StandardCharsets.UTF_8));
+        try {
+            ImageIndex.open(file, ImageTag::named);
+            throw new AssertionError("a file that isn't an index was opened");
+        }
+        catch (IOException e){
+            assertTrue(e.getMessage().startsWith("Not an index file"), "error was " + e.getMessage());
+        }
+    }
+
+    /**
+     * A new index keeps the records of the one before it as they were, except for the ones replaced by images given in
+     * memory and the ones removed.
+     */
+    private static void merge(File dir) throws IOException {
+        File first = new File(dir, "merge.idx"), second = new File(dir, "merge.idx.1");
+        Map<String, Image> images = sampleImages();
+        new ImageIndexWriter().write(null, images, Collections.emptySet(), first);
+        ImageIndex previous = ImageIndex.open(first, ImageTag::named);
+
+        Map<String, Image> changed = new LinkedHashMap<>();
+        changed.put("/photos/city.jpg", image("/photos/city @night.jpg", "city.jpg", "@night"));
+        changed.put("/photos/aaa.jpg", image("/photos/aaa.jpg", null));
+        changed.put("/photos/zzz.jpg", image("/photos/zzz @sun.jpg", "zzz.jpg", "@sun"));
+
+        int count = new ImageIndexWriter().write(previous, changed,
+                new HashSet<>(Arrays.asList("/photos/beach.jpg", "/photos/never.jpg")), second);
+
+        Map<String, Image> expected = new TreeMap<>(images);
+        expected.remove("/photos/beach.jpg");
+        expected.putAll(changed);
+        assertEquals(expected.size(), count, "number of images in the merged index");
+
+        ImageIndex merged = ImageIndex.open(second, ImageTag::named);
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < merged.size(); i++){
+            String key = new String(merged.keyAt(i), StandardCharsets.UTF_8);
+            keys.add(key);
+            assertEquals(describe(expected.get(key)), describe(merged.imageAt(i)), "merged " + key);
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), keys, "keys of the merged index");
+        assertTrue(merged.find("/photos/beach.jpg") == null, "a removed image was carried over");
+    }
+
+    /**
+     * A record that can't be read is reported and skipped when the images of the index are walked, isn't found, and
+     * is left out when the next index is written, while every other image is still there.
+     */
+    private static void damaged(File dir) throws IOException {
+        dir.mkdirs();
+        File file = new File(dir, FileDataStore.INDEX_FILE);
+        Map<String, Image> images = new TreeMap<>(sampleImages());
+        new ImageIndexWriter().write(null, images, Collections.emptySet(), file);
+        List<String> keys = new ArrayList<>(images.keySet());
+
+        /* The record after its key no longer decodes, and the offset of another points past the end of the file */
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int record = buffer.getInt(ImageIndex.HEADER_SIZE + 4);
+        int afterKey = record + 1 + bytes[record];
+        Arrays.fill(bytes, afterKey, afterKey + 5, (byte) 0xFF);
+        buffer.putInt(ImageIndex.HEADER_SIZE + 2 * 4, Integer.MAX_VALUE - 8);
+        Files.write(file.toPath(), bytes);
+
+        FileDataStore store = new FileDataStore(dir);
+        store.load(ImageTag::named);
+
+        List<String> walked = new ArrayList<>();
+        store.forEachImage((key, tagNames) -> walked.add(key));
+        List<String> expected = new ArrayList<>(keys);
+        expected.remove(2);
+        expected.remove(1);
+        assertEquals(expected, walked, "images walked in a damaged index");
+
+        assertTrue(store.findImage(keys.get(1)) == null, "a damaged record was found");
+        for(String key : expected){
+            assertEquals(describe(images.get(key)), describe(store.findImage(key)), "image next to damaged records");
+        }
+        assertEquals(expected.size(), store.allImages().size(), "number of images decoded");
+
+        File next = new File(dir, "next.idx");
+        assertEquals(expected.size(), new ImageIndexWriter().write(ImageIndex.open(file, ImageTag::named),
+                new LinkedHashMap<>(), Collections.emptySet(), next), "number of images carried over");
+
+        ImageIndex rewritten = ImageIndex.open(next, ImageTag::named);
+        for(String key : expected){
+            assertEquals(describe(images.get(key)), describe(rewritten.find(key)), "carried over " + key);
+        }
+        store.close(new StoreSnapshot(null, null, null));
+    }
+
+    /**
+     * Returns a few images under keys of different lengths and characters, some with tags and previous names.
+     */
+    private static Map<String, Image> sampleImages() {
+        Map<String, Image> images = new LinkedHashMap<>();
+        images.put("/photos/beach.jpg", image("/photos/beach @sun @2019.jpg", "beach.jpg", "@sun", "@2019"));
+        images.put("/photos/city.jpg", image("/photos/city @2019.jpg", "city.jpg", "@2019"));
+        images.put("/photos/b.jpg", image("/photos/b.jpg", null));
+        images.put("/photos/\u00e9t\u00e9.jpg", image("/photos/\u00e9t\u00e9 @sun.jpg", "\u00e9t\u00e9.jpg", "@sun"));
+        images.put("/other/zz.jpg", image("/other/zz.jpg", "zz.jpg"));
+        return images;
+    }
+
+    /**
+     * Returns an image of the given file with the given original name and tags, and its original name as the only
+     * previous name if it has one.
+     */
+    private static Image image(String path, String ogName, String... tagNames) {
+        List<ImageTag> tags = new ArrayList<>();
+        for(String name : tagNames){
+            tags.add(ImageTag.named(name));
+        }
+        List<String> previous = ogName == null ? new ArrayList<>() : new ArrayList<>(Collections.singletonList(ogName));
+        return Image.restore(new File(path), ogName, tags, previous);
+    }
+
+    private static String describe(Image image) {
+        if(image == null){
+            return "no image";
+        }
+
+        List<String> tags = new ArrayList<>();
+        for(ImageTag tag : image.getAttachedTags()){
+            tags.add(tag.getName());
+        }
+        return image.getFile() + " og=" + image.getOgName() + " tags=" + tags + " previous="
+                + image.getPreviousFileNames();
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
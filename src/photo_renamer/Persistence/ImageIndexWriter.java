@@ -0,0 +1,176 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes an ImageIndex file. The images in an existing index are carried over into the new one as they are, without
+ * being decoded, and only the images given in memory are encoded. An image given in memory replaces the one saved
+ * under the same key in the existing index, and images can be left out of the new index by their keys.
+ *
+ * <br><br>
+ *
+ * The records are copied straight from the existing index to the file, so writing an index only holds the images
+ * given in memory and a list of where every record comes from. A record of the existing index that is damaged is
+ * reported and left out. The file is written next to its destination and then moved over it, so a crash while writing
+ * never leaves half an index behind.
+ */
+public class ImageIndexWriter {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Writes an index of the images in the given index together with the given images to the given file, replacing it
+     * if it exists. The file mustn't be mapped by an open ImageIndex, which on some systems can't be replaced; the
+     * FileDataStore writes every new index to a file of its own.
+     *
+     * @param previous the index to carry images over from, or null if there is none
+     * @param images the images to add to the index, by the name they are saved under
+     * @param removed the keys of the images in the existing index to leave out
+     * @param file the file to write to
+     * @return the number of images in the new index
+     * @throws IOException if the file couldn't be written
+     */
+    public int write(ImageIndex previous, Map<String, Image> images, Set<String> removed, File file) throws IOException {
+
+        /* The records of the new images, sorted the same way as the records in the index */
+        TreeMap<byte[], byte[]> added = new TreeMap<>(ImageIndexWriter::compare);
+        for(Map.Entry<String, Image> entry : images.entrySet()){
+            byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            added.put(key, encode(key, entry.getValue()));
+        }
+
+        /* Wrapped so the keys compare by their contents */
+        Set<ByteBuffer> removedKeys = new HashSet<>();
+        for(String key : removed){
+            removedKeys.add(ByteBuffer.wrap(key.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        List<byte[]> addedKeys = new ArrayList<>(added.keySet());
+        List<byte[]> addedRecords = new ArrayList<>(added.values());
+        int[] sources = merge(previous, addedKeys, removedKeys);
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            RecordOutput out = new RecordOutput(fileOut, 1 << 16);
+
+            out.writeInt(ImageIndex.MAGIC);
+            out.writeShort(ImageIndex.VERSION);
+            out.writeInt(sources.length);
+
+            int offset = ImageIndex.HEADER_SIZE + sources.length * 4;
+            for(int source : sources){
+                out.writeInt(offset);
+                offset += source >= 0 ? previous.recordLength(source) : addedRecords.get(-source - 1).length;
+            }
+            for(int source : sources){
+                out.write(source >= 0 ? previous.recordAt(source) : addedRecords.get(-source - 1));
+            }
+
+            out.flush();
+            fileOut.getFD().sync();
+        }
+
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return sources.length;
+    }
+
+    /**
+     * Merges the records of the given index, less the removed and damaged ones, with the records of the given new keys
+     * into one sorted order. Both are already sorted, so they are walked side by side.
+     *
+     * @return where each record of the new index comes from, in order: the position of a record in the given index, or
+     *         -1 - the position of a new key
+     */
+    private int[] merge(ImageIndex previous, List<byte[]> addedKeys, Set<ByteBuffer> removed) {
+        int count = previous == null ? 0 : previous.size();
+        int[] sources = new int[count + addedKeys.size()];
+        int length = 0, next = 0;
+        byte[] last = null;
+
+        for(int i = 0; i < count; i++){
+            byte[] key;
+            try {
+                key = previous.keyAt(i);
+                previous.recordLength(i);
+            }
+            catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e){
+                System.out.println("IMAGE INDEX IS DAMAGED, RECORD " + i + " LEFT OUT: " + e);
+                continue;
+            }
+
+            /* A key out of order would break looking up every key after it */
+            if(last != null && compare(key, last) <= 0){
+                System.out.println("IMAGE INDEX IS DAMAGED, RECORD " + i + " LEFT OUT: out of order");
+                continue;
+            }
+            last = key;
+
+            while(next < addedKeys.size() && compare(addedKeys.get(next), key) < 0){
+                sources[length++] = -1 - next++;
+            }
+
+            /* The image given in memory replaces the one in the index */
+            if(next < addedKeys.size() && compare(addedKeys.get(next), key) == 0){
+                sources[length++] = -1 - next++;
+            }
+            else if(!removed.contains(ByteBuffer.wrap(key))){
+                sources[length++] = i;
+            }
+        }
+
+        while(next < addedKeys.size()){
+            sources[length++] = -1 - next++;
+        }
+        return Arrays.copyOf(sources, length);
+    }
+
+    /**
+     * Encodes the record of the given image saved under the given key.
+     */
+    private static byte[] encode(byte[] key, Image image) {
+        RecordBuilder record = new RecordBuilder();
+        record.writeVarInt(key.length);
+        record.write(key);
+        record.writeString(image.getFile() == null ? null : image.getFile().getPath());
+        record.writeString(image.getOgName());
+
+        List<String> tagNames = new ArrayList<>();
+        if(image.getAttachedTags() != null){
+            for(ImageTag tag : image.getAttachedTags()){
+                tagNames.add(tag.getName());
+            }
+        }
+        record.writeStrings(tagNames);
+        record.writeStrings(image.getPreviousFileNames());
+        return record.toByteArray();
+    }
+
+    /**
+     * Compares two keys byte by byte as unsigned values, the order the records of an index are sorted in.
+     */
+    private static int compare(byte[] a, byte[] b) {
+        return ImageIndex.compare(ByteBuffer.wrap(a), 0, a.length, b);
+    }
+}
@@ -0,0 +1,556 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Saves the program's data in an embedded database through JDBC, such as H2 or SQLite. Every change is written to the
+ * database as it happens, and images are looked up by their key and logs by time through the database's indexes, so
+ * nothing has to be loaded in full to answer a query.
+ *
+ * <br><br>
+ *
+ * The driver isn't bundled with the program; it has to be on the class path, and the database is picked with the
+ * <code>photorenamer.jdbc.url</code> system property. The first time a database is opened, it is filled with the data
+ * saved in the program's files, which are left alone.
+ */
+public class JdbcDataStore implements DataStore {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The database used unless another one is given, an H2 database file in the working directory */
+    public static final String DEFAULT_URL = "jdbc:h2:./photorenamer";
+
+    /** The tables and indexes of the database, all written to work in both H2 and SQLite */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS images (image_key VARCHAR(1024) PRIMARY KEY, path VARCHAR(4096), og_name VARCHAR(1024))",
+            "CREATE TABLE IF NOT EXISTS image_tags (image_key VARCHAR(1024) NOT NULL, seq INT NOT NULL, tag VARCHAR(1024) NOT NULL, PRIMARY KEY (image_key, seq))",
+            "CREATE TABLE IF NOT EXISTS previous_names (image_key VARCHAR(1024) NOT NULL, seq INT NOT NULL, name VARCHAR(1024), PRIMARY KEY (image_key, seq))",
+            "CREATE TABLE IF NOT EXISTS logs (id BIGINT PRIMARY KEY, old_name VARCHAR(1024), current_name VARCHAR(1024), time_stamp VARCHAR(64), made_at BIGINT)",
+            "CREATE INDEX IF NOT EXISTS logs_by_time ON logs (made_at)",
+            "CREATE TABLE IF NOT EXISTS tags (seq INT PRIMARY KEY, name VARCHAR(1024) NOT NULL)"
+    };
+
+    private static final String LOG_COLUMNS = "SELECT id, old_name, current_name, time_stamp FROM logs ";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The JDBC url of the database */
+    private final String url;
+
+    /** The directory of the program's files, copied into the database when it is first opened */
+    private final File dir;
+
+    /** The one connection to the database, used by one thread at a time */
+    private Connection connection;
+
+    /** Finds the tag with a given name when an image is looked up */
+    private Function<String, ImageTag> tags;
+
+    /** The id of the next log and the position of the next tag */
+    private long nextLogId;
+    private int nextTagSeq;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new store in the database at the given url.
+     *
+     * @param url the JDBC url of the database
+     * @param dir the directory of the program's files
+     */
+    public JdbcDataStore(String url, File dir) {
+        this.url = url;
+        this.dir = dir;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Connects to the database, creates its tables if they don't exist, and loads the logs and tags saved in it.
+     *
+     * @param tags finds the tag with a given name, so that images looked up later share the program's tags
+     * @return the saved logs and tags
+     * @throws IOException if there is no driver for the database, or it couldn't be opened
+     */
+    @Override
+    public synchronized StoreSnapshot load(Function<String, ImageTag> tags) throws IOException {
+        this.tags = tags;
+
+        try {
+            connection = DriverManager.getConnection(url);
+
+            try (Statement statement = connection.createStatement()) {
+                for(String sql : SCHEMA){
+                    statement.execute(sql);
+                }
+            }
+
+            if(isEmpty()){
+                importFiles();
+            }
+
+            StoreSnapshot snapshot = new StoreSnapshot(null, readLogs(), readTags());
+            nextLogId = queryLong("SELECT MAX(id) FROM logs") + 1;
+            nextTagSeq = (int) queryLong("SELECT MAX(seq) FROM tags") + 1;
+
+            System.out.println("DATABASE LOADED");
+            return snapshot;
+        }
+        catch (SQLException e){
+            closeQuietly();
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized Image findImage(String key) {
+        try {
+            return readImage(key);
+        }
+        catch (SQLException e){
+            failed(e);
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void forEachImage(BiConsumer<String, List<String>> visitor) {
+
+        /* Images without tags still have a row, so that every image is visited */
+        try (Statement query = connection.createStatement();
+             ResultSet rows = query.executeQuery("SELECT i.image_key, t.tag FROM images i "
+                     + "LEFT JOIN image_tags t ON t.image_key = i.image_key ORDER BY i.image_key, t.seq")) {
+
+            String key = null;
+            List<String> tagNames = new ArrayList<>();
+            while(rows.next()){
+                String rowKey = rows.getString(1);
+                if(key != null && !key.equals(rowKey)){
+                    visitor.accept(key, tagNames);
+                    tagNames = new ArrayList<>();
+                }
+
+                key = rowKey;
+                String tag = rows.getString(2);
+                if(tag != null){
+                    tagNames.add(tag);
+                }
+            }
+            if(key != null){
+                visitor.accept(key, tagNames);
+            }
+        }
+        catch (SQLException e){
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized List<ImageLog> findLogsBetween(long from, long to) {
+        return queryLogs(LOG_COLUMNS + "WHERE made_at >= ? AND made_at < ? ORDER BY id", from, to);
+    }
+
+    @Override
+    public synchronized void imageSaved(String key, Image image) {
+        try {
+            connection.setAutoCommit(false);
+            writeImage(key, image);
+            connection.commit();
+        }
+        catch (SQLException e){
+            rollbackQuietly();
+            failed(e);
+        }
+        finally {
+            autoCommitQuietly();
+        }
+    }
+
+    @Override
+    public synchronized void imageRemoved(String key) {
+        try {
+            connection.setAutoCommit(false);
+            deleteImage(key);
+            connection.commit();
+        }
+        catch (SQLException e){
+            rollbackQuietly();
+            failed(e);
+        }
+        finally {
+            autoCommitQuietly();
+        }
+    }
+
+    @Override
+    public synchronized void logAdded(ImageLog log) {
+        try {
+            writeLog(log);
+        }
+        catch (SQLException e){
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void logsAdded(List<ImageLog> logs) {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO logs (id, old_name, current_name, time_stamp, made_at) VALUES (?, ?, ?, ?, ?)")) {
+            connection.setAutoCommit(false);
+
+            /* One transaction and one round trip for the whole batch, rather than one of each for every log */
+            for(ImageLog log : logs){
+                insert.setLong(1, nextLogId++);
+                insert.setString(2, log.getOldName());
+                insert.setString(3, log.getCurrentName());
+                insert.setString(4, log.getTimeStamp());
+                insert.setLong(5, log.getTime());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        catch (SQLException e){
+            rollbackQuietly();
+            failed(e);
+        }
+        finally {
+            autoCommitQuietly();
+        }
+    }
+
+    @Override
+    public synchronized void tagCreated(String name) {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO tags (seq, name) VALUES (?, ?)")) {
+            insert.setInt(1, nextTagSeq++);
+            insert.setString(2, name);
+            insert.executeUpdate();
+        }
+        catch (SQLException e){
+            failed(e);
+        }
+    }
+
+    @Override
+    public synchronized void tagDeleted(String name) {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM tags WHERE name = ?")) {
+            delete.setString(1, "@" + name);
+            delete.executeUpdate();
+        }
+        catch (SQLException e){
+            failed(e);
+        }
+    }
+
+    /**
+     * Closes the connection. Every change was already written as it happened.
+     *
+     * @param current the program's images, logs, and tags as they are now
+     */
+    @Override
+    public synchronized void close(StoreSnapshot current) {
+        closeQuietly();
+    }
+
+    /**
+     * Returns whether the database has nothing saved in it.
+     */
+    private boolean isEmpty() throws SQLException {
+        return queryLong("SELECT COUNT(*) FROM images") == 0 && queryLong("SELECT COUNT(*) FROM logs") == 0
+                && queryLong("SELECT COUNT(*) FROM tags") == 0;
+    }
+
+    /**
+     * Copies the data saved in the program's files into the database, all in one transaction.
+     */
+    private void importFiles() throws SQLException {
+        if(!new File(dir, FileDataStore.STORE_FILE).exists() && FileDataStore.indexGenerations(dir).isEmpty()
+                && !LegacySerializedStore.exists(dir)){
+            return;
+        }
+
+        FileDataStore files = new FileDataStore(dir);
+        StoreSnapshot snapshot = files.load(tags);
+        Map<String, Image> images = files.allImages();
+
+        try {
+            connection.setAutoCommit(false);
+
+            for(Map.Entry<String, Image> entry : images.entrySet()){
+                writeImage(entry.getKey(), entry.getValue());
+            }
+
+            nextLogId = 1;
+            for(ImageLog log : snapshot.getLogs()){
+                writeLog(log);
+            }
+
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO tags (seq, name) VALUES (?, ?)")) {
+                int seq = 1;
+                for(ImageTag tag : snapshot.getTags()){
+                    insert.setInt(1, seq++);
+                    insert.setString(2, tag.getName());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+
+            connection.commit();
+            System.out.println("FILES IMPORTED INTO DATABASE");
+        }
+        catch (SQLException e){
+            rollbackQuietly();
+            throw e;
+        }
+        finally {
+            autoCommitQuietly();
+            files.close(new StoreSnapshot(null, snapshot.getLogs(), snapshot.getTags()));
+        }
+    }
+
+    /**
+     * Reads the image saved under the given key, or null if there is none.
+     */
+    private Image readImage(String key) throws SQLException {
+        String path, ogName;
+
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT path, og_name FROM images WHERE image_key = ?")) {
+            query.setString(1, key);
+
+            try (ResultSet rows = query.executeQuery()) {
+                if(!rows.next()){
+                    return null;
+                }
+                path = rows.getString(1);
+                ogName = rows.getString(2);
+            }
+        }
+
+        List<ImageTag> attached = new ArrayList<>();
+        for(String name : queryStrings("SELECT tag FROM image_tags WHERE image_key = ? ORDER BY seq", key)){
+            attached.add(tags.apply(name));
+        }
+
+        List<String> previous = queryStrings("SELECT name FROM previous_names WHERE image_key = ? ORDER BY seq", key);
+        return Image.restore(new File(path), ogName, attached, previous);
+    }
+
+    /**
+     * Replaces the image saved under the given key. Must be called inside a transaction.
+     */
+    private void writeImage(String key, Image image) throws SQLException {
+        deleteImage(key);
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO images (image_key, path, og_name) VALUES (?, ?, ?)")) {
+            insert.setString(1, key);
+            insert.setString(2, image.getFile().getPath());
+            insert.setString(3, image.getOgName());
+            insert.executeUpdate();
+        }
+
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO image_tags (image_key, seq, tag) VALUES (?, ?, ?)")) {
+            int seq = 0;
+            for(ImageTag tag : image.getAttachedTags()){
+                insert.setString(1, key);
+                insert.setInt(2, seq++);
+                insert.setString(3, tag.getName());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        if(image.getPreviousFileNames() != null){
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO previous_names (image_key, seq, name) VALUES (?, ?, ?)")) {
+                int seq = 0;
+                for(String name : image.getPreviousFileNames()){
+                    insert.setString(1, key);
+                    insert.setInt(2, seq++);
+                    insert.setString(3, name);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Deletes the image saved under the given key. Must be called inside a transaction.
+     */
+    private void deleteImage(String key) throws SQLException {
+        for(String table : new String[]{"images", "image_tags", "previous_names"}){
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE image_key = ?")) {
+                delete.setString(1, key);
+                delete.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Saves the given log under the next id.
+     */
+    private void writeLog(ImageLog log) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO logs (id, old_name, current_name, time_stamp, made_at) VALUES (?, ?, ?, ?, ?)")) {
+            insert.setLong(1, nextLogId++);
+            insert.setString(2, log.getOldName());
+            insert.setString(3, log.getCurrentName());
+            insert.setString(4, log.getTimeStamp());
+            insert.setLong(5, log.getTime());
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads every log, oldest first.
+     */
+    private ConcurrentLinkedDeque<ImageLog> readLogs() throws SQLException {
+        ConcurrentLinkedDeque<ImageLog> logs = new ConcurrentLinkedDeque<>();
+
+        try (Statement query = connection.createStatement();
+             ResultSet rows = query.executeQuery(LOG_COLUMNS + "ORDER BY id")) {
+            while(rows.next()){
+                logs.add(new ImageLog(rows.getString(2), rows.getString(3), rows.getString(4)));
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Reads the list of all tags, in the order they were added.
+     */
+    private List<ImageTag> readTags() throws SQLException {
+        Map<String, ImageTag> tagsByName = new HashMap<>();
+        List<ImageTag> list = new ArrayList<>();
+
+        try (Statement query = connection.createStatement();
+             ResultSet rows = query.executeQuery("SELECT name FROM tags ORDER BY seq")) {
+            while(rows.next()){
+                ImageTag tag = tagsByName.computeIfAbsent(rows.getString(1), ImageTag::named);
+                if(!list.contains(tag)){
+                    list.add(tag);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Runs the given query of logs with the given parameters.
+     */
+    private List<ImageLog> queryLogs(String sql, Object... parameters) {
+        List<ImageLog> logs = new ArrayList<>();
+
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            for(int i = 0; i < parameters.length; i++){
+                query.setObject(i + 1, parameters[i]);
+            }
+
+            try (ResultSet rows = query.executeQuery()) {
+                while(rows.next()){
+                    logs.add(new ImageLog(rows.getString(2), rows.getString(3), rows.getString(4)));
+                }
+            }
+        }
+        catch (SQLException e){
+            failed(e);
+        }
+        return logs;
+    }
+
+    /**
+     * Runs the given query of strings with the given key.
+     */
+    private List<String> queryStrings(String sql, String key) throws SQLException {
+        List<String> strings = new ArrayList<>();
+
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setString(1, key);
+
+            try (ResultSet rows = query.executeQuery()) {
+                while(rows.next()){
+                    strings.add(rows.getString(1));
+                }
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * Runs the given query of a single number, 0 if it is null.
+     */
+    private long queryLong(String sql) throws SQLException {
+        try (Statement query = connection.createStatement(); ResultSet rows = query.executeQuery(sql)) {
+            return rows.next() ? rows.getLong(1) : 0;
+        }
+    }
+
+    private void failed(SQLException e) {
+        System.out.println("DATABASE COULD NOT BE USED: " + e.getMessage());
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback();
+        }
+        catch (SQLException ignored){}
+    }
+
+    private void autoCommitQuietly() {
+        try {
+            connection.setAutoCommit(true);
+        }
+        catch (SQLException ignored){}
+    }
+
+    private void closeQuietly() {
+        try {
+            if(connection != null){
+                connection.close();
+            }
+        }
+        catch (SQLException ignored){}
+        connection = null;
+    }
+}
@@ -0,0 +1,514 @@
+package photo_renamer.Persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of every change made to the program's data since the binary store was last written. Each change
+ * is a small record appended to the end of the file, so saving a change costs the same no matter how much history there
+ * is. On startup the records are replayed on top of the store, and once the journal grows large its changes are
+ * compacted into a new store and the journal is started over.
+ *
+ * <br><br>
+ *
+ * Records are written to the disk by a background thread, which gathers every record appended within a short interval
+ * and writes them with a single fsync. The file is laid out as:
+ *
+ * <pre>
+ *     header:  int magic "PRJL", short version, int checksum of the store the journal applies to
+ *     record:  varint payload length, payload (byte type, fields...), int CRC32 of the payload
+ * </pre>
+ *
+ * A journal whose store checksum doesn't match the store was already compacted into it, and is ignored. A record that
+ * was only partly written when the program stopped is cut off.
+ */
+public class Journal implements AutoCloseable {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private static final int MAGIC = 0x50524A4C; // "PRJL"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 10;
+
+    /** The types of records */
+    private static final byte IMAGE_SAVED = 1, LOG_ADDED = 2, TAG_CREATED = 3, TAG_DELETED = 4, IMAGE_REMOVED = 5;
+
+    /** How long the writer waits for more records before writing a batch, in milliseconds */
+    private static final long COMMIT_INTERVAL = 20;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The channel of the journal's file */
+    private final FileChannel channel;
+
+    /** Records appended but not yet written */
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    /** The length of the file, including the records waiting to be written */
+    private long size;
+
+    /** The thread writing the records */
+    private final Thread writer;
+
+    private boolean closed = false;
+
+    /** Whether or not the writer is in the middle of writing a batch */
+    private boolean writing = false;
+
+    /** The first error hit while writing, reported on the next append */
+    private IOException writeError;
+
+    /** Run by the writer after every batch it writes, null if nothing is */
+    private volatile Runnable onCommitted;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private Journal(FileChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+
+        writer = new Thread(this::run, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Opens the journal in the given file, first replaying its records to the given handler if it applies to the store
+     * with the given checksum. A journal of another store, or a file that isn't a journal, is started over.
+     *
+     * @param file the file of the journal
+     * @param storeChecksum the checksum of the store that was loaded, or 0 if there is no store
+     * @param handler told about every record in the journal
+     * @return the journal, ready to have records appended to it
+     * @throws IOException if the file couldn't be opened
+     */
+    public static Journal open(File file, int storeChecksum, Handler handler) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            long valid = replay(channel, storeChecksum, handler);
+
+            if(valid < 0){
+                writeHeader(channel, storeChecksum);
+                valid = HEADER_SIZE;
+            }
+            else if(valid < channel.size()){
+                channel.truncate(valid);
+            }
+
+            return new Journal(channel, valid);
+        }
+        catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays the records of the journal in the given channel.
+     *
+     * @return the length of the journal up to the end of its last whole record, or -1 if it has to be started over
+     */
+    private static long replay(FileChannel channel, int storeChecksum, Handler handler) throws IOException {
+        long length = channel.size();
+        if(length < HEADER_SIZE){
+            return -1;
+        }
+
+        ByteBuffer in = ByteBuffer.allocate((int) length);
+        while(in.hasRemaining() && channel.read(in, in.position()) >= 0){}
+        in.flip();
+
+        if(in.getInt() != MAGIC || in.getShort() != VERSION || in.getInt() != storeChecksum){
+            return -1;
+        }
+
+        CRC32 crc = new CRC32();
+        long valid = in.position();
+
+        while(in.hasRemaining()){
+            try {
+                int payloadLength = RecordBuilder.readVarInt(in);
+                if(payloadLength <= 0 || in.remaining() < payloadLength + 4){
+                    break;
+                }
+
+                int start = in.position();
+                crc.reset();
+                crc.update(in.array(), start, payloadLength);
+
+                ByteBuffer payload = ByteBuffer.wrap(in.array(), start, payloadLength).slice();
+                in.position(start + payloadLength);
+                if(in.getInt() != (int) crc.getValue()){
+                    break;
+                }
+
+                apply(payload, handler);
+                valid = in.position();
+            }
+            catch (BufferUnderflowException | IndexOutOfBoundsException e){
+                break;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Hands the change in the given record to the handler.
+     */
+    private static void apply(ByteBuffer payload, Handler handler) {
+        byte type = payload.get();
+
+        switch (type){
+            case IMAGE_SAVED: {
+                String key = RecordBuilder.readString(payload);
+                String path = RecordBuilder.readString(payload);
+                String ogName = RecordBuilder.readString(payload);
+                List<String> tags = RecordBuilder.readStrings(payload);
+                List<String> previousNames = RecordBuilder.readStrings(payload);
+                handler.imageSaved(key, path, ogName, tags, previousNames);
+                break;
+            }
+            case LOG_ADDED:
+                handler.logAdded(RecordBuilder.readString(payload), RecordBuilder.readString(payload), RecordBuilder.readString(payload));
+                break;
+            case TAG_CREATED:
+                handler.tagCreated(RecordBuilder.readString(payload));
+                break;
+            case TAG_DELETED:
+                handler.tagDeleted(RecordBuilder.readString(payload));
+                break;
+            case IMAGE_REMOVED:
+                handler.imageRemoved(RecordBuilder.readString(payload));
+                break;
+            default:
+                /* Records of a type this version doesn't know about are skipped */
+                break;
+        }
+    }
+
+    /**
+     * Appends a record that an image was saved with the given state, replacing any earlier state saved under its key.
+     */
+    public void imageSaved(String key, String path, String ogName, List<String> tags, List<String> previousNames) throws IOException {
+        RecordBuilder record = new RecordBuilder();
+        record.writeByte(IMAGE_SAVED);
+        record.writeString(key);
+        record.writeString(path);
+        record.writeString(ogName);
+        record.writeStrings(tags);
+        record.writeStrings(previousNames);
+        append(record);
+    }
+
+    /**
+     * Appends a record that the image saved under the given key is no longer saved.
+     */
+    public void imageRemoved(String key) throws IOException {
+        RecordBuilder record = new RecordBuilder();
+        record.writeByte(IMAGE_REMOVED);
+        record.writeString(key);
+        append(record);
+    }
+
+    /**
+     * Appends a record that an image log was made.
+     */
+    public void logAdded(String oldName, String currentName, String timeStamp) throws IOException {
+        RecordBuilder record = new RecordBuilder();
+        record.writeByte(LOG_ADDED);
+        record.writeString(oldName);
+        record.writeString(currentName);
+        record.writeString(timeStamp);
+        append(record);
+    }
+
+    /**
+     * Appends a record that a tag was added to the list of all tags.
+     */
+    public void tagCreated(String name) throws IOException {
+        RecordBuilder record = new RecordBuilder();
+        record.writeByte(TAG_CREATED);
+        record.writeString(name);
+        append(record);
+    }
+
+    /**
+     * Appends a record that a tag was removed from the list of all tags.
+     */
+    public void tagDeleted(String name) throws IOException {
+        RecordBuilder record = new RecordBuilder();
+        record.writeByte(TAG_DELETED);
+        record.writeString(name);
+        append(record);
+    }
+
+    /**
+     * Queues the given record to be written by the writer thread.
+     */
+    private synchronized void append(RecordBuilder record) throws IOException {
+        if(writeError != null){
+            throw writeError;
+        }
+        if(closed){
+            throw new IOException("Journal is closed");
+        }
+
+        size += writeFramed(record.toByteArray(), pending);
+        notifyAll();
+    }
+
+    /**
+     * Writes the given payload to the given stream framed as a record: its length, the payload, and its checksum.
+     *
+     * @return the number of bytes written
+     */
+    private static int writeFramed(byte[] payload, ByteArrayOutputStream out) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        RecordBuilder frame = new RecordBuilder();
+        frame.writeVarInt(payload.length);
+        frame.write(payload);
+        frame.writeInt((int) crc.getValue());
+
+        byte[] bytes = frame.toByteArray();
+        out.write(bytes, 0, bytes.length);
+        return bytes.length;
+    }
+
+    /**
+     * Waits until every record appended so far has been written and synced to the disk.
+     *
+     * @throws IOException if the records couldn't be written
+     */
+    public synchronized void flush() throws IOException {
+        while((pending.size() > 0 || writing) && writeError == null && writer.isAlive()){
+            try {
+                wait();
+            }
+            catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if(writeError != null){
+            throw writeError;
+        }
+    }
+
+    /**
+     * Throws away every record and starts the journal over for the store with the given checksum. Used once the
+     * journal's changes have been compacted into that store.
+     *
+     * @param storeChecksum the checksum of the new store
+     * @throws IOException if the journal couldn't be started over
+     */
+    public synchronized void reset(int storeChecksum) throws IOException {
+        reset(storeChecksum, size);
+    }
+
+    /**
+     * Throws away the records before the given length of the journal and starts it over for the store with the given
+     * checksum, keeping the records appended after that. Used once the changes up to that length have been compacted
+     * into that store while the program went on making others.
+     *
+     * @param storeChecksum the checksum of the new store
+     * @param from the length of the journal, as given by size, when the store was taken
+     * @throws IOException if the journal couldn't be started over
+     */
+    public synchronized void reset(int storeChecksum, long from) throws IOException {
+        flush();
+
+        ByteBuffer kept = ByteBuffer.allocate((int) (size - from));
+        while(kept.hasRemaining() && channel.read(kept, from + kept.position()) >= 0){}
+        kept.flip();
+
+        writeHeader(channel, storeChecksum);
+        while(kept.hasRemaining()){
+            channel.write(kept, HEADER_SIZE + kept.position());
+        }
+        channel.force(false);
+        size = HEADER_SIZE + kept.limit();
+    }
+
+    /**
+     * Writes every record appended so far, and then closes the journal.
+     *
+     * @throws IOException if the records couldn't be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this){
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        channel.close();
+
+        if(writeError != null){
+            throw writeError;
+        }
+    }
+
+    /**
+     * Waits for records, gathers every record appended within the commit interval, and then writes them all with a
+     * single sync.
+     */
+    private void run() {
+        while(true){
+            ByteArrayOutputStream batch;
+
+            synchronized (this){
+                while(pending.size() == 0 && !closed){
+                    try {
+                        wait();
+                    }
+                    catch (InterruptedException e){
+                        return;
+                    }
+                }
+                if(pending.size() == 0){
+                    return;
+                }
+
+                /* Give other records a moment to join this batch */
+                if(!closed){
+                    try {
+                        wait(COMMIT_INTERVAL);
+                    }
+                    catch (InterruptedException e){
+                        return;
+                    }
+                }
+
+                batch = pending;
+                pending = new ByteArrayOutputStream();
+                writing = true;
+            }
+
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+                while(bytes.hasRemaining()){
+                    channel.write(bytes, channel.size());
+                }
+                channel.force(false);
+            }
+            catch (IOException e){
+                synchronized (this){
+                    writeError = e;
+                    writing = false;
+                    notifyAll();
+                }
+                return;
+            }
+
+            synchronized (this){
+                writing = false;
+                notifyAll();
+            }
+
+            Runnable listener = onCommitted;
+            if(listener != null){
+                listener.run();
+            }
+        }
+    }
+
+    private static void writeHeader(FileChannel channel, int storeChecksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(VERSION).putInt(storeChecksum);
+        header.flip();
+
+        channel.truncate(0);
+        while(header.hasRemaining()){
+            channel.write(header, HEADER_SIZE - header.remaining());
+        }
+        channel.force(false);
+    }
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the length of the journal, including the records that haven't been written yet.
+     *
+     * @return the length in bytes
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Sets what is run by the writer thread after every batch of records it writes and syncs to the disk. It should
+     * return quickly, since the next batch waits for it.
+     *
+     * @param onCommitted run after every batch, or null for nothing
+     */
+    public void setOnCommitted(Runnable onCommitted) {
+        this.onCommitted = onCommitted;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Handler                                                                   *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Told about every record in a journal as it is replayed, in the order they were appended.
+     */
+    public interface Handler {
+
+        void imageSaved(String key, String path, String ogName, List<String> tags, List<String> previousNames);
+
+        void imageRemoved(String key);
+
+        void logAdded(String oldName, String currentName, String timeStamp);
+
+        void tagCreated(String name);
+
+        void tagDeleted(String name);
+    }
+}
@@ -0,0 +1,264 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that every record appended to a Journal is replayed when it is opened again, that a record cut off when the
+ * program stopped is thrown away, that a journal of another store is started over, and that a FileDataStore compacts
+ * its journal in the background once it grows large. It exits with 1 if any check fails.
+ */
+public class JournalTest {
+
+    /** How large the journal of the store checked can grow before it is compacted, in bytes */
+    private static final long COMPACT_BYTES = 4096;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("photorenamer.journal.compactBytes", Long.toString(COMPACT_BYTES));
+
+        File dir = Files.createTempDirectory("journal").toFile();
+        try {
+            replay(dir);
+            tornTail(dir);
+            otherStore(dir);
+            resetKeepsLaterRecords(dir);
+            compactInBackground(new File(dir, "store"));
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            BinaryStoreTest.deleteAll(dir);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Every type of record comes back in the order it was appended, and the writer reports every batch it writes.
+     */
+    private static void replay(File dir) throws IOException, InterruptedException {
+        File file = new File(dir, "replay.journal");
+
+        CountDownLatch committed = new CountDownLatch(1);
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            journal.setOnCommitted(committed::countDown);
+            appendSample(journal);
+            journal.flush();
+            assertEquals(file.length(), journal.size(), "size of the journal");
+        }
+        assertTrue(committed.await(5, TimeUnit.SECONDS), "the writer didn't report the batch it wrote");
+
+        assertEquals(SAMPLE, replayed(file, 7), "records replayed");
+
+        /* Opening the journal again appends after the records already in it */
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            journal.imageRemoved("/photos/city.jpg");
+        }
+        List<String> expected = new ArrayList<>(SAMPLE);
+        expected.add("removed /photos/city.jpg");
+        assertEquals(expected, replayed(file, 7), "records replayed after appending more");
+    }
+
+    /**
+     * A record that was only partly written, or bytes that aren't a record, are cut off, and records appended
+     * afterwards follow the last whole record.
+     */
+    private static void tornTail(File dir) throws IOException {
+        File file = new File(dir, "torn.journal");
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            appendSample(journal);
+        }
+        long whole = file.length();
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.setLength(whole - 3);
+        }
+        assertEquals(SAMPLE.subList(0, SAMPLE.size() - 1), replayed(file, 7),
+                "records replayed from a cut off journal");
+        assertTrue(file.length() < whole - 3, "the cut off record was left in the file");
+
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            journal.tagDeleted("sun");
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(raw.length());
+            raw.write(new byte[]{5, 1, 2});
+        }
+        List<String> expected = new ArrayList<>(SAMPLE.subList(0, SAMPLE.size() - 1));
+        expected.add("tag deleted sun");
+        assertEquals(expected, replayed(file, 7), "records replayed after bytes that aren't a record");
+
+        /* A record whose checksum doesn't match stops the replay there */
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 6] ^= 0x20;
+        Files.write(file.toPath(), bytes);
+        assertEquals(SAMPLE.subList(0, SAMPLE.size() - 1), replayed(file, 7), "records replayed after a damaged one");
+    }
+
+    /**
+     * A journal of a store with another checksum was already compacted into the store, so nothing is replayed and it
+     * is started over for the store it was opened with.
+     */
+    private static void otherStore(File dir) throws IOException {
+        File file = new File(dir, "other.journal");
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            appendSample(journal);
+        }
+
+        assertEquals(Collections.emptyList(), replayed(file, 8), "records replayed for another store");
+        assertEquals(10L, file.length(), "length of the journal started over");
+        assertEquals(Collections.emptyList(), replayed(file, 7), "records replayed for the first store");
+
+        Files.write(file.toPath(), "not a journal".getBytes("UTF-8"));
+        assertEquals(Collections.emptyList(), replayed(file, 7), "records replayed from a file that isn't a journal");
+    }
+
+    /**
+     * Starting the journal over for a new store keeps the records appended after the store was taken.
+     */
+    private static void resetKeepsLaterRecords(File dir) throws IOException {
+        File file = new File(dir, "reset.journal");
+        try (Journal journal = Journal.open(file, 7, new Recorder())) {
+            appendSample(journal);
+            long mark = journal.size();
+            journal.tagCreated("@later");
+            journal.imageRemoved("/photos/beach.jpg");
+
+            journal.reset(9, mark);
+            journal.tagCreated("@after");
+        }
+
+        assertEquals(Arrays.asList("tag created @later", "removed /photos/beach.jpg", "tag created @after"),
+                replayed(file, 9), "records replayed for the new store");
+    }
+
+    /**
+     * Once the journal of a FileDataStore grows past the threshold, its changes are written into a new store and
+     * index while more changes are saved, and nothing saved before or during the compaction is lost.
+     */
+    private static void compactInBackground(File dir) throws IOException, InterruptedException {
+        dir.mkdirs();
+        FileDataStore store = new FileDataStore(dir);
+        store.load(ImageTag::named);
+        File journal = new File(dir, FileDataStore.JOURNAL_FILE);
+
+        store.tagCreated("@beach");
+        int saved = 0;
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!new File(dir, FileDataStore.STORE_FILE).exists() || journal.length() > COMPACT_BYTES){
+            assertTrue(System.currentTimeMillis() < deadline, "the journal was never compacted");
+
+            String key = "/photos/img" + saved + ".jpg";
+            store.imageSaved(key, Image.restore(new File("/photos/img" + saved + " @beach.jpg"), "img" + saved + ".jpg",
+                    new ArrayList<>(Collections.singletonList(ImageTag.named("beach"))),
+                    new ArrayList<>(Collections.singletonList("img" + saved + ".jpg"))));
+            store.logAdded(new ImageLog("img" + saved + ".jpg", "img" + saved + " @beach.jpg", "01/06/19 10:00:00"));
+            store.imageRemoved("/photos/removed" + saved + ".jpg");
+            saved++;
+            Thread.sleep(1);
+        }
+        store.imageSaved("/photos/last.jpg", Image.restore(new File("/photos/last.jpg"), null, new ArrayList<>(),
+                new ArrayList<>()));
+        store.close(new StoreSnapshot(null, null, null));
+        assertTrue(journal.length() <= COMPACT_BYTES, "the journal was left large");
+
+        FileDataStore reopened = new FileDataStore(dir);
+        StoreSnapshot snapshot = reopened.load(ImageTag::named);
+        for(int i = 0; i < saved; i++){
+            Image image = reopened.findImage("/photos/img" + i + ".jpg");
+            assertTrue(image != null, "image " + i + " of " + saved + " was lost");
+            assertEquals("img" + i + " @beach.jpg", image.getFile().getName(), "name of image " + i);
+            assertEquals("@beach", image.getAttachedTags().get(0).getName(), "tag of image " + i);
+        }
+        assertTrue(reopened.findImage("/photos/last.jpg") != null, "the image saved last was lost");
+        assertTrue(reopened.findImage("/photos/removed0.jpg") == null, "a removed image came back");
+        assertEquals(saved, snapshot.getLogs().size(), "number of logs");
+        assertEquals(saved, reopened.findLogsBetween(0, Long.MAX_VALUE).size(), "number of logs found");
+        assertEquals("@beach", snapshot.getTags().get(0).getName(), "tag");
+        reopened.close(new StoreSnapshot(null, null, null));
+    }
+
+    /** What the records appended by appendSample are replayed as */
+    private static final List<String> SAMPLE = Arrays.asList(
+            "tag created @sun",
+            "saved /photos/beach.jpg /photos/beach @sun.jpg beach.jpg [@sun] [beach.jpg]",
+            "log beach.jpg -> beach @sun.jpg at 01/06/19 10:00:00",
+            "removed /photos/old.jpg",
+            "tag deleted sun");
+
+    private static void appendSample(Journal journal) throws IOException {
+        journal.tagCreated("@sun");
+        journal.imageSaved("/photos/beach.jpg", "/photos/beach @sun.jpg", "beach.jpg",
+                Collections.singletonList("@sun"), Collections.singletonList("beach.jpg"));
+        journal.logAdded("beach.jpg", "beach @sun.jpg", "01/06/19 10:00:00");
+        journal.imageRemoved("/photos/old.jpg");
+        journal.tagDeleted("sun");
+    }
+
+    /**
+     * Opens the journal in the given file for the store with the given checksum, and returns the records replayed.
+     */
+    private static List<String> replayed(File file, int storeChecksum) throws IOException {
+        Recorder recorder = new Recorder();
+        Journal.open(file, storeChecksum, recorder).close();
+        return recorder.records;
+    }
+
+    /**
+     * Describes every record it is told about.
+     */
+    private static class Recorder implements Journal.Handler {
+
+        private final List<String> records = new ArrayList<>();
+
+        @Override
+        public void imageSaved(String key, String path, String ogName, List<String> tags, List<String> previousNames) {
+            records.add("saved " + key + " " + path + " " + ogName + " " + tags + " " + previousNames);
+        }
+
+        @Override
+        public void imageRemoved(String key) {
+            records.add("removed " + key);
+        }
+
+        @Override
+        public void logAdded(String oldName, String currentName, String timeStamp) {
+            records.add("log " + oldName + " -> " + currentName + " at " + timeStamp);
+        }
+
+        @Override
+        public void tagCreated(String name) {
+            records.add("tag created " + name);
+        }
+
+        @Override
+        public void tagDeleted(String name) {
+            records.add("tag deleted " + name);
+        }
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
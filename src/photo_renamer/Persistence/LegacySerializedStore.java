@@ -0,0 +1,107 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Reads and writes the Java serialization files the program used to save its data in: imageobjs.ser, imagelogs.ser,
+ * and imagetags.ser. Only used to migrate old data to the binary store, and to compare the two formats.
+ */
+public class LegacySerializedStore {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static final String IMAGES_FILE = "imageobjs.ser";
+    public static final String LOGS_FILE = "imagelogs.ser";
+    public static final String TAGS_FILE = "imagetags.ser";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns whether or not the given directory has all three serialization files.
+     *
+     * @param dir the directory
+     * @return true if all three files exist
+     */
+    public static boolean exists(File dir) {
+        return new File(dir, IMAGES_FILE).exists() && new File(dir, LOGS_FILE).exists() && new File(dir, TAGS_FILE).exists();
+    }
+
+    /**
+     * Reads the serialization files in the given directory. Nothing is returned unless all three files are read, so
+     * data is never migrated from only some of them.
+     *
+     * @param dir the directory the files are in
+     * @return the data in the files
+     * @throws IOException if a file couldn't be read, such as one that was cut off or saved by an incompatible version
+     */
+    @SuppressWarnings("unchecked")
+    public static StoreSnapshot read(File dir) throws IOException {
+        Map<String, Image> images = (Map<String, Image>) readObject(new File(dir, IMAGES_FILE), Map.class);
+        ConcurrentLinkedDeque<ImageLog> logs =
+                (ConcurrentLinkedDeque<ImageLog>) readObject(new File(dir, LOGS_FILE), ConcurrentLinkedDeque.class);
+        List<ImageTag> tags = (List<ImageTag>) readObject(new File(dir, TAGS_FILE), List.class);
+
+        return new StoreSnapshot(images, logs, tags);
+    }
+
+    /**
+     * Writes the given data into serialization files in the given directory.
+     *
+     * @param snapshot the data to write
+     * @param dir the directory to write the files in
+     * @throws IOException if a file couldn't be written
+     */
+    public static void write(StoreSnapshot snapshot, File dir) throws IOException {
+        writeObject(snapshot.getImages(), new File(dir, IMAGES_FILE));
+        writeObject(snapshot.getLogs(), new File(dir, LOGS_FILE));
+        writeObject(snapshot.getTags(), new File(dir, TAGS_FILE));
+    }
+
+    /**
+     * Reads the object in the given file, which has to be of the given type.
+     */
+    private static Object readObject(File file, Class<?> type) throws IOException {
+        Object o;
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            o = in.readObject();
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e){
+            throw new IOException(file.getName() + " could not be read: " + e, e);
+        }
+
+        if(!type.isInstance(o)){
+            throw new IOException(file.getName() + " does not hold a " + type.getSimpleName());
+        }
+        return o;
+    }
+
+    private static void writeObject(Object o, File file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(o);
+        }
+    }
+}
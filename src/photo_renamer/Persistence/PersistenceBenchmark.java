@@ -0,0 +1,154 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Compares saving and loading a history of renamed images in the binary store against the Java serialization files
+ * the program used to save them in, and against the image index, where loading is opening the index and looking up a
+ * typical session's worth of images. The history is made up: every image has a few tags out of a shared pool, a couple
+ * of previous names, and two logs.
+ *
+ * <br><br>
+ *
+ * Usage: <code>PersistenceBenchmark [number of images]</code>
+ */
+public class PersistenceBenchmark {
+
+    private static final int RUNS = 5;
+
+    /** The number of images looked up in the index, about as many as a session touches */
+    private static final int LOOKUPS = 300;
+
+    public static void main(String[] args) throws IOException {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        StoreSnapshot snapshot = createHistory(imageCount);
+        File dir = Files.createTempDirectory("persistence-benchmark").toFile();
+        File store = new File(dir, "photorenamer.dat");
+
+        System.out.printf("%,d images, %,d logs, %,d tags%n%n", snapshot.getImages().size(),
+                snapshot.getLogs().size(), snapshot.getTags().size());
+        System.out.printf("%-16s %10s %10s %12s%n", "Format", "Save ms", "Load ms", "Size KB");
+
+        /* Java serialization */
+        long save = Long.MAX_VALUE, load = Long.MAX_VALUE;
+        for(int i = 0; i < RUNS; i++){
+            long start = System.nanoTime();
+            LegacySerializedStore.write(snapshot, dir);
+            save = Math.min(save, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            LegacySerializedStore.read(dir);
+            load = Math.min(load, System.nanoTime() - start);
+        }
+        long size = new File(dir, LegacySerializedStore.IMAGES_FILE).length()
+                + new File(dir, LegacySerializedStore.LOGS_FILE).length()
+                + new File(dir, LegacySerializedStore.TAGS_FILE).length();
+        report("Serialization", save, load, size);
+
+        /* Binary store */
+        save = Long.MAX_VALUE;
+        load = Long.MAX_VALUE;
+        StoreSnapshot loaded = null;
+        for(int i = 0; i < RUNS; i++){
+            long start = System.nanoTime();
+            new BinaryStoreWriter().write(snapshot, store);
+            save = Math.min(save, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            loaded = new BinaryStoreReader().read(store);
+            load = Math.min(load, System.nanoTime() - start);
+        }
+        report("Binary store", save, load, store.length());
+
+        /* Image index */
+        File index = new File(dir, "photorenamer.idx");
+        List<String> keys = new ArrayList<>(snapshot.getImages().keySet());
+        save = Long.MAX_VALUE;
+        load = Long.MAX_VALUE;
+        int found = 0;
+        for(int i = 0; i < RUNS; i++){
+            long start = System.nanoTime();
+            new ImageIndexWriter().write(null, snapshot.getImages(), new HashSet<>(), index);
+            save = Math.min(save, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ImageIndex opened = ImageIndex.open(index, ImageTag::named);
+            found = 0;
+            for(int k = 0; k < LOOKUPS; k++){
+                if(opened.find(keys.get((k * 7919) % keys.size())) != null){
+                    found++;
+                }
+            }
+            load = Math.min(load, System.nanoTime() - start);
+        }
+        report("Image index", save, load, index.length());
+
+        if(found != LOOKUPS){
+            System.out.println("Indexed images weren't all found");
+        }
+
+        if(loaded.getImages().size() != snapshot.getImages().size() || loaded.getLogs().size() != snapshot.getLogs().size()){
+            System.out.println("Loaded data doesn't match what was saved");
+        }
+
+        /* Clean up */
+        for(File f : dir.listFiles()){
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Makes up a history of the given number of renamed images.
+     */
+    private static StoreSnapshot createHistory(int imageCount) {
+        List<ImageTag> tags = new ArrayList<>();
+        for(int i = 0; i < 200; i++){
+            tags.add(ImageTag.of("tag" + i));
+        }
+
+        Map<String, Image> images = new HashMap<>();
+        ConcurrentLinkedDeque<ImageLog> logs = new ConcurrentLinkedDeque<>();
+
+        for(int i = 0; i < imageCount; i++){
+            String folder = "/photos/" + (2000 + i % 20) + "/album" + (i % 500);
+            String ogName = "IMG_" + i + ".jpg";
+
+            List<ImageTag> attached = new ArrayList<>();
+            StringBuilder name = new StringBuilder("IMG_" + i);
+            for(int t = 0; t < 3; t++){
+                ImageTag tag = tags.get((i * 7 + t * 31) % tags.size());
+                attached.add(tag);
+                name.append(' ').append(tag.getName());
+            }
+            String newName = name + ".jpg";
+
+            List<String> previous = new ArrayList<>();
+            previous.add(ogName);
+            previous.add("IMG_" + i + " " + attached.get(0).getName() + ".jpg");
+
+            images.put(newName, Image.restore(new File(folder, newName), ogName, attached, previous));
+            logs.add(new ImageLog(previous.get(0), previous.get(1), "01/01/19 12:00:0" + i % 10));
+            logs.add(new ImageLog(previous.get(1), newName, "02/01/19 12:00:0" + i % 10));
+        }
+
+        return new StoreSnapshot(images, logs, tags);
+    }
+
+    private static void report(String label, long save, long load, long size) {
+        System.out.printf("%-16s %,10d %,10d %,12d%n", label, save / 1000000, load / 1000000, size / 1024);
+    }
+}
@@ -0,0 +1,126 @@
+package photo_renamer.Persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a single small record in memory, and decodes the fields of one. Counts are written as varints, and strings as
+ * their UTF-8 length plus one followed by their bytes, so that a length of 0 can stand for null.
+ */
+class RecordBuilder {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+    void writeByte(int b) {
+        bytes.write(b);
+    }
+
+    void writeInt(int i) {
+        bytes.write(i >>> 24);
+        bytes.write(i >>> 16);
+        bytes.write(i >>> 8);
+        bytes.write(i);
+    }
+
+    void write(byte[] b) {
+        bytes.write(b, 0, b.length);
+    }
+
+    /**
+     * Writes the given non-negative int in 7 bit groups, least significant first, with the top bit of each byte set if
+     * more bytes follow.
+     */
+    void writeVarInt(int value) {
+        while((value & ~0x7F) != 0){
+            bytes.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes.write(value);
+    }
+
+    void writeString(String s) {
+        if(s == null){
+            writeVarInt(0);
+            return;
+        }
+
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(b.length + 1);
+        write(b);
+    }
+
+    void writeStrings(List<String> strings) {
+        if(strings == null){
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(strings.size());
+        for(String s : strings){
+            writeString(s);
+        }
+    }
+
+    int size() {
+        return bytes.size();
+    }
+
+    byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads an int written by writeVarInt.
+     */
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IndexOutOfBoundsException("Malformed varint");
+    }
+
+    /**
+     * Reads a string written by writeString.
+     */
+    static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        if(length == 0){
+            return null;
+        }
+        if(length < 0 || length - 1 > in.remaining()){
+            throw new BufferUnderflowException();
+        }
+
+        byte[] b = new byte[length - 1];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a list written by writeStrings.
+     */
+    static List<String> readStrings(ByteBuffer in) {
+        int count = readVarInt(in);
+
+        /* Every string takes at least a byte, so a count larger than what is left can only be damage */
+        if(count < 0 || count > in.remaining()){
+            throw new BufferUnderflowException();
+        }
+        List<String> strings = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++){
+            strings.add(readString(in));
+        }
+        return strings;
+    }
+}
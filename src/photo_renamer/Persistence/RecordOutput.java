@@ -0,0 +1,104 @@
+package photo_renamer.Persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * A buffer that records of the binary store are written into, and then handed to an output stream in large chunks. A
+ * CRC32 is kept of everything that passes through it. Unlike a DataOutputStream over a BufferedOutputStream, writing a
+ * single byte is just a store into an array.
+ */
+class RecordOutput {
+
+    private final OutputStream out;
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer;
+    private int length = 0;
+
+    /**
+     * Instantiates a new output writing to the given stream.
+     *
+     * @param out the stream to write to
+     * @param capacity the size of the buffer
+     */
+    RecordOutput(OutputStream out, int capacity) {
+        this.out = out;
+        this.buffer = new byte[capacity];
+    }
+
+    void writeByte(int b) throws IOException {
+        if(length == buffer.length){
+            flush();
+        }
+        buffer[length++] = (byte) b;
+    }
+
+    void writeShort(int s) throws IOException {
+        writeByte(s >>> 8);
+        writeByte(s);
+    }
+
+    void writeInt(int i) throws IOException {
+        writeByte(i >>> 24);
+        writeByte(i >>> 16);
+        writeByte(i >>> 8);
+        writeByte(i);
+    }
+
+    void writeLong(long l) throws IOException {
+        writeInt((int) (l >>> 32));
+        writeInt((int) l);
+    }
+
+    void write(byte[] bytes) throws IOException {
+        if(length + bytes.length > buffer.length){
+            flush();
+        }
+        if(bytes.length > buffer.length){
+            crc.update(bytes, 0, bytes.length);
+            out.write(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Writes the given non-negative int in 7 bit groups, least significant first, with the top bit of each byte set if
+     * more bytes follow.
+     */
+    void writeVarInt(int value) throws IOException {
+        while((value & ~0x7F) != 0){
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the given string, preceded by their length.
+     */
+    void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        write(bytes);
+    }
+
+    /**
+     * Hands everything in the buffer to the stream.
+     */
+    void flush() throws IOException {
+        crc.update(buffer, 0, length);
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Returns the checksum of everything handed to the stream so far.
+     */
+    int getChecksum() {
+        return (int) crc.getValue();
+    }
+}
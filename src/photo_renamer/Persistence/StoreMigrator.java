@@ -0,0 +1,42 @@
+package photo_renamer.Persistence;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Moves the data saved by older versions of the program in Java serialization files over to the binary store. The
+ * serialization files are renamed with a <code>.migrated</code> suffix afterwards rather than deleted, so they are
+ * never migrated twice but can still be recovered by hand.
+ */
+public class StoreMigrator {
+
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    /**
+     * Migrates the serialization files in the given directory to a binary store in the given file, if the directory
+     * has them and the store doesn't exist yet.
+     *
+     * @param dir the directory the serialization files are in
+     * @param store the file of the binary store
+     * @return the migrated data, or null if there was nothing to migrate
+     * @throws IOException if a serialization file couldn't be read or the binary store couldn't be written, in which
+     *                     case no store is written and the serialization files are left as they are
+     */
+    public static StoreSnapshot migrate(File dir, File store) throws IOException {
+        if(store.exists() || !LegacySerializedStore.exists(dir)){
+            return null;
+        }
+
+        /* Only once every file is read is the store written, and only once it is written are the files put aside */
+        StoreSnapshot snapshot = LegacySerializedStore.read(dir);
+        new BinaryStoreWriter().write(snapshot, store);
+
+        for(String name : new String[]{LegacySerializedStore.IMAGES_FILE, LegacySerializedStore.LOGS_FILE,
+                LegacySerializedStore.TAGS_FILE}){
+            File legacy = new File(dir, name);
+            legacy.renameTo(new File(dir, name + MIGRATED_SUFFIX));
+        }
+
+        return snapshot;
+    }
+}
@@ -0,0 +1,111 @@
+package photo_renamer.Persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+/**
+ * Checks that the StoreMigrator moves the data in the serialization files of older versions into a binary store only
+ * once, and leaves everything as it was when a serialization file can't be read. It exits with 1 if any check fails.
+ */
+public class StoreMigratorTest {
+
+    public static void main(String[] args) throws IOException {
+        File dir = Files.createTempDirectory("storemigrator").toFile();
+        try {
+            migrate(new File(dir, "migrate"));
+            nothingToMigrate(new File(dir, "nothing"));
+            damagedLegacyFile(new File(dir, "damaged"));
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            BinaryStoreTest.deleteAll(dir);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * The data in the serialization files is written to the store, the files are put aside, and nothing is migrated
+     * the second time.
+     */
+    private static void migrate(File dir) throws IOException {
+        dir.mkdirs();
+        File store = new File(dir, "store.db");
+        StoreSnapshot snapshot = BinaryStoreTest.sampleSnapshot();
+        LegacySerializedStore.write(snapshot, dir);
+
+        StoreSnapshot migrated = StoreMigrator.migrate(dir, store);
+        assertTrue(migrated != null, "nothing was migrated");
+        assertEquals(BinaryStoreTest.describe(snapshot), BinaryStoreTest.describe(migrated), "migrated snapshot");
+        assertEquals(BinaryStoreTest.describe(snapshot), BinaryStoreTest.describe(new BinaryStoreReader().read(store)),
+                "snapshot in the store");
+
+        for(String name : new String[]{LegacySerializedStore.IMAGES_FILE, LegacySerializedStore.LOGS_FILE,
+                LegacySerializedStore.TAGS_FILE}){
+            assertTrue(!new File(dir, name).exists(), name + " was left in place");
+            assertTrue(new File(dir, name + ".migrated").exists(), name + " was not put aside");
+        }
+
+        /* Even with the serialization files back, a store that exists is never written over */
+        LegacySerializedStore.write(new StoreSnapshot(null, null, null), dir);
+        long modified = store.lastModified();
+        assertTrue(StoreMigrator.migrate(dir, store) == null, "a store was migrated twice");
+        assertEquals(modified, store.lastModified(), "time the store was modified");
+    }
+
+    /**
+     * Without every serialization file there is nothing to migrate, and no store is written.
+     */
+    private static void nothingToMigrate(File dir) throws IOException {
+        dir.mkdirs();
+        File store = new File(dir, "store.db");
+        assertTrue(StoreMigrator.migrate(dir, store) == null, "an empty directory was migrated");
+
+        LegacySerializedStore.write(BinaryStoreTest.sampleSnapshot(), dir);
+        new File(dir, LegacySerializedStore.TAGS_FILE).delete();
+        assertTrue(StoreMigrator.migrate(dir, store) == null, "a directory missing a file was migrated");
+        assertTrue(!store.exists(), "a store was written with nothing to migrate");
+    }
+
+    /**
+     * A serialization file that was cut off stops the migration before the store is written, and the files are left
+     * where they are to be migrated again.
+     */
+    private static void damagedLegacyFile(File dir) throws IOException {
+        dir.mkdirs();
+        File store = new File(dir, "store.db");
+        LegacySerializedStore.write(BinaryStoreTest.sampleSnapshot(), dir);
+
+        File logs = new File(dir, LegacySerializedStore.LOGS_FILE);
+        try (RandomAccessFile file = new RandomAccessFile(logs, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        try {
+            StoreMigrator.migrate(dir, store);
+            throw new AssertionError("a cut off serialization file was migrated");
+        }
+        catch (IOException e){
+            assertTrue(e.getMessage().startsWith(LegacySerializedStore.LOGS_FILE), "error was " + e.getMessage());
+        }
+
+        assertTrue(!store.exists(), "a store was written from a cut off file");
+        assertTrue(LegacySerializedStore.exists(dir), "the serialization files were put aside");
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
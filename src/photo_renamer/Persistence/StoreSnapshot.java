@@ -0,0 +1,68 @@
+package photo_renamer.Persistence;
+
+import photo_renamer.Image;
+import photo_renamer.ImageTag;
+import photo_renamer.Logging.ImageLog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Everything the program saves between runs: every image ever renamed, every image log, and the list of tags the user
+ * has used.
+ */
+public class StoreSnapshot {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private final Map<String, Image> images;
+    private final ConcurrentLinkedDeque<ImageLog> logs;
+    private final List<ImageTag> tags;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new snapshot of the given data. Missing data is replaced with an empty collection.
+     *
+     * @param images every image ever renamed, by the name it was saved under
+     * @param logs every image log
+     * @param tags every tag the user has used
+     */
+    public StoreSnapshot(Map<String, Image> images, ConcurrentLinkedDeque<ImageLog> logs, List<ImageTag> tags) {
+        this.images = images != null ? images : new LinkedHashMap<>();
+        this.logs = logs != null ? logs : new ConcurrentLinkedDeque<>();
+        this.tags = tags != null ? tags : new ArrayList<>();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public Map<String, Image> getImages() {
+        return images;
+    }
+
+    public ConcurrentLinkedDeque<ImageLog> getLogs() {
+        return logs;
+    }
+
+    public List<ImageTag> getTags() {
+        return tags;
+    }
+}
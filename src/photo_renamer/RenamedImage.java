@@ -0,0 +1,40 @@
+package photo_renamer;
+
+import java.io.File;
+
+/**
+ * One image file that was renamed as part of a batch, handed to ImageRenameListener.imagesRenamed.
+ */
+public class RenamedImage {
+
+    private final Image image;
+
+    private final File oldFile;
+
+    private final File newFile;
+
+    /**
+     * Instantiates a record of a rename.
+     *
+     * @param image the image that was renamed
+     * @param oldFile the file of the image before the rename
+     * @param newFile the file of the image after the rename
+     */
+    public RenamedImage(Image image, File oldFile, File newFile) {
+        this.image = image;
+        this.oldFile = oldFile;
+        this.newFile = newFile;
+    }
+
+    public Image getImage() {
+        return image;
+    }
+
+    public File getOldFile() {
+        return oldFile;
+    }
+
+    public File getNewFile() {
+        return newFile;
+    }
+}
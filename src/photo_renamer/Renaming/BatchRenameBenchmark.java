@@ -0,0 +1,90 @@
+package photo_renamer.Renaming;
+
+import photo_renamer.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times tagging and renaming a batch of image files with the BatchRenamer, against tagging and renaming them one at a
+ * time the way the tag bar does for a single image. The files are empty, since only their names are touched, and are
+ * made in a temporary directory that is deleted afterwards.
+ *
+ * <br><br>
+ *
+ * Usage: <code>BatchRenameBenchmark [number of files]</code>
+ */
+public class BatchRenameBenchmark {
+
+    private static final int RUNS = 3;
+
+    private static final List<String> TAGS = Arrays.asList("holiday", "2019");
+
+    public static void main(String[] args) throws IOException {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        File root = Files.createTempDirectory("batch-rename").toFile();
+
+        try {
+            long oneByOne = Long.MAX_VALUE, batched = Long.MAX_VALUE;
+            BatchResult result = null;
+
+            for(int run = 0; run < RUNS; run++){
+                List<File> files = makeFiles(new File(root, "single" + run), fileCount);
+                long start = System.nanoTime();
+                for(File file : files){
+                    Image image = new Image(file);
+                    for(String tag : TAGS){
+                        image.addTag(tag);
+                    }
+                    image.renameFile();
+                }
+                oneByOne = Math.min(oneByOne, System.nanoTime() - start);
+
+                files = makeFiles(new File(root, "batch" + run), fileCount);
+                start = System.nanoTime();
+                result = BatchRenamer.getInstance().tagAndRename(files, TAGS);
+                batched = Math.min(batched, System.nanoTime() - start);
+            }
+
+            System.out.printf("%,d files, %d tags each: %s%n%n", fileCount, TAGS.size(), result);
+            System.out.printf("%-14s %10s %14s%n", "Renamed", "ms", "files / s");
+            report("One by one", fileCount, oneByOne);
+            report("Batch", fileCount, batched);
+        }
+        finally {
+            delete(root);
+        }
+    }
+
+    private static List<File> makeFiles(File directory, int count) throws IOException {
+        if(!directory.mkdirs()){
+            throw new IOException("Could not make " + directory);
+        }
+
+        List<File> files = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            File file = new File(directory, String.format("IMG_%05d.jpg", i));
+            Files.createFile(file.toPath());
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void report(String label, int count, long nanos) {
+        System.out.printf("%-14s %,10d %,14.0f%n", label, nanos / 1000000, count / (nanos / 1e9));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,239 @@
+package photo_renamer.Renaming;
+
+import photo_renamer.Image;
+import photo_renamer.Logging.ImageLog;
+import photo_renamer.Logging.ImageLogger;
+import photo_renamer.RenamedImage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Attaches a set of tags to many images and renames all of them, for when a whole selection of images is tagged at
+ * once. A batch is done in four passes:
+ *
+ * <ol>
+ *     <li>The new name of every image with the tags attached is worked out, on the workers.</li>
+ *     <li>The renames are planned by the RenamePlanner, so no two images are given the same file, no file is written
+ *     over, and images can take each other's names.</li>
+ *     <li>The plan is carried out on the workers. If any rename fails, every file is put back where it was.</li>
+ *     <li>The tags are attached to the images of the renamed files, and the images are updated, on the workers. The
+ *     images of files that weren't renamed are left as they were.</li>
+ * </ol>
+ *
+ * The logs of the renames are then handed to the ImageLogger in one batch, and the rename listeners are told about
+ * every rename in one call, so the GUI is refreshed once for the whole batch rather than once for every image.
+ */
+public class BatchRenamer {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The system property that sets the number of workers, such as one per processor for a batch job */
+    public static final String WORKERS_PROPERTY = "photorenamer.rename.workers";
+
+    /** The most files renamed at once by default. Renames are bound by the file system, which gains little from more */
+    private static final int MAX_WORKERS = 8;
+
+    /** The number of images each task handed to the workers goes through, so a task isn't made for every image */
+    private static final int CHUNK_SIZE = 64;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The worker threads that tag and rename the images */
+    private final ExecutorService workers;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates the renamer with the number of workers given by the workers system property, or one per processor
+     * up to MAX_WORKERS if it isn't set.
+     */
+    private BatchRenamer() {
+        int count = Math.max(1, Integer.getInteger(WORKERS_PROPERTY,
+                Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors())));
+
+        workers = Executors.newFixedThreadPool(count, r -> {
+            Thread t = new Thread(r, "batch-renamer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Attaches the tags with the given names to the images of the given files, and renames every file with its
+     * attached tags appended to it. Only the images whose files are renamed, or already have their new names, get the
+     * tags. Blocks until the whole batch is done, so it shouldn't be called on the JavaFX
+     * thread.
+     *
+     * @param files the image files, each only once
+     * @param tagNames the names of the tags to attach, with or without their '@' prefixes
+     * @return what came of the batch
+     */
+    public BatchResult tagAndRename(Collection<File> files, Collection<String> tagNames) {
+        List<File> batch = new ArrayList<>(new LinkedHashSet<>(files));
+        int count = batch.size();
+
+        Image[] images = new Image[count];
+        String[] newNames = new String[count];
+        String[] problems = new String[count];
+
+        /* Work out the new names. The tags are only attached to an image once its file is renamed, so an image that
+         * can't be renamed, or whose batch is undone, is left with the tags it had */
+        inChunks(count, i -> {
+            try {
+                Image image = Image.of(batch.get(i));
+                images[i] = image;
+                newNames[i] = image.getTaggedName(tagNames);
+            }
+            catch (RuntimeException e){
+                problems[i] = "Could not be tagged: " + e;
+            }
+        });
+
+        /* Plan every rename up front, so no two images get the same file and no file is written over */
+        List<Move> moves = new ArrayList<>();
+        Map<Move, Integer> imageOf = new IdentityHashMap<>();
+        int unchanged = 0;
+
+        for(int i = 0; i < count; i++){
+            if(problems[i] != null){
+                continue;
+            }
+
+            File file = images[i].getFile().getAbsoluteFile();
+            Move move = new Move(file.toPath(), file.toPath().resolveSibling(newNames[i]));
+
+            if(move.getSource().equals(move.getTarget())){
+                images[i].addTags(tagNames);
+                unchanged++;
+            }
+            else{
+                moves.add(move);
+                imageOf.put(move, i);
+            }
+        }
+
+        RenamePlan plan = RenamePlanner.plan(moves);
+        for(Map.Entry<Move, String> conflict : plan.getConflicts().entrySet()){
+            problems[imageOf.get(conflict.getKey())] = conflict.getValue();
+        }
+
+        /* Rename the files. If any rename fails, every file is put back and none of the images are renamed */
+        List<List<Move>> chains = plan.getChains();
+        try {
+            plan.apply(workers);
+        }
+        catch (IOException e){
+            for(Move move : plan.getMoves()){
+                problems[imageOf.get(move)] = "The batch was undone after a rename failed: " + e.getMessage();
+            }
+            chains = Collections.emptyList();
+        }
+
+        /* Update the images of the renamed files, keeping the logs to save together afterwards. An image can take the
+         * name another image in its chain had, so each chain is gone through in the order its files were moved */
+        ImageLog[] logs = new ImageLog[count];
+        RenamedImage[] renames = new RenamedImage[count];
+        List<List<Move>> moved = chains;
+
+        inChunks(moved.size(), c -> {
+            for(Move move : moved.get(c)){
+                int i = imageOf.get(move);
+
+                File oldFile = images[i].getFile();
+                String oldName = images[i].fileMoved(move.getTarget().toFile(), tagNames);
+
+                logs[i] = new ImageLog(oldName, newNames[i]);
+                renames[i] = new RenamedImage(images[i], oldFile, images[i].getFile());
+            }
+        });
+
+        List<ImageLog> logList = new ArrayList<>();
+        List<RenamedImage> renameList = new ArrayList<>();
+        Map<File, String> failures = new LinkedHashMap<>();
+
+        for(int i = 0; i < count; i++){
+            if(renames[i] != null){
+                logList.add(logs[i]);
+                renameList.add(renames[i]);
+            }
+            else if(problems[i] != null){
+                failures.put(batch.get(i), problems[i]);
+            }
+        }
+
+        ImageLogger.getInstance().addLogs(logList);
+        Image.fireRenamed(renameList);
+
+        return new BatchResult(renameList, logList, unchanged, failures);
+    }
+
+    /**
+     * Runs the given task for every number from 0 up to the given count on the workers, a chunk of numbers per worker
+     * task, and waits for all of them to finish.
+     */
+    private void inChunks(int count, IntConsumer task) {
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+
+        for(int start = 0; start < count; start += CHUNK_SIZE){
+            int from = start, to = Math.min(count, start + CHUNK_SIZE);
+
+            chunks.add(CompletableFuture.runAsync(() -> {
+                for(int i = from; i < to; i++){
+                    task.accept(i);
+                }
+            }, workers));
+        }
+
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static BatchRenamer getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final BatchRenamer INSTANCE = new BatchRenamer();
+    }
+}
@@ -0,0 +1,59 @@
+package photo_renamer.Renaming;
+
+import photo_renamer.Logging.ImageLog;
+import photo_renamer.RenamedImage;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What came of a batch of images being tagged and renamed by the BatchRenamer.
+ */
+public class BatchResult {
+
+    private final List<RenamedImage> renamed;
+
+    private final List<ImageLog> logs;
+
+    private final int unchanged;
+
+    private final Map<File, String> failures;
+
+    /**
+     * Instantiates the result of a batch.
+     *
+     * @param renamed the images that were renamed, in the order they were given
+     * @param logs the logs of the renames, in the same order
+     * @param unchanged the number of images that already had their new names
+     * @param failures the reason every image that couldn't be renamed wasn't, by its file
+     */
+    BatchResult(List<RenamedImage> renamed, List<ImageLog> logs, int unchanged, Map<File, String> failures) {
+        this.renamed = Collections.unmodifiableList(renamed);
+        this.logs = Collections.unmodifiableList(logs);
+        this.unchanged = unchanged;
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public List<RenamedImage> getRenamed() {
+        return renamed;
+    }
+
+    public List<ImageLog> getLogs() {
+        return logs;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public Map<File, String> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return renamed.size() + " renamed, " + unchanged + " unchanged, " + failures.size() + " failed";
+    }
+}
@@ -0,0 +1,46 @@
+package photo_renamer.Renaming;
+
+import java.nio.file.Path;
+
+/**
+ * A file to be moved from one path to another, one step of a RenamePlan.
+ */
+public class Move {
+
+    private final Path source;
+
+    private final Path target;
+
+    /**
+     * Instantiates a move. Both paths are made absolute, so moves given relative paths can be compared.
+     *
+     * @param source the path of the file now
+     * @param target the path the file is moved to
+     */
+    public Move(Path source, Path target) {
+        this.source = source.toAbsolutePath().normalize();
+        this.target = target.toAbsolutePath().normalize();
+    }
+
+    public Path getSource() {
+        return source;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns the move that undoes this one.
+     *
+     * @return the move from the target back to the source
+     */
+    public Move reversed() {
+        return new Move(target, source);
+    }
+
+    @Override
+    public String toString() {
+        return source + " -> " + target;
+    }
+}
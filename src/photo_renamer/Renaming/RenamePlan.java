@@ -0,0 +1,222 @@
+package photo_renamer.Renaming;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A set of moves worked out by the RenamePlanner, ready to be carried out. The moves are carried out chain by chain,
+ * each chain in order, and a file staying on its file system is moved with a single rename. A move never replaces a
+ * file at its target: it fails instead. If any move fails, the moves already made are undone, last first, so either
+ * every file is moved or none are.
+ */
+public class RenamePlan {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The number of chains each task handed to an executor carries out, so a task isn't made for every move */
+    private static final int CHUNK_SIZE = 64;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The moves that were asked for and can be carried out */
+    private final List<Move> moves;
+
+    /** The moves to make, in chains that share no files with each other */
+    private final List<List<Move>> steps;
+
+    /** The moves that were asked for in the same chains, in the order they are finished */
+    private final List<List<Move>> chains;
+
+    /** Why every move that can't be carried out can't, by the move */
+    private final Map<Move, String> conflicts;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    RenamePlan(List<Move> moves, List<List<Move>> steps, List<List<Move>> chains, Map<Move, String> conflicts) {
+        this.moves = Collections.unmodifiableList(moves);
+        this.steps = steps;
+        this.chains = Collections.unmodifiableList(chains);
+        this.conflicts = Collections.unmodifiableMap(conflicts);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Carries out the plan on the calling thread.
+     *
+     * @throws IOException if a move failed, after every move already made was undone
+     */
+    public void apply() throws IOException {
+        apply(Runnable::run);
+    }
+
+    /**
+     * Carries out the plan, handing the chains to the given executor so chains are moved side by side. Blocks until
+     * every chain is done.
+     *
+     * @param executor runs the chains
+     * @throws IOException if a move failed, after every move already made was undone
+     */
+    public void apply(Executor executor) throws IOException {
+        List<List<Move>> done = new ArrayList<>(steps.size());
+        for(int i = 0; i < steps.size(); i++){
+            done.add(new ArrayList<>());
+        }
+
+        /* Once one move fails, no chain starts another. Anything thrown by a move is caught, so the moves already made
+         * are always undone */
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicReference<IOException> error = new AtomicReference<>();
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for(int start = 0; start < steps.size(); start += CHUNK_SIZE){
+            int from = start, to = Math.min(steps.size(), start + CHUNK_SIZE);
+
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for(int c = from; c < to && !failed.get(); c++){
+                    for(Move move : steps.get(c)){
+                        if(failed.get()){
+                            break;
+                        }
+
+                        try {
+                            move(move);
+                            done.get(c).add(move);
+                        }
+                        catch (Throwable e){
+                            failed.set(true);
+                            error.compareAndSet(null, e instanceof IOException ? (IOException) e
+                                    : new IOException("Could not move " + move.getSource() + ": " + e, e));
+                        }
+                    }
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+
+        if(failed.get()){
+            rollBack(done, error.get());
+            throw error.get();
+        }
+    }
+
+    /**
+     * Undoes the given moves of every chain, last first, adding any move that can't be undone to the given error.
+     */
+    private static void rollBack(List<List<Move>> done, IOException error) {
+        for(List<Move> chain : done){
+            for(int i = chain.size() - 1; i >= 0; i--){
+                try {
+                    move(chain.get(i).reversed());
+                }
+                catch (IOException | RuntimeException e){
+                    error.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the file of the given move. The move is made without REPLACE_EXISTING, so if a file is at the target, even
+     * one that showed up after the plan was made, it fails with a FileAlreadyExistsException rather than writing over
+     * the file. On Windows the rename itself refuses to replace the file; elsewhere the target is checked right before
+     * the rename. An ATOMIC_MOVE would replace the target on POSIX file systems, so it is only used to rename a file to
+     * another case of its own name.
+     */
+    private static void move(Move move) throws IOException {
+
+        /* On a file system that ignores case, the file is its own target, which a plain move would leave as it is */
+        if(Files.exists(move.getTarget(), LinkOption.NOFOLLOW_LINKS) && isSameFile(move)){
+            Files.move(move.getSource(), move.getTarget(), StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        Files.move(move.getSource(), move.getTarget());
+    }
+
+    /**
+     * Returns whether the target of the given move is its source under another case of its name.
+     */
+    private static boolean isSameFile(Move move) throws IOException {
+        return Files.isSameFile(move.getSource(), move.getTarget());
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Gets the moves that were asked for and will be carried out, in the order they were asked for.
+     *
+     * @return the moves
+     */
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the moves that will be carried out in chains that share no files with each other, each chain in the order
+     * its moves are finished. Whatever has to follow the moves, like keeping track of files under their new names,
+     * can be done for different chains side by side, as long as each chain is gone through in order.
+     *
+     * @return the chains
+     */
+    public List<List<Move>> getChains() {
+        return chains;
+    }
+
+    /**
+     * Gets the moves that were asked for but can't be carried out, and why.
+     *
+     * @return the reason for every conflict, by the move
+     */
+    public Map<Move, String> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Gets the number of files that will be moved, counting a file moved out of the way of a cycle twice.
+     *
+     * @return the number of moves to make
+     */
+    public int getStepCount() {
+        int count = 0;
+        for(List<Move> chain : steps){
+            count += chain.size();
+        }
+        return count;
+    }
+}
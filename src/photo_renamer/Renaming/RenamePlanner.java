@@ -0,0 +1,246 @@
+package photo_renamer.Renaming;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out how to carry out a set of moves without any of them writing over a file, before any file is touched.
+ *
+ * <br><br>
+ *
+ * A move has to wait for the file at its target to be moved out of the way first, so the moves form chains: a move
+ * whose target is free starts a chain, followed by the move waiting for its source, and so on. Since no two moves may
+ * have the same target or the same source, every move is in exactly one chain, or in a cycle of moves each waiting for
+ * the next, such as two files swapping names. A cycle is broken by moving one of its files to a temporary name first
+ * and on to its target last.
+ *
+ * <br><br>
+ *
+ * Moves that can't be carried out at all are left out of the plan as conflicts: their source is missing, another move
+ * has the same source or target, or their target is a file that isn't being moved away. When many moves are in the
+ * same directory, the directory is listed once rather than every source and target being looked up on the disk.
+ */
+public class RenamePlanner {
+
+    /** The start of the temporary names files in cycles are given while the rest of their cycle is moved */
+    private static final String TEMPORARY_PREFIX = ".photorenamer-";
+
+    /** The number of moves out of a directory from which listing the directory is quicker than looking files up */
+    private static final int LISTING_THRESHOLD = 32;
+
+    private RenamePlanner() {}
+
+    /**
+     * Plans the given moves. Moves whose source and target are the same are dropped.
+     *
+     * @param moves the moves
+     * @return the plan, with the moves that can't be carried out listed as its conflicts
+     */
+    public static RenamePlan plan(Collection<Move> moves) {
+        Map<Move, String> conflicts = new LinkedHashMap<>();
+        List<Move> accepted = new ArrayList<>();
+        Listings listings = new Listings(moves);
+
+        /* Only the first move of a file, and the first move to a target, is kept */
+        Set<Path> sources = new HashSet<>(), targets = new HashSet<>();
+        for(Move move : moves){
+            if(move.getSource().equals(move.getTarget())){
+                continue;
+            }
+
+            if(!listings.exists(move.getSource())){
+                conflicts.put(move, "There is no file " + move.getSource());
+            }
+            else if(!sources.add(move.getSource())){
+                conflicts.put(move, move.getSource() + " is already being moved");
+            }
+            else if(!targets.add(move.getTarget())){
+                sources.remove(move.getSource());
+                conflicts.put(move, "Another file is already being moved to " + move.getTarget());
+            }
+            else{
+                accepted.add(move);
+            }
+        }
+
+        /* A move can only go to a file that is already there if that file is moved away. Leaving a move out keeps its
+         * source where it is, which can leave out the move waiting for it in turn */
+        Map<Move, Boolean> taken = new HashMap<>();
+        boolean changed = true;
+        while(changed){
+            changed = false;
+
+            for(int i = accepted.size() - 1; i >= 0; i--){
+                Move move = accepted.get(i);
+                if(!sources.contains(move.getTarget()) && taken.computeIfAbsent(move, listings::isTaken)){
+                    accepted.remove(i);
+                    sources.remove(move.getSource());
+                    conflicts.put(move, "A file named " + move.getTarget().getFileName() + " is already there");
+                    changed = true;
+                }
+            }
+        }
+
+        List<List<Move>> steps = new ArrayList<>(), chains = new ArrayList<>();
+        chain(accepted, steps, chains);
+
+        return new RenamePlan(accepted, steps, chains, conflicts);
+    }
+
+    /**
+     * Puts the given moves, none of which has a conflict, into chains to be carried out in order. The steps of a chain
+     * are the moves to make, including the moves to and from a temporary name that break a cycle, and the chain
+     * itself is the given moves in the order they are finished.
+     */
+    private static void chain(List<Move> moves, List<List<Move>> steps, List<List<Move>> chains) {
+        Map<Path, Move> bySource = new HashMap<>(), byTarget = new HashMap<>();
+        for(Move move : moves){
+            bySource.put(move.getSource(), move);
+            byTarget.put(move.getTarget(), move);
+        }
+
+        Set<Move> chained = new HashSet<>();
+
+        /* Every move whose target isn't the source of another move can go first */
+        for(Move move : moves){
+            if(!bySource.containsKey(move.getTarget())){
+                List<Move> chain = new ArrayList<>();
+                for(Move next = move; next != null; next = byTarget.get(next.getSource())){
+                    chain.add(next);
+                    chained.add(next);
+                }
+                steps.add(chain);
+                chains.add(chain);
+            }
+        }
+
+        /* The moves left are in cycles */
+        for(Move move : moves){
+            if(chained.contains(move)){
+                continue;
+            }
+
+            Path temporary = temporaryPath(move.getSource(), byTarget.keySet());
+            List<Move> cycleSteps = new ArrayList<>(), cycle = new ArrayList<>();
+            cycleSteps.add(new Move(move.getSource(), temporary));
+            chained.add(move);
+
+            for(Move next = byTarget.get(move.getSource()); next != move; next = byTarget.get(next.getSource())){
+                cycleSteps.add(next);
+                cycle.add(next);
+                chained.add(next);
+            }
+
+            cycleSteps.add(new Move(temporary, move.getTarget()));
+            cycle.add(move);
+            steps.add(cycleSteps);
+            chains.add(cycle);
+        }
+    }
+
+    /**
+     * Returns a path next to the given file that no file has and no move goes to.
+     */
+    private static Path temporaryPath(Path file, Set<Path> targets) {
+        for(int i = 0; ; i++){
+            Path path = file.resolveSibling(TEMPORARY_PREFIX + i + "-" + file.getFileName());
+            if(!targets.contains(path) && !Files.exists(path, LinkOption.NOFOLLOW_LINKS)){
+                return path;
+            }
+        }
+    }
+
+
+    /**
+     * Looks up whether files are there, from a listing of their directory for the directories many moves are in.
+     */
+    private static class Listings {
+
+        /** The names of the files in every directory listed, by the directory */
+        private final Map<Path, Set<String>> names = new HashMap<>();
+
+        /** The lower case names of the files in every directory listed, by the directory */
+        private final Map<Path, Set<String>> lowerCaseNames = new HashMap<>();
+
+        private Listings(Collection<Move> moves) {
+            Map<Path, Integer> counts = new HashMap<>();
+            for(Move move : moves){
+                counts.merge(move.getSource().getParent(), 1, Integer::sum);
+            }
+
+            for(Map.Entry<Path, Integer> count : counts.entrySet()){
+                if(count.getKey() != null && count.getValue() >= LISTING_THRESHOLD){
+                    list(count.getKey());
+                }
+            }
+        }
+
+        /**
+         * Lists the given directory, leaving it to be looked up file by file if it can't be listed.
+         */
+        private void list(Path directory) {
+            Set<String> listed = new HashSet<>(), lowerCase = new HashSet<>();
+
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for(Path file : files){
+                    listed.add(file.getFileName().toString());
+                    lowerCase.add(file.getFileName().toString().toLowerCase());
+                }
+                names.put(directory, listed);
+                lowerCaseNames.put(directory, lowerCase);
+            }
+            catch (IOException | DirectoryIteratorException e){
+                /* The files in the directory are looked up one by one instead */
+            }
+        }
+
+        /**
+         * Returns whether there is a file at the given path. Only a name that is in the listing of its directory under
+         * another case is looked up, since the file system may or may not ignore case. A file that shows up or goes
+         * away after its directory was listed is caught when the plan is carried out.
+         */
+        private boolean exists(Path path) {
+            Path directory = path.getParent();
+            String name = path.getFileName().toString();
+
+            if(names.containsKey(directory)){
+                if(names.get(directory).contains(name)){
+                    return true;
+                }
+                if(!lowerCaseNames.get(directory).contains(name.toLowerCase())){
+                    return false;
+                }
+            }
+            return Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+        }
+
+        /**
+         * Returns whether the target of the given move is a file other than the one being moved.
+         */
+        private boolean isTaken(Move move) {
+            if(!exists(move.getTarget())){
+                return false;
+            }
+
+            /* On a file system that ignores case, a file renamed to another case of its name is its own target */
+            try {
+                return !Files.isSameFile(move.getSource(), move.getTarget());
+            }
+            catch (IOException e){
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package photo_renamer.Renaming;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Checks that the RenamePlanner orders chains of moves, breaks cycles, turns down moves that would write over a file,
+ * and that a RenamePlan puts every file back when a move fails. Every check is run on small files in a directory of
+ * its own, named after their contents, so what ends up where can be seen from the names and contents of the files. It
+ * exits with 1 if any check fails.
+ */
+public class RenamePlannerTest {
+
+    /** The directory the files of the check being run are in */
+    private static Path dir;
+
+    public static void main(String[] args) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            chain();
+            cycles();
+            conflicts();
+            manyInOneDirectory(workers);
+            rollBack();
+            rollBackAfterRuntimeException();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        finally {
+            workers.shutdown();
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * A file can take the name of a file that is moved away first, whatever order the moves are given in.
+     */
+    private static void chain() throws IOException {
+        setUp("a", "b", "c");
+
+        Move first = move("c", "b"), second = move("b", "a"), third = move("a", "fresh");
+        RenamePlan plan = RenamePlanner.plan(Arrays.asList(first, second, third));
+        assertEquals("{}", plan.getConflicts().toString(), "conflicts");
+        assertEquals(Collections.singletonList(Arrays.asList(third, second, first)), plan.getChains(), "chains");
+
+        plan.apply();
+        assertFiles("{a=b, b=c, fresh=a}");
+    }
+
+    /**
+     * Files that take each other's names are moved through a temporary name, which is gone afterwards.
+     */
+    private static void cycles() throws IOException {
+        setUp("a", "b", "x", "y", "z");
+
+        RenamePlan plan = RenamePlanner.plan(Arrays.asList(
+                move("a", "b"), move("b", "a"),
+                move("x", "y"), move("y", "z"), move("z", "x")));
+        assertEquals("{}", plan.getConflicts().toString(), "conflicts");
+        assertEquals(2, plan.getChains().size(), "number of chains");
+        assertEquals(7, plan.getStepCount(), "number of steps");
+
+        plan.apply();
+        assertFiles("{a=b, b=a, x=z, y=x, z=y}");
+    }
+
+    /**
+     * Moves that can't be made are left out with a reason, along with the moves waiting on them, and the rest of the
+     * plan is carried out.
+     */
+    private static void conflicts() throws IOException {
+        setUp("a", "b", "c", "d", "e", "f");
+
+        Move missing = move("missing", "g"), onto = move("a", "c"), accepted = move("b", "i"),
+             sameSource = move("b", "h"), sameTarget = move("d", "i"), ontoMoving = move("e", "a"),
+             waiting = move("f", "e");
+        RenamePlan plan = RenamePlanner.plan(Arrays.asList(
+                missing, onto, accepted, sameSource, sameTarget, ontoMoving, waiting, move("b", "b")));
+
+        /* e can only take the name of a, which can't be moved, so f can't take the name of e either */
+        Map<Move, String> conflicts = plan.getConflicts();
+        assertEquals(Arrays.asList(missing, sameSource, sameTarget, onto, ontoMoving, waiting),
+                new ArrayList<>(conflicts.keySet()), "moves with conflicts");
+        assertEquals("There is no file " + dir.resolve("missing"), conflicts.get(missing), "missing source");
+        assertEquals("A file named c is already there", conflicts.get(onto), "target taken");
+        assertEquals(dir.resolve("b") + " is already being moved", conflicts.get(sameSource), "same source");
+        assertEquals("Another file is already being moved to " + dir.resolve("i"), conflicts.get(sameTarget),
+                "same target");
+
+        assertEquals(Collections.singletonList(accepted), plan.getMoves(), "moves to make");
+        plan.apply();
+        assertFiles("{a=a, c=c, d=d, e=e, f=f, i=b}");
+    }
+
+    /**
+     * Enough moves out of one directory that it is listed instead of looked up file by file, carried out side by side.
+     */
+    private static void manyInOneDirectory(ExecutorService workers) throws IOException {
+        String[] names = new String[100];
+        for(int i = 0; i < names.length; i++){
+            names[i] = "img" + i;
+        }
+        setUp(names);
+        setUp(false, "taken");
+
+        List<Move> moves = new ArrayList<>();
+        for(int i = 0; i < names.length; i++){
+            moves.add(move(names[i], i == 50 ? "taken" : names[i] + " @tag"));
+        }
+
+        RenamePlan plan = RenamePlanner.plan(moves);
+        assertEquals(Collections.singletonList(moves.get(50)), new ArrayList<>(plan.getConflicts().keySet()),
+                "moves with conflicts");
+
+        plan.apply(workers);
+        TreeMap<String, String> files = files();
+        assertEquals(101, files.size(), "number of files");
+        assertEquals("img7", files.get("img7 @tag"), "a moved file");
+        assertEquals("img50", files.get("img50"), "the file with a conflict");
+    }
+
+    /**
+     * When a move fails, every file already moved is put back.
+     */
+    private static void rollBack() throws IOException {
+        setUp("a", "b", "c");
+
+        RenamePlan plan = RenamePlanner.plan(Arrays.asList(move("a", "a2"), move("b", "b2"), move("c", "c2")));
+
+        /* A file that shows up at a target after the plan was made is never written over */
+        setUp(false, "b2");
+        try {
+            plan.apply();
+            throw new AssertionError("the plan was carried out over a file");
+        }
+        catch (IOException e){
+            assertFiles("{a=a, b=b, b2=b2, c=c}");
+        }
+    }
+
+    /**
+     * When a move throws something other than an IOException, every file already moved is still put back.
+     */
+    private static void rollBackAfterRuntimeException() throws IOException {
+        setUp("a", "b");
+
+        /* A move into a file system that was closed after the plan was made throws a ClosedFileSystemException */
+        Path zip = Files.createTempDirectory("renameplanner").resolve("other.zip");
+        try {
+            RenamePlan plan;
+            try (FileSystem other = FileSystems.newFileSystem(URI.create("jar:" + zip.toUri()),
+                    Collections.singletonMap("create", "true"))) {
+                plan = RenamePlanner.plan(Arrays.asList(move("a", "a2"),
+                        new Move(dir.resolve("b"), other.getPath("/b"))));
+            }
+
+            try {
+                plan.apply();
+                throw new AssertionError("the plan was carried out into a closed file system");
+            }
+            catch (IOException e){
+                assertFiles("{a=a, b=b}");
+            }
+        }
+        finally {
+            Files.deleteIfExists(zip);
+            Files.deleteIfExists(zip.getParent());
+        }
+    }
+
+    /**
+     * Makes a new directory for a check with a file of each of the given names, holding its own name.
+     */
+    private static void setUp(String... names) throws IOException {
+        setUp(true, names);
+    }
+
+    /**
+     * Adds files of the given names, holding their own names, to the directory of the check, or to a new one.
+     */
+    private static void setUp(boolean newDirectory, String... names) throws IOException {
+        if(newDirectory){
+            dir = Files.createTempDirectory("renameplanner");
+            dir.toFile().deleteOnExit();
+        }
+        for(String name : names){
+            Files.write(dir.resolve(name), name.getBytes(StandardCharsets.UTF_8));
+            dir.resolve(name).toFile().deleteOnExit();
+        }
+    }
+
+    private static Move move(String source, String target) {
+        return new Move(dir.resolve(source), dir.resolve(target));
+    }
+
+    /**
+     * Returns the contents of every file in the directory of the check, by the file's name.
+     */
+    private static TreeMap<String, String> files() throws IOException {
+        TreeMap<String, String> files = new TreeMap<>();
+        try (DirectoryStream<Path> listing = Files.newDirectoryStream(dir)) {
+            for(Path file : listing){
+                files.put(file.getFileName().toString(), new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                file.toFile().deleteOnExit();
+            }
+        }
+        return files;
+    }
+
+    private static void assertFiles(String expected) throws IOException {
+        assertEquals(expected, files().toString(), "files");
+    }
+
+    private static void assertEquals(Object expected, Object actual, String what) {
+        if(!expected.equals(actual)){
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package photo_renamer.Scanning;
+
+import photo_renamer.Image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The directories and images directly inside of a directory, both in order of name. When created by a
+ * ParallelDirectoryWalker, also holds the listings of every directory underneath it.
+ */
+public class DirectoryListing {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The order files are listed in: by name, ignoring case */
+    public static final Comparator<File> NAME_ORDER = (a, b) -> {
+        int order = a.getName().compareToIgnoreCase(b.getName());
+        return order != 0 ? order : a.getName().compareTo(b.getName());
+    };
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The directory that was listed */
+    private final File directory;
+
+    /** The directories directly inside of the directory */
+    private final List<File> directories = new ArrayList<>();
+
+    /** The images directly inside of the directory */
+    private final List<File> images = new ArrayList<>();
+
+    /** The listings of the directories inside of the directory that were walked, in the same order */
+    private final List<DirectoryListing> subListings = new ArrayList<>();
+
+    /** The number of entries seen while listing, including the ones that aren't directories or images */
+    private int entryCount;
+
+    /** The indices of the directories that have something inside of them, set once they are probed */
+    private BitSet nonEmptyDirectories;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private DirectoryListing(File directory) {
+        this.directory = directory;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Lists the directories and images directly inside of the given directory. Nothing underneath it is listed.
+     *
+     * @param dir the directory to list
+     * @return the listing of the directory
+     * @throws IOException if the directory could not be opened
+     */
+    public static DirectoryListing list(File dir) throws IOException {
+        DirectoryListing listing = new DirectoryListing(dir);
+
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())){
+            for(Path p : stream){
+                listing.entryCount++;
+
+                if(Files.isDirectory(p)){
+                    listing.directories.add(p.toFile());
+                }
+                else if(Image.isImageFile(p.getFileName().toString())){
+                    listing.images.add(p.toFile());
+                }
+            }
+        }
+
+        Collections.sort(listing.directories, NAME_ORDER);
+        Collections.sort(listing.images, NAME_ORDER);
+        return listing;
+    }
+
+    /**
+     * Returns an empty listing of the given directory, used when the directory could not be opened.
+     *
+     * @param dir the directory
+     * @return the empty listing
+     */
+    public static DirectoryListing empty(File dir) {
+        return new DirectoryListing(dir);
+    }
+
+    /**
+     * Checks if the given directory contains at least one directory or image. Stops at the first one found rather
+     * than listing the whole directory.
+     *
+     * @param dir the directory to check
+     * @return true if the directory has something to display
+     */
+    public static boolean hasChildren(File dir) {
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir.toPath())){
+            for(Path p : stream){
+                if(Files.isDirectory(p) || Image.isImageFile(p.getFileName().toString())){
+                    return true;
+                }
+            }
+        }
+        catch (IOException | SecurityException ignored){}
+
+        return false;
+    }
+
+    /**
+     * Checks every directory in this listing for whether or not it has something inside of it, so the answer can be
+     * looked up later without touching the disk.
+     */
+    public void probeDirectories() {
+        nonEmptyDirectories = new BitSet(directories.size());
+
+        for(int i = 0; i < directories.size(); i++){
+            if(hasChildren(directories.get(i))){
+                nonEmptyDirectories.set(i);
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not the directory at the given index in this listing has something inside of it. Directories
+     * are assumed to have something inside of them if they haven't been probed.
+     *
+     * @param index the index of the directory in getDirectories()
+     * @return true if the directory has something inside of it
+     */
+    public boolean directoryHasChildren(int index) {
+        return nonEmptyDirectories == null || nonEmptyDirectories.get(index);
+    }
+
+    /**
+     * Adds the listing of one of the directories inside of this directory.
+     *
+     * @param listing the listing to add
+     */
+    void addSubListing(DirectoryListing listing) {
+        subListings.add(listing);
+    }
+
+    /**
+     * Returns the number of directories in this listing and every listing underneath it, including this one.
+     *
+     * @return the number of directories
+     */
+    public long countDirectories() {
+        long count = 1;
+        for(DirectoryListing l : subListings){
+            count += l.countDirectories();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of images in this listing and every listing underneath it.
+     *
+     * @return the number of images
+     */
+    public long countImages() {
+        long count = images.size();
+        for(DirectoryListing l : subListings){
+            count += l.countImages();
+        }
+        return count;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public List<File> getDirectories() {
+        return directories;
+    }
+
+    public List<File> getImages() {
+        return images;
+    }
+
+    public List<DirectoryListing> getSubListings() {
+        return subListings;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+}
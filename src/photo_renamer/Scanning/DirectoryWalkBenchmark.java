@@ -0,0 +1,102 @@
+package photo_renamer.Scanning;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Measures how fast a ParallelDirectoryWalker walks a tree with different numbers of threads.
+ *
+ * <br><br>
+ *
+ * Usage: <code>DirectoryWalkBenchmark [directory] [max threads]</code>. When no directory is given, a synthetic tree of
+ * 500,000 empty images (100 folders of 50 folders of 100 images) is created in the temp directory and deleted
+ * afterwards. Note that every walk after the first is served from the OS's cache, so point this at a freshly mounted
+ * archive (or drop the caches between runs) to measure the disks rather than the memory.
+ */
+public class DirectoryWalkBenchmark {
+
+    private static final int TOP_DIRS = 100, SUB_DIRS = 50, FILES_PER_DIR = 100;
+
+    public static void main(String[] args) throws IOException {
+        boolean synthetic = args.length == 0;
+        File root = synthetic ? createTree() : new File(args[0]);
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() * 4;
+
+        try {
+            /* Warm up the JIT (and the cache) with one walk that isn't measured */
+            walk(root, 1, false);
+
+            System.out.printf("%-8s %12s %12s %10s %14s%n", "threads", "dirs", "images", "ms", "entries/sec");
+            for(int threads = 1; threads <= maxThreads; threads *= 2){
+                walk(root, threads, true);
+            }
+        }
+        finally {
+            if(synthetic){
+                deleteTree(root.toPath());
+            }
+        }
+    }
+
+    /**
+     * Walks the given directory with the given number of threads and prints the result if asked to.
+     */
+    private static void walk(File root, int threads, boolean print) {
+        ParallelDirectoryWalker walker = new ParallelDirectoryWalker(threads);
+
+        long start = System.nanoTime();
+        DirectoryListing listing = walker.walk(root);
+        long elapsed = System.nanoTime() - start;
+        walker.shutdown();
+
+        if(!print){
+            return;
+        }
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-8d %12d %12d %10d %14.0f%n", threads, listing.countDirectories(), listing.countImages(),
+                elapsed / 1000000, walker.getEntriesSeen() / seconds);
+    }
+
+    /**
+     * Creates the synthetic tree in the temp directory.
+     */
+    private static File createTree() throws IOException {
+        Path root = Files.createTempDirectory("walk-benchmark");
+        System.out.println("Creating " + (TOP_DIRS * SUB_DIRS * FILES_PER_DIR) + " files in " + root);
+
+        for(int i = 0; i < TOP_DIRS; i++){
+            for(int j = 0; j < SUB_DIRS; j++){
+                Path dir = Files.createDirectories(root.resolve("20" + i).resolve("day" + j));
+                for(int k = 0; k < FILES_PER_DIR; k++){
+                    Files.createFile(dir.resolve("IMG_" + k + ".jpg"));
+                }
+            }
+        }
+        return root.toFile();
+    }
+
+    /**
+     * Deletes the given tree.
+     */
+    private static void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,213 @@
+package photo_renamer.Scanning;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Walks an entire directory tree on a fork/join pool. Every directory is listed by its own task, and the tasks for the
+ * directories inside of it are forked so that many directories are read from the disk at the same time. A single
+ * walker can run many walks at once, each of which can be cancelled on its own, so the program shares one walker (and
+ * its threads) for every walk.
+ */
+public class ParallelDirectoryWalker {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The system property that sets the number of threads used when none is given */
+    public static final String PARALLELISM_PROPERTY = "photorenamer.scan.parallelism";
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The pool the walk tasks are run on */
+    private final ForkJoinPool pool;
+
+    /** The number of directories listed so far */
+    private final AtomicLong dirsWalked = new AtomicLong();
+
+    /** The number of entries seen so far */
+    private final AtomicLong entriesSeen = new AtomicLong();
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates a new walker using the number of threads given by the parallelism system property, or one thread
+     * per processor if it isn't set.
+     */
+    public ParallelDirectoryWalker() {
+        this(Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Instantiates a new walker using the given number of threads.
+     *
+     * @param parallelism the number of directories to list at the same time
+     */
+    public ParallelDirectoryWalker(int parallelism) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Walks the tree underneath the given directory. Blocks until the whole tree is listed or the walk is cancelled.
+     *
+     * @param root the directory to walk
+     * @return the listing of the root, holding the listings of every directory underneath it
+     */
+    public DirectoryListing walk(File root) {
+        return walk(root, () -> false, count -> {});
+    }
+
+    /**
+     * Walks the tree underneath the given directory. Blocks until the whole tree is listed or the walk is cancelled,
+     * in which case it returns with what was listed so far.
+     *
+     * @param root the directory to walk
+     * @param cancelled checked before the directories inside of each listed directory are walked
+     * @param onListed called from the walking threads with the number of entries in each directory listed
+     * @return the listing of the root, holding the listings of every directory underneath it
+     */
+    public DirectoryListing walk(File root, BooleanSupplier cancelled, IntConsumer onListed) {
+        return pool.invoke(new WalkTask(root, cancelled, onListed));
+    }
+
+    /**
+     * Stops the threads of this walker once it is done. Never called on the shared walker.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Getters & Setters                                                         *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public long getDirsWalked() {
+        return dirsWalked.get();
+    }
+
+    public long getEntriesSeen() {
+        return entriesSeen.get();
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Walk Task                                                                 *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Lists a single directory, then forks a task for every directory inside of it and joins their listings onto its
+     * own.
+     */
+    private class WalkTask extends RecursiveTask<DirectoryListing> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File dir;
+
+        /** Whether or not the walk this task belongs to was cancelled */
+        private final BooleanSupplier cancelled;
+
+        /** Told the number of entries in every directory listed by the walk */
+        private final IntConsumer onListed;
+
+        WalkTask(File dir, BooleanSupplier cancelled, IntConsumer onListed) {
+            this.dir = dir;
+            this.cancelled = cancelled;
+            this.onListed = onListed;
+        }
+
+        @Override
+        protected DirectoryListing compute() {
+            DirectoryListing listing;
+
+            try {
+                listing = DirectoryListing.list(dir);
+            }
+            catch (IOException | SecurityException e){
+                return DirectoryListing.empty(dir);
+            }
+
+            dirsWalked.incrementAndGet();
+            entriesSeen.addAndGet(listing.getEntryCount());
+            onListed.accept(listing.getEntryCount());
+
+            if(cancelled.getAsBoolean()){
+                return listing;
+            }
+
+            /* Split the walk up per directory. Linked directories are not followed so that a loop can't be walked */
+            List<WalkTask> subTasks = new ArrayList<>();
+            for(File d : listing.getDirectories()){
+                if(!Files.isSymbolicLink(d.toPath())){
+                    subTasks.add(new WalkTask(d, cancelled, onListed));
+                }
+            }
+
+            invokeAll(subTasks);
+
+            for(WalkTask t : subTasks){
+                listing.addSubListing(t.join());
+            }
+            return listing;
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the walker shared by the whole program, using the number of threads given by the parallelism system
+     * property. Its threads are daemons, so it is never shut down.
+     *
+     * @return the shared walker
+     */
+    public static ParallelDirectoryWalker getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final ParallelDirectoryWalker INSTANCE = new ParallelDirectoryWalker();
+    }
+}
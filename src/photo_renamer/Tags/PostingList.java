@@ -0,0 +1,261 @@
+package photo_renamer.Tags;
+
+import java.util.Arrays;
+
+/**
+ * A set of image ids kept as a sorted array of ints, the list of images a tag is attached to. Sorted arrays take four
+ * bytes per image, and two of them can be intersected, joined, or subtracted in one pass over both, which is what the
+ * static methods of this class do.
+ *
+ * <br><br>
+ *
+ * Ids are handed out in increasing order, so adding an image to a list almost always appends to the end of it. The
+ * static methods never change the arrays given to them, and may hand one of them back as the result.
+ */
+public class PostingList {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** An empty array of ids, returned instead of making a new one */
+    public static final int[] EMPTY = new int[0];
+
+    /** When one list is this many times longer than the other, the short one is looked up in the long one instead */
+    private static final int SKEW = 16;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The ids, sorted, in the first size elements */
+    private int[] ids = new int[4];
+
+    /** The number of ids in the list */
+    private int size;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Adds the given id to the list if it isn't already there.
+     *
+     * @param id the id
+     * @return true if the id was added
+     */
+    public boolean add(int id) {
+
+        /* The common case, a new image getting its first tags */
+        if(size == 0 || ids[size - 1] < id){
+            grow();
+            ids[size++] = id;
+            return true;
+        }
+
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if(position >= 0){
+            return false;
+        }
+
+        position = -position - 1;
+        grow();
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the given id from the list.
+     *
+     * @param id the id
+     * @return true if the id was in the list
+     */
+    public boolean remove(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if(position < 0){
+            return false;
+        }
+
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns whether the given id is in the list.
+     *
+     * @param id the id
+     * @return true if the id is in the list
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Returns a copy of the ids in the list, sorted.
+     *
+     * @return the ids
+     */
+    public int[] toArray() {
+        return size == 0 ? EMPTY : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Returns the number of ids in the list.
+     *
+     * @return the number of ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes room for one more id.
+     */
+    private void grow() {
+        if(size == ids.length){
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Set Operations                                                            *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the ids in both of the given sorted arrays.
+     *
+     * @param a sorted ids
+     * @param b sorted ids
+     * @return the sorted ids in both
+     */
+    public static int[] and(int[] a, int[] b) {
+        if(a.length > b.length){
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        if(a.length == 0){
+            return EMPTY;
+        }
+
+        int[] result = new int[a.length];
+        int count = 0;
+
+        /* Look each id of a short list up in a long one rather than walk the whole long one */
+        if((long) a.length * SKEW < b.length){
+            int from = 0;
+            for(int id : a){
+                int position = Arrays.binarySearch(b, from, b.length, id);
+                if(position >= 0){
+                    result[count++] = id;
+                    from = position + 1;
+                }
+                else{
+                    from = -position - 1;
+                }
+                if(from == b.length){
+                    break;
+                }
+            }
+        }
+        else{
+            int i = 0, j = 0;
+            while(i < a.length && j < b.length){
+                if(a[i] < b[j]){
+                    i++;
+                }
+                else if(a[i] > b[j]){
+                    j++;
+                }
+                else{
+                    result[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the ids in either of the given sorted arrays.
+     *
+     * @param a sorted ids
+     * @param b sorted ids
+     * @return the sorted ids in either
+     */
+    public static int[] or(int[] a, int[] b) {
+        if(a.length == 0){
+            return b;
+        }
+        if(b.length == 0){
+            return a;
+        }
+
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+
+        while(i < a.length && j < b.length){
+            if(a[i] < b[j]){
+                result[count++] = a[i++];
+            }
+            else if(a[i] > b[j]){
+                result[count++] = b[j++];
+            }
+            else{
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        while(i < a.length){
+            result[count++] = a[i++];
+        }
+        while(j < b.length){
+            result[count++] = b[j++];
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the ids in the first sorted array that aren't in the second.
+     *
+     * @param a sorted ids
+     * @param b sorted ids to leave out
+     * @return the sorted ids in a but not in b
+     */
+    public static int[] andNot(int[] a, int[] b) {
+        if(a.length == 0 || b.length == 0){
+            return a;
+        }
+
+        int[] result = new int[a.length];
+        int i = 0, j = 0, count = 0;
+
+        while(i < a.length){
+            while(j < b.length && b[j] < a[i]){
+                j++;
+            }
+            if(j == b.length || b[j] != a[i]){
+                result[count++] = a[i];
+            }
+            i++;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+}
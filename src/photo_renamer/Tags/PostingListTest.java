@@ -0,0 +1,139 @@
+package photo_renamer.Tags;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Checks the set operations of PostingList against TreeSets, on lists of every size from empty to far longer than the
+ * other, so both the merge and the look up ways of intersecting are gone through. It exits with 1 if any check fails.
+ */
+public class PostingListTest {
+
+    public static void main(String[] args) {
+        try {
+            addAndRemove();
+            edgeCases();
+            againstTreeSets();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Ids added in any order come out sorted and only once, and removed ids are gone.
+     */
+    private static void addAndRemove() {
+        PostingList list = new PostingList();
+        assertEquals(PostingList.EMPTY, list.toArray(), "empty list");
+
+        int[] added = {5, 1, 9, 3, 9, 7, 1, 100, 0};
+        for(int id : added){
+            list.add(id);
+        }
+        assertEquals(new int[]{0, 1, 3, 5, 7, 9, 100}, list.toArray(), "added out of order");
+        assertTrue(!list.add(3), "an id already in the list was added again");
+        assertTrue(list.contains(7) && !list.contains(8), "contains");
+
+        assertTrue(list.remove(5), "an id in the list wasn't removed");
+        assertTrue(!list.remove(5), "an id removed twice");
+        assertTrue(list.remove(0) && list.remove(100), "the first and last ids weren't removed");
+        assertEquals(new int[]{1, 3, 7, 9}, list.toArray(), "after removing");
+        assertTrue(list.size() == 4, "size after removing was " + list.size());
+    }
+
+    /**
+     * Empty, equal, and disjoint lists.
+     */
+    private static void edgeCases() {
+        int[] a = {1, 2, 3}, b = {4, 5, 6}, empty = PostingList.EMPTY;
+
+        assertEquals(empty, PostingList.and(a, empty), "a and empty");
+        assertEquals(empty, PostingList.and(empty, a), "empty and a");
+        assertEquals(a, PostingList.or(a, empty), "a or empty");
+        assertEquals(a, PostingList.or(empty, a), "empty or a");
+        assertEquals(a, PostingList.andNot(a, empty), "a and not empty");
+        assertEquals(empty, PostingList.andNot(empty, a), "empty and not a");
+
+        assertEquals(a, PostingList.and(a, a.clone()), "a and a");
+        assertEquals(a, PostingList.or(a, a.clone()), "a or a");
+        assertEquals(empty, PostingList.andNot(a, a.clone()), "a and not a");
+
+        assertEquals(empty, PostingList.and(a, b), "disjoint and");
+        assertEquals(new int[]{1, 2, 3, 4, 5, 6}, PostingList.or(b, a), "disjoint or");
+        assertEquals(a, PostingList.andNot(a, b), "disjoint and not");
+
+        /* The given arrays are never changed */
+        int[] c = {1, 3, 5}, d = {3, 4, 5};
+        PostingList.and(c, d);
+        PostingList.or(c, d);
+        PostingList.andNot(c, d);
+        assertEquals(new int[]{1, 3, 5}, c, "first array after the operations");
+        assertEquals(new int[]{3, 4, 5}, d, "second array after the operations");
+    }
+
+    /**
+     * Random lists of many sizes, from the same range of ids so they overlap, give what TreeSets do.
+     */
+    private static void againstTreeSets() {
+        Random random = new Random(42);
+        int[] sizes = {0, 1, 2, 7, 31, 100, 1000, 5000};
+
+        for(int sizeA : sizes){
+            for(int sizeB : sizes){
+                for(int round = 0; round < 5; round++){
+                    int range = Math.max(1, 2 * Math.max(sizeA, sizeB));
+                    TreeSet<Integer> setA = randomSet(random, sizeA, range), setB = randomSet(random, sizeB, range);
+                    int[] a = toArray(setA), b = toArray(setB);
+                    String what = " of " + sizeA + " and " + sizeB + " ids";
+
+                    TreeSet<Integer> both = new TreeSet<>(setA);
+                    both.retainAll(setB);
+                    assertEquals(toArray(both), PostingList.and(a, b), "and" + what);
+                    assertEquals(toArray(both), PostingList.and(b, a), "and, swapped," + what);
+
+                    TreeSet<Integer> either = new TreeSet<>(setA);
+                    either.addAll(setB);
+                    assertEquals(toArray(either), PostingList.or(a, b), "or" + what);
+
+                    TreeSet<Integer> onlyA = new TreeSet<>(setA);
+                    onlyA.removeAll(setB);
+                    assertEquals(toArray(onlyA), PostingList.andNot(a, b), "and not" + what);
+                }
+            }
+        }
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size, int range) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while(set.size() < Math.min(size, range)){
+            set.add(random.nextInt(range));
+        }
+        return set;
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        int[] ids = new int[set.size()];
+        int i = 0;
+        for(int id : set){
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    private static void assertEquals(int[] expected, int[] actual, String what) {
+        if(!Arrays.equals(expected, actual)){
+            throw new AssertionError(what + ": expected " + Arrays.toString(expected)
+                    + " but was " + Arrays.toString(actual));
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
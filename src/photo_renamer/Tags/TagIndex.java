@@ -0,0 +1,557 @@
+package photo_renamer.Tags;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * An inverted index from tags to the saved images they are attached to. Every saved image is given a small int id,
+ * and every tag keeps a PostingList of the ids of its images, so the images with a set of tags are found by merging
+ * a few sorted arrays rather than by looking at every image.
+ *
+ * <br><br>
+ *
+ * The index is built from the store the first time it is used, rather than when the program starts, so that starting
+ * doesn't read every saved image. It is kept up to date by the ImageManager as tags are added to and deleted from
+ * images and as images are renamed. Images are known by the key they are saved under. An
+ * image keeps its id when it is renamed, and the ids of removed images are handed out again.
+ *
+ * <br><br>
+ *
+ * Any number of threads can query the index at once; changes wait for the queries running to finish.
+ */
+public class TagIndex {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** Lets queries run side by side, and changes run alone */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** The id of every image, by the key it is saved under */
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+
+    /** The key of every image by its id, null for ids that aren't in use */
+    private final List<String> keysById = new ArrayList<>();
+
+    /** The sorted ids of the tags attached to every image, by the id of the image */
+    private final List<int[]> tagsById = new ArrayList<>();
+
+    /** The ids of removed images, to be handed out again */
+    private final Deque<Integer> freeIds = new ArrayDeque<>();
+
+    /** The ids of every image in the index */
+    private PostingList allImages = new PostingList();
+
+    /** The id of every tag, by its name with the '@' prefix */
+    private final Map<String, Integer> tagIds = new HashMap<>();
+
+    /** The name of every tag by its id */
+    private final List<String> tagNames = new ArrayList<>();
+
+    /** The images every tag is attached to, by the id of the tag */
+    private final List<PostingList> postings = new ArrayList<>();
+
+    /** Walks every saved image with the names of its tags to build the index from, null once the index is built */
+    private volatile Consumer<BiConsumer<String, List<String>>> source;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Instantiates an empty index. The program uses the one from getInstance; separate indexes are for tools that
+     * work on a store of their own.
+     */
+    public TagIndex() {}
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Sets the tags attached to the image saved under the given key, adding the image to the index if it isn't there.
+     * Only the tags that were added or deleted since the last time are changed.
+     *
+     * @param key the key the image is saved under
+     * @param names the names of the tags attached to the image, with their '@' prefixes
+     */
+    public void imageTagged(String key, Collection<String> names) {
+        build();
+        lock.writeLock().lock();
+        try {
+            tag(key, names);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the image saved under one key to another, keeping its id and tags. If an image was already saved under the
+     * new key, it is replaced.
+     *
+     * @param oldKey the key the image was saved under
+     * @param newKey the key the image is saved under now
+     */
+    public void imageMoved(String oldKey, String newKey) {
+        build();
+        lock.writeLock().lock();
+        try {
+            Integer id = idsByKey.remove(oldKey);
+            if(id == null){
+                return;
+            }
+
+            Integer replaced = idsByKey.get(newKey);
+            if(replaced != null){
+                removeId(replaced);
+            }
+
+            idsByKey.put(newKey, id);
+            keysById.set(id, newKey);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the image saved under the given key from the index.
+     *
+     * @param key the key the image was saved under
+     */
+    public void imageRemoved(String key) {
+        build();
+        lock.writeLock().lock();
+        try {
+            Integer id = idsByKey.get(key);
+            if(id != null){
+                removeId(id);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index, and has it built from the given images the first time it is queried or changed.
+     *
+     * @param source walks every saved image, giving its key and the names of its tags to the visitor it is given
+     */
+    public void buildFrom(Consumer<BiConsumer<String, List<String>>> source) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            this.source = source;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Empties the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            source = null;
+            idsByKey.clear();
+            keysById.clear();
+            tagsById.clear();
+            freeIds.clear();
+            tagIds.clear();
+            tagNames.clear();
+            postings.clear();
+            allImages = new PostingList();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the index from its source if it hasn't been built yet. Threads that use the index while it is being built
+     * wait for it to be done.
+     */
+    private void build() {
+        if(source == null){
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            Consumer<BiConsumer<String, List<String>>> images = source;
+            if(images != null){
+                source = null;
+                images.accept(this::tag);
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the tags attached to the image saved under the given key, while the write lock is held.
+     */
+    private void tag(String key, Collection<String> names) {
+        Integer id = idsByKey.get(key);
+        if(id == null){
+            id = newId(key);
+        }
+
+        int[] tags = new int[names.size()];
+        int count = 0;
+        for(String name : names){
+            tags[count++] = tagId(name);
+        }
+        Arrays.sort(tags);
+        tags = distinct(tags);
+
+        /* Walk the old and new tags side by side, changing only the postings of tags that differ */
+        int[] old = tagsById.get(id);
+        int i = 0, j = 0;
+        while(i < old.length || j < tags.length){
+            if(j == tags.length || (i < old.length && old[i] < tags[j])){
+                postings.get(old[i++]).remove(id);
+            }
+            else if(i == old.length || old[i] > tags[j]){
+                postings.get(tags[j++]).add(id);
+            }
+            else{
+                i++;
+                j++;
+            }
+        }
+        tagsById.set(id, tags);
+    }
+
+    /**
+     * Hands out an id to the image saved under the given key, reusing the id of a removed image if there is one.
+     */
+    private int newId(String key) {
+        Integer id = freeIds.poll();
+        if(id == null){
+            id = keysById.size();
+            keysById.add(key);
+            tagsById.add(PostingList.EMPTY);
+        }
+        else{
+            keysById.set(id, key);
+        }
+
+        idsByKey.put(key, id);
+        allImages.add(id);
+        return id;
+    }
+
+    /**
+     * Removes the image with the given id from every tag, and frees its id.
+     */
+    private void removeId(int id) {
+        for(int tag : tagsById.get(id)){
+            postings.get(tag).remove(id);
+        }
+
+        idsByKey.remove(keysById.get(id));
+        keysById.set(id, null);
+        tagsById.set(id, PostingList.EMPTY);
+        allImages.remove(id);
+        freeIds.push(id);
+    }
+
+    /**
+     * Returns the id of the tag with the given name, giving it one if it doesn't have one yet.
+     */
+    private int tagId(String name) {
+        Integer id = tagIds.get(name);
+        if(id == null){
+            id = tagNames.size();
+            tagIds.put(name, id);
+            tagNames.add(name);
+            postings.add(new PostingList());
+        }
+        return id;
+    }
+
+    /**
+     * Returns the given sorted array without repeated values.
+     */
+    private static int[] distinct(int[] sorted) {
+        int count = 0;
+        for(int i = 0; i < sorted.length; i++){
+            if(i == 0 || sorted[i] != sorted[i - 1]){
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count == sorted.length ? sorted : Arrays.copyOf(sorted, count);
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Queries                                                                   *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the ids of the images the tag with the given name is attached to.
+     *
+     * @param name the name of the tag, with its '@' prefix
+     * @return the sorted ids
+     */
+    public int[] imagesWith(String name) {
+        build();
+        lock.readLock().lock();
+        try {
+            Integer tag = tagIds.get(name);
+            return tag == null ? PostingList.EMPTY : postings.get(tag).toArray();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the images that have every one of the tags with the given names attached (AND).
+     *
+     * @param names the names of the tags, with their '@' prefixes
+     * @return the sorted ids, every image in the index if no names are given
+     */
+    public int[] withAll(Collection<String> names) {
+        build();
+        lock.readLock().lock();
+        try {
+            int[] result = null;
+
+            /* Starting from the shortest list keeps every intermediate result as small as possible */
+            for(PostingList list : sortedBySize(names)){
+                if(list == null){
+                    return PostingList.EMPTY;
+                }
+                result = result == null ? list.toArray() : PostingList.and(result, list.toArray());
+                if(result.length == 0){
+                    break;
+                }
+            }
+            return result == null ? allImages.toArray() : result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the images that have any of the tags with the given names attached (OR).
+     *
+     * @param names the names of the tags, with their '@' prefixes
+     * @return the sorted ids
+     */
+    public int[] withAny(Collection<String> names) {
+        build();
+        lock.readLock().lock();
+        try {
+            return union(names);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the images in the index that have none of the tags with the given names attached (NOT).
+     *
+     * @param names the names of the tags, with their '@' prefixes
+     * @return the sorted ids
+     */
+    public int[] withNone(Collection<String> names) {
+        build();
+        lock.readLock().lock();
+        try {
+            return PostingList.andNot(allImages.toArray(), union(names));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of every image in the index.
+     *
+     * @return the sorted ids
+     */
+    public int[] allImages() {
+        build();
+        lock.readLock().lock();
+        try {
+            return allImages.toArray();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the key the image with the given id is saved under.
+     *
+     * @param id the id of the image
+     * @return the key, or null if no image has the id
+     */
+    public String keyOf(int id) {
+        build();
+        lock.readLock().lock();
+        try {
+            return id >= 0 && id < keysById.size() ? keysById.get(id) : null;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the keys the images with the given ids are saved under, leaving out ids no image has.
+     *
+     * @param ids the ids of the images
+     * @return the keys, in the order of the ids
+     */
+    public List<String> keysOf(int[] ids) {
+        build();
+        lock.readLock().lock();
+        try {
+            List<String> keys = new ArrayList<>(ids.length);
+            for(int id : ids){
+                String key = id >= 0 && id < keysById.size() ? keysById.get(id) : null;
+                if(key != null){
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the names of the tags attached to at least one image in the index.
+     *
+     * @return the names, with their '@' prefixes, sorted
+     */
+    public TreeSet<String> getTagNames() {
+        build();
+        lock.readLock().lock();
+        try {
+            TreeSet<String> names = new TreeSet<>();
+            for(int tag = 0; tag < tagNames.size(); tag++){
+                if(postings.get(tag).size() > 0){
+                    names.add(tagNames.get(tag));
+                }
+            }
+            return names;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of images the tag with the given name is attached to.
+     *
+     * @param name the name of the tag, with its '@' prefix
+     * @return the number of images
+     */
+    public int count(String name) {
+        build();
+        lock.readLock().lock();
+        try {
+            Integer tag = tagIds.get(name);
+            return tag == null ? 0 : postings.get(tag).size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of images in the index.
+     *
+     * @return the number of images
+     */
+    public int size() {
+        build();
+        lock.readLock().lock();
+        try {
+            return allImages.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the images that have any of the tags with the given names attached.
+     */
+    private int[] union(Collection<String> names) {
+        int[] result = PostingList.EMPTY;
+        for(String name : names){
+            Integer tag = tagIds.get(name);
+            if(tag != null){
+                result = PostingList.or(result, postings.get(tag).toArray());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the posting lists of the tags with the given names, shortest first, with null for a tag that isn't in
+     * the index.
+     */
+    private List<PostingList> sortedBySize(Collection<String> names) {
+        List<PostingList> lists = new ArrayList<>(names.size());
+        for(String name : names){
+            Integer tag = tagIds.get(name);
+            lists.add(tag == null ? null : postings.get(tag));
+        }
+
+        lists.sort((a, b) -> Integer.compare(a == null ? -1 : a.size(), b == null ? -1 : b.size()));
+        return lists;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Singleton Setup                                                           *
+     *                                                                           *
+     * ************************************************************************  */
+
+    public static TagIndex getInstance(){
+        return Holder.INSTANCE;
+    }
+
+    private static class Holder {
+        private static final TagIndex INSTANCE = new TagIndex();
+    }
+}
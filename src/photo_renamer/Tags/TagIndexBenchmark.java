@@ -0,0 +1,151 @@
+package photo_renamer.Tags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times building a TagIndex of a made up archive and answering AND, OR, and NOT queries on it, against answering the
+ * same queries by looking at the tags of every image, which is what finding tagged images used to take. Every image
+ * has a few tags out of a pool where some tags are far more common than others, the way years and places are.
+ *
+ * <br><br>
+ *
+ * Usage: <code>TagIndexBenchmark [number of images]</code>
+ */
+public class TagIndexBenchmark {
+
+    private static final int RUNS = 5;
+
+    private static final int TAG_COUNT = 2000;
+
+    private static final int TAGS_PER_IMAGE = 4;
+
+    public static void main(String[] args) {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        /* Tags are picked with a skew, so tag0 is on about a quarter of the images and most tags on a few hundred */
+        Random random = new Random(42);
+        List<List<String>> archive = new ArrayList<>(imageCount);
+        for(int i = 0; i < imageCount; i++){
+            List<String> tags = new ArrayList<>(TAGS_PER_IMAGE);
+            for(int t = 0; t < TAGS_PER_IMAGE; t++){
+                int tag = (int) (TAG_COUNT * Math.pow(random.nextDouble(), 3));
+                tags.add("@tag" + tag);
+            }
+            archive.add(tags);
+        }
+
+        TagIndex index = null;
+        long build = Long.MAX_VALUE;
+        for(int run = 0; run < RUNS; run++){
+            long start = System.nanoTime();
+            index = new TagIndex();
+            for(int i = 0; i < imageCount; i++){
+                index.imageTagged("/photos/album" + (i % 500) + "/IMG_" + i + ".jpg", archive.get(i));
+            }
+            build = Math.min(build, System.nanoTime() - start);
+        }
+
+        System.out.printf("%,d images, %,d tags, built in %,d ms%n%n", index.size(), index.getTagNames().size(),
+                build / 1000000);
+        System.out.printf("%-32s %10s %12s %12s%n", "Query", "Matches", "Index ms", "Scan ms");
+
+        List<String> common = Arrays.asList("@tag0", "@tag1");
+        List<String> rare = Arrays.asList("@tag0", "@tag1500");
+        List<String> any = Arrays.asList("@tag3", "@tag700", "@tag1500");
+        List<String> none = Collections.singletonList("@tag0");
+
+        /* AND of two common tags */
+        long indexed = Long.MAX_VALUE, scanned = Long.MAX_VALUE;
+        int matches = 0;
+        for(int run = 0; run < RUNS; run++){
+            long start = System.nanoTime();
+            matches = index.withAll(common).length;
+            indexed = Math.min(indexed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int scan = 0;
+            for(List<String> tags : archive){
+                if(tags.containsAll(common)){
+                    scan++;
+                }
+            }
+            scanned = Math.min(scanned, System.nanoTime() - start);
+            check(matches, scan);
+        }
+        report("@tag0 AND @tag1", matches, indexed, scanned);
+
+        /* AND of a common tag and a rare one */
+        indexed = Long.MAX_VALUE;
+        scanned = Long.MAX_VALUE;
+        for(int run = 0; run < RUNS; run++){
+            long start = System.nanoTime();
+            matches = index.withAll(rare).length;
+            indexed = Math.min(indexed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int scan = 0;
+            for(List<String> tags : archive){
+                if(tags.containsAll(rare)){
+                    scan++;
+                }
+            }
+            scanned = Math.min(scanned, System.nanoTime() - start);
+            check(matches, scan);
+        }
+        report("@tag0 AND @tag1500", matches, indexed, scanned);
+
+        /* OR of three tags */
+        indexed = Long.MAX_VALUE;
+        scanned = Long.MAX_VALUE;
+        for(int run = 0; run < RUNS; run++){
+            long start = System.nanoTime();
+            matches = index.withAny(any).length;
+            indexed = Math.min(indexed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int scan = 0;
+            for(List<String> tags : archive){
+                if(!Collections.disjoint(tags, any)){
+                    scan++;
+                }
+            }
+            scanned = Math.min(scanned, System.nanoTime() - start);
+            check(matches, scan);
+        }
+        report("@tag3 OR @tag700 OR @tag1500", matches, indexed, scanned);
+
+        /* NOT of the most common tag */
+        indexed = Long.MAX_VALUE;
+        scanned = Long.MAX_VALUE;
+        for(int run = 0; run < RUNS; run++){
+            long start = System.nanoTime();
+            matches = index.withNone(none).length;
+            indexed = Math.min(indexed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            int scan = 0;
+            for(List<String> tags : archive){
+                if(Collections.disjoint(tags, none)){
+                    scan++;
+                }
+            }
+            scanned = Math.min(scanned, System.nanoTime() - start);
+            check(matches, scan);
+        }
+        report("NOT @tag0", matches, indexed, scanned);
+    }
+
+    private static void check(int indexed, int scanned) {
+        if(indexed != scanned){
+            System.out.println("Index found " + indexed + " images, but the scan found " + scanned);
+        }
+    }
+
+    private static void report(String label, int matches, long indexed, long scanned) {
+        System.out.printf("%-32s %,10d %,12.2f %,12.2f%n", label, matches, indexed / 1e6, scanned / 1e6);
+    }
+}
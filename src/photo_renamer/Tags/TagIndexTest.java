@@ -0,0 +1,121 @@
+package photo_renamer.Tags;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that a TagIndex answers AND, OR and NOT queries with the images that have the tags attached right now, as
+ * images are tagged, retagged, moved and removed, and that an index given a source is only built from it once, the
+ * first time it is used. It exits with 1 if any check fails.
+ */
+public class TagIndexTest {
+
+    public static void main(String[] args) {
+        try {
+            queries();
+            changes();
+            builtOnFirstUse();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Queries over a few tagged images.
+     */
+    private static void queries() {
+        TagIndex index = new TagIndex();
+        index.imageTagged("beach.jpg", Arrays.asList("@beach", "@2019"));
+        index.imageTagged("city.jpg", Arrays.asList("@city", "@2019"));
+        index.imageTagged("plain.jpg", Collections.emptyList());
+        index.imageTagged("both.jpg", Arrays.asList("@beach", "@city", "@beach"));
+
+        assertKeys(index, index.withAll(Arrays.asList("@beach", "@2019")), "beach.jpg");
+        assertKeys(index, index.withAll(Arrays.asList("@beach", "@unknown")));
+        assertKeys(index, index.withAll(Collections.emptyList()), "beach.jpg", "city.jpg", "plain.jpg", "both.jpg");
+        assertKeys(index, index.withAny(Arrays.asList("@city", "@2019")), "beach.jpg", "city.jpg", "both.jpg");
+        assertKeys(index, index.withNone(Arrays.asList("@beach")), "city.jpg", "plain.jpg");
+        assertKeys(index, index.withNone(Arrays.asList("@unknown")), "beach.jpg", "city.jpg", "plain.jpg", "both.jpg");
+
+        assertTrue(index.count("@beach") == 2, "a tag given twice was counted twice");
+        assertTrue(index.getTagNames().equals(new TreeSet<>(Arrays.asList("@2019", "@beach", "@city"))),
+                "tag names were " + index.getTagNames());
+    }
+
+    /**
+     * Retagging, moving and removing images changes what the queries find.
+     */
+    private static void changes() {
+        TagIndex index = new TagIndex();
+        index.imageTagged("a.jpg", Arrays.asList("@beach"));
+        index.imageTagged("b.jpg", Arrays.asList("@beach", "@city"));
+
+        index.imageTagged("a.jpg", Arrays.asList("@city"));
+        assertKeys(index, index.imagesWith("@beach"), "b.jpg");
+        assertKeys(index, index.imagesWith("@city"), "a.jpg", "b.jpg");
+
+        index.imageMoved("a.jpg", "a @city.jpg");
+        assertKeys(index, index.imagesWith("@city"), "a @city.jpg", "b.jpg");
+
+        /* Moving onto the key of another image replaces it */
+        index.imageMoved("a @city.jpg", "b.jpg");
+        assertKeys(index, index.allImages(), "b.jpg");
+        assertKeys(index, index.imagesWith("@beach"));
+
+        index.imageRemoved("b.jpg");
+        assertTrue(index.size() == 0, "size after removing every image was " + index.size());
+        assertTrue(index.getTagNames().isEmpty(), "tags left after removing every image: " + index.getTagNames());
+
+        /* The id of a removed image is handed out again without carrying its tags */
+        index.imageTagged("c.jpg", Collections.emptyList());
+        assertKeys(index, index.withNone(Arrays.asList("@beach", "@city")), "c.jpg");
+    }
+
+    /**
+     * An index isn't built from its source until it is first queried or changed, and then only once, with the changes
+     * made applied over the images of the source.
+     */
+    private static void builtOnFirstUse() {
+        AtomicInteger walks = new AtomicInteger();
+        TagIndex index = new TagIndex();
+        index.buildFrom(visitor -> {
+            walks.incrementAndGet();
+            visitor.accept("a.jpg", Arrays.asList("@beach"));
+            visitor.accept("b.jpg", Arrays.asList("@beach", "@city"));
+        });
+        assertTrue(walks.get() == 0, "the index was built before it was used");
+
+        index.imageMoved("a.jpg", "a @sun.jpg");
+        index.imageTagged("a @sun.jpg", Arrays.asList("@sun"));
+        assertKeys(index, index.imagesWith("@beach"), "b.jpg");
+        assertKeys(index, index.imagesWith("@sun"), "a @sun.jpg");
+        assertTrue(index.size() == 2, "size after building was " + index.size());
+        assertTrue(walks.get() == 1, "the source was walked " + walks.get() + " times");
+
+        /* Clearing the index drops a source that wasn't walked yet */
+        index.buildFrom(visitor -> walks.incrementAndGet());
+        index.clear();
+        assertTrue(index.size() == 0 && walks.get() == 1, "a cleared index was built");
+    }
+
+    private static void assertKeys(TagIndex index, int[] ids, String... expected) {
+        List<String> keys = index.keysOf(ids);
+        if(!new HashSet<>(keys).equals(new HashSet<>(Arrays.asList(expected)))
+                || keys.size() != expected.length){
+            throw new AssertionError("expected " + Arrays.toString(expected) + " but was " + keys);
+        }
+    }
+
+    private static void assertTrue(boolean condition, String what) {
+        if(!condition){
+            throw new AssertionError(what);
+        }
+    }
+}
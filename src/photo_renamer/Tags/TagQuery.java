@@ -0,0 +1,517 @@
+package photo_renamer.Tags;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A query on the tags of images, such as <code>@beach AND NOT @blurry</code> or
+ * <code>(@2019* OR @2020*) @family</code>. A query is parsed once into a plan, which can then be evaluated on a TagIndex
+ * as many times as needed, or checked against the tags of a single image.
+ *
+ * <br><br>
+ *
+ * The syntax is:
+ *
+ * <pre>
+ *     query:   term (OR term)*
+ *     term:    factor ((AND)? factor)*       factors next to each other are ANDed
+ *     factor:  NOT factor | ( query ) | tag
+ *     tag:     @name, or @prefix* for every tag starting with the prefix; the @ can be left out
+ * </pre>
+ *
+ * AND, OR, and NOT can be written in any case. When a plan is made, nested ANDs and ORs are flattened, and the NOTs
+ * inside an AND are taken out of it, so <code>@a AND NOT @b AND NOT @c</code> is evaluated as the images with @a less
+ * the images with @b or @c, rather than against every image in the index.
+ */
+public class TagQuery {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The plan of the query */
+    private final Node plan;
+
+    /** The text the query was parsed from */
+    private final String text;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private TagQuery(Node plan, String text) {
+        this.plan = plan;
+        this.text = text;
+    }
+
+    /**
+     * Parses the given query and makes a plan of it.
+     *
+     * @param text the query
+     * @return the query
+     * @throws IllegalArgumentException if the query isn't valid, with a message saying what is wrong with it
+     */
+    public static TagQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        Node node = parser.query();
+
+        if(parser.hasNext()){
+            throw new IllegalArgumentException("Unexpected '" + parser.peek() + "'");
+        }
+        return new TagQuery(node.plan(), text.trim());
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Finds the images in the given index that match the query.
+     *
+     * @param index the index
+     * @return the sorted ids of the matching images
+     */
+    public int[] evaluate(TagIndex index) {
+        return plan.evaluate(index);
+    }
+
+    /**
+     * Returns whether an image with the given tags matches the query.
+     *
+     * @param tagNames the names of the image's tags, with their '@' prefixes
+     * @return true if the image matches
+     */
+    public boolean matches(Collection<String> tagNames) {
+        return plan.matches(tagNames);
+    }
+
+    /**
+     * Returns the plan of the query, with its operators in upper case and every tag prefixed with '@'.
+     *
+     * @return the plan
+     */
+    public String getPlan() {
+        return plan.toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Splits the given query into parentheses and words.
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+
+        for(int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+
+            if(Character.isWhitespace(c) || c == '(' || c == ')'){
+                if(word.length() > 0){
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                if(c == '(' || c == ')'){
+                    tokens.add(String.valueOf(c));
+                }
+            }
+            else{
+                word.append(c);
+            }
+        }
+
+        if(word.length() > 0){
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Parser                                                                    *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Parses the words of a query by recursive descent, one method per rule of the syntax.
+     */
+    private static class Parser {
+
+        private final List<String> tokens;
+
+        private int position = 0;
+
+        private Parser(List<String> tokens) {
+            this.tokens = tokens;
+        }
+
+        private Node query() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(term());
+
+            while(isNext("OR")){
+                position++;
+                terms.add(term());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node term() {
+            List<Node> factors = new ArrayList<>();
+            factors.add(factor());
+
+            while(hasNext() && !isNext("OR") && !peek().equals(")")){
+                if(isNext("AND")){
+                    position++;
+                }
+                factors.add(factor());
+            }
+            return factors.size() == 1 ? factors.get(0) : new And(factors);
+        }
+
+        private Node factor() {
+            if(!hasNext()){
+                throw new IllegalArgumentException(tokens.isEmpty() ? "Empty query" : "Query ends too soon");
+            }
+
+            String token = tokens.get(position++);
+
+            if(token.equalsIgnoreCase("NOT")){
+                return new Not(factor());
+            }
+            if(token.equals("(")){
+                Node node = query();
+                if(!hasNext() || !peek().equals(")")){
+                    throw new IllegalArgumentException("Missing ')'");
+                }
+                position++;
+                return node;
+            }
+            if(token.equals(")") || token.equalsIgnoreCase("AND") || token.equalsIgnoreCase("OR")){
+                throw new IllegalArgumentException("Unexpected '" + token + "'");
+            }
+            return tag(token);
+        }
+
+        private Node tag(String token) {
+            String name = "@" + token.replace("@", "");
+            int star = name.indexOf('*');
+
+            if(star < 0){
+                return new Tag(name);
+            }
+            if(star != name.length() - 1){
+                throw new IllegalArgumentException("'*' can only end a tag: " + token);
+            }
+            return new Prefix(name.substring(0, star));
+        }
+
+        private boolean hasNext() {
+            return position < tokens.size();
+        }
+
+        private String peek() {
+            return tokens.get(position);
+        }
+
+        private boolean isNext(String keyword) {
+            return hasNext() && peek().equalsIgnoreCase(keyword);
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Plan                                                                      *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * A step of a plan.
+     */
+    private interface Node {
+
+        /** Returns the sorted ids of the images in the index this step matches */
+        int[] evaluate(TagIndex index);
+
+        /** Returns whether an image with the given tags is matched by this step */
+        boolean matches(Collection<String> tagNames);
+
+        /** Returns this step and the steps under it, rearranged to be evaluated as cheaply as possible */
+        default Node plan() {
+            return this;
+        }
+    }
+
+    /**
+     * The images with one tag.
+     */
+    private static class Tag implements Node {
+
+        private final String name;
+
+        private Tag(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public int[] evaluate(TagIndex index) {
+            return index.imagesWith(name);
+        }
+
+        @Override
+        public boolean matches(Collection<String> tagNames) {
+            return tagNames.contains(name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The images with any tag starting with a prefix. Which tags those are is looked up every time the plan is
+     * evaluated, since tags come and go.
+     */
+    private static class Prefix implements Node {
+
+        private final String prefix;
+
+        private Prefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int[] evaluate(TagIndex index) {
+            return index.withAny(index.getTagNames().subSet(prefix, prefix + Character.MAX_VALUE));
+        }
+
+        @Override
+        public boolean matches(Collection<String> tagNames) {
+            for(String name : tagNames){
+                if(name.startsWith(prefix)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return prefix + "*";
+        }
+    }
+
+    /**
+     * The images not matched by a step.
+     */
+    private static class Not implements Node {
+
+        private final Node node;
+
+        private Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public int[] evaluate(TagIndex index) {
+            return PostingList.andNot(index.allImages(), node.evaluate(index));
+        }
+
+        @Override
+        public boolean matches(Collection<String> tagNames) {
+            return !node.matches(tagNames);
+        }
+
+        @Override
+        public Node plan() {
+            Node planned = node.plan();
+            return planned instanceof Not ? ((Not) planned).node : new Not(planned);
+        }
+
+        @Override
+        public String toString() {
+            return node instanceof Tag || node instanceof Prefix ? "NOT " + node : "NOT (" + node + ")";
+        }
+    }
+
+    /**
+     * The images matched by every one of a few steps. The steps that aren't NOTs are intersected starting from the one
+     * with the fewest images, and then the images matched by any of the NOTs' steps are taken out.
+     */
+    private static class And implements Node {
+
+        private final List<Node> included;
+
+        private final List<Node> excluded;
+
+        private And(List<Node> nodes) {
+            this(nodes, new ArrayList<>());
+        }
+
+        private And(List<Node> included, List<Node> excluded) {
+            this.included = included;
+            this.excluded = excluded;
+        }
+
+        @Override
+        public int[] evaluate(TagIndex index) {
+            List<int[]> results = new ArrayList<>(included.size());
+            for(Node node : included){
+                results.add(node.evaluate(index));
+            }
+            results.sort(Comparator.comparingInt(r -> r.length));
+
+            int[] result = results.isEmpty() ? index.allImages() : results.get(0);
+            for(int i = 1; i < results.size() && result.length > 0; i++){
+                result = PostingList.and(result, results.get(i));
+            }
+
+            for(int i = 0; i < excluded.size() && result.length > 0; i++){
+                result = PostingList.andNot(result, excluded.get(i).evaluate(index));
+            }
+            return result;
+        }
+
+        @Override
+        public boolean matches(Collection<String> tagNames) {
+            for(Node node : included){
+                if(!node.matches(tagNames)){
+                    return false;
+                }
+            }
+            for(Node node : excluded){
+                if(node.matches(tagNames)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Node plan() {
+            List<Node> in = new ArrayList<>(), out = new ArrayList<>();
+            collect(this, in, out);
+
+            return in.size() == 1 && out.isEmpty() ? in.get(0) : new And(in, out);
+        }
+
+        /**
+         * Flattens the ANDs under the given step, sorting their steps into the included and excluded ones.
+         */
+        private static void collect(Node node, List<Node> in, List<Node> out) {
+            if(node instanceof And){
+                for(Node child : ((And) node).included){
+                    collect(child, in, out);
+                }
+                for(Node child : ((And) node).excluded){
+                    out.add(child.plan());
+                }
+                return;
+            }
+
+            Node planned = node.plan();
+            if(planned instanceof Not){
+                out.add(((Not) planned).node);
+            }
+            else if(planned instanceof And){
+                collect(planned, in, out);
+            }
+            else{
+                in.add(planned);
+            }
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for(Node node : included){
+                parts.add(node instanceof Or ? "(" + node + ")" : node.toString());
+            }
+            for(Node node : excluded){
+                parts.add(node instanceof Tag || node instanceof Prefix ? "NOT " + node : "NOT (" + node + ")");
+            }
+            return String.join(" AND ", parts);
+        }
+    }
+
+    /**
+     * The images matched by any of a few steps.
+     */
+    private static class Or implements Node {
+
+        private final List<Node> nodes;
+
+        private Or(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public int[] evaluate(TagIndex index) {
+
+            /* Plain tags are joined by the index in one go */
+            List<String> names = new ArrayList<>();
+            int[] result = PostingList.EMPTY;
+
+            for(Node node : nodes){
+                if(node instanceof Tag){
+                    names.add(((Tag) node).name);
+                }
+                else{
+                    result = PostingList.or(result, node.evaluate(index));
+                }
+            }
+            return names.isEmpty() ? result : PostingList.or(result, index.withAny(names));
+        }
+
+        @Override
+        public boolean matches(Collection<String> tagNames) {
+            for(Node node : nodes){
+                if(node.matches(tagNames)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Node plan() {
+            List<Node> flat = new ArrayList<>();
+            for(Node node : nodes){
+                Node planned = node.plan();
+                if(planned instanceof Or){
+                    flat.addAll(((Or) planned).nodes);
+                }
+                else{
+                    flat.add(planned);
+                }
+            }
+            return new Or(flat);
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for(Node node : nodes){
+                parts.add(node.toString());
+            }
+            return String.join(" OR ", parts);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package photo_renamer.Tags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks how TagQuery parses queries: the precedence of NOT, AND and OR, parentheses, the plans made of them, and the
+ * errors given for queries that aren't valid. Every query is also evaluated on a small index and checked against
+ * matching the tags of each image one at a time. It exits with 1 if any check fails.
+ */
+public class TagQueryTest {
+
+    /** The images of the index the queries are evaluated on, with their tags */
+    private static final String[][] IMAGES = {
+            {"a.jpg", "@a"},
+            {"b.jpg", "@b"},
+            {"c.jpg", "@c"},
+            {"ab.jpg", "@a", "@b"},
+            {"bc.jpg", "@b", "@c"},
+            {"abc.jpg", "@a", "@b", "@c"},
+            {"2019.jpg", "@2019", "@a"},
+            {"2019-06.jpg", "@2019-06"},
+            {"none.jpg"},
+    };
+
+    public static void main(String[] args) {
+        try {
+            precedence();
+            parentheses();
+            not();
+            prefixes();
+            malformed();
+        }
+        catch (AssertionError e){
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    /**
+     * NOT binds tighter than AND, AND tighter than OR, and words next to each other are ANDed.
+     */
+    private static void precedence() {
+        check("@a OR @b AND @c", "@a OR @b AND @c", "a.jpg", "ab.jpg", "bc.jpg", "abc.jpg", "2019.jpg");
+        check("@a AND @b OR @c", "@a AND @b OR @c", "c.jpg", "ab.jpg", "bc.jpg", "abc.jpg");
+        check("@a @b OR @c", "@a AND @b OR @c", "c.jpg", "ab.jpg", "bc.jpg", "abc.jpg");
+        check("a and b", "@a AND @b", "ab.jpg", "abc.jpg");
+        check("NOT @a AND @b", "@b AND NOT @a", "b.jpg", "bc.jpg");
+        check("NOT @a OR @c", "NOT @a OR @c", "b.jpg", "c.jpg", "bc.jpg", "abc.jpg", "2019-06.jpg", "none.jpg");
+    }
+
+    /**
+     * Parentheses group against the precedence, and nested ANDs and ORs are flattened by the plan.
+     */
+    private static void parentheses() {
+        check("(@a OR @b) @c", "(@a OR @b) AND @c", "bc.jpg", "abc.jpg");
+        check("@a AND (@b OR @c)", "@a AND (@b OR @c)", "ab.jpg", "abc.jpg");
+        check("((@a))", "@a", "a.jpg", "ab.jpg", "abc.jpg", "2019.jpg");
+        check("@a AND (@b AND @c)", "@a AND @b AND @c", "abc.jpg");
+        check("@a OR (@b OR @c)", "@a OR @b OR @c",
+                "a.jpg", "b.jpg", "c.jpg", "ab.jpg", "bc.jpg", "abc.jpg", "2019.jpg");
+        check("(@a)(@b)", "@a AND @b", "ab.jpg", "abc.jpg");
+    }
+
+    /**
+     * NOTs are taken out of the ANDs they are in, a double NOT cancels out, and a NOT on its own is everything else.
+     */
+    private static void not() {
+        check("NOT @a", "NOT @a", "b.jpg", "c.jpg", "bc.jpg", "2019-06.jpg", "none.jpg");
+        check("not not @a", "@a", "a.jpg", "ab.jpg", "abc.jpg", "2019.jpg");
+        check("@b AND NOT @a AND NOT @c", "@b AND NOT @a AND NOT @c", "b.jpg");
+        check("@b AND NOT (@a OR @c)", "@b AND NOT (@a OR @c)", "b.jpg");
+        check("NOT (@a OR @b)", "NOT (@a OR @b)", "c.jpg", "2019-06.jpg", "none.jpg");
+        check("NOT @a NOT @b", "NOT @a AND NOT @b", "c.jpg", "2019-06.jpg", "none.jpg");
+        check("NOT (@a AND NOT @b)", "NOT (@a AND NOT @b)",
+                "b.jpg", "c.jpg", "ab.jpg", "bc.jpg", "abc.jpg", "2019-06.jpg", "none.jpg");
+    }
+
+    /**
+     * A '*' at the end of a tag matches every tag starting with it, and tags nobody has match nothing.
+     */
+    private static void prefixes() {
+        check("2019*", "@2019*", "2019.jpg", "2019-06.jpg");
+        check("@2019* AND NOT @a", "@2019* AND NOT @a", "2019-06.jpg");
+        check("@unknown", "@unknown");
+        check("@unknown*", "@unknown*");
+    }
+
+    /**
+     * Queries that aren't valid are turned down with a message saying what is wrong with them.
+     */
+    private static void malformed() {
+        checkInvalid("", "Empty query");
+        checkInvalid("   ", "Empty query");
+        checkInvalid("(", "Query ends too soon");
+        checkInvalid("@a AND", "Query ends too soon");
+        checkInvalid("NOT", "Query ends too soon");
+        checkInvalid("(@a", "Missing ')'");
+        checkInvalid("(@a OR (@b)", "Missing ')'");
+        checkInvalid("@a)", "Unexpected ')'");
+        checkInvalid("()", "Unexpected ')'");
+        checkInvalid("OR @a", "Unexpected 'OR'");
+        checkInvalid("@a OR OR @b", "Unexpected 'OR'");
+        checkInvalid("@a AND AND @b", "Unexpected 'AND'");
+        checkInvalid("be*ach", "'*' can only end a tag: be*ach");
+    }
+
+    /**
+     * Checks that the given query has the given plan, and matches the given images both in the index and one image at
+     * a time.
+     */
+    private static void check(String text, String plan, String... expected) {
+        TagQuery query = TagQuery.parse(text);
+        if(!query.getPlan().equals(plan)){
+            throw new AssertionError(text + ": expected the plan " + plan + " but was " + query.getPlan());
+        }
+
+        TagIndex index = new TagIndex();
+        for(String[] image : IMAGES){
+            index.imageTagged(image[0], tagsOf(image));
+        }
+
+        Set<String> wanted = new HashSet<>(Arrays.asList(expected));
+        List<String> found = index.keysOf(query.evaluate(index));
+        if(!new HashSet<>(found).equals(wanted) || found.size() != expected.length){
+            throw new AssertionError(text + ": expected " + wanted + " but the index gave " + found);
+        }
+
+        for(String[] image : IMAGES){
+            if(query.matches(tagsOf(image)) != wanted.contains(image[0])){
+                throw new AssertionError(text + ": " + image[0] + " was matched differently from the index");
+            }
+        }
+    }
+
+    /**
+     * Checks that the given query is turned down with the given message.
+     */
+    private static void checkInvalid(String text, String message) {
+        try {
+            TagQuery.parse(text);
+        }
+        catch (IllegalArgumentException e){
+            if(!e.getMessage().equals(message)){
+                throw new AssertionError("\"" + text + "\": expected the error " + message + " but was "
+                        + e.getMessage());
+            }
+            return;
+        }
+        throw new AssertionError("\"" + text + "\" was parsed");
+    }
+
+    private static List<String> tagsOf(String[] image) {
+        return new ArrayList<>(Arrays.asList(image).subList(1, image.length));
+    }
+}
@@ -0,0 +1,39 @@
+package photo_renamer.Thumbnails;
+
+/**
+ * The pixels of a small copy of an image, as ARGB ints one row after another.
+ */
+public class Thumbnail {
+
+    private final int width, height;
+    private final int[] pixels;
+
+    /**
+     * Instantiates a new thumbnail with the given pixels.
+     *
+     * @param width the width of the thumbnail
+     * @param height the height of the thumbnail
+     * @param pixels the ARGB pixels of the thumbnail, one row after another
+     */
+    public Thumbnail(int width, int height, int[] pixels) {
+        if(pixels.length != width * height){
+            throw new IllegalArgumentException("Expected " + width * height + " pixels, got " + pixels.length);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+}
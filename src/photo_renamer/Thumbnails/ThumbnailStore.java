@@ -0,0 +1,448 @@
+package photo_renamer.Thumbnails;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps the thumbnails of images in a single file on the disk, so they only ever have to be made once. Thumbnails are
+ * looked up by the path of their image together with when it was last modified and its length, so a thumbnail of an
+ * image that has changed on the disk is never used.
+ *
+ * <br><br>
+ *
+ * The file is a header followed by records appended one after another:
+ *
+ * <pre>
+ *     header:  int magic, int version
+ *     record:  int key length, key (UTF-8 path), long last modified, long length,
+ *              short width, short height, int data length, data (deflated ARGB pixels)
+ * </pre>
+ *
+ * Only the position of each record is kept in memory, and a record is read straight from the file at its position, so
+ * the file can grow past what a single mapping can hold. The positions are found by reading just the record headers
+ * when the store is opened. A record left incomplete by a crash is cut off, and a thumbnail made again for an image
+ * replaces its old record in the index. The records that were replaced are left in the file until the store is opened
+ * with more than COMPACT_FRACTION of the file taken up by them, when only the latest records are copied into a new
+ * file.
+ */
+public class ThumbnailStore implements AutoCloseable {
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Static Variables                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    private static final int MAGIC = 0x50525448; // "PRTH"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    /** The length of a record after its key: last modified, length, width, height, and data length */
+    private static final int RECORD_INFO_SIZE = 8 + 8 + 2 + 2 + 4;
+
+    /** The size of the buffer the record headers are read through when the store is opened */
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    /** The fraction of the file that has to be taken up by replaced records for the store to be compacted */
+    static final double COMPACT_FRACTION = 0.5;
+
+    /** The fewest bytes of replaced records worth compacting a store for */
+    static final long COMPACT_MINIMUM = 1 << 20;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Variables                                                        *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /** The store's file */
+    private final File file;
+
+    /** The channel of the store's file */
+    private FileChannel channel;
+
+    /** The position of the latest record of each image, by the image's path */
+    private final Map<String, Long> records = new HashMap<>();
+
+    /** The length of the file */
+    private long size;
+
+    /** The number of bytes in the file taken up by records that were replaced by later ones */
+    private long deadBytes = 0;
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Constructors                                                              *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist. A file that isn't a thumbnail store (or is of
+     * another version) is started over, and a file mostly taken up by replaced records is compacted.
+     *
+     * @param file the file of the store
+     * @throws IOException if the file couldn't be opened
+     */
+    public ThumbnailStore(File file) throws IOException {
+        this.file = file;
+        channel = open(file);
+        size = channel.size();
+
+        if(!readHeader()){
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            channel.write(header, 0);
+            size = HEADER_SIZE;
+        }
+
+        indexRecords();
+
+        if(deadBytes >= COMPACT_MINIMUM && deadBytes > size * COMPACT_FRACTION){
+            compact();
+        }
+    }
+
+
+    /* ************************************************************************* *
+     *                                                                           *
+     * Instance Methods                                                          *
+     *                                                                           *
+     * ************************************************************************  */
+
+    /**
+     * Returns the thumbnail of the given image, if there is one for the image as it is on the disk right now.
+     *
+     * @param image the image file
+     * @return the thumbnail, or null if there isn't one
+     * @throws IOException if the store couldn't be read
+     */
+    public synchronized Thumbnail get(File image) throws IOException {
+        Long position = records.get(image.getAbsolutePath());
+        if(position == null){
+            return null;
+        }
+
+        /* The key of the record is the path the record was found under, so the rest of the record starts right after it */
+        long infoPosition = position + 4 + image.getAbsolutePath().getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer info = ByteBuffer.allocate(RECORD_INFO_SIZE);
+        readFully(info, infoPosition);
+
+        if(info.getLong() != image.lastModified() || info.getLong() != image.length()){
+            return null;
+        }
+
+        int width = info.getShort() & 0xFFFF;
+        int height = info.getShort() & 0xFFFF;
+        ByteBuffer data = ByteBuffer.allocate(info.getInt());
+        readFully(data, infoPosition + RECORD_INFO_SIZE);
+
+        return new Thumbnail(width, height, inflate(data.array(), width * height));
+    }
+
+    /**
+     * Adds the given thumbnail of the given image to the store, replacing any older thumbnail of it.
+     *
+     * @param image the image file the thumbnail is of
+     * @param thumbnail the thumbnail
+     * @throws IOException if the store couldn't be written to
+     */
+    public synchronized void put(File image, Thumbnail thumbnail) throws IOException {
+        String path = image.getAbsolutePath();
+        byte[] key = path.getBytes(StandardCharsets.UTF_8);
+        byte[] data = deflate(thumbnail.getPixels());
+
+        ByteBuffer record = ByteBuffer.allocate(4 + key.length + RECORD_INFO_SIZE + data.length);
+        record.putInt(key.length).put(key)
+                .putLong(image.lastModified()).putLong(image.length())
+                .putShort((short) thumbnail.getWidth()).putShort((short) thumbnail.getHeight())
+                .putInt(data.length).put(data);
+        record.flip();
+
+        long position = size;
+        while(record.hasRemaining()){
+            size += channel.write(record, size);
+        }
+        records.put(path, position);
+    }
+
+    /**
+     * Returns whether or not the store has a record for the given image, whether or not it is still up to date.
+     *
+     * @param image the image file
+     * @return true if the image has a record
+     */
+    public synchronized boolean contains(File image) {
+        return records.containsKey(image.getAbsolutePath());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Copies only the latest record of each image into a new file, in the order they are in now, and then puts the new
+     * file in place of the old one. If the copy fails, the old file is kept as it is.
+     *
+     * @throws IOException if the new file couldn't be put in place of the old one
+     */
+    private void compact() throws IOException {
+        List<Map.Entry<String, Long>> latest = new ArrayList<>(records.entrySet());
+        latest.sort(Map.Entry.comparingByValue());
+        long[] newPositions = new long[latest.size()];
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (FileChannel out = open(temp)) {
+            out.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            out.write(header, 0);
+            out.position(HEADER_SIZE);
+
+            HeaderReader reader = new HeaderReader();
+            for(int i = 0; i < latest.size(); i++){
+                long position = latest.get(i).getValue();
+                int keyLength = latest.get(i).getKey().getBytes(StandardCharsets.UTF_8).length;
+                long length = 4 + keyLength + RECORD_INFO_SIZE
+                        + reader.at(position + 4 + keyLength + RECORD_INFO_SIZE - 4, 4).getInt();
+
+                newPositions[i] = out.position();
+                long copied = 0;
+                while(copied < length){
+                    copied += channel.transferTo(position + copied, length - copied, out);
+                }
+            }
+
+            out.force(false);
+        }
+        catch (IOException e){
+            Files.deleteIfExists(temp.toPath());
+            return;
+        }
+
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(file);
+        size = channel.size();
+        deadBytes = 0;
+
+        for(int i = 0; i < latest.size(); i++){
+            latest.get(i).setValue(newPositions[i]);
+        }
+    }
+
+    /**
+     * Opens the given file to be read and written, creating it if it doesn't exist.
+     */
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Checks that the file starts with the header of a store of this version.
+     */
+    private boolean readHeader() throws IOException {
+        if(size < HEADER_SIZE){
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == MAGIC && header.getInt() == VERSION;
+    }
+
+    /**
+     * Finds the position of every record by reading their headers, cutting off an incomplete record at the end, and
+     * counts the bytes of the records replaced by later ones.
+     */
+    private void indexRecords() throws IOException {
+        HeaderReader reader = new HeaderReader();
+        long position = HEADER_SIZE;
+
+        while(position < size){
+
+            /* Make sure the whole record is in the file before using it */
+            ByteBuffer header = reader.at(position, 4);
+            if(header == null){
+                break;
+            }
+            int keyLength = header.getInt();
+            if(keyLength < 0){
+                break;
+            }
+
+            header = reader.at(position + 4, keyLength + RECORD_INFO_SIZE);
+            if(header == null){
+                break;
+            }
+
+            byte[] key = new byte[keyLength];
+            header.get(key);
+            header.position(header.position() + RECORD_INFO_SIZE - 4);
+
+            int dataLength = header.getInt();
+            long end = position + 4 + keyLength + RECORD_INFO_SIZE + dataLength;
+            if(dataLength < 0 || end > size){
+                break;
+            }
+
+            /* A replaced record has the same key, so only the length of its data has to be read */
+            Long replaced = records.put(new String(key, StandardCharsets.UTF_8), position);
+            if(replaced != null){
+                ByteBuffer replacedLength = ByteBuffer.allocate(4);
+                readFully(replacedLength, replaced + 4 + keyLength + RECORD_INFO_SIZE - 4);
+                deadBytes += 4 + keyLength + RECORD_INFO_SIZE + replacedLength.getInt();
+            }
+            position = end;
+        }
+
+        if(position < size){
+            channel.truncate(position);
+            size = position;
+        }
+    }
+
+    /**
+     * Fills the given buffer from the file at the given position, and flips it to be read.
+     *
+     * @throws EOFException if the file ends first
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()){
+            int read = channel.read(buffer, position + buffer.position());
+            if(read < 0){
+                throw new EOFException("Thumbnail record cut off at " + position);
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Compresses the given pixels.
+     */
+    private static byte[] deflate(int[] pixels) {
+        ByteBuffer raw = ByteBuffer.allocate(pixels.length * 4);
+        raw.asIntBuffer().put(pixels);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+
+            byte[] buffer = new byte[raw.capacity() + 64];
+            int length = 0;
+            while(!deflater.finished()){
+                if(length == buffer.length){
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses the given number of pixels.
+     */
+    private static int[] inflate(byte[] data, int count) throws IOException {
+        byte[] raw = new byte[count * 4];
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int length = 0;
+            while(length < raw.length && !inflater.finished()){
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+                    break;
+                }
+                length += read;
+            }
+        }
+        catch (DataFormatException e){
+            throw new IOException("Corrupt thumbnail", e);
+        }
+        finally {
+            inflater.end();
+        }
+
+        int[] pixels = new int[count];
+        IntBuffer buffer = ByteBuffer.wrap(raw).asIntBuffer();
+        buffer.get(pixels);
+        return pixels;
+    }
+
+
+    /**
+     * Reads the headers of the records one after another through a buffer, so opening the store doesn't read the disk
+     * for every record. The buffer is filled again from the file whenever a header isn't in it.
+     */
+    private class HeaderReader {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        /** The position in the file of the start of the buffer */
+        private long start = 0;
+
+        HeaderReader() {
+            buffer.limit(0);
+        }
+
+        /**
+         * Returns the buffer, positioned at the given position in the file with at least the given number of bytes
+         * left in it, or null if the file ends before them.
+         */
+        ByteBuffer at(long position, int length) throws IOException {
+            if(length < 0 || position + length > size){
+                return null;
+            }
+
+            if(position < start || position + length > start + buffer.limit()){
+                if(length > buffer.capacity()){
+                    buffer = ByteBuffer.allocate(length);
+                }
+
+                buffer.clear();
+                start = position;
+                while(buffer.hasRemaining() && start + buffer.position() < size){
+                    if(channel.read(buffer, start + buffer.position()) < 0){
+                        break;
+                    }
+                }
+                buffer.flip();
+
+                if(buffer.limit() < length){
+                    return null;
+                }
+            }
+
+            buffer.position((int) (position - start));
+            return buffer;
+        }
+    }
+}